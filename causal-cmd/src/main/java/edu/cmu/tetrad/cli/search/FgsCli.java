@@ -23,6 +23,7 @@ import edu.cmu.tetrad.cli.util.Args;
 import edu.cmu.tetrad.cli.util.DateTime;
 import edu.cmu.tetrad.cli.util.FileIO;
 import edu.cmu.tetrad.cli.util.GraphmlSerializer;
+import edu.cmu.tetrad.cli.util.MetricsFileSink;
 import edu.cmu.tetrad.cli.util.XmlPrint;
 import edu.cmu.tetrad.cli.validation.DataValidation;
 import edu.cmu.tetrad.cli.validation.NonZeroVariance;
@@ -32,8 +33,10 @@ import edu.cmu.tetrad.data.CovarianceMatrixOnTheFly;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.io.DataReader;
-import edu.cmu.tetrad.io.TabularContinuousDataReader;
+import edu.cmu.tetrad.io.ParallelTabularContinuousDataReader;
 import edu.cmu.tetrad.search.Fgs;
+import edu.cmu.tetrad.util.MetricsSink;
+import edu.cmu.tetrad.util.TetradMetrics;
 import edu.cmu.tetrad.search.SemBicScore;
 import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
@@ -49,6 +52,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -102,6 +106,11 @@ public class FgsCli {
 
         // output results
         MAIN_OPTIONS.addOption(null, "graphml", false, "Create graphML output.");
+        MAIN_OPTIONS.addOption(null, "metrics", false, "Write search metrics (tests, scores, arrows, phase times) to a JSON file, updated as the search runs.");
+        MAIN_OPTIONS.addOption(null, "metrics-interval", true, "Seconds between updates of the metrics file. Default is 60.");
+        MAIN_OPTIONS.addOption(null, "checkpoint", false, "Periodically save the state of the search to a checkpoint file so it can be resumed.");
+        MAIN_OPTIONS.addOption(null, "checkpoint-interval", true, "Seconds between checkpoints. Default is 600.");
+        MAIN_OPTIONS.addOption(null, "resume", true, "Resume the search from a checkpoint file written by an earlier run with the same data and parameters.");
 
         // output
         MAIN_OPTIONS.addOption("o", "out", true, "Output directory.");
@@ -120,6 +129,11 @@ public class FgsCli {
     private static boolean heuristicSpeedup;
     private static boolean ignoreLinearDependence;
     private static boolean graphML;
+    private static boolean metrics;
+    private static int metricsInterval;
+    private static boolean checkpoint;
+    private static int checkpointInterval;
+    private static Path resumeFile;
     private static boolean verbose;
     private static int numOfThreads;
 
@@ -221,15 +235,60 @@ public class FgsCli {
             fgs.setKnowledge(IKnowledgeFactory.readInKnowledge(knowledgeFile));
         }
 
+        MetricsSink metricsSink = null;
+        if (metrics) {
+            metricsSink = startMetrics(Paths.get(dirOut.toString(), outputPrefix + "_metrics.json"));
+        }
+
+        if (checkpoint) {
+            Path checkpointFile = Paths.get(dirOut.toString(), outputPrefix + "_checkpoint.bin");
+            fgs.setCheckpointFile(checkpointFile.toFile());
+            fgs.setCheckpointInterval(TimeUnit.SECONDS.toMillis(checkpointInterval));
+            LOGGER.info(String.format("Writing checkpoints to '%s' every %d seconds.", checkpointFile.getFileName(), checkpointInterval));
+        }
+
         System.out.printf("%s: Start search.%n", DateTime.printNow());
         LOGGER.info("Start search.");
-        Graph graph = fgs.search();
+        Graph graph;
+        try {
+            if (resumeFile == null) {
+                graph = fgs.search();
+            } else {
+                System.out.printf("%s: Resuming from checkpoint '%s'.%n", DateTime.printNow(), resumeFile.getFileName());
+                LOGGER.info(String.format("Resuming from checkpoint '%s'.", resumeFile.getFileName()));
+                graph = fgs.resume(resumeFile.toFile());
+            }
+        } finally {
+            if (metricsSink != null) {
+                stopMetrics(metricsSink);
+            }
+        }
         System.out.printf("%s: End search.%n", DateTime.printNow());
         LOGGER.info("End search.");
 
         return graph;
     }
 
+    private static MetricsSink startMetrics(Path metricsFile) {
+        TetradMetrics tetradMetrics = TetradMetrics.getInstance();
+        MetricsSink sink = new MetricsFileSink(metricsFile);
+        tetradMetrics.reset();
+        tetradMetrics.setEnabled(true);
+        tetradMetrics.addSink(sink);
+        tetradMetrics.startReporting(metricsInterval, TimeUnit.SECONDS);
+        LOGGER.info(String.format("Writing metrics to '%s' every %d seconds.", metricsFile.getFileName(), metricsInterval));
+
+        return sink;
+    }
+
+    private static void stopMetrics(MetricsSink sink) {
+        TetradMetrics tetradMetrics = TetradMetrics.getInstance();
+        tetradMetrics.stopReporting();
+        tetradMetrics.report();
+        tetradMetrics.removeSink(sink);
+        tetradMetrics.setEnabled(false);
+    }
+
     private static String createOutputRunInfo(Set<String> excludedVariables, DataSet dataSet) {
         Formatter fmt = new Formatter();
 
@@ -296,7 +355,7 @@ public class FgsCli {
     private static DataSet readInDataSet(Set<String> excludedVariables) {
         DataSet dataSet = null;
 
-        DataReader dataReader = new TabularContinuousDataReader(dataFile, delimiter);
+        DataReader dataReader = new ParallelTabularContinuousDataReader(dataFile, delimiter);
         try {
             System.out.printf("%s: Start reading in data.%n", DateTime.printNow());
             LOGGER.info("Start reading in data.");
@@ -358,6 +417,17 @@ public class FgsCli {
         fmt.format("depth = %d%n", depth);
         fmt.format("heuristic-speedup = %s%n", heuristicSpeedup);
         fmt.format("graphml = %s%n", graphML);
+        fmt.format("metrics = %s%n", metrics);
+        if (metrics) {
+            fmt.format("metrics-interval = %d%n", metricsInterval);
+        }
+        fmt.format("checkpoint = %s%n", checkpoint);
+        if (checkpoint) {
+            fmt.format("checkpoint-interval = %d%n", checkpointInterval);
+        }
+        if (resumeFile != null) {
+            fmt.format("resume = %s%n", resumeFile.getFileName());
+        }
 
         fmt.format("skip-unique-var-name = %s%n", skipUniqueVarName);
         fmt.format("skip-non-zero-variance = %s%n", skipZeroVariance);
@@ -382,6 +452,11 @@ public class FgsCli {
             heuristicSpeedup = !cmd.hasOption("disable-heuristic-speedup");
             ignoreLinearDependence = cmd.hasOption("ignore-linear-dependence");
             graphML = cmd.hasOption("graphml");
+            metrics = cmd.hasOption("metrics");
+            metricsInterval = Args.getIntegerMin(cmd.getOptionValue("metrics-interval", "60"), 1);
+            checkpoint = cmd.hasOption("checkpoint");
+            checkpointInterval = Args.getIntegerMin(cmd.getOptionValue("checkpoint-interval", "600"), 1);
+            resumeFile = Args.getPathFile(cmd.getOptionValue("resume", null), false);
             verbose = cmd.hasOption("verbose");
             numOfThreads = Args.getInteger(cmd.getOptionValue("thread", Integer.toString(Runtime.getRuntime().availableProcessors())));
             dirOut = Args.getPathDir(cmd.getOptionValue("out", "."), false);
@@ -23,6 +23,7 @@ import edu.cmu.tetrad.cli.util.Args;
 import edu.cmu.tetrad.cli.util.DateTime;
 import edu.cmu.tetrad.cli.util.FileIO;
 import edu.cmu.tetrad.cli.util.GraphmlSerializer;
+import edu.cmu.tetrad.cli.util.MetricsFileSink;
 import edu.cmu.tetrad.cli.util.XmlPrint;
 import edu.cmu.tetrad.cli.validation.DataValidation;
 import edu.cmu.tetrad.cli.validation.LimitDiscreteCategory;
@@ -34,6 +35,8 @@ import edu.cmu.tetrad.io.DataReader;
 import edu.cmu.tetrad.io.VerticalTabularDiscreteDataReader;
 import edu.cmu.tetrad.search.BDeuScore;
 import edu.cmu.tetrad.search.Fgs;
+import edu.cmu.tetrad.util.MetricsSink;
+import edu.cmu.tetrad.util.TetradMetrics;
 import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -48,6 +51,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -98,6 +102,8 @@ public class FgsDiscrete {
 
         // output results
         MAIN_OPTIONS.addOption(null, "graphml", false, "Create graphML output.");
+        MAIN_OPTIONS.addOption(null, "metrics", false, "Write search metrics (tests, scores, arrows, phase times) to a JSON file, updated as the search runs.");
+        MAIN_OPTIONS.addOption(null, "metrics-interval", true, "Seconds between updates of the metrics file. Default is 60.");
 
         // data validations
         MAIN_OPTIONS.addOption(null, "skip-unique-var-name", false, "Skip 'unique variable name' check.");
@@ -120,6 +126,8 @@ public class FgsDiscrete {
     private static int depth;
     private static boolean heuristicSpeedup;
     private static boolean graphML;
+    private static boolean metrics;
+    private static int metricsInterval;
     private static boolean verbose;
     private static int numOfThreads;
 
@@ -223,15 +231,47 @@ public class FgsDiscrete {
             fgs.setKnowledge(IKnowledgeFactory.readInKnowledge(knowledgeFile));
         }
 
+        MetricsSink metricsSink = null;
+        if (metrics) {
+            metricsSink = startMetrics(Paths.get(dirOut.toString(), outputPrefix + "_metrics.json"));
+        }
+
         System.out.printf("%s: Start search.%n", DateTime.printNow());
         LOGGER.info("Start search.");
-        Graph graph = fgs.search();
+        Graph graph;
+        try {
+            graph = fgs.search();
+        } finally {
+            if (metricsSink != null) {
+                stopMetrics(metricsSink);
+            }
+        }
         System.out.printf("%s: End search.%n", DateTime.printNow());
         LOGGER.info("End search.");
 
         return graph;
     }
 
+    private static MetricsSink startMetrics(Path metricsFile) {
+        TetradMetrics tetradMetrics = TetradMetrics.getInstance();
+        MetricsSink sink = new MetricsFileSink(metricsFile);
+        tetradMetrics.reset();
+        tetradMetrics.setEnabled(true);
+        tetradMetrics.addSink(sink);
+        tetradMetrics.startReporting(metricsInterval, TimeUnit.SECONDS);
+        LOGGER.info(String.format("Writing metrics to '%s' every %d seconds.", metricsFile.getFileName(), metricsInterval));
+
+        return sink;
+    }
+
+    private static void stopMetrics(MetricsSink sink) {
+        TetradMetrics tetradMetrics = TetradMetrics.getInstance();
+        tetradMetrics.stopReporting();
+        tetradMetrics.report();
+        tetradMetrics.removeSink(sink);
+        tetradMetrics.setEnabled(false);
+    }
+
     private static String createOutputRunInfo(Set<String> excludedVariables, DataSet dataSet) {
         Formatter fmt = new Formatter();
 
@@ -360,6 +400,10 @@ public class FgsDiscrete {
         fmt.format("depth = %d%n", depth);
         fmt.format("heuristic-speedup = %s%n", heuristicSpeedup);
         fmt.format("graphml = %s%n", graphML);
+        fmt.format("metrics = %s%n", metrics);
+        if (metrics) {
+            fmt.format("metrics-interval = %d%n", metricsInterval);
+        }
 
         fmt.format("skip-unique-var-name = %s%n", skipUniqueVarName);
         fmt.format("skip-category-limit = %s%n", skipCategoryLimit);
@@ -384,6 +428,8 @@ public class FgsDiscrete {
             depth = Args.getIntegerMin(cmd.getOptionValue("depth", "-1"), -1);
             heuristicSpeedup = !cmd.hasOption("disable-heuristic-speedup");
             graphML = cmd.hasOption("graphml");
+            metrics = cmd.hasOption("metrics");
+            metricsInterval = Args.getIntegerMin(cmd.getOptionValue("metrics-interval", "60"), 1);
             verbose = cmd.hasOption("verbose");
             numOfThreads = Args.getInteger(cmd.getOptionValue("thread", Integer.toString(Runtime.getRuntime().availableProcessors())));
             dirOut = Args.getPathDir(cmd.getOptionValue("out", "."), false);
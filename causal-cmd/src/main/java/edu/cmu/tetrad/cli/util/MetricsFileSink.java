@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.cmu.tetrad.cli.util;
+
+import edu.cmu.tetrad.util.MetricsSink;
+import edu.cmu.tetrad.util.MetricsSnapshot;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes each metrics snapshot to a JSON file, replacing the one before, so
+ * that the file always holds the latest values of a running search.
+ *
+ * Oct 17, 2026 10:12:31 AM
+ *
+ * @author Joseph Ramsey
+ */
+public class MetricsFileSink implements MetricsSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsFileSink.class);
+
+    private final Path file;
+
+    public MetricsFileSink(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void report(MetricsSnapshot snapshot) {
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, Charset.forName("UTF-8"))) {
+                writer.write(snapshot.toJson());
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException exception) {
+            LOGGER.error(String.format("Failed when writing metrics file '%s'.", file.getFileName()), exception);
+        }
+    }
+
+}
@@ -19,10 +19,10 @@
 package edu.cmu.tetrad.cli.validation;
 
 import edu.cmu.tetrad.io.AbstractDataReader;
+import edu.cmu.tetrad.io.MappedFileBuffer;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.Collections;
@@ -54,7 +54,7 @@ public abstract class AbstractDatasetValidation extends AbstractDataReader {
         int numOfCols = 0;
         String[] variables = new String[countNumberOfColumns()];
         try (FileChannel fc = new RandomAccessFile(dataFile.toFile(), "r").getChannel()) {
-            MappedByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            MappedFileBuffer buffer = new MappedFileBuffer(fc);
 
             int index = 0;
             byte currentChar = -1;
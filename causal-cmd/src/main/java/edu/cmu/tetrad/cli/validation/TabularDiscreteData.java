@@ -18,10 +18,10 @@
  */
 package edu.cmu.tetrad.cli.validation;
 
+import edu.cmu.tetrad.io.MappedFileBuffer;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.Collections;
@@ -72,7 +72,7 @@ public class TabularDiscreteData extends AbstractDatasetValidation implements Da
         int numOfCols = variableAnalysis.getNumOfCols();
         int maxNumOfCols = variables.length;
         try (FileChannel fc = new RandomAccessFile(dataFile.toFile(), "r").getChannel()) {
-            MappedByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            MappedFileBuffer buffer = new MappedFileBuffer(fc);
 
             skipToNextLine(buffer);  // skip the header
 
@@ -0,0 +1,116 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmark;
+
+import edu.cmu.tetrad.bayes.BayesPm;
+import edu.cmu.tetrad.bayes.MlBayesIm;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.sem.LargeSemSimulator;
+import edu.cmu.tetrad.util.RandomUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulated graphs and data for the benchmarks. Everything is drawn from a
+ * fixed seed, so each benchmark sees the same inputs from run to run and
+ * release to release.
+ *
+ * @author Joseph Ramsey
+ */
+final class BenchmarkData {
+
+    static final long SEED = 49283749L;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return a random DAG over X1, ..., Xn with about avgDegree * n / 2 edges.
+     */
+    static Graph randomDag(int numVars, double avgDegree) {
+        RandomUtil.getInstance().setSeed(SEED);
+
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < numVars; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        int numEdges = (int) (avgDegree * numVars / 2);
+        return GraphUtils.randomGraph(nodes, 0, numEdges, 30, 15, 15, false);
+    }
+
+    /**
+     * @return linear Gaussian data for the DAG, with random coefficients.
+     */
+    static DataSet continuousData(Graph dag, int sampleSize) {
+        RandomUtil.getInstance().setSeed(SEED + 1);
+        return new LargeSemSimulator(dag).simulateDataAcyclic(sampleSize);
+    }
+
+    /**
+     * @return discrete data for the DAG, from a Bayes net with 2 to 4 categories
+     * per variable and random parameters.
+     */
+    static DataSet discreteData(Graph dag, int sampleSize) {
+        RandomUtil.getInstance().setSeed(SEED + 2);
+        BayesPm pm = new BayesPm(dag, 2, 4);
+        MlBayesIm im = new MlBayesIm(pm, MlBayesIm.RANDOM);
+        return im.simulateData(sampleSize, false);
+    }
+
+    /**
+     * @return for each of count draws, size distinct variable indices, the
+     * first two of which are the pair and the rest the conditioning set.
+     */
+    static int[][] randomTuples(int numVars, int size, int count) {
+        RandomUtil.getInstance().setSeed(SEED + 3);
+        int[][] tuples = new int[count][];
+
+        for (int t = 0; t < count; t++) {
+            int[] tuple = new int[size];
+
+            for (int k = 0; k < size; k++) {
+                DRAW:
+                while (true) {
+                    int v = RandomUtil.getInstance().nextInt(numVars);
+
+                    for (int m = 0; m < k; m++) {
+                        if (tuple[m] == v) continue DRAW;
+                    }
+
+                    tuple[k] = v;
+                    break;
+                }
+            }
+
+            tuples[t] = tuple;
+        }
+
+        return tuples;
+    }
+}
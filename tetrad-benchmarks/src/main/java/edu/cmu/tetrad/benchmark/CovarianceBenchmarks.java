@@ -0,0 +1,117 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmark;
+
+import edu.cmu.tetrad.data.CovarianceKernel;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.io.TabularContinuousDataReader;
+import edu.cmu.tetrad.util.TetradMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a tab-delimited continuous file and building its covariance matrix,
+ * the two steps every continuous search starts with. The kernel benchmarks
+ * report throughput; CovarianceKernel should manage at least 1 GFLOP/s per
+ * core, counting rows * cols * (cols + 1) / 2 multiply-adds per matrix.
+ *
+ * @author Joseph Ramsey
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CovarianceBenchmarks {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"50", "500"})
+    public int cols;
+
+    private DataSet data;
+    private double[][] columns;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = BenchmarkData.continuousData(BenchmarkData.randomDag(cols, 2), rows);
+        columns = CovarianceKernel.columns(data);
+        file = Files.createTempFile("tetrad-benchmark", ".txt");
+
+        try (BufferedWriter out = Files.newBufferedWriter(file, Charset.forName("UTF-8"))) {
+            for (int j = 0; j < cols; j++) {
+                if (j > 0) out.write('\t');
+                out.write(data.getVariable(j).getName());
+            }
+
+            out.newLine();
+
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    if (j > 0) out.write('\t');
+                    out.write(Double.toString(data.getDouble(i, j)));
+                }
+
+                out.newLine();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public CovarianceMatrix covarianceMatrix() {
+        return new CovarianceMatrix(data);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public TetradMatrix covarianceKernel() {
+        return CovarianceKernel.covariance(columns, rows);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public TetradMatrix correlationKernel() {
+        return CovarianceKernel.correlation(columns, rows);
+    }
+
+    @Benchmark
+    public DataSet readTabularContinuous() throws IOException {
+        return new TabularContinuousDataReader(file, '\t').readInData();
+    }
+}
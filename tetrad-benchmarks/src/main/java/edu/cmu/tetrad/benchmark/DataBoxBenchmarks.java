@@ -0,0 +1,128 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmark;
+
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import edu.cmu.tetrad.data.VerticalIntDataBox;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Column sums over each kind of data box, reading the cells as boxed Numbers
+ * through get(), as primitives through getDouble(), and as whole columns
+ * through getDoubleColumn(). Run with the GC profiler (BenchmarkRunner adds
+ * it) to see the allocation rate of the boxed path.
+ *
+ * @author Joseph Ramsey
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataBoxBenchmarks {
+
+    @Param({"DoubleDataBox", "VerticalDoubleDataBox", "VerticalIntDataBox"})
+    public String boxType;
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"20"})
+    public int cols;
+
+    private DataBox box;
+    private double[] buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (boxType) {
+            case "DoubleDataBox":
+                box = new DoubleDataBox(rows, cols);
+                break;
+            case "VerticalDoubleDataBox":
+                box = new VerticalDoubleDataBox(rows, cols);
+                break;
+            case "VerticalIntDataBox":
+                box = new VerticalIntDataBox(rows, cols);
+                break;
+            default:
+                throw new IllegalArgumentException("Unrecognized box type: " + boxType);
+        }
+
+        RandomUtil.getInstance().setSeed(BenchmarkData.SEED);
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                box.set(i, j, RandomUtil.getInstance().nextInt(4));
+            }
+        }
+
+        buffer = new double[rows];
+    }
+
+    @Benchmark
+    public double boxed() {
+        double sum = 0.0;
+
+        for (int j = 0; j < cols; j++) {
+            for (int i = 0; i < rows; i++) {
+                sum += box.get(i, j).doubleValue();
+            }
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public double primitive() {
+        double sum = 0.0;
+
+        for (int j = 0; j < cols; j++) {
+            for (int i = 0; i < rows; i++) {
+                sum += box.getDouble(i, j);
+            }
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public double column() {
+        double sum = 0.0;
+
+        for (int j = 0; j < cols; j++) {
+            double[] column = box.getDoubleColumn(j, buffer);
+
+            for (int i = 0; i < rows; i++) {
+                sum += column[i];
+            }
+        }
+
+        return sum;
+    }
+}
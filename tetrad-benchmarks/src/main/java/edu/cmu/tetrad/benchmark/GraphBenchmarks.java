@@ -0,0 +1,89 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmark;
+
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.MeekRules;
+import edu.cmu.tetrad.search.SearchGraphUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjacency queries on EdgeListGraph, which every search makes in its inner
+ * loops, and Meek orientation of a pattern, which Fgs and Pc run after each
+ * change to the graph.
+ *
+ * @author Joseph Ramsey
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmarks {
+
+    @Param({"100", "1000"})
+    public int numVars;
+
+    @Param({"2", "6"})
+    public double avgDegree;
+
+    private Graph dag;
+    private Graph pattern;
+    private Node[] nodes;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dag = new EdgeListGraph(BenchmarkData.randomDag(numVars, avgDegree));
+        pattern = SearchGraphUtils.patternForDag(dag);
+        List<Node> _nodes = dag.getNodes();
+        nodes = _nodes.toArray(new Node[_nodes.size()]);
+    }
+
+    @Benchmark
+    public boolean isAdjacentTo() {
+        next = (next + 1) % nodes.length;
+        return dag.isAdjacentTo(nodes[next], nodes[(next * 31 + 7) % nodes.length]);
+    }
+
+    @Benchmark
+    public void getAdjacentNodes(Blackhole blackhole) {
+        for (Node node : nodes) {
+            blackhole.consume(dag.getAdjacentNodes(node));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Graph meekRules() {
+        Graph graph = new EdgeListGraph(pattern);
+        new MeekRules().orientImplied(graph);
+        return graph;
+    }
+}
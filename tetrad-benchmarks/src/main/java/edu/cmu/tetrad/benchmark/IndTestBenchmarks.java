@@ -0,0 +1,91 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmark;
+
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fisher Z tests of X _||_ Y | Z for random X, Y and Z of several sizes.
+ *
+ * @author Joseph Ramsey
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndTestBenchmarks {
+
+    private static final int NUM_VARS = 50;
+
+    @Param({"1000", "10000"})
+    public int sampleSize;
+
+    @Param({"0", "2", "5"})
+    public int condSize;
+
+    private IndTestFisherZ test;
+    private Node[] x;
+    private Node[] y;
+    private List<List<Node>> z;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Graph dag = BenchmarkData.randomDag(NUM_VARS, 2);
+        DataSet data = BenchmarkData.continuousData(dag, sampleSize);
+        test = new IndTestFisherZ(data, 0.01);
+
+        int[][] tuples = BenchmarkData.randomTuples(NUM_VARS, condSize + 2, 1024);
+        List<Node> variables = test.getVariables();
+        x = new Node[tuples.length];
+        y = new Node[tuples.length];
+        z = new ArrayList<>();
+
+        for (int t = 0; t < tuples.length; t++) {
+            x[t] = variables.get(tuples[t][0]);
+            y[t] = variables.get(tuples[t][1]);
+            List<Node> _z = new ArrayList<>();
+
+            for (int k = 2; k < tuples[t].length; k++) {
+                _z.add(variables.get(tuples[t][k]));
+            }
+
+            z.add(_z);
+        }
+    }
+
+    @Benchmark
+    public boolean fisherZIsIndependent() {
+        next = (next + 1) % x.length;
+        return test.isIndependent(x[next], y[next], z.get(next));
+    }
+}
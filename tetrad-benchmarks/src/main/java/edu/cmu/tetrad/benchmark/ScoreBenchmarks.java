@@ -0,0 +1,89 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmark;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.search.BDeuScore;
+import edu.cmu.tetrad.search.SemBicScore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local scores for one child and a parent set, as Fgs calls them, cycling
+ * over a fixed set of random families.
+ *
+ * @author Joseph Ramsey
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreBenchmarks {
+
+    private static final int NUM_VARS = 50;
+
+    @Param({"1000", "10000"})
+    public int sampleSize;
+
+    @Param({"0", "2", "5"})
+    public int numParents;
+
+    private SemBicScore semBicScore;
+    private BDeuScore bdeuScore;
+    private int[][] families;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Graph dag = BenchmarkData.randomDag(NUM_VARS, 2);
+        semBicScore = new SemBicScore(new CovarianceMatrix(BenchmarkData.continuousData(dag, sampleSize)));
+        bdeuScore = new BDeuScore(BenchmarkData.discreteData(dag, sampleSize));
+        families = BenchmarkData.randomTuples(NUM_VARS, numParents + 1, 1024);
+    }
+
+    @Benchmark
+    public double semBicLocalScore() {
+        int[] family = nextFamily();
+        return semBicScore.localScore(family[0], parents(family));
+    }
+
+    @Benchmark
+    public double bdeuLocalScore() {
+        int[] family = nextFamily();
+        return bdeuScore.localScore(family[0], parents(family));
+    }
+
+    private int[] nextFamily() {
+        next = (next + 1) % families.length;
+        return families[next];
+    }
+
+    private static int[] parents(int[] family) {
+        int[] parents = new int[family.length - 1];
+        System.arraycopy(family, 1, parents, 0, parents.length);
+        return parents;
+    }
+}
@@ -0,0 +1,89 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmark;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.search.FasStableConcurrent;
+import edu.cmu.tetrad.search.FasStableParallel;
+import edu.cmu.tetrad.search.Fgs;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.SemBicScore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole searches on simulated linear Gaussian data: Fgs, and the two
+ * concurrent PC-Stable adjacency searches. Each run starts from the same
+ * covariance matrix, so the times are comparable across releases.
+ *
+ * @author Joseph Ramsey
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmarks {
+
+    @Param({"50", "200", "500"})
+    public int numVars;
+
+    @Param({"2", "4"})
+    public double avgDegree;
+
+    @Param({"1000"})
+    public int sampleSize;
+
+    private ICovarianceMatrix cov;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Graph dag = BenchmarkData.randomDag(numVars, avgDegree);
+        cov = new CovarianceMatrix(BenchmarkData.continuousData(dag, sampleSize));
+    }
+
+    @Benchmark
+    public Graph fgs() {
+        Fgs fgs = new Fgs(new SemBicScore(cov));
+        fgs.setVerbose(false);
+        fgs.setNumPatternsToStore(0);
+        return fgs.search();
+    }
+
+    @Benchmark
+    public Graph fasStableConcurrent() {
+        FasStableConcurrent fas = new FasStableConcurrent(new IndTestFisherZ(cov, 0.01));
+        fas.setVerbose(false);
+        return fas.search();
+    }
+
+    @Benchmark
+    public Graph fasStableParallel() {
+        FasStableParallel fas = new FasStableParallel(new IndTestFisherZ(cov, 0.01));
+        fas.setVerbose(false);
+        return fas.search();
+    }
+}
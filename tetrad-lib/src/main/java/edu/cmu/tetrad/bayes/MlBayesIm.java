@@ -27,7 +27,6 @@ import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.graph.TimeLagGraph;
 import edu.cmu.tetrad.util.*;
 import org.apache.commons.math3.distribution.ChiSquaredDistribution;
-import org.apache.commons.math3.random.*;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -1165,10 +1164,12 @@ public final class MlBayesIm implements BayesIm {
         }
     }
 
-    final long[] seed = new long[]{new Date().getTime()};
-
     private void constructSample(int sampleSize, DataSet dataSet, int[] map, int[] tiers) {
 
+        // Row i is drawn from stream i, so the sample does not depend on how the rows
+        // are divided among threads.
+        final long seed = RandomUtil.getInstance().nextLong();
+
         //Do the simulation.
         class SimulationTask extends RecursiveTask<Boolean> {
             private int chunk;
@@ -1190,9 +1191,9 @@ public final class MlBayesIm implements BayesIm {
             @Override
             protected Boolean compute() {
                 if (to - from <= chunk) {
-                    RandomGenerator randomGenerator = new Well1024a(++seed[0]);
-
                     for (int row = from; row < to; row++) {
+                        RandomStream randomGenerator = RandomStream.forTask(seed, row);
+
                         for (int t : tiers) {
                             int[] parentValues = new int[parents[t].length];
 
@@ -1235,7 +1236,7 @@ public final class MlBayesIm implements BayesIm {
 
         int chunk = 25;
 
-        ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        ForkJoinPool pool = TetradExecutors.getInstance().getPool();
         SimulationTask task = new SimulationTask(chunk, 0, sampleSize, tiers, dataSet, map);
         pool.invoke(task);
 
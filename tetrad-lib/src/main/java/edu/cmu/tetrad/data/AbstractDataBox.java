@@ -0,0 +1,69 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+/**
+ * Copies columns and rows out of a data box through its primitive getters,
+ * for boxes whose layout offers nothing faster. Boxes that store columns or
+ * rows as arrays override the copies with array copies.
+ *
+ * @author Joseph Ramsey
+ */
+public abstract class AbstractDataBox implements DataBox {
+    static final long serialVersionUID = 23L;
+
+    public double[] getDoubleColumn(int col, double[] buffer) {
+        if (buffer == null || buffer.length != numRows()) {
+            buffer = new double[numRows()];
+        }
+
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = getDouble(i, col);
+        }
+
+        return buffer;
+    }
+
+    public double[] getDoubleRow(int row, double[] buffer) {
+        if (buffer == null || buffer.length != numCols()) {
+            buffer = new double[numCols()];
+        }
+
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = getDouble(row, i);
+        }
+
+        return buffer;
+    }
+
+    public int[] getIntColumn(int col, int[] buffer) {
+        if (buffer == null || buffer.length != numRows()) {
+            buffer = new int[numRows()];
+        }
+
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = getInt(i, col);
+        }
+
+        return buffer;
+    }
+}
@@ -21,6 +21,7 @@
 
 package edu.cmu.tetrad.data;
 
+import edu.cmu.tetrad.util.RandomStream;
 import edu.cmu.tetrad.util.RandomUtil;
 
 /**
@@ -86,8 +87,11 @@ public final class BootstrapSampler {
 //        }
 
         // (not keeping order)
+        // One draw from the shared generator seeds a stream confined to this sample.
+        RandomStream random = new RandomStream(RandomUtil.getInstance().nextLong());
+
         for (int row = 0; row < newSampleSize; row++) {
-            int oldCase = RandomUtil.getInstance().nextInt(oldSampleSize);
+            int oldCase = random.nextInt(oldSampleSize);
 
             for (int col = 0; col < ncols; col++) {
                 newDataSet.setObject(row, col, dataSet.getObject(oldCase, col));
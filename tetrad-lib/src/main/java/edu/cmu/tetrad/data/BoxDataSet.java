@@ -31,7 +31,6 @@ import java.io.ObjectInputStream;
 import java.text.NumberFormat;
 import java.util.*;
 
-import static java.lang.Math.sqrt;
 
 
 /**
@@ -262,7 +261,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      */
     public final void setDouble(int row, int column, double value) {
         try {
-            dataBox.set(row, column, value);
+            dataBox.setDouble(row, column, value);
         } catch (Exception e) {
             if (row < 0 || column < 0) {
                 throw new IllegalArgumentException(
@@ -272,7 +271,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
             int newRows = Math.max(row + 1, dataBox.numRows());
             int newCols = Math.max(column + 1, dataBox.numCols());
             resize(newRows, newCols);
-            dataBox.set(row, column, value);
+            dataBox.setDouble(row, column, value);
         }
     }
 
@@ -794,58 +793,21 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
     }
 
     /**
-     * @return the correlation matrix for this dataset. Defers to
-     * <code>Statistic.covariance()</code> in the COLT matrix library, so it
-     * inherits the handling of missing values from that library--that is, any
-     * off-diagonal correlation involving a column with a missing value is
-     * Double.NaN, although all of the on-diagonal elements are 1.0. If that's
-     * not the desired behavior, missing values can be removed or imputed
-     * first.
+     * @return the correlation matrix for this dataset, calculated by
+     * CovarianceKernel. Missing values are deleted pairwise. The on-diagonal
+     * elements are 1.0.
      */
     public final TetradMatrix getCorrelationMatrix() {
         if (!isContinuous()) {
             throw new IllegalStateException("Not a continuous data set.");
         }
 
-        TetradMatrix corr = getCovarianceMatrix();
-
-        for (int i = 0; i < corr.columns(); i++) {
-            for (int j = 0; j < corr.columns(); j++) {
-                if (i == j) continue;
-                corr.set(i, j, corr.get(i, j) / sqrt(corr.get(i, i) * corr.get(j, j)));
-            }
-        }
-
-        for (int i = 0; i < corr.columns(); i++) {
-            corr.set(i, i, 1.0);
-        }
-
-//        TetradMatrix cov = new TetradMatrix(dataBox.numCols(), dataBox.numCols());
-//
-//        double[] x = new double[dataBox.numRows()];
-//        double[] y = new double[dataBox.numRows()];
-//
-//        for (int i = 0; i < dataBox.numCols(); i++) {
-//            for (int j = 0; j < dataBox.numCols(); j++) {
-//                for (int k = 0; k < dataBox.numRows(); k++) {
-//                    x[k] = dataBox.get(k, i).doubleValue();
-//                    y[k] = dataBox.get(k, j).doubleValue();
-//
-//                    cov.set(i, j, StatUtils.correlation(x, y));
-//                }
-//            }
-//        }
-
-        return corr;
+        return CovarianceKernel.correlation(CovarianceKernel.columns(this), getNumRows());
     }
 
     /**
-     * @return the covariance matrix for this dataset. Defers to
-     * <code>Statistic.covariance()</code> in the COLT matrix library, so it
-     * inherits the handling of missing values from that library--that is, any
-     * covariance involving a column with a missing value is Double.NaN. If
-     * that's not the desired behavior, missing values can be removed or imputed
-     * first.
+     * @return the covariance matrix for this dataset, calculated by
+     * CovarianceKernel. Missing values are deleted pairwise.
      */
     public final TetradMatrix getCovarianceMatrix() {
         if (!isContinuous()) {
@@ -878,13 +840,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      * integer, or DiscreteVariable.MISSING_VALUE if the value is missing.
      */
     public final int getInt(int row, int column) {
-        Number value = dataBox.get(row, column);
-
-        if (value == null) {
-            return DiscreteVariable.MISSING_VALUE;
-        } else {
-            return value.intValue();
-        }
+        return dataBox.getInt(row, column);
     }
 
     /**
@@ -894,13 +850,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      * returned.
      */
     public final double getDouble(int row, int column) {
-        Number value = dataBox.get(row, column);
-
-        if (value == null) {
-            return ContinuousVariable.getDoubleMissingValue();
-        } else {
-            return value.doubleValue();
-        }
+        return dataBox.getDouble(row, column);
     }
 
     /**
@@ -1022,15 +972,13 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      */
     public final TetradMatrix getDoubleData() {
         TetradMatrix copy = new TetradMatrix(dataBox.numRows(), dataBox.numCols());
+        double[] row = null;
 
         for (int i = 0; i < dataBox.numRows(); i++) {
+            row = dataBox.getDoubleRow(i, row);
+
             for (int j = 0; j < dataBox.numCols(); j++) {
-                Number number = dataBox.get(i, j);
-                if (number == null) {
-                    copy.set(i, j, Double.NaN);
-                } else {
-                    copy.set(i, j, number.doubleValue());
-                }
+                copy.set(i, j, row[j]);
             }
         }
 
@@ -1287,11 +1235,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
     //===============================PRIVATE METHODS=====================//
 
     private void setIntPrivate(int row, int col, int value) {
-        if (value == -99) {
-            dataBox.set(row, col, null);
-        } else {
-            dataBox.set(row, col, value);
-        }
+        dataBox.setInt(row, col, value);
     }
 
     /**
@@ -89,6 +89,26 @@ public final class CellTable {
         }
     }
 
+    /**
+     * Fills the table from counts already taken, for the variables at the given indices.
+     */
+    public final void addToTable(DiscreteCounts counts, int[] indices) {
+        int[] dims = new int[indices.length];
+
+        for (int i = 0; i < indices.length; i++) {
+            dims[i] = counts.getNumCategories(indices[i]);
+        }
+
+        table.reset(dims);
+
+        DiscreteCounts.Table counted = counts.getTable(indices);
+        int[] coords = new int[indices.length];
+
+        for (int k = 0; k < counted.getNumCells(); k++) {
+            table.increment(counted.getCoords(k, coords), counted.getCount(k));
+        }
+    }
+
     /**
      * @param varIndex the index of the variable in question.
      * @return the number of dimensions of the variable.
@@ -27,7 +27,7 @@ import edu.cmu.tetrad.util.TetradMatrix;
  * Stores a 2D array of short data. Note that the missing value marker for this
  * box is -99.
  */
-public class ColtDataBox implements DataBox {
+public class ColtDataBox extends AbstractDataBox {
     static final long serialVersionUID = 23L;
 
     /**
@@ -107,6 +107,44 @@ public class ColtDataBox implements DataBox {
         }
     }
 
+    /**
+     * @return the value at the given row and column as a double, without
+     * boxing. If the value is missing, Double.NaN is returned.
+     */
+    public double getDouble(int row, int col) {
+        return data.get(row, col);
+    }
+
+    /**
+     * @return the value at the given row and column as an int, without
+     * boxing. If the value is missing, DiscreteVariable.MISSING_VALUE is
+     * returned.
+     */
+    public int getInt(int row, int col) {
+        double datum = data.get(row, col);
+        return Double.isNaN(datum) ? DiscreteVariable.MISSING_VALUE : (int) datum;
+    }
+
+    /**
+     * Sets the value at the given row and column to the given double value.
+     * Double.NaN is interpreted as a missing value.
+     */
+    public void setDouble(int row, int col, double value) {
+        synchronized (data) {
+            data.set(row, col, value);
+        }
+    }
+
+    /**
+     * Sets the value at the given row and column to the given int value.
+     * DiscreteVariable.MISSING_VALUE is interpreted as a missing value.
+     */
+    public void setInt(int row, int col, int value) {
+        synchronized (data) {
+            data.set(row, col, value == DiscreteVariable.MISSING_VALUE ? Double.NaN : value);
+        }
+    }
+
     /**
      * @return a copy of this data box.
      */
@@ -978,42 +978,21 @@ public final class ColtDataSet implements DataSet, TetradSerializable {
     }
 
     /**
-     * @return the correlation matrix for this dataset. Defers to
-     * <code>Statistic.covariance()</code> in the COLT matrix library, so it
-     * inherits the handling of missing values from that library--that is, any
-     * off-diagonal correlation involving a column with a missing value is
-     * Double.NaN, although all of the on-diagonal elements are 1.0. If that's
-     * not the desired behavior, missing values can be removed or imputed
-     * first.
+     * @return the correlation matrix for this dataset, calculated by
+     * CovarianceKernel. Missing values are deleted pairwise. The on-diagonal
+     * elements are 1.0.
      */
     public final TetradMatrix getCorrelationMatrix() {
         if (!isContinuous()) {
-            throw new IllegalStateException("Not a continuous tetradMatrix set.");
-        }
-
-        TetradMatrix cov = new TetradMatrix(tetradMatrix.columns(), tetradMatrix.columns());
-
-        for (int i = 0; i < tetradMatrix.columns(); i++) {
-            for (int j = i; j < tetradMatrix.columns(); j++) {
-                double correlation = StatUtils.correlation(tetradMatrix.getColumn(i).toArray(), tetradMatrix.getColumn(j).toArray());
-                cov.set(i, j, correlation);
-                cov.set(j, i, correlation);
-            }
+            throw new IllegalStateException("Not a continuous data set.");
         }
 
-        return cov;
-
-
-//        return Statistic.correlation(Statistic.covariance(tetradMatrix));
+        return CovarianceKernel.correlation(CovarianceKernel.columns(this), getNumRows());
     }
 
     /**
-     * @return the covariance matrix for this dataset. Defers to
-     * <code>Statistic.covariance()</code> in the COLT matrix library, so it
-     * inherits the handling of missing values from that library--that is, any
-     * covariance involving a column with a missing value is Double.NaN. If
-     * that's not the desired behavior, missing values can be removed or imputed
-     * first.
+     * @return the covariance matrix for this dataset, calculated by
+     * CovarianceKernel. Missing values are deleted pairwise.
      */
     public final TetradMatrix getCovarianceMatrix() {
         if (!isContinuous()) {
@@ -0,0 +1,375 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.util.TetradMatrix;
+import edu.cmu.tetrad.util.TetradSerializable;
+
+/**
+ * Accumulates the means and co-moments (sums of products of deviations from
+ * the mean) of a stream of rows, so that covariances can be calculated without
+ * keeping the rows. Single rows are added with Welford's update; batches of
+ * rows are centered on their own means and combined with the running totals
+ * using the pairwise update of Chan, Golub and LeVeque, which is also used to
+ * merge accumulators filled in parallel from different parts of the data.
+ * Both updates are numerically stable.
+ * <p>
+ * Rows must be complete; missing values (NaN) are not allowed.
+ *
+ * @author Joseph Ramsey
+ */
+public final class CovarianceAccumulator implements TetradSerializable {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The number of variables.
+     */
+    private final int dimension;
+
+    /**
+     * The number of rows accumulated so far.
+     */
+    private long count;
+
+    /**
+     * The means of the rows accumulated so far.
+     */
+    private final double[] means;
+
+    /**
+     * The co-moments, packed lower triangular by rows; (i, j) with j <= i is
+     * at offset(i) + j.
+     */
+    private final double[] comoments;
+
+    /**
+     * Scratch space for the centered columns of a batch.
+     */
+    private transient double[][] centered;
+
+    //=============================CONSTRUCTORS=========================//
+
+    public CovarianceAccumulator(int dimension) {
+        if (dimension < 0) {
+            throw new IllegalArgumentException("Dimension must be >= 0: " + dimension);
+        }
+
+        long size = (long) dimension * (dimension + 1) / 2;
+
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many variables to pack the co-moments of " +
+                    "into one array: " + dimension);
+        }
+
+        this.dimension = dimension;
+        this.means = new double[dimension];
+        this.comoments = new double[(int) size];
+    }
+
+    /**
+     * Copy constructor.
+     */
+    public CovarianceAccumulator(CovarianceAccumulator accumulator) {
+        this.dimension = accumulator.dimension;
+        this.count = accumulator.count;
+        this.means = accumulator.means.clone();
+        this.comoments = accumulator.comoments.clone();
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static CovarianceAccumulator serializableInstance() {
+        return new CovarianceAccumulator(1);
+    }
+
+    //============================PUBLIC METHODS=========================//
+
+    /**
+     * Adds a single row.
+     */
+    public void addRow(double[] row) {
+        checkRow(row);
+
+        count++;
+
+        double[] deltas = new double[dimension];
+
+        for (int i = 0; i < dimension; i++) {
+            deltas[i] = row[i] - means[i];
+            means[i] += deltas[i] / count;
+        }
+
+        for (int i = 0; i < dimension; i++) {
+            double d = row[i] - means[i];
+            int offset = offset(i);
+
+            for (int j = 0; j <= i; j++) {
+                comoments[offset + j] += deltas[j] * d;
+            }
+        }
+    }
+
+    /**
+     * Adds the first numRows rows of the given array.
+     */
+    public void addRows(double[][] rows, int numRows) {
+        if (numRows < 0 || numRows > rows.length) {
+            throw new IllegalArgumentException("Number of rows out of range: " + numRows);
+        }
+
+        if (numRows == 0) {
+            return;
+        }
+
+        if (numRows == 1) {
+            addRow(rows[0]);
+            return;
+        }
+
+        for (int k = 0; k < numRows; k++) {
+            checkRow(rows[k]);
+        }
+
+        if (centered == null || centered.length != dimension
+                || (dimension > 0 && centered[0].length < numRows)) {
+            centered = new double[dimension][numRows];
+        }
+
+        // Center the batch on its own means, by columns.
+        double[] batchMeans = new double[dimension];
+
+        for (int i = 0; i < dimension; i++) {
+            double[] column = centered[i];
+            double sum = 0.0;
+
+            for (int k = 0; k < numRows; k++) {
+                column[k] = rows[k][i];
+                sum += column[k];
+            }
+
+            double mean = sum / numRows;
+
+            for (int k = 0; k < numRows; k++) {
+                column[k] -= mean;
+            }
+
+            batchMeans[i] = mean;
+        }
+
+        double[] batchComoments = new double[comoments.length];
+
+        for (int i = 0; i < dimension; i++) {
+            double[] ci = centered[i];
+            int offset = offset(i);
+
+            for (int j = 0; j <= i; j++) {
+                double[] cj = centered[j];
+                double d = 0.0;
+
+                for (int k = 0; k < numRows; k++) {
+                    d += ci[k] * cj[k];
+                }
+
+                batchComoments[offset + j] = d;
+            }
+        }
+
+        merge(numRows, batchMeans, batchComoments);
+    }
+
+    /**
+     * Adds the rows accumulated by another accumulator over the same
+     * variables. The other accumulator is not changed.
+     */
+    public void merge(CovarianceAccumulator other) {
+        if (other.dimension != dimension) {
+            throw new IllegalArgumentException("Expecting an accumulator of dimension " + dimension
+                    + " but got one of dimension " + other.dimension + ".");
+        }
+
+        merge(other.count, other.means, other.comoments);
+    }
+
+    /**
+     * @return the number of variables.
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return the number of rows accumulated so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean of variable i.
+     */
+    public double getMean(int i) {
+        return means[i];
+    }
+
+    /**
+     * @return a copy of the means.
+     */
+    public double[] getMeans() {
+        return means.clone();
+    }
+
+    /**
+     * @return the sample covariance of variables i and j, with divisor
+     * count - 1, as in CovarianceMatrix; NaN if fewer than two rows have been
+     * added.
+     */
+    public double getCovariance(int i, int j) {
+        if (count < 2) {
+            return Double.NaN;
+        }
+
+        return i >= j
+                ? comoments[offset(i) + j] / (count - 1)
+                : comoments[offset(j) + i] / (count - 1);
+    }
+
+    /**
+     * @return the sample covariance matrix, with divisor count - 1.
+     * @throws IllegalStateException if fewer than two rows have been added.
+     */
+    public TetradMatrix getCovarianceMatrix() {
+        if (count < 2) {
+            throw new IllegalStateException("At least two rows are needed to calculate covariances; " +
+                    "only " + count + " have been added.");
+        }
+
+        TetradMatrix matrix = new TetradMatrix(dimension, dimension);
+
+        for (int i = 0; i < dimension; i++) {
+            int offset = offset(i);
+
+            for (int j = 0; j <= i; j++) {
+                double v = comoments[offset + j] / (count - 1);
+                matrix.set(i, j, v);
+                matrix.set(j, i, v);
+            }
+        }
+
+        return matrix;
+    }
+
+    /**
+     * @return an accumulator over the variables at the given indices, in
+     * that order, with the rows accumulated so far.
+     */
+    public CovarianceAccumulator subset(int[] indices) {
+        CovarianceAccumulator subset = new CovarianceAccumulator(indices.length);
+        subset.count = count;
+
+        for (int i = 0; i < indices.length; i++) {
+            subset.means[i] = means[indices[i]];
+            int offset = offset(i);
+
+            for (int j = 0; j <= i; j++) {
+                int a = Math.max(indices[i], indices[j]);
+                int b = Math.min(indices[i], indices[j]);
+                subset.comoments[offset + j] = comoments[offset(a) + b];
+            }
+        }
+
+        return subset;
+    }
+
+    /**
+     * Removes all rows.
+     */
+    public void clear() {
+        count = 0;
+
+        for (int i = 0; i < dimension; i++) {
+            means[i] = 0.0;
+        }
+
+        for (int i = 0; i < comoments.length; i++) {
+            comoments[i] = 0.0;
+        }
+    }
+
+    //========================PRIVATE METHODS============================//
+
+    /**
+     * @return the index of row i in the packed co-moments. The product is
+     * taken in long, since it overflows an int for i above 46340 even where
+     * the result does not.
+     */
+    private static int offset(int i) {
+        return (int) ((long) i * (i + 1) / 2);
+    }
+
+    private void checkRow(double[] row) {
+        if (row.length < dimension) {
+            throw new IllegalArgumentException("Expecting a row of length " + dimension
+                    + " but got one of length " + row.length + ".");
+        }
+
+        for (int i = 0; i < dimension; i++) {
+            if (Double.isNaN(row[i])) {
+                throw new IllegalArgumentException("Please remove or impute missing values.");
+            }
+        }
+    }
+
+    /**
+     * Combines the running totals with those of n2 further rows.
+     */
+    private void merge(long n2, double[] means2, double[] comoments2) {
+        if (n2 == 0) {
+            return;
+        }
+
+        long n1 = count;
+        long n = n1 + n2;
+
+        double[] deltas = new double[dimension];
+
+        for (int i = 0; i < dimension; i++) {
+            deltas[i] = means2[i] - means[i];
+        }
+
+        double f = (double) n1 * (double) n2 / n;
+
+        for (int i = 0; i < dimension; i++) {
+            int offset = offset(i);
+
+            for (int j = 0; j <= i; j++) {
+                comoments[offset + j] += comoments2[offset + j] + deltas[i] * deltas[j] * f;
+            }
+        }
+
+        for (int i = 0; i < dimension; i++) {
+            means[i] += deltas[i] * n2 / n;
+        }
+
+        count = n;
+    }
+}
@@ -0,0 +1,379 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.util.TetradExecutors;
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Calculates covariance and correlation matrices from column-major data, as
+ * for VerticalDoubleDataBox, without copying or changing the data. Only the
+ * lower triangle of X'X is calculated. The variables are divided into tiles
+ * of TILE_SIZE columns, and for each pair of tiles the rows are taken
+ * ROW_BLOCK at a time: the tiles' columns for those rows are centered and
+ * packed into small buffers, which stay in cache while every pair of their
+ * columns is multiplied. Pairs of tiles are done in parallel.
+ * <p>
+ * Missing values (NaN) are handled by pairwise deletion, as in
+ * CovarianceMatrix: each column is centered on the mean of its non-missing
+ * values, and the covariance of two columns is calculated from the rows where
+ * both are present, divided by one less than the number of those rows. Columns
+ * with no missing values pay nothing for this.
+ *
+ * @author Joseph Ramsey
+ */
+public final class CovarianceKernel {
+
+    /**
+     * The number of columns in a tile.
+     */
+    static final int TILE_SIZE = 32;
+
+    /**
+     * The number of rows packed at a time; the two packed tiles take 2 *
+     * TILE_SIZE * ROW_BLOCK doubles, 256 KB. Marking the values present in
+     * columns with missing values takes up to as much again.
+     */
+    static final int ROW_BLOCK = 512;
+
+    // The least number of tile pairs to give to one task.
+    private static final int MIN_PAIRS = 4;
+
+    // The buffers of each worker thread, kept from task to task and from call to call.
+    private static final ThreadLocal<Tiles> TILES = new ThreadLocal<Tiles>() {
+        @Override
+        protected Tiles initialValue() {
+            return new Tiles();
+        }
+    };
+
+    private CovarianceKernel() {
+    }
+
+    /**
+     * @param columns    The data, one array per variable, each with at least
+     *                   numRows values. Not changed.
+     * @param numRows    The number of rows to use.
+     * @return the covariance matrix of the columns, with missing values
+     * deleted pairwise.
+     */
+    public static TetradMatrix covariance(double[][] columns, int numRows) {
+        final int p = columns.length;
+        TetradMatrix matrix = new TetradMatrix(p, p);
+        if (p == 0) return matrix;
+
+        double[] means = new double[p];
+        boolean[] missing = new boolean[p];
+        calculateMeans(columns, numRows, means, missing);
+
+        int numTiles = (p + TILE_SIZE - 1) / TILE_SIZE;
+        long numPairs = (long) numTiles * (numTiles + 1) / 2;
+
+        TetradExecutors.getInstance().getPool().invoke(
+                new TilePairsTask(columns, numRows, means, missing, matrix, 0, numPairs));
+
+        return matrix;
+    }
+
+    /**
+     * @return the correlation matrix of the columns, with missing values
+     * deleted pairwise for the covariances. The diagonal is 1.
+     * @see #covariance(double[][], int)
+     */
+    public static TetradMatrix correlation(double[][] columns, int numRows) {
+        TetradMatrix matrix = covariance(columns, numRows);
+        int p = matrix.rows();
+
+        double[] sd = new double[p];
+
+        for (int i = 0; i < p; i++) {
+            sd[i] = Math.sqrt(matrix.get(i, i));
+        }
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < i; j++) {
+                double r = matrix.get(i, j) / (sd[i] * sd[j]);
+                matrix.set(i, j, r);
+                matrix.set(j, i, r);
+            }
+
+            matrix.set(i, i, 1.0);
+        }
+
+        return matrix;
+    }
+
+    /**
+     * @return the columns of the given continuous data set. For a
+     * VerticalDoubleDataBox these are the box's own arrays, not copies, and
+     * must not be changed.
+     */
+    public static double[][] columns(DataSet dataSet) {
+        if (dataSet instanceof BoxDataSet) {
+            DataBox box = ((BoxDataSet) dataSet).getDataBox();
+
+            if (box instanceof VerticalDoubleDataBox) {
+                return ((VerticalDoubleDataBox) box).getVariableVectors();
+            }
+
+            double[][] columns = new double[dataSet.getNumColumns()][];
+
+            for (int j = 0; j < columns.length; j++) {
+                columns[j] = box.getDoubleColumn(j, null);
+            }
+
+            return columns;
+        }
+
+        TetradMatrix data = dataSet.getDoubleData();
+        double[][] columns = new double[data.columns()][];
+
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = data.getColumn(j).toArray();
+        }
+
+        return columns;
+    }
+
+    // The means of the non-missing values of each column, noting which columns have missing values.
+    private static void calculateMeans(final double[][] columns, final int numRows,
+                                       final double[] means, final boolean[] missing) {
+        class MeansTask extends RecursiveAction {
+            private final int from;
+            private final int to;
+
+            MeansTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= TILE_SIZE) {
+                    for (int j = from; j < to; j++) {
+                        double[] column = columns[j];
+                        double sum = 0.0;
+                        int count = 0;
+
+                        for (int k = 0; k < numRows; k++) {
+                            double x = column[k];
+                            if (Double.isNaN(x)) continue;
+                            sum += x;
+                            count++;
+                        }
+
+                        means[j] = sum / count;
+                        missing[j] = count < numRows;
+                    }
+                } else {
+                    int mid = (from + to) / 2;
+                    invokeAll(new MeansTask(from, mid), new MeansTask(mid, to));
+                }
+            }
+        }
+
+        TetradExecutors.getInstance().getPool().invoke(new MeansTask(0, columns.length));
+    }
+
+    // Calculates the covariances for a range of tile pairs (a, b), b <= a, numbered row by row.
+    private static class TilePairsTask extends RecursiveAction {
+        private final double[][] columns;
+        private final int numRows;
+        private final double[] means;
+        private final boolean[] missing;
+        private final TetradMatrix matrix;
+        private final long from;
+        private final long to;
+
+        TilePairsTask(double[][] columns, int numRows, double[] means, boolean[] missing,
+                      TetradMatrix matrix, long from, long to) {
+            this.columns = columns;
+            this.numRows = numRows;
+            this.means = means;
+            this.missing = missing;
+            this.matrix = matrix;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MIN_PAIRS) {
+                long mid = (from + to) / 2;
+                invokeAll(new TilePairsTask(columns, numRows, means, missing, matrix, from, mid),
+                        new TilePairsTask(columns, numRows, means, missing, matrix, mid, to));
+                return;
+            }
+
+            Tiles tiles = TILES.get();
+
+            for (long t = from; t < to; t++) {
+                int a = (int) ((Math.sqrt(8.0 * t + 1) - 1) / 2);
+
+                // Guard against rounding in the square root.
+                while ((long) a * (a + 1) / 2 > t) a--;
+                while ((long) (a + 1) * (a + 2) / 2 <= t) a++;
+
+                int b = (int) (t - (long) a * (a + 1) / 2);
+                tiles.calculate(this, a, b);
+            }
+        }
+    }
+
+    // Buffers for one worker thread, reused for each of its tile pairs. The rows marking present values
+    // are allocated only for tile positions that have held a column with missing values.
+    private static class Tiles {
+        private final double[][] packedA = new double[TILE_SIZE][ROW_BLOCK];
+        private final double[][] packedB = new double[TILE_SIZE][ROW_BLOCK];
+        private final double[][] presentA = new double[TILE_SIZE][];
+        private final double[][] presentB = new double[TILE_SIZE][];
+        private final int[] numPresentA = new int[TILE_SIZE];
+        private final int[] numPresentB = new int[TILE_SIZE];
+        private final double[][] sums = new double[TILE_SIZE][TILE_SIZE];
+        private final double[][] counts = new double[TILE_SIZE][TILE_SIZE];
+
+        void calculate(TilePairsTask task, int a, int b) {
+            double[][] columns = task.columns;
+            int numRows = task.numRows;
+            double[] means = task.means;
+            boolean[] missing = task.missing;
+            TetradMatrix matrix = task.matrix;
+
+            int p = columns.length;
+            int fromA = a * TILE_SIZE;
+            int sizeA = Math.min(TILE_SIZE, p - fromA);
+            int fromB = b * TILE_SIZE;
+            int sizeB = Math.min(TILE_SIZE, p - fromB);
+            boolean diagonal = a == b;
+
+            for (int i = 0; i < sizeA; i++) {
+                for (int j = 0; j < sizeB; j++) {
+                    sums[i][j] = 0.0;
+                    counts[i][j] = 0.0;
+                }
+            }
+
+            for (int k0 = 0; k0 < numRows; k0 += ROW_BLOCK) {
+                int rows = Math.min(ROW_BLOCK, numRows - k0);
+
+                pack(task, fromA, sizeA, k0, rows, packedA, presentA, numPresentA);
+                double[][] _packedB = packedA;
+                double[][] _presentB = presentA;
+                int[] _numPresentB = numPresentA;
+
+                if (!diagonal) {
+                    pack(task, fromB, sizeB, k0, rows, packedB, presentB, numPresentB);
+                    _packedB = packedB;
+                    _presentB = presentB;
+                    _numPresentB = numPresentB;
+                }
+
+                for (int i = 0; i < sizeA; i++) {
+                    int toJ = diagonal ? i + 1 : sizeB;
+                    boolean missingI = missing[fromA + i];
+
+                    for (int j = 0; j < toJ; j++) {
+                        sums[i][j] += dot(packedA[i], _packedB[j], rows);
+
+                        if (missingI && missing[fromB + j]) {
+                            counts[i][j] += dot(presentA[i], _presentB[j], rows);
+                        } else if (missingI) {
+                            counts[i][j] += numPresentA[i];
+                        } else {
+                            counts[i][j] += _numPresentB[j];
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < sizeA; i++) {
+                int toJ = diagonal ? i + 1 : sizeB;
+
+                for (int j = 0; j < toJ; j++) {
+                    double v = sums[i][j] / (counts[i][j] - 1);
+                    matrix.set(fromA + i, fromB + j, v);
+                    matrix.set(fromB + j, fromA + i, v);
+                }
+            }
+        }
+
+        // Centers the given rows of the given columns into packed, with missing values as zero, counting
+        // the values present and, for columns with missing values, marking which they are.
+        private void pack(TilePairsTask task, int from, int size, int k0, int rows, double[][] packed,
+                          double[][] present, int[] numPresent) {
+            for (int i = 0; i < size; i++) {
+                double[] column = task.columns[from + i];
+                double mean = task.means[from + i];
+                double[] _packed = packed[i];
+
+                if (task.missing[from + i]) {
+                    if (present[i] == null) present[i] = new double[ROW_BLOCK];
+                    double[] _present = present[i];
+                    int count = 0;
+
+                    for (int k = 0; k < rows; k++) {
+                        double x = column[k0 + k];
+
+                        if (Double.isNaN(x)) {
+                            _packed[k] = 0.0;
+                            _present[k] = 0.0;
+                        } else {
+                            _packed[k] = x - mean;
+                            _present[k] = 1.0;
+                            count++;
+                        }
+                    }
+
+                    numPresent[i] = count;
+                } else {
+                    for (int k = 0; k < rows; k++) {
+                        _packed[k] = column[k0 + k] - mean;
+                    }
+
+                    numPresent[i] = rows;
+                }
+            }
+        }
+    }
+
+    // The dot product of the first n values of x and y, with four independent sums so that the
+    // multiplications can be pipelined.
+    private static double dot(double[] x, double[] y, int n) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int k = 0;
+
+        for (; k + 3 < n; k += 4) {
+            s0 += x[k] * y[k];
+            s1 += x[k + 1] * y[k + 1];
+            s2 += x[k + 2] * y[k + 2];
+            s3 += x[k + 3] * y[k + 3];
+        }
+
+        for (; k < n; k++) {
+            s0 += x[k] * y[k];
+        }
+
+        return (s0 + s1) + (s2 + s3);
+    }
+}
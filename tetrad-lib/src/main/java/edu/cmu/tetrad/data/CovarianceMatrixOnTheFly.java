@@ -101,6 +101,29 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
 
     private double[] variances;
 
+    /**
+     * Whether each column has missing values (NaN); columns without them are
+     * multiplied without checking each value.
+     */
+    private transient volatile boolean[] hasMissing;
+
+    /**
+     * Covariances already calculated, shared by all threads.
+     */
+    private transient volatile CovarianceTileCache cache;
+
+    /**
+     * The maximum number of tiles in the cache; see CovarianceTileCache.
+     */
+    private transient int maxCachedTiles = CovarianceTileCache.DEFAULT_MAX_TILES;
+
+    /**
+     * The number of rows multiplied at a time when several covariances are
+     * calculated together, so that the pieces of the columns involved stay in
+     * cache.
+     */
+    private static final int ROW_BLOCK_SIZE = 2048;
+
 
     //=============================CONSTRUCTORS=========================//
 
@@ -148,23 +171,18 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
 
                 TetradVector means = DataUtils.means(vectors);
                 DataUtils.demean(vectors, means);
-            } else if (box instanceof DoubleDataBox) {
+            } else {
                 if (verbose) {
-                    System.out.println("Getting vectors from DoubleDataBox");
+                    System.out.println("Getting vectors from " + box.getClass().getSimpleName());
                 }
-                if (!dataSet.getVariables().equals(variables)) throw new IllegalArgumentException();
-                double[][] horizData = ((DoubleDataBox) box).getData();
 
-                if (verbose) {
-                    System.out.println("Transposing data");
-                }
+                if (!dataSet.getVariables().equals(variables)) throw new IllegalArgumentException();
 
-                vectors = new double[horizData[0].length][horizData.length];
+                // Copy the columns out directly, without boxing each value.
+                vectors = new double[variables.size()][];
 
-                for (int i = 0; i < horizData.length; i++) {
-                    for (int j = 0; j < horizData[0].length; j++) {
-                        vectors[j][i] = horizData[i][j];
-                    }
+                for (int i = 0; i < variables.size(); i++) {
+                    vectors[i] = box.getDoubleColumn(i, null);
                 }
 
                 if (verbose) {
@@ -283,7 +301,7 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
         final int chunk = _chunk < minChunk ? minChunk : _chunk;
 
         VarianceTask task = new VarianceTask(chunk, 0, variables.size());
-        ForkJoinPoolInstance.getInstance().getPool().invoke(task);
+        TetradExecutors.getInstance().getPool().invoke(task);
 
         if (verbose) {
             System.out.println("Done with variances.");
@@ -423,31 +441,45 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
     }
 
     /**
-     * @return the value of element (i,j) in the matrix
+     * @return the value of element (i,j) in the matrix. Values are cached once
+     * calculated.
      */
     public final double getValue(int i, int j) {
         if (i == j) {
             return variances[i];
         }
 
-        double d = 0.0D;
+        CovarianceTileCache cache = cache();
+        double v = cache.get(i, j);
 
-        double[] v1 = vectors[i];
-        double[] v2 = vectors[j];
-        int count = 0;
+        if (Double.isNaN(v)) {
+            double[] values = new double[1];
+            calculateCovariances(new int[]{i}, new int[]{j}, 1, values);
+            v = values[0];
+            cache.put(i, j, v);
+        }
 
-        for (int k = 0; k < sampleSize; k++) {
-            if (Double.isNaN(v1[k])) continue;
-            if (Double.isNaN(v2[k])) continue;
+        return v;
+    }
 
-            d += v1[k] * v2[k];
-            count++;
+    /**
+     * Sets the maximum number of tiles of BLOCK_SIZE x BLOCK_SIZE covariances
+     * kept, 64 x 64 for 32 KB each; the default is 2048. Clears the cache.
+     */
+    public synchronized void setMaxCachedTiles(int maxCachedTiles) {
+        if (maxCachedTiles < 1) {
+            throw new IllegalArgumentException("Maximum number of tiles must be at least 1: " + maxCachedTiles);
         }
 
-        double v = d;
-//        v /= (sampleSize - 1);
-        v /= (count - 1);
-        return v;
+        this.maxCachedTiles = maxCachedTiles;
+        this.cache = null;
+    }
+
+    /**
+     * @return the maximum number of tiles of covariances kept.
+     */
+    public int getMaxCachedTiles() {
+        return maxCachedTiles;
     }
 
     public void setMatrix(TetradMatrix matrix) {
@@ -474,15 +506,13 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
      * @return a copy of the covariance matrix.
      */
     public final TetradMatrix getMatrix() {
-        TetradMatrix matrix = new TetradMatrix(getDimension(), getDimension());
+        int[] indices = new int[getDimension()];
 
-        for (int i = 0; i < getDimension(); i++) {
-            for (int j = 0; j < getDimension(); j++) {
-                matrix.set(i, j, getValue(i, j));
-            }
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
         }
 
-        return matrix;
+        return getSelection(indices, indices);
     }
 
     public final void select(Node variable) {
@@ -597,21 +627,45 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
     @Override
     public TetradMatrix getSelection(int[] rows, int[] cols) {
         TetradMatrix m = new TetradMatrix(rows.length, cols.length);
-
-        if (Arrays.equals(rows, cols)) {
-            for (int i = 0; i < rows.length; i++) {
-                for (int j = i; j < cols.length; j++) {
-                    double value = getValue(rows[i], cols[j]);
+        boolean symmetric = Arrays.equals(rows, cols);
+
+        // Fill in what is cached, and collect the rest to calculate together.
+        CovarianceTileCache cache = cache();
+        int[] is = new int[rows.length * cols.length];
+        int[] js = new int[rows.length * cols.length];
+        int numMissing = 0;
+
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = symmetric ? i : 0; j < cols.length; j++) {
+                double value = rows[i] == cols[j] ? variances[rows[i]] : cache.get(rows[i], cols[j]);
+
+                if (Double.isNaN(value)) {
+                    is[numMissing] = i;
+                    js[numMissing] = j;
+                    numMissing++;
+                } else {
                     m.set(i, j, value);
-                    m.set(j, i, value);
+                    if (symmetric) m.set(j, i, value);
                 }
             }
-        } else {
-            for (int i = 0; i < rows.length; i++) {
-                for (int j = 0; j < cols.length; j++) {
-                    double value = getValue(rows[i], cols[j]);
-                    m.set(i, j, value);
-                }
+        }
+
+        if (numMissing > 0) {
+            int[] vars1 = new int[numMissing];
+            int[] vars2 = new int[numMissing];
+
+            for (int p = 0; p < numMissing; p++) {
+                vars1[p] = rows[is[p]];
+                vars2[p] = cols[js[p]];
+            }
+
+            double[] values = new double[numMissing];
+            calculateCovariances(vars1, vars2, numMissing, values);
+
+            for (int p = 0; p < numMissing; p++) {
+                if (vars1[p] != vars2[p]) cache.put(vars1[p], vars2[p], values[p]);
+                m.set(is[p], js[p], values[p]);
+                if (symmetric) m.set(js[p], is[p], values[p]);
             }
         }
 
@@ -620,6 +674,103 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
 
     //========================PRIVATE METHODS============================//
 
+    private CovarianceTileCache cache() {
+        CovarianceTileCache cache = this.cache;
+
+        if (cache == null) {
+            synchronized (this) {
+                if (this.cache == null) {
+                    this.cache = new CovarianceTileCache(maxCachedTiles);
+                }
+
+                cache = this.cache;
+            }
+        }
+
+        return cache;
+    }
+
+    private boolean[] hasMissing() {
+        boolean[] hasMissing = this.hasMissing;
+
+        if (hasMissing == null) {
+            hasMissing = new boolean[vectors.length];
+
+            for (int i = 0; i < vectors.length; i++) {
+                for (int k = 0; k < sampleSize; k++) {
+                    if (Double.isNaN(vectors[i][k])) {
+                        hasMissing[i] = true;
+                        break;
+                    }
+                }
+            }
+
+            this.hasMissing = hasMissing;
+        }
+
+        return hasMissing;
+    }
+
+    /**
+     * Calculates the covariances of vars1[p] and vars2[p] for p < numPairs,
+     * using the rows where neither is missing. The rows are taken a block at a
+     * time, so that for many pairs over a few variables the pieces of their
+     * columns are read from cache rather than memory. Pairs of columns without
+     * missing values are multiplied without checking each value, with four
+     * independent sums that the JIT can keep in parallel.
+     */
+    private void calculateCovariances(int[] vars1, int[] vars2, int numPairs, double[] values) {
+        boolean[] hasMissing = hasMissing();
+        double[] sums = new double[numPairs];
+        int[] counts = new int[numPairs];
+
+        for (int from = 0; from < sampleSize; from += ROW_BLOCK_SIZE) {
+            int to = Math.min(from + ROW_BLOCK_SIZE, sampleSize);
+
+            for (int p = 0; p < numPairs; p++) {
+                double[] v1 = vectors[vars1[p]];
+                double[] v2 = vectors[vars2[p]];
+
+                if (!hasMissing[vars1[p]] && !hasMissing[vars2[p]]) {
+                    double d0 = 0.0, d1 = 0.0, d2 = 0.0, d3 = 0.0;
+                    int k = from;
+
+                    for (; k + 3 < to; k += 4) {
+                        d0 += v1[k] * v2[k];
+                        d1 += v1[k + 1] * v2[k + 1];
+                        d2 += v1[k + 2] * v2[k + 2];
+                        d3 += v1[k + 3] * v2[k + 3];
+                    }
+
+                    for (; k < to; k++) {
+                        d0 += v1[k] * v2[k];
+                    }
+
+                    sums[p] += (d0 + d1) + (d2 + d3);
+                    counts[p] += to - from;
+                } else {
+                    double d = 0.0;
+                    int count = 0;
+
+                    for (int k = from; k < to; k++) {
+                        if (Double.isNaN(v1[k])) continue;
+                        if (Double.isNaN(v2[k])) continue;
+
+                        d += v1[k] * v2[k];
+                        count++;
+                    }
+
+                    sums[p] += d;
+                    counts[p] += count;
+                }
+            }
+        }
+
+        for (int p = 0; p < numPairs; p++) {
+            values[p] = vars1[p] == vars2[p] ? variances[vars1[p]] : sums[p] / (counts[p] - 1);
+        }
+    }
+
     public Node getVariable(String name) {
         for (int i = 0; i < getVariables().size(); i++) {
             Node variable = getVariables().get(i);
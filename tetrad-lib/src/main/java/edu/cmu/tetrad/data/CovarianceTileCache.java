@@ -0,0 +1,129 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.util.SegmentedLruCache;
+
+/**
+ * A bounded cache of covariances, shared by all threads, for covariance
+ * matrices that calculate their values on the fly. The variables are divided
+ * into blocks of BLOCK_SIZE, and the covariances for each pair of blocks are
+ * kept together in a tile, created when the first of them is stored. Tiles
+ * are kept in a SegmentedLruCache, and the least recently used tiles are
+ * dropped when it is full, so memory use is bounded by the number of tiles
+ * however many variables there are.
+ * <p>
+ * Only one triangle is stored; (i, j) and (j, i) share an entry. An entry that
+ * has not been stored is NaN.
+ *
+ * @author Joseph Ramsey
+ */
+final class CovarianceTileCache {
+
+    /**
+     * The number of variables in a block; a tile holds BLOCK_SIZE^2 values.
+     */
+    static final int BLOCK_SIZE = 64;
+
+    /**
+     * The default maximum number of tiles, 64 MB in all.
+     */
+    static final int DEFAULT_MAX_TILES = 2048;
+
+    private final SegmentedLruCache<Long, double[]> tiles;
+
+    CovarianceTileCache(int maxTiles) {
+        if (maxTiles < 1) {
+            throw new IllegalArgumentException("Maximum number of tiles must be at least 1: " + maxTiles);
+        }
+
+        this.tiles = new SegmentedLruCache<>(maxTiles, 16);
+    }
+
+    /**
+     * @return the cached covariance of i and j, or NaN if it is not cached.
+     */
+    double get(int i, int j) {
+        if (i < j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+
+        double[] tile = tiles.get(key(i, j));
+        return tile == null ? Double.NaN : tile[offset(i, j)];
+    }
+
+    /**
+     * Stores the covariance of i and j.
+     */
+    void put(int i, int j, double value) {
+        if (i < j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+
+        long key = key(i, j);
+        double[] tile = tiles.get(key);
+
+        if (tile == null) {
+            tile = new double[BLOCK_SIZE * BLOCK_SIZE];
+
+            for (int k = 0; k < tile.length; k++) {
+                tile[k] = Double.NaN;
+            }
+
+            double[] stored = tiles.putIfAbsent(key, tile);
+            if (stored != null) tile = stored;
+        }
+
+        // Written outside the lock; racing writers store the same value, and a
+        // write to a tile just evicted is harmless.
+        tile[offset(i, j)] = value;
+    }
+
+    /**
+     * @return the number of tiles currently held.
+     */
+    int size() {
+        return tiles.size();
+    }
+
+    int getMaxTiles() {
+        return tiles.getMaxSize();
+    }
+
+    void clear() {
+        tiles.clear();
+    }
+
+    //========================PRIVATE METHODS============================//
+
+    private static long key(int i, int j) {
+        return ((long) (i / BLOCK_SIZE) << 32) | (j / BLOCK_SIZE);
+    }
+
+    private static int offset(int i, int j) {
+        return (i % BLOCK_SIZE) * BLOCK_SIZE + (j % BLOCK_SIZE);
+    }
+}
@@ -58,6 +58,51 @@ public interface DataBox extends TetradSerializable {
      */
     Number get(int row, int col);
 
+    /**
+     * @return the value at the given row and column as a double, without
+     * boxing. If the value is missing, Double.NaN is returned.
+     */
+    double getDouble(int row, int col);
+
+    /**
+     * @return the value at the given row and column as an int, without
+     * boxing. If the value is missing, DiscreteVariable.MISSING_VALUE is
+     * returned.
+     */
+    int getInt(int row, int col);
+
+    /**
+     * Sets the value at the given row and column to the given double value,
+     * without boxing. Double.NaN is interpreted as a missing value.
+     */
+    void setDouble(int row, int col, double value);
+
+    /**
+     * Sets the value at the given row and column to the given int value,
+     * without boxing. DiscreteVariable.MISSING_VALUE is interpreted as a
+     * missing value.
+     */
+    void setInt(int row, int col, int value);
+
+    /**
+     * Copies the given column into the given buffer, as doubles, and returns
+     * it. The buffer is allocated if it is null or not of length numRows(),
+     * so a buffer may be reused across calls to avoid allocation.
+     */
+    double[] getDoubleColumn(int col, double[] buffer);
+
+    /**
+     * Copies the given row into the given buffer, as doubles, and returns
+     * it. The buffer is allocated if it is null or not of length numCols().
+     */
+    double[] getDoubleRow(int row, double[] buffer);
+
+    /**
+     * Copies the given column into the given buffer, as ints, and returns
+     * it. The buffer is allocated if it is null or not of length numRows().
+     */
+    int[] getIntColumn(int col, int[] buffer);
+
     /**
      * @return a copy of this data box.
      */
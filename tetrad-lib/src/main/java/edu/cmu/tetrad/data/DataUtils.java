@@ -25,7 +25,6 @@ import cern.colt.list.DoubleArrayList;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.*;
 import org.apache.commons.math3.distribution.NormalDistribution;
-import org.apache.commons.math3.linear.BlockRealMatrix;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.stat.correlation.Covariance;
 
@@ -35,7 +34,6 @@ import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -1099,109 +1097,19 @@ public final class DataUtils {
 //        return prod.scalarMult(1.0 / (data.rows() - 1));
     }
 
+    /**
+     * @return the covariance matrix of the columns of the given data, which is
+     * not changed.
+     * @see CovarianceKernel
+     */
     public static TetradMatrix cov(TetradMatrix data) {
-        for (int j = 0; j < data.columns(); j++) {
-            double sum = 0.0;
-
-            for (int i = 0; i < data.rows(); i++) {
-                sum += data.get(i, j);
-            }
-
-            double mean = sum / data.rows();
-
-            for (int i = 0; i < data.rows(); i++) {
-                data.set(i, j, data.get(i, j) - mean);
-            }
-        }
-
-        RealMatrix q = data.getRealMatrix();
-
-        RealMatrix q1 = MatrixUtils.transposeWithoutCopy(q);
-        RealMatrix q2 = times(q1, q);
-        TetradMatrix prod = new TetradMatrix(q2, q.getColumnDimension(), q.getColumnDimension());
-
-        double factor = 1.0 / (data.rows() - 1);
-
-        for (int i = 0; i < prod.rows(); i++) {
-            for (int j = 0; j < prod.columns(); j++) {
-                prod.set(i, j, prod.get(i, j) * factor);
-            }
-        }
-
-        return prod;
-    }
-
-    public static void simpleTest() {
-        double[][] d = new double[][]{
-                {1, 2},
-                {3, 4},
-                {5, 6},
-        };
-
-        RealMatrix m = new BlockRealMatrix(d);
-
-        System.out.println(m);
-
-        System.out.println(times(m.transpose(), m));
-
-        System.out.println(MatrixUtils.transposeWithoutCopy(m).multiply(m));
-
-        TetradMatrix n = new TetradMatrix(m, m.getRowDimension(), m.getColumnDimension());
-
-        System.out.println(n);
-
-        RealMatrix q = n.getRealMatrix();
-
-        RealMatrix q1 = MatrixUtils.transposeWithoutCopy(q);
-        RealMatrix q2 = times(q1, q);
-        System.out.println(new TetradMatrix(q2, q.getColumnDimension(), q.getColumnDimension()));
-    }
-
-    private static RealMatrix times(final RealMatrix m, final RealMatrix n) {
-        if (m.getColumnDimension() != n.getRowDimension()) throw new IllegalArgumentException("Incompatible matrices.");
-
-        final int rowDimension = m.getRowDimension();
-        final int columnDimension = n.getColumnDimension();
-
-        final RealMatrix out = new BlockRealMatrix(rowDimension, columnDimension);
-
-        final int NTHREADS = Runtime.getRuntime().availableProcessors();
-
-        ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
-
-        for (int t = 0; t < NTHREADS; t++) {
-            final int _t = t;
-
-            Runnable worker = new Runnable() {
-                @Override
-                public void run() {
-                    int chunk = rowDimension / NTHREADS + 1;
-                    for (int row = _t * chunk; row < Math.min((_t + 1) * chunk, rowDimension); row++) {
-                        if ((row + 1) % 100 == 0) System.out.println(row + 1);
-
-                        for (int col = 0; col < columnDimension; ++col) {
-                            double sum = 0.0D;
-
-                            int commonDimension = m.getColumnDimension();
-
-                            for (int i = 0; i < commonDimension; ++i) {
-                                sum += m.getEntry(row, i) * n.getEntry(i, col);
-                            }
-
-//                            double sum = m.getRowVector(row).dotProduct(n.getColumnVector(col));
-                            out.setEntry(row, col, sum);
-                        }
-                    }
-                }
-            };
-
-            pool.submit(worker);
-        }
+        double[][] columns = new double[data.columns()][];
 
-        while (!pool.isQuiescent()) {
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = data.getColumn(j).toArray();
         }
 
-        return out;
+        return CovarianceKernel.covariance(columns, data.rows());
     }
 
     // for online learning.
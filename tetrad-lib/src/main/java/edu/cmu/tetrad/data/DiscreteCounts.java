@@ -0,0 +1,550 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.SegmentedLruCache;
+
+import java.util.*;
+
+/**
+ * A shared, thread-safe source of contingency tables for the variables of a discrete data set, for use by
+ * discrete scores and tests in place of scanning the data for every query.
+ * <p>
+ * A table is held sparsely, as the sorted keys of its occupied cells with their counts, so its size is
+ * bounded by the number of records however many cells it has. Tables are cached by variable set in a
+ * SegmentedLruCache bounded by their total number of occupied cells. As in an AD-tree, a table that is not cached is derived from a cached table
+ * over one more variable when there is one, by summing that variable out, and only otherwise counted from
+ * the data; either way a query for the same set in a different order is a rearrangement of the cached
+ * table and does not touch the data.
+ * <p>
+ * Records with a missing value for any variable of a table are not counted in it. Each record is counted
+ * once, as in CellTable, unless the counts are constructed to weight records by their case multipliers.
+ *
+ * @author Joseph Ramsey
+ */
+public final class DiscreteCounts {
+
+    /**
+     * The default maximum number of occupied cells cached over all tables.
+     */
+    public static final int DEFAULT_MAX_CACHED_CELLS = 1 << 22;
+
+    private final List<Node> variables;
+    private final int[][] data;
+    private final int[] dims;
+    private final int[] multipliers;
+    private final boolean[] hasMissing;
+    private final int numRows;
+
+    private final SegmentedLruCache<Key, Table> tables;
+
+    //================================CONSTRUCTORS========================//
+
+    public DiscreteCounts(DataSet dataSet) {
+        this(dataSet, DEFAULT_MAX_CACHED_CELLS);
+    }
+
+    /**
+     * @param dataSet        A data set of discrete variables.
+     * @param maxCachedCells The maximum number of occupied cells to keep cached, over all tables.
+     */
+    public DiscreteCounts(DataSet dataSet, int maxCachedCells) {
+        this(dataSet, maxCachedCells, false);
+    }
+
+    /**
+     * @param dataSet        A data set of discrete variables.
+     * @param maxCachedCells The maximum number of occupied cells to keep cached, over all tables.
+     * @param useMultipliers True if each record should be counted as many times as its case multiplier,
+     *                       false if each record should be counted once.
+     */
+    public DiscreteCounts(DataSet dataSet, int maxCachedCells, boolean useMultipliers) {
+        if (dataSet == null) throw new NullPointerException("Data set not specified.");
+
+        if (!dataSet.isDiscrete()) {
+            throw new IllegalArgumentException("Need a discrete data set.");
+        }
+
+        if (maxCachedCells < 1) {
+            throw new IllegalArgumentException("Maximum number of cached cells must be at least 1: "
+                    + maxCachedCells);
+        }
+
+        this.variables = Collections.unmodifiableList(new ArrayList<>(dataSet.getVariables()));
+        this.numRows = dataSet.getNumRows();
+        int numColumns = dataSet.getNumColumns();
+
+        if (dataSet instanceof BoxDataSet
+                && ((BoxDataSet) dataSet).getDataBox() instanceof VerticalIntDataBox) {
+            this.data = ((VerticalIntDataBox) ((BoxDataSet) dataSet).getDataBox()).getVariableVectors();
+        } else {
+            this.data = new int[numColumns][];
+
+            for (int j = 0; j < numColumns; j++) {
+                data[j] = new int[numRows];
+
+                for (int i = 0; i < numRows; i++) {
+                    data[j][i] = dataSet.getInt(i, j);
+                }
+            }
+        }
+
+        this.dims = new int[numColumns];
+        this.hasMissing = new boolean[numColumns];
+
+        for (int j = 0; j < numColumns; j++) {
+            dims[j] = ((DiscreteVariable) variables.get(j)).getNumCategories();
+
+            for (int i = 0; i < numRows; i++) {
+                if (data[j][i] == DiscreteVariable.MISSING_VALUE) {
+                    hasMissing[j] = true;
+                    break;
+                }
+            }
+        }
+
+        int[] multipliers = null;
+
+        for (int i = 0; useMultipliers && i < numRows; i++) {
+            if (dataSet.getMultiplier(i) != 1) {
+                if (multipliers == null) {
+                    multipliers = new int[numRows];
+                    Arrays.fill(multipliers, 1);
+                }
+
+                multipliers[i] = dataSet.getMultiplier(i);
+            }
+        }
+
+        this.multipliers = multipliers;
+
+        this.tables = new SegmentedLruCache<Key, Table>(maxCachedCells, 16) {
+            @Override
+            protected int weigh(Table table) {
+                return table.getNumCells();
+            }
+        };
+    }
+
+    //==============================PUBLIC METHODS=======================//
+
+    /**
+     * @return the contingency table of the given variables, indexed by the variables in the order given.
+     * Variables are referred to by their column indices in the data set.
+     */
+    public Table getTable(int... variables) {
+        int[] sorted = Arrays.copyOf(variables, variables.length);
+        Arrays.sort(sorted);
+
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] < 0 || sorted[i] >= dims.length) {
+                throw new IllegalArgumentException("Not a variable index: " + sorted[i]);
+            }
+
+            if (i > 0 && sorted[i] == sorted[i - 1]) {
+                throw new IllegalArgumentException("Variable listed twice: " + sorted[i]);
+            }
+        }
+
+        Table table = getSortedTable(sorted);
+
+        if (Arrays.equals(sorted, variables)) {
+            return table;
+        }
+
+        int[] positions = new int[variables.length];
+
+        for (int i = 0; i < variables.length; i++) {
+            positions[i] = Arrays.binarySearch(sorted, variables[i]);
+        }
+
+        return table.project(positions);
+    }
+
+    /**
+     * @return the variables of the data set, in column order.
+     */
+    public List<Node> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return the number of categories of the given variable.
+     */
+    public int getNumCategories(int variable) {
+        return dims[variable];
+    }
+
+    /**
+     * @return true if the given variable has missing values.
+     */
+    public boolean hasMissingValues(int variable) {
+        return hasMissing[variable];
+    }
+
+    /**
+     * @return the number of records in the data set.
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the number of occupied cells currently cached, over all tables.
+     */
+    public int getNumCachedCells() {
+        return (int) tables.getWeight();
+    }
+
+    public int getMaxCachedCells() {
+        return tables.getMaxSize();
+    }
+
+    /**
+     * Removes all cached tables.
+     */
+    public void clear() {
+        tables.clear();
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private Table getSortedTable(int[] sorted) {
+        Key key = new Key(sorted);
+        Table table = get(key);
+        if (table != null) return table;
+
+        // Summing out a variable with no missing values leaves the counts the table would have; when there are
+        // more records than variables, looking for such a table is cheaper than a pass over the data.
+        if (numRows > dims.length) {
+            int[] superset = new int[sorted.length + 1];
+
+            for (int v = 0; v < dims.length; v++) {
+                if (hasMissing[v]) continue;
+
+                int position = -Arrays.binarySearch(sorted, v) - 1;
+                if (position < 0) continue;
+
+                System.arraycopy(sorted, 0, superset, 0, position);
+                superset[position] = v;
+                System.arraycopy(sorted, position, superset, position + 1, sorted.length - position);
+
+                Table larger = get(new Key(superset));
+
+                if (larger != null) {
+                    int[] positions = new int[sorted.length];
+
+                    for (int i = 0; i < sorted.length; i++) {
+                        positions[i] = i < position ? i : i + 1;
+                    }
+
+                    table = larger.project(positions);
+                    put(key, table);
+                    return table;
+                }
+            }
+        }
+
+        table = count(sorted);
+        put(key, table);
+        return table;
+    }
+
+    // Counts the table of the given variables from the data.
+    private Table count(int[] vars) {
+        int[] _dims = new int[vars.length];
+        long numCells = 1;
+
+        for (int i = 0; i < vars.length; i++) {
+            _dims[i] = dims[vars[i]];
+
+            if (numCells > Long.MAX_VALUE / _dims[i]) {
+                throw new IllegalArgumentException("Too many cells for a table over " + vars.length + " variables.");
+            }
+
+            numCells *= _dims[i];
+        }
+
+        long[] keys = new long[numRows];
+        int[] weights = multipliers == null ? null : new int[numRows];
+        int n = 0;
+
+        rows:
+        for (int i = 0; i < numRows; i++) {
+            long key = 0;
+
+            for (int j = 0; j < vars.length; j++) {
+                int value = data[vars[j]][i];
+                if (value == DiscreteVariable.MISSING_VALUE) continue rows;
+                key = key * _dims[j] + value;
+            }
+
+            if (weights != null) weights[n] = multipliers[i];
+            keys[n++] = key;
+        }
+
+        if (weights == null) {
+            Arrays.sort(keys, 0, n);
+            int[] counts = new int[n];
+            int m = 0;
+
+            for (int i = 0; i < n; ) {
+                long cell = keys[i];
+                int count = 0;
+
+                while (i < n && keys[i] == cell) {
+                    count++;
+                    i++;
+                }
+
+                keys[m] = cell;
+                counts[m++] = count;
+            }
+
+            return new Table(vars, _dims, Arrays.copyOf(keys, m), Arrays.copyOf(counts, m));
+        } else {
+            return Table.merge(vars, _dims, keys, weights, n);
+        }
+    }
+
+    private Table get(Key key) {
+        return tables.get(key);
+    }
+
+    private void put(Key key, Table table) {
+        tables.put(key, table);
+    }
+
+    //==============================MEMBER CLASSES=======================//
+
+    /**
+     * A contingency table, held as the keys of its occupied cells, in increasing order, with their counts.
+     * The key of a cell is its coordinates read as a mixed-radix number with the first variable most
+     * significant, so that cells that agree on a prefix of the variables are adjacent. Immutable.
+     */
+    public static final class Table {
+        private final int[] variables;
+        private final int[] dims;
+        private final long[] cells;
+        private final int[] counts;
+        private final long total;
+
+        private Table(int[] variables, int[] dims, long[] cells, int[] counts) {
+            this.variables = variables;
+            this.dims = dims;
+            this.cells = cells;
+            this.counts = counts;
+
+            long total = 0;
+            for (int count : counts) total += count;
+            this.total = total;
+        }
+
+        /**
+         * @return the variables of the table, in order, as column indices.
+         */
+        public int[] getVariables() {
+            return Arrays.copyOf(variables, variables.length);
+        }
+
+        /**
+         * @return the number of categories of the variable at the given position.
+         */
+        public int getDimension(int position) {
+            return dims[position];
+        }
+
+        /**
+         * @return the number of occupied cells.
+         */
+        public int getNumCells() {
+            return cells.length;
+        }
+
+        /**
+         * @return the key of the k'th occupied cell.
+         */
+        public long getCell(int k) {
+            return cells[k];
+        }
+
+        /**
+         * @return the count of the k'th occupied cell.
+         */
+        public int getCount(int k) {
+            return counts[k];
+        }
+
+        /**
+         * Fills coords with the coordinates of the k'th occupied cell and returns it.
+         */
+        public int[] getCoords(int k, int[] coords) {
+            long key = cells[k];
+
+            for (int i = dims.length - 1; i >= 0; i--) {
+                coords[i] = (int) (key % dims[i]);
+                key /= dims[i];
+            }
+
+            return coords;
+        }
+
+        /**
+         * @return the count of the cell with the given coordinates.
+         */
+        public int getValue(int... coords) {
+            long key = 0;
+
+            for (int i = 0; i < dims.length; i++) {
+                key = key * dims[i] + coords[i];
+            }
+
+            int k = Arrays.binarySearch(cells, key);
+            return k < 0 ? 0 : counts[k];
+        }
+
+        /**
+         * @return the number of records counted.
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        // The table over the variables at the given positions, in that order, summing out the others.
+        private Table project(int[] positions) {
+            int[] _variables = new int[positions.length];
+            int[] _dims = new int[positions.length];
+
+            for (int i = 0; i < positions.length; i++) {
+                _variables[i] = variables[positions[i]];
+                _dims[i] = dims[positions[i]];
+            }
+
+            long[] keys = new long[cells.length];
+            int[] weights = new int[cells.length];
+            int[] coords = new int[dims.length];
+
+            for (int k = 0; k < cells.length; k++) {
+                getCoords(k, coords);
+                long key = 0;
+
+                for (int i = 0; i < positions.length; i++) {
+                    key = key * _dims[i] + coords[positions[i]];
+                }
+
+                keys[k] = key;
+                weights[k] = counts[k];
+            }
+
+            return merge(_variables, _dims, keys, weights, cells.length);
+        }
+
+        // Sorts the first n keys with their weights and sums the weights of equal keys.
+        private static Table merge(int[] variables, int[] dims, long[] keys, int[] weights, int n) {
+            sort(keys, weights, 0, n - 1);
+            int m = 0;
+
+            for (int i = 0; i < n; ) {
+                long cell = keys[i];
+                int count = 0;
+
+                while (i < n && keys[i] == cell) {
+                    count += weights[i];
+                    i++;
+                }
+
+                if (count == 0) continue;
+                keys[m] = cell;
+                weights[m++] = count;
+            }
+
+            return new Table(variables, dims, Arrays.copyOf(keys, m), Arrays.copyOf(weights, m));
+        }
+
+        // Sorts keys[lo..hi] into increasing order, moving the weights with them.
+        private static void sort(long[] keys, int[] weights, int lo, int hi) {
+            while (hi - lo > 16) {
+                long pivot = keys[(lo + hi) >>> 1];
+                int i = lo, j = hi;
+
+                while (i <= j) {
+                    while (keys[i] < pivot) i++;
+                    while (keys[j] > pivot) j--;
+
+                    if (i <= j) {
+                        swap(keys, weights, i++, j--);
+                    }
+                }
+
+                // Recurse into the smaller part.
+                if (j - lo < hi - i) {
+                    sort(keys, weights, lo, j);
+                    lo = i;
+                } else {
+                    sort(keys, weights, i, hi);
+                    hi = j;
+                }
+            }
+
+            for (int i = lo + 1; i <= hi; i++) {
+                for (int j = i; j > lo && keys[j - 1] > keys[j]; j--) {
+                    swap(keys, weights, j, j - 1);
+                }
+            }
+        }
+
+        private static void swap(long[] keys, int[] weights, int i, int j) {
+            long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+            int weight = weights[i];
+            weights[i] = weights[j];
+            weights[j] = weight;
+        }
+    }
+
+    // A sorted variable set.
+    private static final class Key {
+        private final int[] variables;
+        private final int hash;
+
+        Key(int[] variables) {
+            this.variables = variables.clone();
+            int h = Arrays.hashCode(variables);
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash && Arrays.equals(((Key) o).variables, variables);
+        }
+    }
+}
@@ -25,7 +25,7 @@ package edu.cmu.tetrad.data;
  * Stores a 2D array of double data. Note that the missing value marker for this
  * box is -99.
  */
-public class DoubleDataBox implements DataBox {
+public class DoubleDataBox extends AbstractDataBox {
     static final long serialVersionUID = 23L;
 
     /**
@@ -113,6 +113,56 @@ public class DoubleDataBox implements DataBox {
         }
     }
 
+    /**
+     * @return the value at the given row and column as a double, without
+     * boxing. If the value is missing, Double.NaN is returned.
+     */
+    public double getDouble(int row, int col) {
+        return data[row][col];
+    }
+
+    /**
+     * @return the value at the given row and column as an int, without
+     * boxing. If the value is missing, DiscreteVariable.MISSING_VALUE is
+     * returned.
+     */
+    public int getInt(int row, int col) {
+        double datum = data[row][col];
+        return Double.isNaN(datum) ? DiscreteVariable.MISSING_VALUE : (int) datum;
+    }
+
+    /**
+     * Sets the value at the given row and column to the given double value.
+     * Double.NaN is interpreted as a missing value.
+     */
+    public void setDouble(int row, int col, double value) {
+        synchronized (data) {
+            data[row][col] = value;
+        }
+    }
+
+    /**
+     * Sets the value at the given row and column to the given int value.
+     * DiscreteVariable.MISSING_VALUE is interpreted as a missing value.
+     */
+    public void setInt(int row, int col, int value) {
+        synchronized (data) {
+            data[row][col] = value == DiscreteVariable.MISSING_VALUE ? Double.NaN : value;
+        }
+    }
+
+    /**
+     * Copies the row array directly, since rows are stored as arrays.
+     */
+    public double[] getDoubleRow(int row, double[] buffer) {
+        if (buffer == null || buffer.length != numCols()) {
+            buffer = new double[numCols()];
+        }
+
+        System.arraycopy(data[row], 0, buffer, 0, buffer.length);
+        return buffer;
+    }
+
     /**
      * @return a copy of this data box.
      */
@@ -25,7 +25,7 @@ package edu.cmu.tetrad.data;
  * Stores a 2D array of float data. Note that the missing value marker for this
  * box is Float.NaN.
  */
-public class FloatDataBox implements DataBox {
+public class FloatDataBox extends AbstractDataBox {
     static final long serialVersionUID = 23L;
 
     /**
@@ -112,6 +112,44 @@ public class FloatDataBox implements DataBox {
         }
     }
 
+    /**
+     * @return the value at the given row and column as a double, without
+     * boxing. If the value is missing, Double.NaN is returned.
+     */
+    public double getDouble(int row, int col) {
+        return data[row][col];
+    }
+
+    /**
+     * @return the value at the given row and column as an int, without
+     * boxing. If the value is missing, DiscreteVariable.MISSING_VALUE is
+     * returned.
+     */
+    public int getInt(int row, int col) {
+        float datum = data[row][col];
+        return Float.isNaN(datum) ? DiscreteVariable.MISSING_VALUE : (int) datum;
+    }
+
+    /**
+     * Sets the value at the given row and column to the given double value.
+     * Double.NaN is interpreted as a missing value.
+     */
+    public void setDouble(int row, int col, double value) {
+        synchronized (data) {
+            data[row][col] = (float) value;
+        }
+    }
+
+    /**
+     * Sets the value at the given row and column to the given int value.
+     * DiscreteVariable.MISSING_VALUE is interpreted as a missing value.
+     */
+    public void setInt(int row, int col, int value) {
+        synchronized (data) {
+            data[row][col] = value == DiscreteVariable.MISSING_VALUE ? Float.NaN : value;
+        }
+    }
+
     /**
      * @return a copy of this data box.
      */
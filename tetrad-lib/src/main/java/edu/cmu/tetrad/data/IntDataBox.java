@@ -25,7 +25,7 @@ package edu.cmu.tetrad.data;
  * Stores a 2D array of integer data. Note that the missing value marker for this
  * box is -99.
  */
-public class IntDataBox implements DataBox {
+public class IntDataBox extends AbstractDataBox {
     static final long serialVersionUID = 23L;
 
     /**
@@ -84,7 +84,7 @@ public class IntDataBox implements DataBox {
 
     /**
      * Sets the value at the given row/column to the given Number value.
-     * The value used is number.shortValue().
+     * The value used is number.intValue().
      */
     public void set(int row, int col, Number value) {
         if (value == null) {
@@ -93,7 +93,7 @@ public class IntDataBox implements DataBox {
             }
         } else {
             synchronized (data) {
-                data[row][col] = value.shortValue();
+                data[row][col] = value.intValue();
             }
         }
     }
@@ -112,6 +112,44 @@ public class IntDataBox implements DataBox {
         }
     }
 
+    /**
+     * @return the value at the given row and column as a double, without
+     * boxing. If the value is missing, Double.NaN is returned.
+     */
+    public double getDouble(int row, int col) {
+        int datum = data[row][col];
+        return datum == -99 ? Double.NaN : datum;
+    }
+
+    /**
+     * @return the value at the given row and column as an int, without
+     * boxing. If the value is missing, DiscreteVariable.MISSING_VALUE is
+     * returned.
+     */
+    public int getInt(int row, int col) {
+        return data[row][col];
+    }
+
+    /**
+     * Sets the value at the given row and column to the given double value.
+     * Double.NaN is interpreted as a missing value.
+     */
+    public void setDouble(int row, int col, double value) {
+        synchronized (data) {
+            data[row][col] = Double.isNaN(value) ? -99 : (int) value;
+        }
+    }
+
+    /**
+     * Sets the value at the given row and column to the given int value.
+     * DiscreteVariable.MISSING_VALUE is interpreted as a missing value.
+     */
+    public void setInt(int row, int col, int value) {
+        synchronized (data) {
+            data[row][col] = value;
+        }
+    }
+
     /**
      * @return a copy of this data box.
      */
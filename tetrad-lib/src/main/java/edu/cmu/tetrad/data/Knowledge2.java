@@ -927,6 +927,13 @@ public final class Knowledge2 implements TetradSerializable, IKnowledge {
         return _tokens;
     }
 
+    /**
+     * The forbidden rules, including the tier rules, for compiling into a KnowledgeIndex.
+     */
+    List<OrderedPair<Set<MyNode>>> getForbiddenRulesSpecs() {
+        return forbiddenRulesSpecs;
+    }
+
     private Set<OrderedPair<Set<MyNode>>> forbiddenTierRules() {
         Set<OrderedPair<Set<MyNode>>> rules = new HashSet<>();
 
@@ -0,0 +1,276 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.graph.OrderedPair;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of background knowledge compiled against a fixed list of variables, for use in
+ * the inner loops of searches. Forbidden and required edges are stored as bit matrices indexed by the
+ * position of each variable in the list, and temporal tiers as an int array, so that after construction
+ * every query is answered in constant time without allocating. Only the rows of the bit matrices for
+ * variables that have edges forbidden or required out of them are allocated, so an index of empty or
+ * sparse knowledge over many variables stays small.
+ * <p>
+ * The index is built once from an IKnowledge object; later changes to that object are not reflected.
+ * Variables that are not in the list the index was built for are never forbidden or required.
+ *
+ * @author Joseph Ramsey
+ */
+public final class KnowledgeIndex {
+
+    // The number of variables indexed.
+    private final int numVariables;
+
+    // The number of longs in each row of the bit matrices.
+    private final int rowLength;
+
+    // Bit j of row i is set iff the edge variables[i] --> variables[j] is forbidden, by rules or by tiers.
+    // Rows with no bits set are null, as is the whole matrix if the knowledge is empty.
+    private final long[][] forbidden;
+
+    // Bit j of row i is set iff the edge variables[i] --> variables[j] is required, stored as forbidden is.
+    private final long[][] required;
+
+    // The tier of each variable, or -1 if it is not in a tier.
+    private final int[] tiers;
+
+    // True for each tier in which edges are forbidden.
+    private final boolean[] tierForbiddenWithin;
+
+    // Maps variable names to their indices.
+    private final Map<String, Integer> indices;
+
+    // True if the knowledge compiled was empty.
+    private final boolean empty;
+
+    //================================CONSTRUCTORS========================//
+
+    /**
+     * Compiles the given knowledge for the given variables. Variable i of the list is referred to by
+     * index i in the int queries.
+     */
+    public KnowledgeIndex(IKnowledge knowledge, List<Node> variables) {
+        if (knowledge == null) throw new NullPointerException("Knowledge not specified.");
+        if (variables == null) throw new NullPointerException("Variables not specified.");
+
+        this.numVariables = variables.size();
+        this.rowLength = (numVariables + 63) >>> 6;
+        this.empty = knowledge.isEmpty();
+        this.forbidden = empty ? null : new long[numVariables][];
+        this.required = empty ? null : new long[numVariables][];
+        this.indices = new HashMap<>();
+
+        for (int i = 0; i < numVariables; i++) {
+            String name = variables.get(i).getName();
+
+            if (indices.containsKey(name)) {
+                throw new IllegalArgumentException("Duplicate variable name: " + name);
+            }
+
+            indices.put(name, i);
+        }
+
+        int numTiers = knowledge.getNumTiers();
+        this.tiers = new int[numVariables];
+        this.tierForbiddenWithin = new boolean[numTiers];
+        Arrays.fill(tiers, -1);
+
+        for (int t = 0; t < numTiers; t++) {
+            for (String name : knowledge.getTier(t)) {
+                Integer i = indices.get(name);
+                if (i != null) tiers[i] = t;
+            }
+
+            tierForbiddenWithin[t] = knowledge.isTierForbiddenWithin(t);
+        }
+
+        if (empty) return;
+
+        if (knowledge instanceof Knowledge2) {
+
+            // The forbidden rules of Knowledge2 include the tier rules, so they are compiled directly from
+            // the rule extents rather than expanded into edges.
+            for (OrderedPair<Set<Knowledge2.MyNode>> rule : ((Knowledge2) knowledge).getForbiddenRulesSpecs()) {
+                setAll(forbidden, indices(rule.getFirst()), indices(rule.getSecond()));
+            }
+        } else {
+            for (Iterator<KnowledgeEdge> i = knowledge.explicitlyForbiddenEdgesIterator(); i.hasNext(); ) {
+                KnowledgeEdge edge = i.next();
+                set(forbidden, edge.getFrom(), edge.getTo());
+            }
+
+            for (int i = 0; i < numVariables; i++) {
+                for (int j = 0; j < numVariables; j++) {
+                    if (i != j && isForbiddenByTiers(i, j)) {
+                        set(forbidden, i, j);
+                    }
+                }
+            }
+        }
+
+        for (Iterator<KnowledgeEdge> i = knowledge.requiredEdgesIterator(); i.hasNext(); ) {
+            KnowledgeEdge edge = i.next();
+            set(required, edge.getFrom(), edge.getTo());
+        }
+    }
+
+    //==============================PUBLIC METHODS=======================//
+
+    /**
+     * @return the number of variables indexed.
+     */
+    public int getNumVariables() {
+        return numVariables;
+    }
+
+    /**
+     * @return the index of the variable with the given name, or -1 if it is not indexed.
+     */
+    public int getIndex(String name) {
+        Integer i = indices.get(name);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * @return true if the knowledge compiled was empty.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Determines whether the edge i --> j is forbidden.
+     */
+    public boolean isForbidden(int i, int j) {
+        return get(forbidden, i, j);
+    }
+
+    /**
+     * Determines whether the edge x --> y is forbidden.
+     */
+    public boolean isForbidden(Node x, Node y) {
+        int i = getIndex(x.getName());
+        int j = getIndex(y.getName());
+        return i != -1 && j != -1 && get(forbidden, i, j);
+    }
+
+    /**
+     * Determines whether the edge i --> j is required.
+     */
+    public boolean isRequired(int i, int j) {
+        return get(required, i, j);
+    }
+
+    /**
+     * Determines whether the edge x --> y is required.
+     */
+    public boolean isRequired(Node x, Node y) {
+        int i = getIndex(x.getName());
+        int j = getIndex(y.getName());
+        return i != -1 && j != -1 && get(required, i, j);
+    }
+
+    /**
+     * @return true iff no edge between i and j is required.
+     */
+    public boolean noEdgeRequired(int i, int j) {
+        return !(get(required, i, j) || get(required, j, i));
+    }
+
+    /**
+     * @return true iff no edge between x and y is required.
+     */
+    public boolean noEdgeRequired(Node x, Node y) {
+        int i = getIndex(x.getName());
+        int j = getIndex(y.getName());
+        return i == -1 || j == -1 || noEdgeRequired(i, j);
+    }
+
+    /**
+     * @return the tier of variable i, or -1 if it is not in a tier.
+     */
+    public int getTier(int i) {
+        return tiers[i];
+    }
+
+    /**
+     * Determines whether the edge i --> j is forbidden by the temporal tiers.
+     */
+    public boolean isForbiddenByTiers(int i, int j) {
+        int tier1 = tiers[i];
+        int tier2 = tiers[j];
+
+        if (tier1 == -1 || tier2 == -1) {
+            return false;
+        } else if (tier1 == tier2) {
+            return tierForbiddenWithin[tier1];
+        } else {
+            return tier1 > tier2;
+        }
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private boolean get(long[][] bits, int i, int j) {
+        if (bits == null) return false;
+        long[] row = bits[i];
+        return row != null && (row[j >>> 6] & (1L << j)) != 0L;
+    }
+
+    private void set(long[][] bits, int i, int j) {
+        if (bits[i] == null) bits[i] = new long[rowLength];
+        bits[i][j >>> 6] |= 1L << j;
+    }
+
+    private void set(long[][] bits, String from, String to) {
+        Integer i = indices.get(from);
+        Integer j = indices.get(to);
+
+        if (i != null && j != null && !i.equals(j)) {
+            set(bits, i, j);
+        }
+    }
+
+    private void setAll(long[][] bits, int[] from, int[] to) {
+        for (int i : from) {
+            for (int j : to) {
+                if (i != j) set(bits, i, j);
+            }
+        }
+    }
+
+    private int[] indices(Set<Knowledge2.MyNode> extent) {
+        int[] _indices = new int[extent.size()];
+        int n = 0;
+
+        for (Knowledge2.MyNode node : extent) {
+            Integer i = indices.get(node.getName());
+            if (i != null) _indices[n++] = i;
+        }
+
+        return Arrays.copyOf(_indices, n);
+    }
+}
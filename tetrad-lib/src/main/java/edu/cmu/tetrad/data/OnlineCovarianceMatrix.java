@@ -0,0 +1,573 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.*;
+
+/**
+ * A covariance matrix calculated from rows that are added incrementally,
+ * without keeping the rows themselves, for data sets with more rows than fit
+ * in memory. Rows may be added one at a time or in batches (see
+ * CovarianceAccumulator), and accumulators filled in parallel may be merged
+ * in. The covariances always reflect all of the rows added so far, but scores
+ * and tests may cache values calculated from them, so they should be
+ * constructed after the rows have been added. Adding rows is not thread-safe.
+ * <p>
+ * Once the covariances or the sample size have been set directly (setMatrix,
+ * setValue, setSampleSize), they no longer follow the rows, and further rows
+ * may not be added. Removing variables keeps the rows of those that remain.
+ * <p>
+ * It may be used wherever an ICovarianceMatrix is expected, for example in
+ * SemBicScore or IndTestFisherZ. See
+ * edu.cmu.tetrad.io.ParallelTabularContinuousDataReader#readInCovariances for
+ * reading one directly from a file.
+ *
+ * @author Joseph Ramsey
+ */
+public class OnlineCovarianceMatrix implements ICovarianceMatrix {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The name of the covariance matrix.
+     *
+     * @serial May be null.
+     */
+    private String name;
+
+    /**
+     * The variables (in order) for this covariance matrix.
+     *
+     * @serial Cannot be null.
+     */
+    private List<Node> variables;
+
+    /**
+     * The means and co-moments of the rows added so far.
+     *
+     * @serial Cannot be null.
+     */
+    private CovarianceAccumulator accumulator;
+
+    /**
+     * The list of selected variables.
+     *
+     * @serial Cannot be null.
+     */
+    private Set<Node> selectedVariables = new HashSet<>();
+
+    /**
+     * The knowledge for this data.
+     *
+     * @serial Cannot be null.
+     */
+    private IKnowledge knowledge = new Knowledge2();
+
+    /**
+     * The covariance matrix, if it has been set directly.
+     *
+     * @serial May be null.
+     */
+    private TetradMatrix fixedMatrix;
+
+    /**
+     * The sample size, if it has been set directly; otherwise 0.
+     *
+     * @serial Range >= 0.
+     */
+    private int fixedSampleSize;
+
+    /**
+     * The covariance matrix for the rows added so far; null if rows have been
+     * added since it was calculated.
+     */
+    private transient volatile TetradMatrix matrix;
+
+    //=============================CONSTRUCTORS=========================//
+
+    /**
+     * Constructs a covariance matrix over the given variables, with no rows.
+     */
+    public OnlineCovarianceMatrix(List<Node> variables) {
+        this(variables, new CovarianceAccumulator(variables.size()));
+    }
+
+    /**
+     * Constructs a covariance matrix over the given variables, from the rows
+     * in the given accumulator, which is used from then on.
+     */
+    public OnlineCovarianceMatrix(List<Node> variables, CovarianceAccumulator accumulator) {
+        if (variables.size() != accumulator.getDimension()) {
+            throw new IllegalArgumentException("# variables not equal to accumulator dimension.");
+        }
+
+        for (Node variable : variables) {
+            if (variable == null) {
+                throw new NullPointerException();
+            }
+        }
+
+        this.variables = Collections.unmodifiableList(new ArrayList<>(variables));
+        this.accumulator = accumulator;
+    }
+
+    /**
+     * Constructs a covariance matrix from the rows of the given data set.
+     *
+     * @throws IllegalArgumentException if this is not a continuous data set.
+     */
+    public OnlineCovarianceMatrix(DataSet dataSet) {
+        this(dataSet.getVariables());
+
+        if (!dataSet.isContinuous()) {
+            throw new IllegalArgumentException("Not a continuous data set.");
+        }
+
+        addRows(dataSet);
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static OnlineCovarianceMatrix serializableInstance() {
+        List<Node> variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X"));
+        OnlineCovarianceMatrix cov = new OnlineCovarianceMatrix(variables);
+        cov.addRow(new double[]{1.0});
+        cov.addRow(new double[]{2.0});
+        return cov;
+    }
+
+    //============================PUBLIC METHODS=========================//
+
+    /**
+     * Adds a row, with values for the variables in order.
+     */
+    public final void addRow(double[] row) {
+        checkNotFixed();
+        accumulator.addRow(row);
+        matrix = null;
+    }
+
+    /**
+     * Adds the first numRows rows of the given array.
+     */
+    public final void addRows(double[][] rows, int numRows) {
+        checkNotFixed();
+        accumulator.addRows(rows, numRows);
+        matrix = null;
+    }
+
+    /**
+     * Adds the rows of the given data set, which must have the same variables,
+     * a batch at a time.
+     */
+    public final void addRows(DataSet dataSet) {
+        checkNotFixed();
+
+        if (dataSet.getNumColumns() != getDimension()) {
+            throw new IllegalArgumentException("Expecting " + getDimension() + " columns but got "
+                    + dataSet.getNumColumns() + ".");
+        }
+
+        int batchSize = 1000;
+        double[][] batch = new double[Math.min(batchSize, dataSet.getNumRows())][getDimension()];
+        int numRows = 0;
+
+        for (int i = 0; i < dataSet.getNumRows(); i++) {
+            for (int j = 0; j < getDimension(); j++) {
+                batch[numRows][j] = dataSet.getDouble(i, j);
+            }
+
+            if (++numRows == batch.length) {
+                accumulator.addRows(batch, numRows);
+                numRows = 0;
+            }
+        }
+
+        accumulator.addRows(batch, numRows);
+        matrix = null;
+    }
+
+    /**
+     * Adds the rows of an accumulator over the same variables, for instance
+     * one filled in parallel from another part of the data.
+     */
+    public final void merge(CovarianceAccumulator other) {
+        checkNotFixed();
+        accumulator.merge(other);
+        matrix = null;
+    }
+
+    /**
+     * @return the accumulator. Changing it directly is not reflected in
+     * covariances already calculated.
+     */
+    public final CovarianceAccumulator getAccumulator() {
+        return accumulator;
+    }
+
+    /**
+     * @return the means of the rows added so far.
+     */
+    public final double[] getMeans() {
+        return accumulator.getMeans();
+    }
+
+    /**
+     * @return the number of rows added so far, which may exceed the range of
+     * getSampleSize().
+     */
+    public final long getNumRows() {
+        return accumulator.getCount();
+    }
+
+    /**
+     * @return the list of variables (unmodifiable).
+     */
+    public final List<Node> getVariables() {
+        return this.variables;
+    }
+
+    /**
+     * @return the variable names, in order.
+     */
+    public final List<String> getVariableNames() {
+        List<String> names = new ArrayList<>();
+
+        for (Node variable : variables) {
+            names.add(variable.getName());
+        }
+
+        return names;
+    }
+
+    /**
+     * @return the variable name at the given index.
+     */
+    public final String getVariableName(int index) {
+        if (index >= getVariables().size()) {
+            throw new IllegalArgumentException("Index out of range: " + index);
+        }
+
+        return getVariables().get(index).getName();
+    }
+
+    /**
+     * @return the dimension of the covariance matrix.
+     */
+    public final int getDimension() {
+        return variables.size();
+    }
+
+    /**
+     * @return the sample size if it has been set; otherwise the number of
+     * rows added so far, or Integer.MAX_VALUE if there are more.
+     */
+    public final int getSampleSize() {
+        if (fixedSampleSize > 0) {
+            return fixedSampleSize;
+        }
+
+        return (int) Math.min(accumulator.getCount(), Integer.MAX_VALUE);
+    }
+
+    public final String getName() {
+        return this.name;
+    }
+
+    public final void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the knowledge associated with this data.
+     */
+    public final IKnowledge getKnowledge() {
+        return this.knowledge.copy();
+    }
+
+    /**
+     * Associates knowledge with this data.
+     */
+    public final void setKnowledge(IKnowledge knowledge) {
+        if (knowledge == null) {
+            throw new NullPointerException();
+        }
+
+        this.knowledge = knowledge.copy();
+    }
+
+    /**
+     * @return a submatrix of the covariance matrix with variables in the
+     * given order. The submatrix does not change as rows are added.
+     */
+    public final ICovarianceMatrix getSubmatrix(int[] indices) {
+        List<Node> submatrixVars = new ArrayList<>();
+
+        for (int index : indices) {
+            submatrixVars.add(variables.get(index));
+        }
+
+        return new CovarianceMatrix(submatrixVars, getSelection(indices, indices), getSampleSize());
+    }
+
+    public final ICovarianceMatrix getSubmatrix(List<String> submatrixVarNames) {
+        return getSubmatrix(submatrixVarNames.toArray(new String[submatrixVarNames.size()]));
+    }
+
+    /**
+     * @return a submatrix of this matrix, with variables in the given order.
+     */
+    public final ICovarianceMatrix getSubmatrix(String[] submatrixVarNames) {
+        int[] indices = new int[submatrixVarNames.length];
+
+        for (int i = 0; i < submatrixVarNames.length; i++) {
+            Node variable = getVariable(submatrixVarNames[i]);
+
+            if (variable == null) {
+                throw new IllegalArgumentException("The variables in the submatrix must be in the original " +
+                        "matrix: original==" + getVariables() + ", missing==" + submatrixVarNames[i]);
+            }
+
+            indices[i] = variables.indexOf(variable);
+        }
+
+        return getSubmatrix(indices);
+    }
+
+    /**
+     * @return the value of element (i,j) in the matrix
+     */
+    public final double getValue(int i, int j) {
+        return matrix().get(i, j);
+    }
+
+    /**
+     * Sets the covariance matrix, after which rows may not be added.
+     */
+    public void setMatrix(TetradMatrix matrix) {
+        if (matrix.rows() != getDimension() || matrix.columns() != getDimension()) {
+            throw new IllegalArgumentException("Expecting a " + getDimension() + " x " + getDimension()
+                    + " matrix but got a " + matrix.rows() + " x " + matrix.columns() + " one.");
+        }
+
+        this.fixedMatrix = matrix.copy();
+        this.matrix = null;
+    }
+
+    /**
+     * Sets the sample size, after which rows may not be added.
+     */
+    public final void setSampleSize(int sampleSize) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("Sample size must be > 0.");
+        }
+
+        this.fixedSampleSize = sampleSize;
+    }
+
+    /**
+     * @return the size of the square matrix.
+     */
+    public final int getSize() {
+        return getDimension();
+    }
+
+    /**
+     * @return the covariance matrix for the rows added so far. It is not
+     * updated as further rows are added.
+     */
+    public final TetradMatrix getMatrix() {
+        return matrix().copy();
+    }
+
+    public final void select(Node variable) {
+        if (variables.contains(variable)) {
+            selectedVariables.add(variable);
+        }
+    }
+
+    public final void clearSelection() {
+        selectedVariables.clear();
+    }
+
+    public final boolean isSelected(Node variable) {
+        if (variable == null) {
+            throw new NullPointerException("Null variable. Try again.");
+        }
+
+        return selectedVariables.contains(variable);
+    }
+
+    public final List<String> getSelectedVariableNames() {
+        List<String> selectedVariableNames = new LinkedList<>();
+
+        for (Node variable : selectedVariables) {
+            selectedVariableNames.add(variable.getName());
+        }
+
+        return selectedVariableNames;
+    }
+
+    /**
+     * Prints out the matrix
+     */
+    public final String toString() {
+        return new CovarianceMatrix(this).toString();
+    }
+
+    public Node getVariable(String name) {
+        for (Node variable : variables) {
+            if (name.equals(variable.getName())) {
+                return variable;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Sets element (i, j) and (j, i) of the covariance matrix, after which
+     * rows may not be added.
+     */
+    @Override
+    public void setValue(int i, int j, double v) {
+        if (fixedMatrix == null) {
+            fixedMatrix = matrix().copy();
+            matrix = null;
+        }
+
+        fixedMatrix.set(i, j, v);
+        fixedMatrix.set(j, i, v);
+    }
+
+    /**
+     * Reduces the matrix to the given variables, in that order, keeping the
+     * rows added so far for them.
+     */
+    @Override
+    public void removeVariables(List<String> remaining) {
+        int[] indices = new int[remaining.size()];
+        List<Node> remainingVars = new ArrayList<>();
+
+        for (int i = 0; i < remaining.size(); i++) {
+            Node variable = getVariable(remaining.get(i));
+
+            if (variable == null) {
+                throw new IllegalArgumentException("Not a variable in this matrix: " + remaining.get(i));
+            }
+
+            indices[i] = variables.indexOf(variable);
+            remainingVars.add(variable);
+        }
+
+        if (fixedMatrix != null) {
+            fixedMatrix = fixedMatrix.getSelection(indices, indices);
+        }
+
+        this.accumulator = accumulator.subset(indices);
+        this.variables = Collections.unmodifiableList(remainingVars);
+        this.matrix = null;
+        clearSelection();
+    }
+
+    public void setVariables(List<Node> variables) {
+        if (variables.size() != this.variables.size()) throw new IllegalArgumentException("Wrong # of variables.");
+
+        for (int i = 0; i < variables.size(); i++) {
+            if (!variables.get(i).getName().equals(this.variables.get(i).getName())) {
+                throw new IllegalArgumentException("Variable in index " + (i + 1) + " does not have the same name " +
+                        "as the variable being substituted for it.");
+            }
+        }
+
+        this.variables = Collections.unmodifiableList(new ArrayList<>(variables));
+    }
+
+    @Override
+    public TetradMatrix getSelection(int[] rows, int[] cols) {
+        return matrix().getSelection(rows, cols);
+    }
+
+    //========================PRIVATE METHODS============================//
+
+    private TetradMatrix matrix() {
+        if (fixedMatrix != null) {
+            return fixedMatrix;
+        }
+
+        TetradMatrix matrix = this.matrix;
+
+        if (matrix == null) {
+            matrix = accumulator.getCovarianceMatrix();
+            this.matrix = matrix;
+        }
+
+        return matrix;
+    }
+
+    private void checkNotFixed() {
+        if (fixedMatrix != null || fixedSampleSize > 0) {
+            throw new IllegalStateException("The covariances or sample size have been set directly; " +
+                    "rows can no longer be added.");
+        }
+    }
+
+    /**
+     * Adds semantic checks to the default deserialization method. This method
+     * must have the standard signature for a readObject method, and the body of
+     * the method must begin with "s.defaultReadObject();". Other than that, any
+     * semantic checks can be specified and do not need to stay the same from
+     * version to version. A readObject method of this form may be added to any
+     * class, even if Tetrad sessions were previously saved out using a version
+     * of the class that didn't include it. (That's what the
+     * "s.defaultReadObject();" is for. See J. Bloch, Effective Java, for help.
+     *
+     * @throws java.io.IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (variables == null) {
+            throw new NullPointerException();
+        }
+
+        if (accumulator == null) {
+            throw new NullPointerException();
+        }
+
+        if (knowledge == null) {
+            throw new NullPointerException();
+        }
+
+        if (selectedVariables == null) {
+            selectedVariables = new HashSet<>();
+        }
+    }
+}
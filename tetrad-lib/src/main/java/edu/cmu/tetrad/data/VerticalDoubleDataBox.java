@@ -26,7 +26,7 @@ package edu.cmu.tetrad.data;
  *
  * @author Joseph Ramsey
  */
-public class VerticalDoubleDataBox implements DataBox {
+public class VerticalDoubleDataBox extends AbstractDataBox {
     static final long serialVersionUID = 23L;
 
     /**
@@ -112,6 +112,56 @@ public class VerticalDoubleDataBox implements DataBox {
         return data;
     }
 
+    /**
+     * @return the value at the given row and column as a double, without
+     * boxing. If the value is missing, Double.NaN is returned.
+     */
+    public double getDouble(int row, int col) {
+        return data[col][row];
+    }
+
+    /**
+     * @return the value at the given row and column as an int, without
+     * boxing. If the value is missing, DiscreteVariable.MISSING_VALUE is
+     * returned.
+     */
+    public int getInt(int row, int col) {
+        double datum = data[col][row];
+        return Double.isNaN(datum) ? DiscreteVariable.MISSING_VALUE : (int) datum;
+    }
+
+    /**
+     * Sets the value at the given row and column to the given double value.
+     * Double.NaN is interpreted as a missing value.
+     */
+    public void setDouble(int row, int col, double value) {
+        synchronized (data[col]) {
+            data[col][row] = value;
+        }
+    }
+
+    /**
+     * Sets the value at the given row and column to the given int value.
+     * DiscreteVariable.MISSING_VALUE is interpreted as a missing value.
+     */
+    public void setInt(int row, int col, int value) {
+        synchronized (data[col]) {
+            data[col][row] = value == DiscreteVariable.MISSING_VALUE ? Double.NaN : value;
+        }
+    }
+
+    /**
+     * Copies the column array directly, since columns are stored as arrays.
+     */
+    public double[] getDoubleColumn(int col, double[] buffer) {
+        if (buffer == null || buffer.length != numRows()) {
+            buffer = new double[numRows()];
+        }
+
+        System.arraycopy(data[col], 0, buffer, 0, buffer.length);
+        return buffer;
+    }
+
     /**
      * @return a copy of this data box.
      */
@@ -122,7 +172,7 @@ public class VerticalDoubleDataBox implements DataBox {
             System.arraycopy(data[i], 0, copy[i], 0, data[0].length);
         }
 
-        return new VerticalDoubleDataBox(data);
+        return new VerticalDoubleDataBox(copy);
     }
 
     /**
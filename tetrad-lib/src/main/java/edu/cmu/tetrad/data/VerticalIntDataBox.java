@@ -25,7 +25,7 @@ package edu.cmu.tetrad.data;
  * Stores a 2D array of int data. Note that the missing value marker for this
  * box is -99.
  */
-public class VerticalIntDataBox implements DataBox {
+public class VerticalIntDataBox extends AbstractDataBox {
     static final long serialVersionUID = 23L;
 
     /**
@@ -119,6 +119,56 @@ public class VerticalIntDataBox implements DataBox {
         return data;
     }
 
+    /**
+     * @return the value at the given row and column as a double, without
+     * boxing. If the value is missing, Double.NaN is returned.
+     */
+    public double getDouble(int row, int col) {
+        int datum = data[col][row];
+        return datum == -99 ? Double.NaN : datum;
+    }
+
+    /**
+     * @return the value at the given row and column as an int, without
+     * boxing. If the value is missing, DiscreteVariable.MISSING_VALUE is
+     * returned.
+     */
+    public int getInt(int row, int col) {
+        return data[col][row];
+    }
+
+    /**
+     * Sets the value at the given row and column to the given double value.
+     * Double.NaN is interpreted as a missing value.
+     */
+    public void setDouble(int row, int col, double value) {
+        synchronized (data[col]) {
+            data[col][row] = Double.isNaN(value) ? -99 : (int) value;
+        }
+    }
+
+    /**
+     * Sets the value at the given row and column to the given int value.
+     * DiscreteVariable.MISSING_VALUE is interpreted as a missing value.
+     */
+    public void setInt(int row, int col, int value) {
+        synchronized (data[col]) {
+            data[col][row] = value;
+        }
+    }
+
+    /**
+     * Copies the column array directly, since columns are stored as arrays.
+     */
+    public int[] getIntColumn(int col, int[] buffer) {
+        if (buffer == null || buffer.length != numRows()) {
+            buffer = new int[numRows()];
+        }
+
+        System.arraycopy(data[col], 0, buffer, 0, buffer.length);
+        return buffer;
+    }
+
     /**
      * @return a copy of this data box.
      */
@@ -21,7 +21,7 @@
 package edu.cmu.tetrad.graph;
 
 import edu.cmu.tetrad.util.ChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradExecutors;
 import edu.cmu.tetrad.util.PointXy;
 import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TaskManager;
@@ -54,6 +54,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveTask;
 import java.util.regex.Matcher;
 import nu.xom.Builder;
@@ -3357,11 +3358,11 @@ public final class GraphUtils {
         List<Edge> edges = new ArrayList<>(edgeSet);
 
 //        System.out.println("Finding pool");
-        ForkJoinPoolInstance pool = ForkJoinPoolInstance.getInstance();
+        ForkJoinPool pool = TetradExecutors.getInstance().getPool();
 
 //        System.out.println("Starting count task");
         CountTask task = new CountTask(500, 0, edges.size(), edges, leftGraph, topGraph, new int[1]);
-        Counts counts = pool.getPool().invoke(task);
+        Counts counts = pool.invoke(task);
 
 //        System.out.println("Finishing count task");
         return counts.countArray();
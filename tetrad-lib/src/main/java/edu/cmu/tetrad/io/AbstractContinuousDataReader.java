@@ -22,7 +22,6 @@ import edu.cmu.tetrad.data.ContinuousVariable;
 import edu.cmu.tetrad.graph.Node;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.LinkedList;
@@ -72,7 +71,7 @@ public abstract class AbstractContinuousDataReader extends AbstractDataReader {
         List<Integer> excludedVarIndices = new LinkedList<>();
         List<Node> nodes = new LinkedList<>();
         try (FileChannel fc = new RandomAccessFile(dataFile.toFile(), "r").getChannel()) {
-            MappedByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            MappedFileBuffer buffer = new MappedFileBuffer(fc);
 
             int index = 0;
             byte currentChar = -1;
@@ -20,7 +20,6 @@ package edu.cmu.tetrad.io;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 
@@ -67,7 +66,7 @@ public abstract class AbstractDataReader {
         if (columnCount == -1) {
             int count = 0;
             try (FileChannel fc = new RandomAccessFile(dataFile.toFile(), "r").getChannel()) {
-                MappedByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+                MappedFileBuffer buffer = new MappedFileBuffer(fc);
                 byte currentChar = -1;
                 byte prevChar = NEW_LINE;
                 while (buffer.hasRemaining()) {
@@ -107,7 +106,7 @@ public abstract class AbstractDataReader {
         if (lineCount == -1) {
             int count = 0;
             try (FileChannel fc = new RandomAccessFile(dataFile.toFile(), "r").getChannel()) {
-                MappedByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+                MappedFileBuffer buffer = new MappedFileBuffer(fc);
                 byte prevChar = NEW_LINE;
                 while (buffer.hasRemaining()) {
                     byte currentChar = buffer.get();
@@ -138,7 +137,7 @@ public abstract class AbstractDataReader {
      *
      * @param buffer
      */
-    protected void skipToNextLine(MappedByteBuffer buffer) {
+    protected void skipToNextLine(MappedFileBuffer buffer) throws IOException {
         byte currentChar;
         byte prevChar = NEW_LINE;
         while (buffer.hasRemaining()) {
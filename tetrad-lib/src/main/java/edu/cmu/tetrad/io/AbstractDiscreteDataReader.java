@@ -22,7 +22,6 @@ import edu.cmu.tetrad.data.DiscreteVariable;
 import edu.cmu.tetrad.graph.Node;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -94,7 +93,7 @@ public abstract class AbstractDiscreteDataReader extends AbstractDataReader {
         int numOfCols = variableAnalysis.numOfCols;
         int maxNumOfVariables = discreteVarInfos.length;
         try (FileChannel fc = new RandomAccessFile(dataFile.toFile(), "r").getChannel()) {
-            MappedByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            MappedFileBuffer buffer = new MappedFileBuffer(fc);
 
             skipToNextLine(buffer);  // skip header
 
@@ -185,7 +184,7 @@ public abstract class AbstractDiscreteDataReader extends AbstractDataReader {
         int numOfCols = 0;
         DiscreteVarInfo[] discreteVarInfos = new DiscreteVarInfo[countNumberOfColumns()];
         try (FileChannel fc = new RandomAccessFile(dataFile.toFile(), "r").getChannel()) {
-            MappedByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            MappedFileBuffer buffer = new MappedFileBuffer(fc);
 
             int index = 0;
             byte currentChar = -1;
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.cmu.tetrad.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a region of a file sequentially, byte by byte, through a series of
+ * memory-mapped windows. A single mapping cannot exceed 2 GB, so mapping a
+ * large file whole fails; this maps one window at a time instead.
+ *
+ * @author Kevin V. Bui (kvb2@pitt.edu)
+ */
+public final class MappedFileBuffer {
+
+    /**
+     * The default size of each mapped window.
+     */
+    public static final long DEFAULT_WINDOW_SIZE = 1L << 28;
+
+    private final FileChannel fileChannel;
+    private final long end;
+    private final long windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * Reads the whole file.
+     *
+     * @param fileChannel
+     * @throws IOException
+     */
+    public MappedFileBuffer(FileChannel fileChannel) throws IOException {
+        this(fileChannel, 0, fileChannel.size(), DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Reads the file from start (inclusive) to end (exclusive).
+     *
+     * @param fileChannel
+     * @param start
+     * @param end
+     * @param windowSize size of each mapped window, at most
+     * Integer.MAX_VALUE
+     * @throws IOException
+     */
+    public MappedFileBuffer(FileChannel fileChannel, long start, long end, long windowSize) throws IOException {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException(String.format("Invalid region [%d, %d).", start, end));
+        }
+        if (windowSize < 1 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Window size must be between 1 and Integer.MAX_VALUE.");
+        }
+
+        this.fileChannel = fileChannel;
+        this.end = end;
+        this.windowSize = windowSize;
+        this.windowStart = start;
+        this.window = map(start);
+    }
+
+    /**
+     * @return true if there are bytes left to read
+     * @throws IOException
+     */
+    public boolean hasRemaining() throws IOException {
+        if (window.hasRemaining()) {
+            return true;
+        }
+
+        long next = windowStart + window.capacity();
+        if (next >= end) {
+            return false;
+        }
+
+        windowStart = next;
+        window = map(next);
+
+        return window.hasRemaining();
+    }
+
+    /**
+     * Reads the next byte. Call hasRemaining() first.
+     *
+     * @return the next byte
+     */
+    public byte get() {
+        return window.get();
+    }
+
+    /**
+     * @return the file position of the next byte to be read
+     */
+    public long position() {
+        return windowStart + window.position();
+    }
+
+    private MappedByteBuffer map(long position) throws IOException {
+        long size = Math.min(windowSize, end - position);
+        return fileChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+}
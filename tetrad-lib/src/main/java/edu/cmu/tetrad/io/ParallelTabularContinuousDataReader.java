@@ -0,0 +1,542 @@
+/*
+ * Copyright (C) 2016 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.cmu.tetrad.io;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.CovarianceAccumulator;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.data.OnlineCovarianceMatrix;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.TetradExecutors;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This data reader reads in tabular data contains continuous variables, in
+ * parallel. The data rows are split into chunks at line boundaries, and each
+ * chunk is read through its own memory-mapped windows, so files larger than
+ * 2 GB can be read. Each chunk is parsed in a single pass that counts the rows
+ * and parses the numbers directly from the bytes, so the file is not scanned
+ * separately to count lines and columns. The data and the error messages are
+ * the same as for TabularContinuousDataReader.
+ * <p>
+ * For data with more rows than fit in memory, readInCovariances accumulates
+ * the covariance matrix of the data instead, a batch of rows at a time, without
+ * keeping the rows.
+ *
+ * @author Kevin V. Bui (kvb2@pitt.edu)
+ */
+public class ParallelTabularContinuousDataReader extends AbstractContinuousDataReader implements DataReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelTabularContinuousDataReader.class);
+
+    /**
+     * Chunks smaller than this are not split further.
+     */
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+    /**
+     * Number of rows added to a covariance accumulator at a time.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Size of each window mapped while reading a chunk.
+     */
+    private static final long WINDOW_SIZE = 1L << 26;
+
+    /**
+     * Powers of ten that are exactly representable as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private ForkJoinPool pool = TetradExecutors.getInstance().getPool();
+
+    public ParallelTabularContinuousDataReader(Path dataFile, char delimiter) {
+        super(dataFile, delimiter);
+    }
+
+    /**
+     * Sets the pool the chunks are read in. By default, the shared pool is
+     * used.
+     *
+     * @param pool
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException("Pool not provided.");
+        }
+        this.pool = pool;
+    }
+
+    @Override
+    public DataSet readInData() throws IOException {
+        return readInData(Collections.EMPTY_SET);
+    }
+
+    @Override
+    public DataSet readInData(Set<String> excludedVariables) throws IOException {
+        if (excludedVariables == null) {
+            excludedVariables = Collections.EMPTY_SET;
+        }
+
+        ContinuousVariableAnalysis variableAnalysis = analyzeData(excludedVariables);
+        List<Node> nodes = variableAnalysis.getVariables();
+        double[][] data = extractContinuousData(variableAnalysis);
+
+        if (data.length == 0) {
+            return new BoxDataSet(new DoubleDataBox(0, nodes.size()), nodes);
+        }
+
+        return new BoxDataSet(new DoubleDataBox(data), nodes);
+    }
+
+    /**
+     * Reads in the covariance matrix of the data, without keeping the rows.
+     * Each chunk of the file is accumulated separately, a batch of rows at a
+     * time, and the chunks are merged in order.
+     *
+     * @param excludedVariables
+     * @return the covariance matrix, to which more rows may be added
+     * @throws IOException
+     */
+    public OnlineCovarianceMatrix readInCovariances(Set<String> excludedVariables) throws IOException {
+        if (excludedVariables == null) {
+            excludedVariables = Collections.EMPTY_SET;
+        }
+
+        ContinuousVariableAnalysis variableAnalysis = analyzeData(excludedVariables);
+        List<Node> nodes = variableAnalysis.getVariables();
+
+        OnlineCovarianceMatrix covariances = new OnlineCovarianceMatrix(nodes);
+        for (Chunk chunk : readChunks(variableAnalysis, true)) {
+            covariances.merge(chunk.accumulator);
+        }
+
+        return covariances;
+    }
+
+    /**
+     * Read in data.
+     *
+     * @param variableAnalysis
+     * @return
+     * @throws IOException
+     */
+    protected double[][] extractContinuousData(ContinuousVariableAnalysis variableAnalysis) throws IOException {
+        List<Chunk> chunks = readChunks(variableAnalysis, false);
+
+        int numOfRows = 0;
+        for (Chunk chunk : chunks) {
+            numOfRows += chunk.numOfRows;
+        }
+
+        double[][] data = new double[numOfRows][];
+        int row = 0;
+        for (Chunk chunk : chunks) {
+            for (double[] values : chunk.rows) {
+                data[row++] = values;
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Reads the chunks of the file in parallel.
+     *
+     * @param accumulate whether to accumulate the covariances of each chunk
+     * instead of keeping its rows
+     * @return the chunks, in file order
+     * @throws IOException if any chunk has an error
+     */
+    private List<Chunk> readChunks(ContinuousVariableAnalysis variableAnalysis, final boolean accumulate) throws IOException {
+        final int maxNumOfCols = countNumberOfColumns();
+        final int numOfCols = variableAnalysis.getVariables().size();
+
+        final boolean[] excluded = new boolean[maxNumOfCols];
+        for (int excludedIndex : variableAnalysis.getExcludedIndices()) {
+            if (excludedIndex >= 0 && excludedIndex < maxNumOfCols) {
+                excluded[excludedIndex] = true;
+            }
+        }
+
+        long[] bounds;
+        try (FileChannel fc = new RandomAccessFile(dataFile.toFile(), "r").getChannel()) {
+            bounds = splitIntoChunks(fc);
+        }
+
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i < bounds.length - 1; i++) {
+            final long start = bounds[i];
+            final long end = bounds[i + 1];
+            tasks.add(new Callable<Chunk>() {
+                @Override
+                public Chunk call() throws IOException {
+                    Chunk chunk = new Chunk(numOfCols, accumulate);
+                    readChunk(chunk, start, end, excluded, maxNumOfCols);
+                    chunk.flush();
+                    return chunk;
+                }
+            });
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (Future<Chunk> future : pool.invokeAll(tasks)) {
+            try {
+                chunks.add(future.get());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading data.", exception);
+            } catch (ExecutionException exception) {
+                Throwable cause = exception.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        // report the first error in the file, numbering lines as the sequential reader does
+        int numOfRows = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.errorType != null) {
+                String errMsg = chunk.getErrorMessage(numOfRows, maxNumOfCols);
+                LOGGER.error(errMsg);
+                throw new IOException(errMsg, chunk.errorCause);
+            }
+            numOfRows += chunk.numOfRows;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Splits the data lines, after the header, into about four chunks per
+     * thread.
+     *
+     * @return the chunk boundaries, each at the start of a line
+     */
+    private long[] splitIntoChunks(FileChannel fc) throws IOException {
+        long size = fc.size();
+        long dataStart = nextLineStart(fc, 0);
+
+        long dataSize = size - dataStart;
+        int numOfChunks = (int) Math.max(1, Math.min(4L * pool.getParallelism(), dataSize / MIN_CHUNK_SIZE));
+
+        long[] bounds = new long[numOfChunks + 1];
+        bounds[0] = dataStart;
+        for (int i = 1; i < numOfChunks; i++) {
+            long position = nextLineStart(fc, dataStart + (dataSize * i) / numOfChunks);
+            bounds[i] = Math.max(position, bounds[i - 1]);
+        }
+        bounds[numOfChunks] = size;
+
+        return bounds;
+    }
+
+    /**
+     * @return the position just after the first line break at or after the
+     * given position, or the file size if there is none
+     */
+    private long nextLineStart(FileChannel fc, long position) throws IOException {
+        long size = fc.size();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        while (position < size) {
+            buffer.clear();
+            int numOfBytes = fc.read(buffer, position);
+            if (numOfBytes <= 0) {
+                break;
+            }
+            for (int i = 0; i < numOfBytes; i++) {
+                byte currentChar = buffer.get(i);
+                if (currentChar == NEW_LINE || currentChar == CARRIAGE_RETURN) {
+                    return position + i + 1;
+                }
+            }
+            position += numOfBytes;
+        }
+
+        return size;
+    }
+
+    private void readChunk(Chunk chunk, long start, long end, boolean[] excluded, int maxNumOfCols) throws IOException {
+        if (start >= end) {
+            return;
+        }
+
+        try (FileChannel fc = new RandomAccessFile(dataFile.toFile(), "r").getChannel()) {
+            MappedFileBuffer buffer = new MappedFileBuffer(fc, start, end, WINDOW_SIZE);
+
+            byte[] value = new byte[64];
+            int length = 0;
+            int numOfCols = chunk.numOfCols;
+            double[] rowData = chunk.nextRow();
+            int col = 0;
+            int colCount = 0;
+            byte currentChar = -1;
+            byte prevChar = NEW_LINE;
+            while (buffer.hasRemaining()) {
+                currentChar = buffer.get();
+                if (currentChar == CARRIAGE_RETURN) {
+                    currentChar = NEW_LINE;
+                }
+
+                if (currentChar == delimiter || (currentChar == NEW_LINE && prevChar != NEW_LINE)) {
+                    if (colCount < maxNumOfCols) {
+                        if (!excluded[colCount]) {
+                            if (length > 0) {
+                                try {
+                                    rowData[col++] = parseDouble(value, length);
+                                } catch (NumberFormatException exception) {
+                                    chunk.setError(ErrorType.UNPARSABLE, colCount + 1, exception);
+                                    return;
+                                }
+                            } else {
+                                chunk.setError(ErrorType.MISSING, colCount + 1, null);
+                                return;
+                            }
+                        }
+                    } else {
+                        chunk.setError(ErrorType.EXCEEDED, colCount + 1, null);
+                        return;
+                    }
+                    length = 0;
+
+                    colCount++;
+                    if (currentChar == NEW_LINE) {
+                        if (col < numOfCols) {
+                            chunk.setError(ErrorType.INSUFFICIENT, colCount, null);
+                            return;
+                        }
+                        chunk.addRow(rowData);
+                        rowData = chunk.nextRow();
+                        colCount = 0;
+                        col = 0;
+                    }
+                } else if (currentChar > SPACE && (currentChar != SINGLE_QUOTE && currentChar != DOUBLE_QUOTE)) {
+                    if (length == value.length) {
+                        byte[] newValue = new byte[2 * length];
+                        System.arraycopy(value, 0, newValue, 0, length);
+                        value = newValue;
+                    }
+                    value[length++] = currentChar;
+                }
+
+                prevChar = currentChar;
+            }
+
+            // the last line of the file may not end with a newline
+            if (currentChar > -1 && currentChar != NEW_LINE) {
+                if (currentChar == delimiter) {
+                    chunk.setError(ErrorType.MISSING, col + 1, null);
+                    return;
+                }
+                if (colCount < maxNumOfCols) {
+                    if (!excluded[colCount]) {
+                        if (length > 0) {
+                            try {
+                                rowData[col++] = parseDouble(value, length);
+                            } catch (NumberFormatException exception) {
+                                chunk.setError(ErrorType.UNPARSABLE, colCount + 1, exception);
+                                return;
+                            }
+                        } else {
+                            chunk.setError(ErrorType.MISSING, colCount + 1, null);
+                            return;
+                        }
+                    }
+                } else {
+                    chunk.setError(ErrorType.EXCEEDED, colCount + 1, null);
+                    return;
+                }
+                chunk.addRow(rowData);
+            }
+        }
+    }
+
+    /**
+     * Parses a decimal number directly from ASCII bytes. Numbers with at most
+     * 18 significant digits and small exponents are converted exactly, with a
+     * single correctly rounded multiplication or division; anything else
+     * (including NaN, Infinity, and hexadecimal) is passed to
+     * Double.parseDouble.
+     *
+     * @param bytes
+     * @param length
+     * @return the value
+     * @throws NumberFormatException if the bytes are not a number
+     */
+    static double parseDouble(byte[] bytes, int length) {
+        int i = 0;
+        boolean negative = false;
+        if (bytes[0] == '-' || bytes[0] == '+') {
+            negative = bytes[0] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int numOfDigits = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        for (; i < length && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+            numOfDigits++;
+            if (mantissa > 0 || bytes[i] != '0') {
+                mantissa = 10 * mantissa + (bytes[i] - '0');
+                significantDigits++;
+            }
+        }
+        if (i < length && bytes[i] == '.') {
+            for (i++; i < length && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                numOfDigits++;
+                if (mantissa > 0 || bytes[i] != '0') {
+                    mantissa = 10 * mantissa + (bytes[i] - '0');
+                    significantDigits++;
+                }
+                exponent--;
+            }
+        }
+        if (numOfDigits > 0 && i < length && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int exponentValue = 0;
+            int exponentDigits = 0;
+            for (; i < length && bytes[i] >= '0' && bytes[i] <= '9' && exponentDigits < 6; i++) {
+                exponentValue = 10 * exponentValue + (bytes[i] - '0');
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                i = -1;
+            }
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+
+        if (i != length || numOfDigits == 0 || significantDigits > 18
+                || mantissa > (1L << 53) || exponent < -22 || exponent > 22) {
+            return Double.parseDouble(new String(bytes, 0, length, StandardCharsets.US_ASCII));
+        }
+
+        double result = exponent < 0
+                ? mantissa / POWERS_OF_TEN[-exponent]
+                : mantissa * POWERS_OF_TEN[exponent];
+
+        return negative ? -result : result;
+    }
+
+    private static enum ErrorType {
+        MISSING, UNPARSABLE, EXCEEDED, INSUFFICIENT
+    }
+
+    /**
+     * The rows read from one chunk of the file, or their covariances, and the
+     * first error in it.
+     */
+    private static class Chunk {
+
+        private final int numOfCols;
+        private final List<double[]> rows = new ArrayList<>();
+        private final CovarianceAccumulator accumulator;
+        private final double[][] batch;
+        private int batchCount;
+        private int numOfRows;
+
+        private ErrorType errorType;
+        private int errorColumn;
+        private Throwable errorCause;
+
+        private Chunk(int numOfCols, boolean accumulate) {
+            this.numOfCols = numOfCols;
+            this.accumulator = accumulate ? new CovarianceAccumulator(numOfCols) : null;
+            this.batch = accumulate ? new double[BATCH_SIZE][numOfCols] : null;
+        }
+
+        /**
+         * @return the array to read the next row into
+         */
+        private double[] nextRow() {
+            return accumulator == null ? new double[numOfCols] : batch[batchCount];
+        }
+
+        private void addRow(double[] row) {
+            numOfRows++;
+            if (accumulator == null) {
+                rows.add(row);
+            } else if (++batchCount == batch.length) {
+                flush();
+            }
+        }
+
+        /**
+         * Accumulates the rows in the current batch.
+         */
+        private void flush() {
+            if (accumulator != null) {
+                accumulator.addRows(batch, batchCount);
+                batchCount = 0;
+            }
+        }
+
+        private void setError(ErrorType errorType, int errorColumn, Throwable errorCause) {
+            this.errorType = errorType;
+            this.errorColumn = errorColumn;
+            this.errorCause = errorCause;
+        }
+
+        /**
+         * @param previousRows the number of rows in the chunks before this one
+         */
+        private String getErrorMessage(int previousRows, int maxNumOfCols) {
+            int line = previousRows + numOfRows + 2;  // plus the header
+            switch (errorType) {
+                case MISSING:
+                    return String.format("Missing data at line %d column %d.", line, errorColumn);
+                case UNPARSABLE:
+                    return String.format("Unable to parse data at line %d column %d.", line, errorColumn);
+                case EXCEEDED:
+                    return String.format("Number of columns exceeded at line %d.  Expect %d column(s) but found %d.", line, maxNumOfCols, errorColumn);
+                default:
+                    return String.format("Insufficient number of columns at line %d.  Expect %d column(s) but found %d.", line, maxNumOfCols, errorColumn);
+            }
+        }
+
+    }
+
+}
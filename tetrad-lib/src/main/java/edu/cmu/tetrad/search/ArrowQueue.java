@@ -0,0 +1,481 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The queue of candidate arrows (insertions or deletions of edges) for Fgs,
+ * highest bump first, arrows with equal bumps in the order they were added.
+ * Arrows are kept in parallel arrays, one slot per arrow, with nodes as
+ * variable indices and node sets as sorted int arrays, rather than as objects,
+ * so that a queue of tens of millions of arrows fits in memory. An indexed
+ * binary heap orders the slots; since each slot knows its place in the heap,
+ * any arrow can be removed in O(log n), and the arrows for each ordered pair
+ * of nodes are chained together so that all of them can be removed when they
+ * go stale, instead of being left in the queue to be skipped. Freed slots are
+ * reused.
+ * <p>
+ * Methods are synchronized; arrows are added from many threads at once.
+ *
+ * @author Joseph Ramsey
+ */
+public final class ArrowQueue {
+
+    /**
+     * The empty node set, shared.
+     */
+    public static final int[] EMPTY = new int[0];
+
+    // The approximate size of an int[] header, and of an object reference.
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 8;
+
+    // Per slot: the bump, the a, b, index, heap position and pair links, and two node set references.
+    private static final int SLOT_BYTES = 8 + 6 * 4 + 2 * REFERENCE_BYTES;
+
+    private double[] bumps;
+    private int[] as;
+    private int[] bs;
+    private int[] indices;
+    private int[][] hOrTs;
+    private int[][] naYXs;
+
+    // The place of each slot in the heap, or -1 if the slot is free.
+    private int[] positions;
+
+    // Links between the slots of arrows for the same pair; nextInPair also links free slots.
+    private int[] nextInPair;
+    private int[] prevInPair;
+
+    // Slots, as a binary heap.
+    private int[] heap;
+    private int size = 0;
+
+    // The number of slots that have been used, and the first free one, or -1.
+    private int numSlots = 0;
+    private int freeSlot = -1;
+
+    // The index of the next arrow added; arrows with equal bumps are taken in index order.
+    private int nextIndex = 0;
+
+    // The first slot for each ordered pair of nodes that has arrows.
+    private final PairMap pairs = new PairMap();
+
+    // The bytes taken by node sets that are not shared.
+    private long setBytes = 0;
+
+    public ArrowQueue() {
+        allocate(16);
+    }
+
+    /**
+     * Adds an arrow a->b, giving it the next index.
+     *
+     * @param hOrT The T set for an insertion or H set for a deletion, as sorted
+     *             variable indices. Not copied.
+     * @param naYX The nodes adjacent to b and neighbors of a, as sorted
+     *             variable indices. Not copied.
+     */
+    public synchronized void add(int a, int b, int[] hOrT, int[] naYX, double bump) {
+        add(a, b, hOrT, naYX, bump, nextIndex);
+    }
+
+    /**
+     * Adds an arrow with the given index, as when restoring a queue.
+     */
+    public synchronized void add(int a, int b, int[] hOrT, int[] naYX, double bump, int index) {
+        if (hOrT.length == 0) hOrT = EMPTY;
+        if (naYX.length == 0) naYX = EMPTY;
+
+        int slot = allocateSlot();
+
+        bumps[slot] = bump;
+        as[slot] = a;
+        bs[slot] = b;
+        indices[slot] = index;
+        hOrTs[slot] = hOrT;
+        naYXs[slot] = naYX;
+        setBytes += bytes(hOrT) + bytes(naYX);
+
+        if (index >= nextIndex) nextIndex = index + 1;
+
+        long pair = pair(a, b);
+        int head = pairs.get(pair);
+        nextInPair[slot] = head;
+        prevInPair[slot] = -1;
+        if (head != -1) prevInPair[head] = slot;
+        pairs.put(pair, slot);
+
+        heap[size] = slot;
+        positions[slot] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Removes and returns the arrow with the highest bump, or null if the queue
+     * is empty.
+     */
+    public synchronized Arrow poll() {
+        if (size == 0) return null;
+
+        int slot = heap[0];
+        Arrow arrow = new Arrow(as[slot], bs[slot], hOrTs[slot], naYXs[slot], bumps[slot], indices[slot]);
+        remove(slot);
+        return arrow;
+    }
+
+    /**
+     * Removes all arrows a->b.
+     *
+     * @return the number of arrows removed.
+     */
+    public synchronized int removePair(int a, int b) {
+        int slot = pairs.get(pair(a, b));
+        int count = 0;
+
+        while (slot != -1) {
+            int next = nextInPair[slot];
+            remove(slot);
+            slot = next;
+            count++;
+        }
+
+        return count;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the index the next arrow added will get.
+     */
+    public synchronized int getNextIndex() {
+        return nextIndex;
+    }
+
+    public synchronized void setNextIndex(int nextIndex) {
+        this.nextIndex = nextIndex;
+    }
+
+    /**
+     * @return the arrows in the queue, in no particular order.
+     */
+    public synchronized List<Arrow> getArrows() {
+        List<Arrow> arrows = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            int slot = heap[i];
+            arrows.add(new Arrow(as[slot], bs[slot], hOrTs[slot], naYXs[slot], bumps[slot], indices[slot]));
+        }
+
+        return arrows;
+    }
+
+    /**
+     * @return an estimate of the memory used by the queue, in bytes, counting
+     * all allocated slots, the heap, the pair index and the node sets.
+     */
+    public synchronized long getMemoryUsage() {
+        long capacity = bumps.length;
+        return capacity * (SLOT_BYTES + 4) + pairs.getMemoryUsage() + setBytes;
+    }
+
+    // Removes the arrow in the given slot from the heap and its pair's chain, and frees the slot.
+    private void remove(int slot) {
+        int position = positions[slot];
+        int last = heap[--size];
+
+        if (position != size) {
+            heap[position] = last;
+            positions[last] = position;
+            siftDown(position);
+            siftUp(positions[last]);
+        }
+
+        int prev = prevInPair[slot];
+        int next = nextInPair[slot];
+
+        if (prev != -1) {
+            nextInPair[prev] = next;
+        } else if (next != -1) {
+            pairs.put(pair(as[slot], bs[slot]), next);
+        } else {
+            pairs.remove(pair(as[slot], bs[slot]));
+        }
+
+        if (next != -1) prevInPair[next] = prev;
+
+        setBytes -= bytes(hOrTs[slot]) + bytes(naYXs[slot]);
+        hOrTs[slot] = null;
+        naYXs[slot] = null;
+        positions[slot] = -1;
+        nextInPair[slot] = freeSlot;
+        freeSlot = slot;
+    }
+
+    private int allocateSlot() {
+        if (freeSlot != -1) {
+            int slot = freeSlot;
+            freeSlot = nextInPair[slot];
+            return slot;
+        }
+
+        if (numSlots == bumps.length) {
+            allocate(bumps.length + (bumps.length >> 1));
+        }
+
+        return numSlots++;
+    }
+
+    private void allocate(int capacity) {
+        if (bumps == null) {
+            bumps = new double[capacity];
+            as = new int[capacity];
+            bs = new int[capacity];
+            indices = new int[capacity];
+            hOrTs = new int[capacity][];
+            naYXs = new int[capacity][];
+            positions = new int[capacity];
+            nextInPair = new int[capacity];
+            prevInPair = new int[capacity];
+            heap = new int[capacity];
+        } else {
+            bumps = Arrays.copyOf(bumps, capacity);
+            as = Arrays.copyOf(as, capacity);
+            bs = Arrays.copyOf(bs, capacity);
+            indices = Arrays.copyOf(indices, capacity);
+            hOrTs = Arrays.copyOf(hOrTs, capacity);
+            naYXs = Arrays.copyOf(naYXs, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            nextInPair = Arrays.copyOf(nextInPair, capacity);
+            prevInPair = Arrays.copyOf(prevInPair, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+        }
+    }
+
+    // True if the arrow in slot s comes before the arrow in slot t: higher bump, or equal bump and lower index.
+    private boolean before(int s, int t) {
+        int compare = Double.compare(bumps[t], bumps[s]);
+        if (compare == 0) return indices[s] < indices[t];
+        return compare < 0;
+    }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentSlot = heap[parent];
+            if (!before(slot, parentSlot)) break;
+            heap[position] = parentSlot;
+            positions[parentSlot] = position;
+            position = parent;
+        }
+
+        heap[position] = slot;
+        positions[slot] = position;
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        int half = size >>> 1;
+
+        while (position < half) {
+            int child = 2 * position + 1;
+            int childSlot = heap[child];
+            int right = child + 1;
+
+            if (right < size && before(heap[right], childSlot)) {
+                child = right;
+                childSlot = heap[right];
+            }
+
+            if (!before(childSlot, slot)) break;
+            heap[position] = childSlot;
+            positions[childSlot] = position;
+            position = child;
+        }
+
+        heap[position] = slot;
+        positions[slot] = position;
+    }
+
+    private static long pair(int a, int b) {
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+
+    private static long bytes(int[] set) {
+        if (set == EMPTY) return 0;
+        return (ARRAY_HEADER_BYTES + 4L * set.length + 7) & ~7L;
+    }
+
+    /**
+     * An arrow taken from the queue.
+     */
+    public static final class Arrow {
+        private final int a;
+        private final int b;
+        private final int[] hOrT;
+        private final int[] naYX;
+        private final double bump;
+        private final int index;
+
+        private Arrow(int a, int b, int[] hOrT, int[] naYX, double bump, int index) {
+            this.a = a;
+            this.b = b;
+            this.hOrT = hOrT;
+            this.naYX = naYX;
+            this.bump = bump;
+            this.index = index;
+        }
+
+        public int getA() {
+            return a;
+        }
+
+        public int getB() {
+            return b;
+        }
+
+        public int[] getHOrT() {
+            return hOrT;
+        }
+
+        public int[] getNaYX() {
+            return naYX;
+        }
+
+        public double getBump() {
+            return bump;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String toString() {
+            return "Arrow<" + a + "->" + b + " bump = " + bump + " t/h = " + Arrays.toString(hOrT)
+                    + " naYX = " + Arrays.toString(naYX) + ">";
+        }
+    }
+
+    // A map from pairs to slots, with open addressing and linear probing, so that pairs are not boxed.
+    private static final class PairMap {
+        private static final long FREE = -1L;
+
+        private long[] keys;
+        private int[] values;
+        private int count = 0;
+
+        PairMap() {
+            keys = new long[16];
+            values = new int[16];
+            Arrays.fill(keys, FREE);
+        }
+
+        // The value for the key, or -1.
+        int get(long key) {
+            int mask = keys.length - 1;
+
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+                if (keys[i] == FREE) return -1;
+            }
+        }
+
+        void put(long key, int value) {
+            if (2 * (count + 1) > keys.length) resize(keys.length * 2);
+            int mask = keys.length - 1;
+
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+
+                if (keys[i] == FREE) {
+                    keys[i] = key;
+                    values[i] = value;
+                    count++;
+                    return;
+                }
+            }
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+
+            while (keys[i] != key) {
+                if (keys[i] == FREE) return;
+                i = (i + 1) & mask;
+            }
+
+            // Shift later entries of the probe sequence back over the hole.
+            int hole = i;
+
+            for (int j = (hole + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+
+            keys[hole] = FREE;
+            count--;
+        }
+
+        long getMemoryUsage() {
+            return keys.length * 12L;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, FREE);
+            count = 0;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
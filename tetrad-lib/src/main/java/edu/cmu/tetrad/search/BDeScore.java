@@ -22,6 +22,7 @@
 package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteCounts;
 import edu.cmu.tetrad.data.DiscreteVariable;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.ProbUtils;
@@ -31,9 +32,12 @@ import java.util.List;
 /**
  * Calculates the BDe score.
  */
-public class BDeScore implements LocalDiscreteScore {
+public class BDeScore implements LocalDiscreteScore, DecomposableScore {
     private DataSet dataSet;
 
+    // Counts to score from instead of the data, if set.
+    private DiscreteCounts counts;
+
     public BDeScore(DataSet dataSet) {
         if (dataSet == null) {
             throw new NullPointerException();
@@ -64,6 +68,10 @@ public class BDeScore implements LocalDiscreteScore {
             q *= dims[p];
         }
 
+        if (counts != null) {
+            return localScore(i, parents, r, q, counts);
+        }
+
         // Conditional cell coefs of data for i given parents(i).
         int n_ijk[][] = new int[q][r];
         int n_ij[] = new int[q];
@@ -123,6 +131,61 @@ public class BDeScore implements LocalDiscreteScore {
         return score;
     }
 
+    // The score from shared counts, over the occupied cells; the terms for empty cells and rows are zero.
+    private double localScore(int i, int[] parents, int r, int q, DiscreteCounts counts) {
+        for (int parent : parents) {
+            if (counts.hasMissingValues(parent)) {
+                throw new IllegalStateException("Please remove or impute " +
+                        "missing values.");
+            }
+        }
+
+        if (counts.hasMissingValues(i)) {
+            throw new IllegalStateException("Please remove or impute missing " +
+                    "values (column " + i + ")");
+        }
+
+        DiscreteCounts.Table table = counts.getTable(append(parents, i));
+
+        double nPrimeijk = 1. / (r * q);
+        double nPrimeij = 1. / q;
+        double score = 0;
+        int k = 0;
+
+        while (k < table.getNumCells()) {
+            long row = table.getCell(k) / r;
+            int n_ij = 0;
+
+            while (k < table.getNumCells() && table.getCell(k) / r == row) {
+                int n_ijk = table.getCount(k++);
+                score += ProbUtils.lngamma(n_ijk + nPrimeijk);
+                score -= ProbUtils.lngamma(nPrimeijk);
+                n_ij += n_ijk;
+            }
+
+            score += ProbUtils.lngamma(nPrimeij);
+            score -= ProbUtils.lngamma(n_ij + nPrimeij);
+        }
+
+        return score;
+    }
+
+    public DiscreteCounts getCounts() {
+        return counts;
+    }
+
+    /**
+     * Sets counts over the variables of the data set, shared with other discrete scores and tests, to score
+     * from instead of counting the data for each score, or null to count the data.
+     */
+    public void setCounts(DiscreteCounts counts) {
+        if (counts != null && !counts.getVariables().equals(dataSet.getVariables())) {
+            throw new IllegalArgumentException("Counts must be over the variables of the data set.");
+        }
+
+        this.counts = counts;
+    }
+
     @Override
     public double localScoreDiff(int x, int y, int[] z) {
         return localScore(y, append(z, x)) - localScore(y, z);
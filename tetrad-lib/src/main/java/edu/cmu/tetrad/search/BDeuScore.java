@@ -25,12 +25,15 @@ import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.Node;
 import org.apache.commons.math3.special.Gamma;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Calculates the BDeu score.
  */
-public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
+public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score, MarginalBumps, DecomposableScore {
     private List<Node> variables;
     private int[][] data;
     private int sampleSize;
@@ -40,6 +43,32 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
 
     private int[] numCategories;
 
+    // Counts to score from instead of the data, if set.
+    private DiscreteCounts counts;
+
+    // The number of small counts for which logGamma(prior + count) is tabulated.
+    private static final int LOG_GAMMA_TABLE_SIZE = 1024;
+
+    // The largest single-parent contingency table counted in bulk for getPositiveMarginalBumps.
+    private static final int MAX_PAIR_TABLE_SIZE = 1 << 12;
+
+    // The number of records counted at a time for getPositiveMarginalBumps, so that a block of the child
+    // column stays in cache while it is counted against each parent of a tile.
+    private static final int ROW_BLOCK = 1024;
+
+    // The maximum number of priors for which tables are kept.
+    private static final int MAX_LOG_GAMMA_TABLES = 1024;
+
+    // Tables of logGamma(prior + n) for small n, by prior.
+    private final Map<Double, double[]> logGammaTables = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
     public BDeuScore(DataSet dataSet) {
         if (dataSet == null) {
             throw new NullPointerException();
@@ -50,13 +79,16 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
 
             this.variables = dataSet.getVariables();
 
-            if (!(((BoxDataSet) dataSet).getDataBox() instanceof VerticalIntDataBox)) {
-                throw new IllegalArgumentException();
-            }
+            if (dataBox instanceof VerticalIntDataBox) {
+                data = ((VerticalIntDataBox) dataBox).getVariableVectors();
+            } else {
+                data = new int[dataSet.getNumColumns()][];
 
-            VerticalIntDataBox box = (VerticalIntDataBox) dataBox;
+                for (int j = 0; j < dataSet.getNumColumns(); j++) {
+                    data[j] = dataBox.getIntColumn(j, null);
+                }
+            }
 
-            data = box.getVariableVectors();
             this.sampleSize = dataSet.getNumRows();
         } else {
             data = new int[dataSet.getNumColumns()][];
@@ -84,31 +116,34 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         return (DiscreteVariable) variables.get(i);
     }
 
+    /**
+     * Calculates the BDeu score of node given parents. Only occupied rows and cells are visited: an empty
+     * row, or an empty cell of an occupied row, contributes nothing, since its logGamma terms cancel with the
+     * prior terms. Counts are taken in a dense table when the number of cells is at most the sample size,
+     * and otherwise by sorting the cell keys of the records, so that the work is bounded by the sample size
+     * however many parent states there are.
+     */
     @Override
     public double localScore(int node, int parents[]) {
+        SearchMetrics.localScore();
 
         // Number of categories for node.
         int c = numCategories[node];
 
-        // Numbers of categories of parents.
-        int[] dims = new int[parents.length];
-
-        for (int p = 0; p < parents.length; p++) {
-            dims[p] = numCategories[parents[p]];
-        }
-
         // Number of parent states.
-        int r = 1;
+        long r = 1;
 
-        for (int p = 0; p < parents.length; p++) {
-            r *= dims[p];
-        }
+        for (int parent : parents) {
+            if (r > Long.MAX_VALUE / c / numCategories[parent]) {
+                throw new IllegalArgumentException("Too many parent states for " + variables.get(node));
+            }
 
-        // Conditional cell coefs of data for node given parents(node).
-        int n_jk[][] = new int[r][c];
-        int n_j[] = new int[r];
+            r *= numCategories[parent];
+        }
 
-        int[] parentValues = new int[parents.length];
+        if (counts != null) {
+            return localScore(node, parents, c, r, counts);
+        }
 
         int[][] myParents = new int[parents.length][];
         for (int i = 0; i < parents.length; i++) {
@@ -117,23 +152,32 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
 
         int[] myChild = data[node];
 
+        Scratch scratch = this.scratch.get();
+        long[] keys = scratch.keys(sampleSize);
 
         for (int i = 0; i < sampleSize; i++) {
-            for (int p = 0; p < parents.length; p++) {
-                parentValues[p] = myParents[p][i];
-            }
-
             int childValue = myChild[i];
 
             if (childValue == -99) {
                 throw new IllegalStateException("Please remove or impute missing " +
-                        "values (record " + i + " column " + i + ")");
+                        "values (record " + i + " column " + node + ")");
             }
 
-            int rowIndex = getRowIndex(dims, parentValues);
+            long rowIndex = 0;
+
+            for (int p = 0; p < parents.length; p++) {
+                int parentValue = myParents[p][i];
+
+                if (parentValue == -99) {
+                    throw new IllegalStateException("Please remove or impute missing " +
+                            "values (record " + i + " column " + parents[p] + ")");
+                }
+
+                rowIndex *= numCategories[parents[p]];
+                rowIndex += parentValue;
+            }
 
-            n_jk[rowIndex][childValue]++;
-            n_j[rowIndex]++;
+            keys[i] = rowIndex * c + childValue;
         }
 
         //Finally, compute the score
@@ -141,19 +185,101 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
 
         score += getPriorForStructure(parents.length);
 
-        final double cellPrior = getSamplePrior() / (c * r);
+        final double cellPrior = getSamplePrior() / (c * (double) r);
         final double rowPrior = getSamplePrior() / r;
 
-        for (int j = 0; j < r; j++) {
-            score -= Gamma.logGamma(rowPrior + n_j[j]);
+        double[] cellTable = logGammaTable(cellPrior);
+        double[] rowTable = logGammaTable(rowPrior);
 
-            for (int k = 0; k < c; k++) {
-                score += Gamma.logGamma(cellPrior + n_jk[j][k]);
+        if (r * c <= sampleSize) {
+            int[] n_jk = scratch.counts((int) (r * c));
+
+            for (int i = 0; i < sampleSize; i++) {
+                n_jk[(int) keys[i]]++;
+            }
+
+            for (int j = 0; j < r; j++) {
+                int n_j = 0;
+
+                for (int k = 0; k < c; k++) {
+                    int n = n_jk[j * c + k];
+
+                    if (n > 0) {
+                        score += logGamma(cellTable, cellPrior, n) - cellTable[0];
+                        n_j += n;
+                    }
+                }
+
+                if (n_j > 0) {
+                    score -= logGamma(rowTable, rowPrior, n_j) - rowTable[0];
+                }
+            }
+        } else {
+            Arrays.sort(keys, 0, sampleSize);
+
+            int i = 0;
+
+            while (i < sampleSize) {
+                long row = keys[i] / c;
+                int n_j = 0;
+
+                while (i < sampleSize && keys[i] / c == row) {
+                    long cell = keys[i];
+                    int n = 0;
+
+                    while (i < sampleSize && keys[i] == cell) {
+                        n++;
+                        i++;
+                    }
+
+                    score += logGamma(cellTable, cellPrior, n) - cellTable[0];
+                    n_j += n;
+                }
+
+                score -= logGamma(rowTable, rowPrior, n_j) - rowTable[0];
             }
         }
 
-        score += r * Gamma.logGamma(rowPrior);
-        score -= c * r * Gamma.logGamma(cellPrior);
+        return score;
+    }
+
+    // The score from shared counts. The child is the last variable of the table, so the cells of each parent
+    // state are adjacent.
+    private double localScore(int node, int[] parents, int c, long r, DiscreteCounts counts) {
+        if (counts.hasMissingValues(node)) {
+            throw new IllegalStateException("Please remove or impute missing values (column " + node + ")");
+        }
+
+        for (int parent : parents) {
+            if (counts.hasMissingValues(parent)) {
+                throw new IllegalStateException("Please remove or impute missing values (column " + parent + ")");
+            }
+        }
+
+        DiscreteCounts.Table table = counts.getTable(append(parents, node));
+
+        double score = getPriorForStructure(parents.length);
+
+        final double cellPrior = getSamplePrior() / (c * (double) r);
+        final double rowPrior = getSamplePrior() / r;
+
+        double[] cellTable = logGammaTable(cellPrior);
+        double[] rowTable = logGammaTable(rowPrior);
+
+        int k = 0;
+
+        while (k < table.getNumCells()) {
+            long row = table.getCell(k) / c;
+            int n_j = 0;
+
+            while (k < table.getNumCells() && table.getCell(k) / c == row) {
+                int n = table.getCount(k++);
+                score += logGamma(cellTable, cellPrior, n) - cellTable[0];
+                n_j += n;
+            }
+
+            score -= logGamma(rowTable, rowPrior, n_j) - rowTable[0];
+        }
 
         return score;
     }
@@ -174,6 +300,125 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         return localScore(y, x) - localScore(y);
     }
 
+    /**
+     * Counts the contingency tables of each child against a tile of parents together, a block of records at a
+     * time, and scores each table as localScore does, in the same order, so that the bumps are the same as
+     * localScoreDiff's. Pairs with missing values, or with tables too large to count this way, are left to
+     * localScoreDiff.
+     */
+    @Override
+    public PairBumps getPositiveMarginalBumps() {
+        final int numVariables = variables.size();
+        final boolean[] missing = new boolean[numVariables];
+        final double[] emptyScores = new double[numVariables];
+
+        for (int i = 0; i < numVariables; i++) {
+            for (int value : data[i]) {
+                if (value == -99) {
+                    missing[i] = true;
+                    break;
+                }
+            }
+
+            if (!missing[i]) {
+                emptyScores[i] = localScore(i);
+            }
+        }
+
+        final double structurePrior = getPriorForStructure(1);
+
+        return PairBumps.calculate(numVariables, new PairBumps.TileScorer() {
+            public void score(int fromChild, int toChild, int fromParent, int toParent, PairBumps bumps) {
+                int[][] tables = new int[toParent - fromParent][];
+                int numScored = 0;
+
+                for (int i = fromChild; i < toChild; i++) {
+                    int c = numCategories[i];
+                    int from = Math.max(fromParent, i + 1);
+
+                    for (int j = from; j < toParent; j++) {
+                        int size = numCategories[j] * c;
+
+                        if (missing[i] || missing[j] || size > MAX_PAIR_TABLE_SIZE) {
+                            tables[j - fromParent] = null;
+                        } else if (tables[j - fromParent] == null || tables[j - fromParent].length < size) {
+                            tables[j - fromParent] = new int[size];
+                        } else {
+                            Arrays.fill(tables[j - fromParent], 0, size, 0);
+                        }
+                    }
+
+                    int[] child = data[i];
+
+                    for (int start = 0; start < sampleSize; start += ROW_BLOCK) {
+                        int end = Math.min(sampleSize, start + ROW_BLOCK);
+
+                        for (int j = from; j < toParent; j++) {
+                            int[] table = tables[j - fromParent];
+                            if (table == null) continue;
+                            int[] parent = data[j];
+
+                            for (int k = start; k < end; k++) {
+                                table[parent[k] * c + child[k]]++;
+                            }
+                        }
+                    }
+
+                    for (int j = from; j < toParent; j++) {
+                        int[] table = tables[j - fromParent];
+                        double bump;
+
+                        if (table == null) {
+                            bump = localScoreDiff(j, i, new int[0]);
+                        } else {
+                            numScored += 2;
+                            bump = scoreTable(table, numCategories[j], c, structurePrior) - emptyScores[i];
+                        }
+
+                        if (bump > 0) {
+                            bumps.add(i, j, bump);
+                        }
+                    }
+                }
+
+                SearchMetrics.localScores(numScored);
+            }
+        });
+    }
+
+    // The score of a child with c categories given one parent with r categories, from their contingency table,
+    // summed just as localScore sums it.
+    private double scoreTable(int[] n_jk, int r, int c, double structurePrior) {
+        double score = 0.0;
+
+        score += structurePrior;
+
+        final double cellPrior = getSamplePrior() / (c * (double) r);
+        final double rowPrior = getSamplePrior() / r;
+
+        double[] cellTable = logGammaTable(cellPrior);
+        double[] rowTable = logGammaTable(rowPrior);
+
+        for (int j = 0; j < r; j++) {
+            int n_j = 0;
+
+            for (int k = 0; k < c; k++) {
+                int n = n_jk[j * c + k];
+
+                if (n > 0) {
+                    score += logGamma(cellTable, cellPrior, n) - cellTable[0];
+                    n_j += n;
+                }
+            }
+
+            if (n_j > 0) {
+                score -= logGamma(rowTable, rowPrior, n_j) - rowTable[0];
+            }
+        }
+
+        return score;
+    }
+
     int[] append(int[] parents, int extra) {
         int[] all = new int[parents.length + 1];
         System.arraycopy(parents, 0, all, 0, parents.length);
@@ -227,13 +472,50 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         throw new UnsupportedOperationException();
     }
 
-    private static int getRowIndex(int[] dim, int[] values) {
-        int rowIndex = 0;
-        for (int i = 0; i < dim.length; i++) {
-            rowIndex *= dim[i];
-            rowIndex += values[i];
+    // logGamma(prior + n), looked up for small n.
+    private static double logGamma(double[] table, double prior, int n) {
+        return n < table.length ? table[n] : Gamma.logGamma(prior + n);
+    }
+
+    // The values of logGamma(prior + n) for n = 0, 1, ..., up to LOG_GAMMA_TABLE_SIZE - 1 or the sample size.
+    private double[] logGammaTable(double prior) {
+        double[] table = logGammaTables.get(prior);
+
+        if (table == null) {
+            table = new double[Math.min(LOG_GAMMA_TABLE_SIZE, sampleSize + 1)];
+
+            for (int n = 0; n < table.length; n++) {
+                table[n] = Gamma.logGamma(prior + n);
+            }
+
+            if (logGammaTables.size() < MAX_LOG_GAMMA_TABLES) {
+                logGammaTables.put(prior, table);
+            }
+        }
+
+        return table;
+    }
+
+    // Per-thread count buffers.
+    private static class Scratch {
+        private long[] keys = new long[0];
+        private int[] counts = new int[0];
+
+        long[] keys(int size) {
+            if (keys.length < size) keys = new long[size];
+            return keys;
+        }
+
+        // Cleared for use.
+        int[] counts(int size) {
+            if (counts.length < size) {
+                counts = new int[size];
+            } else {
+                Arrays.fill(counts, 0, size, 0);
+            }
+
+            return counts;
         }
-        return rowIndex;
     }
 
     @Override
@@ -256,6 +538,29 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         this.samplePrior = samplePrior;
     }
 
+    public DiscreteCounts getCounts() {
+        return counts;
+    }
+
+    /**
+     * Sets counts over the variables of the data set, shared with other discrete scores and tests, to score
+     * from instead of counting the data for each score, or null to count the data.
+     */
+    public void setCounts(DiscreteCounts counts) {
+        if (counts != null) {
+            List<Node> countVariables = counts.getVariables();
+
+            for (int i = 0; i < variables.size(); i++) {
+                if (countVariables.size() != variables.size()
+                        || !countVariables.get(i).getName().equals(variables.get(i).getName())) {
+                    throw new IllegalArgumentException("Counts must be over the variables of the data set.");
+                }
+            }
+        }
+
+        this.counts = counts;
+    }
+
     public void setVariables(List<Node> variables) {
         for (int i = 0; i < variables.size(); i++) {
             if (!variables.get(i).getName().equals(this.variables.get(i).getName())) {
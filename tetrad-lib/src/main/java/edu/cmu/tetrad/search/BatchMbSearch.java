@@ -0,0 +1,179 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.TetradExecutors;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the Markov blankets of many targets at once, running a search for
+ * each target concurrently on the shared pool.
+ * <p>
+ * Each target gets a new search from a factory, since Markov blanket searches
+ * keep state for the target they are searching. The searches made by one
+ * factory may share whatever caches make sense for them, so that where the
+ * neighborhoods of the targets overlap, the work is done once; the factory
+ * from fgsMb(Score) shares one cache of local scores among all of its FGS-MB
+ * searches, for instance, and a factory for the searches in search.mb may
+ * give each search its own CachingIndependenceTest over one shared
+ * IndependenceTestCache. The caches must be safe to use from several threads
+ * at once.
+ * <p>
+ * Blankets are handed to a listener as each is found, so that results for
+ * hundreds of targets can be written out as they come rather than at the end.
+ *
+ * @author Joseph Ramsey
+ */
+public final class BatchMbSearch {
+
+    /**
+     * Makes a new search for each target.
+     */
+    public interface MbSearchFactory {
+        MbSearch newSearch();
+    }
+
+    /**
+     * Receives each Markov blanket as soon as it is found. Called from the
+     * threads of the pool, so it must be safe to call from several threads at
+     * once.
+     */
+    public interface MbListener {
+        void mbFound(String targetName, List<Node> mb);
+    }
+
+    // Makes the search for each target.
+    private final MbSearchFactory factory;
+
+    // The pool the searches are run on.
+    private final ForkJoinPool pool = TetradExecutors.getInstance().getPool();
+
+    // The total number of independence tests done by the searches of the most recent batch.
+    private int numIndependenceTests = 0;
+
+    // Elapsed time of the most recent batch.
+    private long elapsedTime;
+
+    public BatchMbSearch(MbSearchFactory factory) {
+        if (factory == null) throw new NullPointerException("Factory not provided.");
+        this.factory = factory;
+    }
+
+    /**
+     * @return a factory for FGS-MB searches over the given score, which all
+     * look up local scores in one shared cache. If the score is already a
+     * CachingScore, its cache is the one shared.
+     */
+    public static MbSearchFactory fgsMb(Score score) {
+        if (score == null) throw new NullPointerException("Score not provided.");
+        final Score shared = score instanceof CachingScore ? score : new CachingScore(score);
+
+        return new MbSearchFactory() {
+            public MbSearch newSearch() {
+                return new FgsMb(shared);
+            }
+        };
+    }
+
+    /**
+     * @return the Markov blankets of the given targets, by target name, in the
+     * order of the targets.
+     */
+    public Map<String, List<Node>> search(List<String> targetNames) {
+        return search(targetNames, null);
+    }
+
+    /**
+     * Finds the Markov blankets of the given targets, handing each to the
+     * listener, if it is not null, as soon as it is found.
+     *
+     * @return the Markov blankets, by target name, in the order of the
+     * targets.
+     */
+    public Map<String, List<Node>> search(List<String> targetNames, final MbListener listener) {
+        if (targetNames == null) throw new NullPointerException("Targets not provided.");
+        long start = System.currentTimeMillis();
+
+        class TargetTask extends RecursiveTask<List<Node>> {
+            private final String targetName;
+            private int numIndependenceTests;
+
+            TargetTask(String targetName) {
+                this.targetName = targetName;
+            }
+
+            @Override
+            protected List<Node> compute() {
+                MbSearch search = factory.newSearch();
+                List<Node> mb = search.findMb(targetName);
+                numIndependenceTests = search.getNumIndependenceTests();
+
+                if (listener != null) {
+                    listener.mbFound(targetName, mb);
+                }
+
+                return mb;
+            }
+        }
+
+        List<TargetTask> tasks = new ArrayList<>();
+
+        for (String targetName : targetNames) {
+            TargetTask task = new TargetTask(targetName);
+            pool.execute(task);
+            tasks.add(task);
+        }
+
+        Map<String, List<Node>> mbs = new LinkedHashMap<>();
+        numIndependenceTests = 0;
+
+        for (TargetTask task : tasks) {
+            mbs.put(task.targetName, task.join());
+            numIndependenceTests += task.numIndependenceTests;
+        }
+
+        this.elapsedTime = System.currentTimeMillis() - start;
+        return mbs;
+    }
+
+    /**
+     * @return the total number of independence tests done by the searches of
+     * the most recent batch.
+     */
+    public int getNumIndependenceTests() {
+        return numIndependenceTests;
+    }
+
+    /**
+     * @return the elapsed time of the most recent batch, in milliseconds.
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+}
@@ -94,14 +94,15 @@ public class BdeuScoreImages implements IBDeuScore {
     }
 
 
-    public double localScoreDiff(int x, int y, int[] z) {
-        double sum = 0.0;
-
-        for (BDeuScore score : scores) {
-            sum += score.localScoreDiff(x, y, z);
-        }
-
-        return sum / scores.size();
+    /**
+     * The average over the data sets, calculated in parallel for many data sets, of the score differences.
+     */
+    public double localScoreDiff(final int x, final int y, final int[] z) {
+        return DataSetAverage.average(scores.size(), false, new DataSetAverage.DataSetScore() {
+            public double score(int dataSet) {
+                return scores.get(dataSet).localScoreDiff(x, y, z);
+            }
+        });
     }
 
     @Override
@@ -112,14 +113,12 @@ public class BdeuScoreImages implements IBDeuScore {
     /**
      * Calculates the sample likelihood and BIC score for i given its parents in a simple SEM model
      */
-    public double localScore(int i, int[] parents) {
-        double sum = 0.0;
-
-        for (BDeuScore score : scores) {
-            sum += score.localScore(i, parents);
-        }
-
-        return sum / scores.size();
+    public double localScore(final int i, final int[] parents) {
+        return DataSetAverage.average(scores.size(), false, new DataSetAverage.DataSetScore() {
+            public double score(int dataSet) {
+                return scores.get(dataSet).localScore(i, parents);
+            }
+        });
     }
 
     public double localScore(int i, int[] parents, int index) {
@@ -141,27 +140,23 @@ public class BdeuScoreImages implements IBDeuScore {
     /**
      * Specialized scoring method for a single parent. Used to speed up the effect edges search.
      */
-    public double localScore(int i, int parent) {
-        double sum = 0.0;
-
-        for (BDeuScore score : scores) {
-            sum += score.localScore(i, parent);
-        }
-
-        return sum / scores.size();
+    public double localScore(final int i, final int parent) {
+        return DataSetAverage.average(scores.size(), false, new DataSetAverage.DataSetScore() {
+            public double score(int dataSet) {
+                return scores.get(dataSet).localScore(i, parent);
+            }
+        });
     }
 
     /**
      * Specialized scoring method for no parents. Used to speed up the effect edges search.
      */
-    public double localScore(int i) {
-        double sum = 0.0;
-
-        for (BDeuScore score : scores) {
-            sum += score.localScore(i);
-        }
-
-        return sum / scores.size();
+    public double localScore(final int i) {
+        return DataSetAverage.average(scores.size(), false, new DataSetAverage.DataSetScore() {
+            public double score(int dataSet) {
+                return scores.get(dataSet).localScore(i);
+            }
+        });
     }
 
     public void setOut(PrintStream out) {
@@ -32,7 +32,7 @@ import java.util.List;
 /**
  * Calculates the BDeu score.
  */
-public class BicScore implements LocalDiscreteScore, IBDeuScore {
+public class BicScore implements LocalDiscreteScore, IBDeuScore, DecomposableScore {
     private List<Node> variables;
     private int[][] data;
     private int sampleSize;
@@ -97,6 +97,7 @@ public class BicScore implements LocalDiscreteScore, IBDeuScore {
 
     @Override
     public double localScore(int node, int parents[]) {
+        SearchMetrics.localScore();
 
         if (!(variables.get(node) instanceof  DiscreteVariable)) {
             throw new IllegalArgumentException("Not discrete: " + variables.get(node));
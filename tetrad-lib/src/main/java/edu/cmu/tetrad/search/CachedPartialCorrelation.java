@@ -0,0 +1,206 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.util.StatUtils;
+
+import java.util.Arrays;
+
+/**
+ * Calculates partial correlations from a covariance matrix using the Cholesky factor of the covariance
+ * matrix of the conditioning set. If S_ZZ = L L', a = L^-1 S_Zx and b = L^-1 S_Zy, then
+ * <p>
+ * r(x, y | Z) = (S_xy - a'b) / sqrt((S_xx - a'a)(S_yy - b'b)),
+ * <p>
+ * so that once L is known each (x, y) pair costs two triangular solves. Factors are taken from an
+ * IncrementalCholesky, which caches them by conditioning set (in any order) and builds each from the factor
+ * of a smaller set, and the solves use per-thread scratch arrays, so searches that test many pairs against
+ * the same conditioning set do not refactor.
+ * <p>
+ * If the covariance matrix of the conditioning set, or of x, y and the conditioning set together, is singular
+ * to within rounding, the partial correlation is calculated by inversion as before, using
+ * StatUtils.partialCorrelation. The covariance matrix must not be changed while this is in use.
+ *
+ * @author Joseph Ramsey
+ */
+public final class CachedPartialCorrelation {
+
+    /**
+     * The default maximum number of cached factors.
+     */
+    public static final int DEFAULT_MAX_CACHED_FACTORS = 10000;
+
+    // Pivots and residual variances this small relative to the variance are treated as zero.
+    private static final double TOLERANCE = IncrementalCholesky.SINGULARITY_TOLERANCE;
+
+    private final ICovarianceMatrix covMatrix;
+    private final IncrementalCholesky cholesky;
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    //==========================CONSTRUCTORS=============================//
+
+    public CachedPartialCorrelation(ICovarianceMatrix covMatrix) {
+        this(covMatrix, DEFAULT_MAX_CACHED_FACTORS);
+    }
+
+    /**
+     * @param covMatrix        The covariance matrix partial correlations are calculated from.
+     * @param maxCachedFactors The maximum number of conditioning set factors to keep.
+     */
+    public CachedPartialCorrelation(ICovarianceMatrix covMatrix, int maxCachedFactors) {
+        if (covMatrix == null) throw new NullPointerException("Covariance matrix not specified.");
+
+        if (maxCachedFactors < 1) {
+            throw new IllegalArgumentException("Maximum number of cached factors must be at least 1: "
+                    + maxCachedFactors);
+        }
+
+        this.covMatrix = covMatrix;
+        this.cholesky = new IncrementalCholesky(covMatrix, maxCachedFactors);
+    }
+
+    //==========================PUBLIC METHODS=============================//
+
+    /**
+     * @return the partial correlation of x and y given z, where these are indices into the covariance matrix.
+     */
+    public double partialCorrelation(int x, int y, int... z) {
+        return partialCorrelation(x, y, z, z.length);
+    }
+
+    /**
+     * @return the partial correlation of x and y given the first numZ indices of z. z is not modified, so it
+     * may be a buffer reused by the caller.
+     */
+    public double partialCorrelation(int x, int y, int[] z, int numZ) {
+        if (numZ == 0) {
+            double r = covMatrix.getValue(x, y)
+                    / Math.sqrt(covMatrix.getValue(x, x) * covMatrix.getValue(y, y));
+            return 1.0 - r * r > TOLERANCE ? r : byInversion(x, y, z, 0);
+        }
+
+        // The factor is the same for any order of the conditioning set, so it is keyed by the sorted indices.
+        int[] sorted = Arrays.copyOf(z, numZ);
+        Arrays.sort(sorted);
+
+        double[] factor = cholesky.factor(sorted);
+
+        if (factor == null) {
+            return byInversion(x, y, z, numZ);
+        }
+
+        Scratch s = scratch.get();
+        s.ensureCapacity(numZ);
+        double[] a = s.a;
+        double[] b = s.b;
+
+        // Forward substitution, L a = S_Zx and L b = S_Zy.
+        for (int i = 0; i < numZ; i++) {
+            int row = i * (i + 1) / 2;
+            double sa = covMatrix.getValue(sorted[i], x);
+            double sb = covMatrix.getValue(sorted[i], y);
+
+            for (int j = 0; j < i; j++) {
+                sa -= factor[row + j] * a[j];
+                sb -= factor[row + j] * b[j];
+            }
+
+            a[i] = sa / factor[row + i];
+            b[i] = sb / factor[row + i];
+        }
+
+        double ab = 0.0, aa = 0.0, bb = 0.0;
+
+        for (int i = 0; i < numZ; i++) {
+            ab += a[i] * b[i];
+            aa += a[i] * a[i];
+            bb += b[i] * b[i];
+        }
+
+        double vx = covMatrix.getValue(x, x);
+        double vy = covMatrix.getValue(y, y);
+        double sxx = vx - aa;
+        double syy = vy - bb;
+
+        if (!(sxx > TOLERANCE * vx) || !(syy > TOLERANCE * vy)) {
+            return byInversion(x, y, z, numZ);
+        }
+
+        double r = (covMatrix.getValue(x, y) - ab) / Math.sqrt(sxx * syy);
+
+        // The whole covariance matrix of x, y and z is singular.
+        if (!(1.0 - r * r > TOLERANCE)) {
+            return byInversion(x, y, z, numZ);
+        }
+
+        return r;
+    }
+
+    /**
+     * @return the number of factors currently cached, including those of the sorted prefixes of the
+     * conditioning sets.
+     */
+    public int getNumCachedFactors() {
+        return cholesky.getNumCachedFactors();
+    }
+
+    public int getMaxCachedFactors() {
+        return cholesky.getMaxCachedFactors();
+    }
+
+    /**
+     * Removes all cached factors.
+     */
+    public void clear() {
+        cholesky.clear();
+    }
+
+    //==========================PRIVATE METHODS=============================//
+
+    private double byInversion(int x, int y, int[] z, int numZ) {
+        int[] indices = new int[numZ + 2];
+        indices[0] = x;
+        indices[1] = y;
+        System.arraycopy(z, 0, indices, 2, numZ);
+        return StatUtils.partialCorrelation(covMatrix.getSelection(indices, indices));
+    }
+
+    private static final class Scratch {
+        private double[] a = new double[8];
+        private double[] b = new double[8];
+
+        void ensureCapacity(int n) {
+            if (a.length < n) {
+                int capacity = Math.max(n, 2 * a.length);
+                a = new double[capacity];
+                b = new double[capacity];
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.TetradMatrix;
+import edu.cmu.tetrad.util.TetradMetrics;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wraps an independence test so that the results of tests are looked up in an IndependenceTestCache before they
+ * are calculated. Several CachingIndependenceTests over the same variables may share one cache--one for each search
+ * of a model comparison over the same data, say--so that facts tested by one search are not tested again by the
+ * next. Results are cached by alpha, so the tests need not have the same alpha. The cache may also be saved to a
+ * file and loaded by a later run on the same data.
+ * <p>
+ * The cache may be used from several threads, and getPValue() and getScore() are those of the most recent test
+ * done by the calling thread. Since tests keep the p-value of the last test they did, the wrapped test is called by
+ * one thread at a time, which reads its judgment, p-value and score together; lookups in the cache are not
+ * serialized.
+ *
+ * @author Joseph Ramsey
+ */
+public class CachingIndependenceTest implements IndependenceTest {
+
+    private static final TetradMetrics.Counter HITS = SearchMetrics.counter(SearchMetrics.TEST_CACHE_HITS);
+    private static final TetradMetrics.Counter MISSES = SearchMetrics.counter(SearchMetrics.TEST_CACHE_MISSES);
+
+    private static final int CACHE_FILE_MAGIC = 0x49544343;
+    private static final int CACHE_FILE_VERSION = 2;
+
+    // The wrapped test.
+    private final IndependenceTest test;
+
+    // The cache of results.
+    private final IndependenceTestCache cache;
+
+    // The index of each variable of the test.
+    private final Map<Node, Integer> indices = new HashMap<>();
+
+    // The result of the most recent test done by each thread.
+    private final ThreadLocal<IndependenceTestCache.Result> lastResult = new ThreadLocal<>();
+
+    /**
+     * Wraps the given test using a cache of default size.
+     */
+    public CachingIndependenceTest(IndependenceTest test) {
+        this(test, new IndependenceTestCache());
+    }
+
+    /**
+     * Wraps the given test using the given cache, which may be shared with other tests over the same variables,
+     * in the same order.
+     */
+    public CachingIndependenceTest(IndependenceTest test, IndependenceTestCache cache) {
+        if (test == null) throw new NullPointerException("Test not provided.");
+        if (cache == null) throw new NullPointerException("Cache not provided.");
+        this.test = test;
+        this.cache = cache;
+
+        List<Node> variables = test.getVariables();
+
+        for (int i = 0; i < variables.size(); i++) {
+            indices.put(variables.get(i), i);
+        }
+    }
+
+    /**
+     * @return a caching test over the subset of the variables, with a cache of its own, since its variables are
+     * indexed differently.
+     */
+    @Override
+    public IndependenceTest indTestSubset(List<Node> vars) {
+        return new CachingIndependenceTest(test.indTestSubset(vars), new IndependenceTestCache(cache.getMaxSize()));
+    }
+
+    @Override
+    public boolean isIndependent(Node x, Node y, List<Node> z) {
+        int[] _z = new int[z.size()];
+        Integer _x = indices.get(x);
+        Integer _y = indices.get(y);
+        boolean indexed = _x != null && _y != null;
+
+        for (int i = 0; i < z.size() && indexed; i++) {
+            Integer index = indices.get(z.get(i));
+            if (index == null) indexed = false;
+            else _z[i] = index;
+        }
+
+        double alpha = test.getAlpha();
+        IndependenceTestCache.Result result = indexed ? cache.get(_x, _y, _z, alpha) : null;
+
+        if (result == null) {
+            MISSES.inc();
+
+            synchronized (test) {
+                alpha = test.getAlpha();
+                result = test(x, y, z);
+            }
+
+            if (indexed) {
+                cache.add(_x, _y, _z, alpha, result);
+            }
+        } else {
+            HITS.inc();
+        }
+
+        lastResult.set(result);
+        return result.isIndependent();
+    }
+
+    @Override
+    public boolean isIndependent(Node x, Node y, Node... z) {
+        return isIndependent(x, y, Arrays.asList(z));
+    }
+
+    @Override
+    public boolean isDependent(Node x, Node y, List<Node> z) {
+        return !isIndependent(x, y, z);
+    }
+
+    @Override
+    public boolean isDependent(Node x, Node y, Node... z) {
+        return !isIndependent(x, y, z);
+    }
+
+    /**
+     * @return the p value of the most recent test done by the calling thread.
+     */
+    @Override
+    public double getPValue() {
+        IndependenceTestCache.Result result = lastResult.get();
+        return result == null ? test.getPValue() : result.getPValue();
+    }
+
+    /**
+     * @return the score of the most recent test done by the calling thread.
+     */
+    @Override
+    public double getScore() {
+        IndependenceTestCache.Result result = lastResult.get();
+        return result == null ? test.getScore() : result.getScore();
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return test.getVariables();
+    }
+
+    @Override
+    public Node getVariable(String name) {
+        return test.getVariable(name);
+    }
+
+    @Override
+    public List<String> getVariableNames() {
+        return test.getVariableNames();
+    }
+
+    @Override
+    public boolean determines(List<Node> z, Node y) {
+        return test.determines(z, y);
+    }
+
+    @Override
+    public double getAlpha() {
+        return test.getAlpha();
+    }
+
+    /**
+     * Sets the alpha of the wrapped test. Results for other alphas stay in the cache, which may be shared.
+     */
+    @Override
+    public void setAlpha(double alpha) {
+        synchronized (test) {
+            test.setAlpha(alpha);
+        }
+    }
+
+    @Override
+    public DataModel getData() {
+        return test.getData();
+    }
+
+    @Override
+    public ICovarianceMatrix getCov() {
+        return test.getCov();
+    }
+
+    @Override
+    public List<DataSet> getDataSets() {
+        return test.getDataSets();
+    }
+
+    @Override
+    public int getSampleSize() {
+        return test.getSampleSize();
+    }
+
+    @Override
+    public List<TetradMatrix> getCovMatrices() {
+        return test.getCovMatrices();
+    }
+
+    /**
+     * @return the wrapped test.
+     */
+    public IndependenceTest getTest() {
+        return test;
+    }
+
+    /**
+     * @return the cache, for hit and miss counts.
+     */
+    public IndependenceTestCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Writes the cache to the given file, with the class of the wrapped test, its sample size and the names of its
+     * variables, so that load(File) can tell whether the file is for the same test.
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(CACHE_FILE_MAGIC);
+            out.writeInt(CACHE_FILE_VERSION);
+            out.writeUTF(test.getClass().getName());
+            out.writeInt(test.getSampleSize());
+
+            List<String> names = test.getVariableNames();
+            out.writeInt(names.size());
+
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+
+            cache.writeEntries(out);
+        }
+
+        // Replaced in one step, so a crash leaves either the old file or the new one.
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds to the cache the results saved to the given file by save(File). The data are not checked, only their
+     * variables and sample size, so the file should be loaded only for the data it was saved for.
+     *
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if the file was not saved by a test of the same class, sample size and
+     *                                  variables.
+     */
+    public void load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CACHE_FILE_MAGIC) {
+                throw new IllegalArgumentException("Not an independence test cache: " + file);
+            }
+
+            int version = in.readInt();
+
+            if (version != CACHE_FILE_VERSION) {
+                throw new IllegalArgumentException("Unsupported independence test cache version: " + version);
+            }
+
+            String testClass = in.readUTF();
+
+            if (!testClass.equals(test.getClass().getName())) {
+                throw new IllegalArgumentException("Cache is for a different test: " + testClass);
+            }
+
+            int sampleSize = in.readInt();
+
+            if (sampleSize != test.getSampleSize()) {
+                throw new IllegalArgumentException("Cache is for a different sample size: " + sampleSize);
+            }
+
+            List<String> names = test.getVariableNames();
+            int numVariables = in.readInt();
+
+            if (numVariables != names.size()) {
+                throw new IllegalArgumentException("Cache is for " + numVariables + " variables, not "
+                        + names.size() + ".");
+            }
+
+            for (String name : names) {
+                String _name = in.readUTF();
+
+                if (!_name.equals(name)) {
+                    throw new IllegalArgumentException("Cache is for different variables: " + _name);
+                }
+            }
+
+            cache.readEntries(in);
+        }
+    }
+
+    public String toString() {
+        return test.toString();
+    }
+
+    // Does the test, reading its p-value and score before it does another. The caller holds the test's lock.
+    private IndependenceTestCache.Result test(Node x, Node y, List<Node> z) {
+        boolean independent = test.isIndependent(x, y, z);
+        double score;
+
+        try {
+            score = test.getScore();
+        } catch (UnsupportedOperationException e) {
+            score = Double.NaN;
+        }
+
+        return new IndependenceTestCache.Result(independent, test.getPValue(), score);
+    }
+}
@@ -0,0 +1,171 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.TetradMetrics;
+
+import java.util.List;
+
+/**
+ * Wraps a score so that local scores are looked up in a LocalScoreCache before they are calculated. The cache
+ * may be shared among threads, so a single CachingScore may be passed to a parallel search such as FGS.
+ * <p>
+ * Score differences are calculated from cached local scores when the wrapped score is a DecomposableScore, one
+ * that defines them as differences of its local scores; otherwise they are passed through to the wrapped score.
+ *
+ * @author Joseph Ramsey
+ */
+public class CachingScore implements Score {
+
+    private static final TetradMetrics.Counter HITS = SearchMetrics.counter(SearchMetrics.SCORE_CACHE_HITS);
+    private static final TetradMetrics.Counter MISSES = SearchMetrics.counter(SearchMetrics.SCORE_CACHE_MISSES);
+
+    // The wrapped score.
+    private final Score score;
+
+    // The cache of local scores.
+    private final LocalScoreCache cache;
+
+    // True if localScoreDiff(x, y, z) = localScore(y, z + x) - localScore(y, z) for the wrapped score.
+    private final boolean decomposable;
+
+    /**
+     * Wraps the given score using a cache of default size.
+     */
+    public CachingScore(Score score) {
+        this(score, new LocalScoreCache());
+    }
+
+    /**
+     * Wraps the given score using the given cache, which should not be shared with any other score.
+     */
+    public CachingScore(Score score, LocalScoreCache cache) {
+        if (score == null) throw new NullPointerException("Score not provided.");
+        if (cache == null) throw new NullPointerException("Cache not provided.");
+        this.score = score;
+        this.cache = cache;
+        this.decomposable = score instanceof DecomposableScore;
+    }
+
+    @Override
+    public double localScore(int node, int... parents) {
+        double _score = cache.get(node, parents);
+
+        if (Double.isNaN(_score)) {
+            MISSES.inc();
+            _score = score.localScore(node, parents);
+            cache.add(node, parents, _score);
+        } else {
+            HITS.inc();
+        }
+
+        return _score;
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y, int[] z) {
+        if (!decomposable) return score.localScoreDiff(x, y, z);
+        return localScore(y, append(z, x)) - localScore(y, z);
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y) {
+        if (!decomposable) return score.localScoreDiff(x, y);
+        return localScore(y, x) - localScore(y);
+    }
+
+    @Override
+    public double localScore(int node, int parent) {
+        return localScore(node, new int[]{parent});
+    }
+
+    @Override
+    public double localScore(int node) {
+        return localScore(node, new int[0]);
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return score.getVariables();
+    }
+
+    @Override
+    public boolean isEffectEdge(double bump) {
+        return score.isEffectEdge(bump);
+    }
+
+    @Override
+    public boolean isDiscrete() {
+        return score.isDiscrete();
+    }
+
+    @Override
+    public double getParameter1() {
+        return score.getParameter1();
+    }
+
+    /**
+     * Sets the parameter of the wrapped score. Since this changes its local scores, the cache is cleared.
+     */
+    @Override
+    public void setParameter1(double alpha) {
+        score.setParameter1(alpha);
+        cache.clear();
+    }
+
+    @Override
+    public int getSampleSize() {
+        return score.getSampleSize();
+    }
+
+    @Override
+    public Node getVariable(String targetName) {
+        return score.getVariable(targetName);
+    }
+
+    @Override
+    public int getMaxIndegree() {
+        return score.getMaxIndegree();
+    }
+
+    /**
+     * @return the wrapped score.
+     */
+    public Score getScore() {
+        return score;
+    }
+
+    /**
+     * @return the cache, for hit and miss counts.
+     */
+    public LocalScoreCache getCache() {
+        return cache;
+    }
+
+    private int[] append(int[] parents, int extra) {
+        int[] all = new int[parents.length + 1];
+        System.arraycopy(parents, 0, all, 0, parents.length);
+        all[parents.length] = extra;
+        return all;
+    }
+}
@@ -22,6 +22,7 @@
 package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.CellTable;
+import edu.cmu.tetrad.data.DiscreteCounts;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.DiscreteVariable;
 import edu.cmu.tetrad.util.CombinationIterator;
@@ -52,6 +53,11 @@ public class ChiSquareTest {
      */
     private CellTable cellTable;
 
+    /**
+     * Counts to draw the cell table from instead of the data, if set.
+     */
+    private DiscreteCounts counts;
+
     /**
      * The significance level of the test.
      */
@@ -94,7 +100,7 @@ public class ChiSquareTest {
 
         // Reset the cell table for the columns referred to in
         // 'testIndices.' Do cell coefs for those columns.
-        this.getCellTable().addToTable(getDataSet(), testIndices);
+        addToCellTable(testIndices);
 
         // Indicator arrays to tell the cell table which margins
         // to calculate. For x _||_ y | z1, z2, ..., we want to
@@ -204,7 +210,7 @@ public class ChiSquareTest {
 
         // Reset the cell table for the columns referred to in
         // 'testIndices.' Do cell coefs for those columns.
-        this.getCellTable().addToTable(getDataSet(), testIndices);
+        addToCellTable(testIndices);
 
         // Indicator arrays to tell the cell table which margins
         // to calculate. For x _||_ y | z1, z2, ..., we want to
@@ -374,6 +380,34 @@ public class ChiSquareTest {
         return cellTable;
     }
 
+    public DiscreteCounts getCounts() {
+        return counts;
+    }
+
+    /**
+     * Sets counts over the same variables as the data set, to be used instead of counting the data for each
+     * test, or null to count the data.
+     */
+    public void setCounts(DiscreteCounts counts) {
+        if (counts != null && !counts.getVariables().equals(dataSet.getVariables())) {
+            throw new IllegalArgumentException("Counts must be over the variables of the data set.");
+        }
+
+        this.counts = counts;
+    }
+
+    /**
+     * Resets the cell table to the columns referred to in testIndices, taking counts from the counts, if set,
+     * or else from the data.
+     */
+    protected final void addToCellTable(int[] testIndices) {
+        if (counts != null) {
+            getCellTable().addToTable(counts, testIndices);
+        } else {
+            getCellTable().addToTable(getDataSet(), testIndices);
+        }
+    }
+
     //===============================CLASSES==============================//
 
     /**
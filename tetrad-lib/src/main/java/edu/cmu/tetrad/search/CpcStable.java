@@ -373,7 +373,7 @@ public final class CpcStable implements GraphSearch {
 
 //    private void orientUnshieldedTriplesConcurrent(final IKnowledge knowledge,
 //                                                   final IndependenceTest test, final int depth) {
-//        ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+//        ForkJoinPool pool = TetradExecutors.getInstance().getPool();
 //
 //        TetradLogger.getInstance().log("info", "Starting Collider Orientation:");
 //
@@ -0,0 +1,138 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.util.TetradExecutors;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Averages a score over the data sets of an IMaGES score, calculating the
+ * score for the data sets in parallel when there are enough of them to be
+ * worth it. The scores are averaged in order of data set whether they are
+ * calculated in parallel or not, so the average does not depend on how the
+ * work was split.
+ * <p>
+ * A search like FGS already scores from all the threads of the pool, so
+ * within a score call the data sets are split into chunks of several data
+ * sets each, and a call from a thread of the pool forks its chunks there
+ * rather than waiting on the pool.
+ *
+ * @author Joseph Ramsey
+ */
+final class DataSetAverage {
+
+    /**
+     * The number of data sets scored by each task.
+     */
+    static final int CHUNK = 4;
+
+    /**
+     * The least number of data sets scored in parallel.
+     */
+    static final int MIN_PARALLEL = 2 * CHUNK;
+
+    /**
+     * The score for one data set.
+     */
+    interface DataSetScore {
+        double score(int dataSet);
+    }
+
+    private DataSetAverage() {
+    }
+
+    /**
+     * @return the average of the scores for numDataSets data sets. If skipNaN
+     * is true, NaN scores are left out of the average; otherwise, they make
+     * it NaN.
+     */
+    static double average(int numDataSets, boolean skipNaN, DataSetScore score) {
+        ForkJoinPool pool = TetradExecutors.getInstance().getPool();
+
+        if (numDataSets < MIN_PARALLEL || pool.getParallelism() == 1) {
+            double sum = 0.0;
+            int count = 0;
+
+            for (int k = 0; k < numDataSets; k++) {
+                double _score = score.score(k);
+
+                if (!(skipNaN && Double.isNaN(_score))) {
+                    sum += _score;
+                    count++;
+                }
+            }
+
+            return sum / count;
+        }
+
+        double[] scores = new double[numDataSets];
+        ScoreTask task = new ScoreTask(score, scores, 0, numDataSets);
+
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+
+        double sum = 0.0;
+        int count = 0;
+
+        for (double _score : scores) {
+            if (!(skipNaN && Double.isNaN(_score))) {
+                sum += _score;
+                count++;
+            }
+        }
+
+        return sum / count;
+    }
+
+    // Scores the data sets in [from, to) into scores.
+    private static class ScoreTask extends RecursiveAction {
+        private final DataSetScore score;
+        private final double[] scores;
+        private final int from;
+        private final int to;
+
+        ScoreTask(DataSetScore score, double[] scores, int from, int to) {
+            this.score = score;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                for (int k = from; k < to; k++) {
+                    scores[k] = score.score(k);
+                }
+            } else {
+                int mid = (from + to) / 2;
+                invokeAll(new ScoreTask(score, scores, from, mid), new ScoreTask(score, scores, mid, to));
+            }
+        }
+    }
+}
@@ -29,7 +29,7 @@ import java.util.List;
 /**
  * Calculates the BDeu score.
  */
-public class DirichletScore implements LocalDiscreteScore, Score {
+public class DirichletScore implements LocalDiscreteScore, Score, DecomposableScore {
     private List<Node> variables;
     private int[][] data;
     private int sampleSize;
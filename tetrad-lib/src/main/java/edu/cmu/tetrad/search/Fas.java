@@ -23,6 +23,7 @@ package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
+import edu.cmu.tetrad.data.KnowledgeIndex;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
 import edu.cmu.tetrad.util.TetradLogger;
@@ -66,6 +67,11 @@ public class Fas implements IFas {
      */
     private IKnowledge knowledge = new Knowledge2();
 
+    /**
+     * The knowledge compiled against the nodes being searched over.
+     */
+    private KnowledgeIndex knowledgeIndex;
+
     /**
      * The maximum number of variables conditioned on in any conditional independence test. If the depth is -1, it will
      * be taken to be the maximum value, which is 1000. Otherwise, it should be set to a non-negative integer.
@@ -172,6 +178,8 @@ public class Fas implements IFas {
             adjacencies.put(node, new TreeSet<Node>());
         }
 
+        knowledgeIndex = new KnowledgeIndex(knowledge, nodes);
+
         for (int d = 0; d <= _depth; d++) {
             boolean more;
 
@@ -223,6 +231,8 @@ public class Fas implements IFas {
             adjacencies.put(node, new TreeSet<Node>());
         }
 
+        knowledgeIndex = new KnowledgeIndex(knowledge, nodes);
+
         for (int d = 0; d <= _depth; d++) {
             boolean more;
 
@@ -305,7 +315,7 @@ public class Fas implements IFas {
                 }
 
                 boolean noEdgeRequired =
-                        knowledge.noEdgeRequired(x.getName(), y.getName());
+                        knowledgeIndex.noEdgeRequired(x, y);
 
 
                 if (independent && noEdgeRequired) {
@@ -356,11 +366,7 @@ public class Fas implements IFas {
     }
 
     private boolean forbiddenEdge(Node x, Node y) {
-        String name1 = x.getName();
-        String name2 = y.getName();
-
-        if (knowledge.isForbidden(name1, name2) &&
-                knowledge.isForbidden(name2, name1)) {
+        if (knowledgeIndex.isForbidden(x, y) && knowledgeIndex.isForbidden(y, x)) {
             this.logger.log("edgeRemoved", "Removed " + Edges.undirectedEdge(x, y) + " because it was " +
                     "forbidden by background knowledge.");
 
@@ -384,7 +390,7 @@ public class Fas implements IFas {
             for (Node y : adjx) {
                 List<Node> _adjx = new ArrayList<>(adjacencies.get(x));
                 _adjx.remove(y);
-                List<Node> ppx = possibleParents(x, _adjx, knowledge);
+                List<Node> ppx = possibleParents(x, _adjx);
 
                 if (ppx.size() >= depth) {
                     ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
@@ -409,7 +415,7 @@ public class Fas implements IFas {
                         }
 
                         boolean noEdgeRequired =
-                                knowledge.noEdgeRequired(x.getName(), y.getName());
+                                knowledgeIndex.noEdgeRequired(x, y);
 
                         if (independent && noEdgeRequired) {
                             adjacencies.get(x).remove(y);
@@ -433,15 +439,11 @@ public class Fas implements IFas {
         return freeDegree(nodes, adjacencies) > depth;
     }
 
-    private List<Node> possibleParents(Node x, List<Node> adjx,
-                                       IKnowledge knowledge) {
+    private List<Node> possibleParents(Node x, List<Node> adjx) {
         List<Node> possibleParents = new LinkedList<Node>();
-        String _x = x.getName();
 
         for (Node z : adjx) {
-            String _z = z.getName();
-
-            if (possibleParentOf(_z, _x, knowledge)) {
+            if (possibleParentOf(z, x)) {
                 possibleParents.add(z);
             }
         }
@@ -449,8 +451,8 @@ public class Fas implements IFas {
         return possibleParents;
     }
 
-    private boolean possibleParentOf(String z, String x, IKnowledge knowledge) {
-        return !knowledge.isForbidden(z, x) && !knowledge.isRequired(x, z);
+    private boolean possibleParentOf(Node z, Node x) {
+        return !knowledgeIndex.isForbidden(z, x) && !knowledgeIndex.isRequired(x, z);
     }
 
     public int getNumIndependenceTests() {
@@ -93,13 +93,19 @@ public class FasStableConcurrent implements IFas {
     private boolean verbose = false;
 
     // The concurrency pool.
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    private ForkJoinPool pool = TetradExecutors.getInstance().getPool();
 
     /**
      * Where verbose output is sent.
      */
     private PrintStream out = System.out;
 
+    // Metrics; see SearchMetrics.
+    private static final TetradMetrics.Gauge DEPTH = SearchMetrics.gauge(SearchMetrics.FAS_DEPTH);
+    private static final TetradMetrics.Gauge NODES = SearchMetrics.gauge(SearchMetrics.FAS_NODES);
+    private static final TetradMetrics.Gauge NODES_DONE = SearchMetrics.gauge(SearchMetrics.FAS_NODES_DONE);
+    private static final TetradMetrics.Counter EDGES_REMOVED = SearchMetrics.counter(SearchMetrics.FAS_EDGES_REMOVED);
+
     int chunk = 50;
 
 
@@ -139,7 +145,7 @@ public class FasStableConcurrent implements IFas {
         // x. It is hoped (i.e. true in the large sample limit) that true adjacencies are never removed.
         Graph graph = new EdgeListGraphSingleConnections(test.getVariables());
 
-        sepsets = new SepsetMap();
+        sepsets = new SepsetMap(test.getVariables());
 
         //this is bad when starting from init graph --AJ
         sepsets.setReturnEmptyIfNotSet(true);
@@ -162,12 +168,20 @@ public class FasStableConcurrent implements IFas {
         for (int d = 0; d <= _depth; d++) {
             boolean more;
 
+            DEPTH.set(d);
+            NODES.set(nodes.size());
+            NODES_DONE.set(0);
+            TetradMetrics.Timer timer = SearchMetrics.timer(SearchMetrics.FAS_PHASE_DEPTH + d);
+            long start = timer.start();
+
             if (d == 0) {
                 more = searchAtDepth0(nodes, test, adjacencies);
             } else {
                 more = searchAtDepth(nodes, test, adjacencies, d);
             }
 
+            timer.stop(start);
+
             if (!more) {
                 break;
             }
@@ -306,6 +320,8 @@ public class FasStableConcurrent implements IFas {
                                     knowledge.noEdgeRequired(x.getName(), y.getName());
 
                             if (independent && noEdgeRequired) {
+                                EDGES_REMOVED.inc();
+
                                 if (!sepsets.isReturnEmptyIfNotSet()) {
                                     getSepsets().set(x, y, empty);
                                 }
@@ -327,6 +343,8 @@ public class FasStableConcurrent implements IFas {
                                 }
                             }
                         }
+
+                        NODES_DONE.add(1);
                     }
 
                     return true;
@@ -463,7 +481,7 @@ public class FasStableConcurrent implements IFas {
                                             knowledge.noEdgeRequired(x.getName(), y.getName());
 
                                     if (independent && noEdgeRequired) {
-                                        adjacencies.get(x).remove(y);
+                                        if (adjacencies.get(x).remove(y)) EDGES_REMOVED.inc();
                                         adjacencies.get(y).remove(x);
 
                                         getSepsets().set(x, y, condSet);
@@ -479,6 +497,8 @@ public class FasStableConcurrent implements IFas {
                                 }
                             }
                         }
+
+                        NODES_DONE.add(1);
                     }
 
                     return true;
@@ -0,0 +1,833 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.IKnowledge;
+import edu.cmu.tetrad.data.Knowledge2;
+import edu.cmu.tetrad.data.KnowledgeIndex;
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.util.TetradExecutors;
+import edu.cmu.tetrad.util.TetradLogger;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implements the PC-Stable fast adjacency search (see FasStable) in parallel, scheduling the work by edge rather than
+ * by node. At each depth d, for each edge x--y still in the graph, the conditioning sets of size d drawn from the
+ * possible parents of x or of y (as they were at the start of the depth) are put in a fixed order and cut into
+ * batches, and the batches of all edges are run as tasks in a work-stealing pool. Once a set separating x and y is
+ * found, batches for that edge later in the order are skipped. Nodes of high degree are then spread over many threads
+ * instead of holding up the end of the depth on one.
+ * <p>
+ * The adjacencies are those of PC-Stable, and neither they nor the sepsets depend on the number of threads or the
+ * order in which tasks run: the sepset for x--y is the first separating set in the order, which is the subsets of
+ * the possible parents of the lower-indexed variable, in ChoiceGenerator order, then those of the other. (FasStable
+ * keeps whichever separating set it finds last.) The tests must be thread-safe.
+ * <p>
+ * Throughput for each depth is available from getDepthStats.
+ *
+ * @author Joseph Ramsey
+ */
+public class FasStableParallel implements IFas {
+
+    // Saturation value for the numbers of conditioning sets.
+    private static final long MAX_COUNT = 1L << 62;
+
+    /**
+     * The independence test. This should be appropriate to the types
+     */
+    private IndependenceTest test;
+
+    /**
+     * Specification of which edges are forbidden or required.
+     */
+    private IKnowledge knowledge = new Knowledge2();
+
+    /**
+     * The maximum number of variables conditioned on in any conditional independence test. If the depth is -1, it will
+     * be taken to be the maximum value, which is 1000. Otherwise, it should be set to a non-negative integer.
+     */
+    private int depth = 1000;
+
+    /**
+     * The number of independence tests.
+     */
+    private final AtomicLong numIndependenceTests = new AtomicLong();
+
+    private TetradLogger logger = TetradLogger.getInstance();
+
+    /**
+     * The sepsets found during the search.
+     */
+    private SepsetMap sepsets = new SepsetMap();
+
+    /**
+     * The depth 0 graph, specified initially.
+     */
+    private Graph initialGraph;
+
+    /**
+     * Set to true if verbose output is desired.
+     */
+    private boolean verbose = false;
+
+    // The concurrency pool.
+    private ForkJoinPool pool = TetradExecutors.getInstance().getPool();
+
+    /**
+     * Where verbose output is sent.
+     */
+    private PrintStream out = System.out;
+
+    // The number of conditioning sets tested by a task before it is split.
+    private int batchSize = 32;
+
+    private List<DepthStats> depthStats = new ArrayList<>();
+
+    private long elapsedTime = 0;
+
+    private List<Node> nodes;
+
+    //==========================CONSTRUCTORS=============================//
+
+    /**
+     * Constructs a new FastAdjacencySearch.
+     */
+    public FasStableParallel(IndependenceTest test) {
+        this.test = test;
+    }
+
+    /**
+     * Constructs a new FastAdjacencySearch.
+     */
+    public FasStableParallel(Graph initialGraph, IndependenceTest test) {
+        this.test = test;
+        this.initialGraph = initialGraph;
+    }
+
+    //==========================PUBLIC METHODS===========================//
+
+    /**
+     * Discovers all adjacencies in data.  The procedure is to remove edges in the graph which connect pairs of
+     * variables which are independent conditional on some other set of variables in the graph (the "sepset"). These are
+     * removed in tiers.  First, edges which are independent conditional on zero other variables are removed, then edges
+     * which are independent conditional on one other variable are removed, then two, then three, and so on, until no
+     * more edges can be removed from the graph.  The edges which remain in the graph after this procedure are the
+     * adjacencies in the data.
+     * <p>
+     * An exception thrown by the independence test is not taken as a judgment of independence or dependence;
+     * it stops the search and is rethrown from here.
+     *
+     * @return the undirected graph of adjacencies; the sepsets are given by getSepsets.
+     */
+    public Graph search() {
+        return search(test.getVariables());
+    }
+
+    /**
+     * Searches over the given variables of the test only.
+     */
+    public Graph search(List<Node> nodes) {
+        this.logger.log("info", "Starting Fast Adjacency Search.");
+        long start = System.currentTimeMillis();
+
+        this.nodes = new ArrayList<>(nodes);
+        this.sepsets = new SepsetMap(nodes);
+        this.depthStats = new ArrayList<>();
+        this.numIndependenceTests.set(0);
+
+        KnowledgeIndex knowledgeIndex = new KnowledgeIndex(knowledge, this.nodes);
+
+        int _depth = depth;
+
+        if (_depth == -1) {
+            _depth = 1000;
+        }
+
+        int[][] adj = searchAtDepth0(knowledgeIndex);
+
+        for (int d = 1; d <= _depth; d++) {
+            if (maxFreeDegree(adj) < d) {
+                break;
+            }
+
+            adj = searchAtDepth(adj, d, knowledgeIndex);
+        }
+
+        Graph graph = new EdgeListGraphSingleConnections(this.nodes);
+
+        for (int i = 0; i < adj.length; i++) {
+            for (int j : adj[i]) {
+                if (i < j) {
+                    graph.addUndirectedEdge(this.nodes.get(i), this.nodes.get(j));
+                }
+            }
+        }
+
+        this.elapsedTime = System.currentTimeMillis() - start;
+        this.logger.log("info", "Finishing Fast Adjacency Search.");
+
+        return graph;
+    }
+
+    /**
+     * @return the throughput of each depth of the last search, starting with depth 0.
+     */
+    public List<DepthStats> getDepthStats() {
+        return Collections.unmodifiableList(depthStats);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of conditioning sets a task tests before it splits off the rest of its work, by default 32.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        this.batchSize = batchSize;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the pool the tests are run in; by default the default pool of TetradExecutors.
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) throw new NullPointerException("Pool not provided.");
+        this.pool = pool;
+    }
+
+    @Override
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        if (depth < -1) {
+            throw new IllegalArgumentException(
+                    "Depth must be -1 (unlimited) or >= 0.");
+        }
+
+        this.depth = depth;
+    }
+
+    @Override
+    public boolean isAggressivelyPreventCycles() {
+        return false;
+    }
+
+    @Override
+    public void setAggressivelyPreventCycles(boolean aggressivelyPreventCycles) {
+
+    }
+
+    @Override
+    public IndependenceTest getIndependenceTest() {
+        return test;
+    }
+
+    public IKnowledge getKnowledge() {
+        return knowledge;
+    }
+
+    public void setKnowledge(IKnowledge knowledge) {
+        if (knowledge == null) {
+            throw new NullPointerException("Cannot set knowledge to null");
+        }
+        this.knowledge = knowledge;
+    }
+
+    public int getNumIndependenceTests() {
+        return (int) Math.min(Integer.MAX_VALUE, numIndependenceTests.get());
+    }
+
+    @Override
+    public void setTrueGraph(Graph trueGraph) {
+
+    }
+
+    @Override
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public List<Triple> getAmbiguousTriples(Node node) {
+        return null;
+    }
+
+    public SepsetMap getSepsets() {
+        return sepsets;
+    }
+
+    public void setInitialGraph(Graph initialGraph) {
+        this.initialGraph = initialGraph;
+    }
+
+    /**
+     * The logger, by default the empty logger.
+     */
+    public TetradLogger getLogger() {
+        return logger;
+    }
+
+    public void setLogger(TetradLogger logger) {
+        this.logger = logger;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    @Override
+    public int getNumFalseDependenceJudgments() {
+        return 0;
+    }
+
+    @Override
+    public int getNumDependenceJudgments() {
+        return 0;
+    }
+
+    public void setOut(PrintStream out) {
+        if (out == null) throw new NullPointerException();
+        this.out = out;
+    }
+
+    public PrintStream getOut() {
+        return out;
+    }
+
+    /**
+     * The work done at one depth of a search.
+     */
+    public static final class DepthStats {
+        private final int depth;
+        private final int numEdges;
+        private final long numTests;
+        private final int numRemoved;
+        private final long elapsedMillis;
+
+        private DepthStats(int depth, int numEdges, long numTests, int numRemoved, long elapsedMillis) {
+            this.depth = depth;
+            this.numEdges = numEdges;
+            this.numTests = numTests;
+            this.numRemoved = numRemoved;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return the number of edges examined at this depth.
+         */
+        public int getNumEdges() {
+            return numEdges;
+        }
+
+        public long getNumTests() {
+            return numTests;
+        }
+
+        /**
+         * @return the number of edges removed at this depth.
+         */
+        public int getNumRemoved() {
+            return numRemoved;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getTestsPerSecond() {
+            return numTests / (Math.max(elapsedMillis, 1) / 1000.0);
+        }
+
+        public String toString() {
+            return "Depth " + depth + ": " + numEdges + " edges, " + numTests + " tests, " + numRemoved
+                    + " removed, " + elapsedMillis + " ms (" + Math.round(getTestsPerSecond()) + " tests/s)";
+        }
+    }
+
+    //==============================PRIVATE METHODS======================/
+
+    /**
+     * Tests each pair with the empty set and returns the adjacencies that remain, by index.
+     */
+    private int[][] searchAtDepth0(final KnowledgeIndex knowledgeIndex) {
+        long start = System.currentTimeMillis();
+        long tests0 = numIndependenceTests.get();
+        final int n = nodes.size();
+
+        // For each i, the j < i still adjacent to it.
+        final int[][] lower = new int[n][];
+        final boolean[][] initialAdjacent = initialAdjacencies();
+        final List<Node> empty = Collections.emptyList();
+
+        class Depth0Task extends RecursiveAction {
+            private final int from;
+            private final int to;
+
+            Depth0Task(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                long numPairs = ((long) to * (to - 1) - (long) from * (from - 1)) / 2;
+
+                if (to - from > 1 && numPairs > 4L * batchSize) {
+
+                    // Split so that the halves have about the same number of pairs.
+                    int mid = (int) Math.sqrt(((double) from * from + (double) to * to) / 2.0);
+                    mid = Math.max(from + 1, Math.min(to - 1, mid));
+                    invokeAll(new Depth0Task(from, mid), new Depth0Task(mid, to));
+                    return;
+                }
+
+                for (int i = from; i < to; i++) {
+                    int[] row = new int[i];
+                    int size = 0;
+
+                    for (int j = 0; j < i; j++) {
+                        if (initialAdjacent != null && !initialAdjacent[i][j]) {
+                            continue;
+                        }
+
+                        Node x = nodes.get(i);
+                        Node y = nodes.get(j);
+                        numIndependenceTests.incrementAndGet();
+                        boolean independent = test.isIndependent(x, y, empty);
+
+                        if (independent && knowledgeIndex.noEdgeRequired(i, j)) {
+                            getSepsets().set(x, y, empty);
+                        } else if (!(knowledgeIndex.isForbidden(i, j) && knowledgeIndex.isForbidden(j, i))) {
+                            row[size++] = j;
+                        }
+                    }
+
+                    int[] _row = new int[size];
+                    System.arraycopy(row, 0, _row, 0, size);
+                    lower[i] = _row;
+                }
+            }
+        }
+
+        if (n > 0) {
+            pool.invoke(new Depth0Task(0, n));
+        }
+
+        int[] degrees = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            for (int j : lower[i]) {
+                degrees[i]++;
+                degrees[j]++;
+            }
+        }
+
+        int[][] adj = new int[n][];
+        int numEdges = 0;
+
+        for (int i = 0; i < n; i++) {
+            adj[i] = new int[degrees[i]];
+            degrees[i] = 0;
+        }
+
+        for (int i = 0; i < n; i++) {
+            for (int j : lower[i]) {
+                adj[i][degrees[i]++] = j;
+                adj[j][degrees[j]++] = i;
+                numEdges++;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            Arrays.sort(adj[i]);
+        }
+
+        long numPairs = (long) n * (n - 1) / 2;
+        recordDepth(0, (int) Math.min(Integer.MAX_VALUE, numPairs), numIndependenceTests.get() - tests0,
+                (int) Math.min(Integer.MAX_VALUE, numPairs - numEdges), start);
+
+        return adj;
+    }
+
+    /**
+     * Tests the edges in adj with conditioning sets of size depth and returns the adjacencies that remain.
+     */
+    private int[][] searchAtDepth(int[][] adj, final int depth, KnowledgeIndex knowledgeIndex) {
+        long start = System.currentTimeMillis();
+        long tests0 = numIndependenceTests.get();
+
+        // The edges i--j, i < j, that could be removed, with their conditioning sets.
+        List<EdgeWork> work = new ArrayList<>();
+        int numEdges = 0;
+
+        for (int i = 0; i < adj.length; i++) {
+            for (int j : adj[i]) {
+                if (j < i) continue;
+                numEdges++;
+
+                if (!knowledgeIndex.noEdgeRequired(i, j)) continue;
+
+                int[] pp0 = possibleParents(i, j, adj[i], knowledgeIndex);
+                int[] pp1 = possibleParents(j, i, adj[j], knowledgeIndex);
+                long count0 = choose(pp0.length, depth);
+                long count1 = choose(pp1.length, depth);
+
+                if (count0 + count1 > 0) {
+                    work.add(new EdgeWork(i, j, pp0, pp1, count0, count1));
+                }
+            }
+        }
+
+        final EdgeWork[] edges = work.toArray(new EdgeWork[work.size()]);
+
+        // Cumulative numbers of conditioning sets, to weigh ranges of edges.
+        final long[] cumulative = new long[edges.length + 1];
+
+        for (int e = 0; e < edges.length; e++) {
+            cumulative[e + 1] = Math.min(MAX_COUNT, cumulative[e] + edges[e].count);
+        }
+
+        class BatchTask extends RecursiveAction {
+            private final EdgeWork edge;
+            private final long from;
+            private final long to;
+
+            BatchTask(EdgeWork edge, long from, long to) {
+                this.edge = edge;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > batchSize) {
+                    long mid = from + (to - from) / 2;
+
+                    // The first half runs in this thread, so a set found there cancels the second half.
+                    invokeAll(new BatchTask(edge, from, mid), new BatchTask(edge, mid, to));
+                } else {
+                    testBatch(edge, depth, from, to);
+                }
+            }
+        }
+
+        class EdgesTask extends RecursiveAction {
+            private final int from;
+            private final int to;
+
+            EdgesTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > 1 && cumulative[to] - cumulative[from] > batchSize) {
+                    int mid = (from + to) / 2;
+                    invokeAll(new EdgesTask(from, mid), new EdgesTask(mid, to));
+                } else if (to - from == 1) {
+                    new BatchTask(edges[from], 0, edges[from].count).compute();
+                } else {
+                    for (int e = from; e < to; e++) {
+                        testBatch(edges[e], depth, 0, edges[e].count);
+                    }
+                }
+            }
+        }
+
+        if (edges.length > 0) {
+            pool.invoke(new EdgesTask(0, edges.length));
+        }
+
+        // Record the sepsets and remove the edges, in a fixed order.
+        List<Long> removed = new ArrayList<>();
+        int[] degrees = new int[adj.length];
+
+        for (int i = 0; i < adj.length; i++) {
+            degrees[i] = adj[i].length;
+        }
+
+        for (EdgeWork edge : edges) {
+            long position = edge.first.get();
+            if (position == Long.MAX_VALUE) continue;
+
+            int[] choice = new int[depth];
+            boolean side0 = position < edge.count0;
+            unrank(side0 ? edge.pp0.length : edge.pp1.length, depth, side0 ? position : position - edge.count0, choice);
+            List<Node> condSet = asList(choice, side0 ? edge.pp0 : edge.pp1);
+
+            Node x = nodes.get(edge.x);
+            Node y = nodes.get(edge.y);
+            getSepsets().set(x, y, condSet);
+
+            if (verbose) {
+                TetradLogger.getInstance().log("independencies", SearchLogUtils.independenceFact(x, y, condSet));
+                out.println(SearchLogUtils.independenceFact(x, y, condSet));
+            }
+
+            removed.add(((long) edge.x << 32) | edge.y);
+            degrees[edge.x]--;
+            degrees[edge.y]--;
+        }
+
+        int[][] _adj = adj;
+
+        if (!removed.isEmpty()) {
+            Set<Long> _removed = new HashSet<>(removed);
+            _adj = new int[adj.length][];
+
+            for (int i = 0; i < adj.length; i++) {
+                int[] row = new int[degrees[i]];
+                int size = 0;
+
+                for (int j : adj[i]) {
+                    long key = i < j ? ((long) i << 32) | j : ((long) j << 32) | i;
+                    if (!_removed.contains(key)) row[size++] = j;
+                }
+
+                _adj[i] = row;
+            }
+        }
+
+        recordDepth(depth, numEdges, numIndependenceTests.get() - tests0, removed.size(), start);
+
+        return _adj;
+    }
+
+    /**
+     * Tests the conditioning sets of the edge at the given positions in its order, stopping when one separates the
+     * edge or a set earlier in the order has been found to.
+     */
+    private void testBatch(EdgeWork edge, int depth, long from, long to) {
+        if (from >= to || from > edge.first.get()) return;
+
+        boolean side0 = from < edge.count0;
+        int[] pp = side0 ? edge.pp0 : edge.pp1;
+        int[] choice = new int[depth];
+        unrank(pp.length, depth, side0 ? from : from - edge.count0, choice);
+
+        for (long position = from; position < to; position++) {
+            if (position > edge.first.get()) return;
+
+            if (position == edge.count0) {
+                side0 = false;
+                pp = edge.pp1;
+                unrank(pp.length, depth, 0, choice);
+            }
+
+            Node x = nodes.get(side0 ? edge.x : edge.y);
+            Node y = nodes.get(side0 ? edge.y : edge.x);
+            List<Node> condSet = asList(choice, pp);
+            numIndependenceTests.incrementAndGet();
+
+            if (test.isIndependent(x, y, condSet)) {
+                edge.found(position);
+                return;
+            }
+
+            nextCombination(choice, pp.length);
+        }
+    }
+
+    private void recordDepth(int depth, int numEdges, long numTests, int numRemoved, long start) {
+        DepthStats stats = new DepthStats(depth, numEdges, numTests, numRemoved,
+                System.currentTimeMillis() - start);
+        depthStats.add(stats);
+        logger.log("info", stats.toString());
+
+        if (verbose) {
+            out.println(stats);
+        }
+    }
+
+    // Adjacencies of the initial graph by index, or null if there is none.
+    private boolean[][] initialAdjacencies() {
+        if (initialGraph == null) return null;
+
+        int n = nodes.size();
+        Node[] _nodes = new Node[n];
+
+        for (int i = 0; i < n; i++) {
+            _nodes[i] = initialGraph.getNode(nodes.get(i).getName());
+        }
+
+        boolean[][] adjacent = new boolean[n][];
+
+        for (int i = 0; i < n; i++) {
+            adjacent[i] = new boolean[i];
+
+            for (int j = 0; j < i; j++) {
+                adjacent[i][j] = _nodes[i] != null && _nodes[j] != null
+                        && initialGraph.isAdjacentTo(_nodes[i], _nodes[j]);
+            }
+        }
+
+        return adjacent;
+    }
+
+    // The neighbors of x other than y that may be parents of x, in order.
+    private int[] possibleParents(int x, int y, int[] adjx, KnowledgeIndex knowledgeIndex) {
+        int[] pp = new int[adjx.length];
+        int size = 0;
+
+        for (int z : adjx) {
+            if (z == y) continue;
+
+            if (!knowledgeIndex.isForbidden(z, x) && !knowledgeIndex.isRequired(x, z)) {
+                pp[size++] = z;
+            }
+        }
+
+        int[] _pp = new int[size];
+        System.arraycopy(pp, 0, _pp, 0, size);
+        return _pp;
+    }
+
+    private int maxFreeDegree(int[][] adj) {
+        int max = 0;
+
+        for (int[] row : adj) {
+            max = Math.max(max, row.length - 1);
+        }
+
+        return max;
+    }
+
+    private List<Node> asList(int[] choice, int[] pp) {
+        List<Node> list = new ArrayList<>(choice.length);
+
+        for (int c : choice) {
+            list.add(nodes.get(pp[c]));
+        }
+
+        return list;
+    }
+
+    /**
+     * @return n choose k, or MAX_COUNT if that is larger.
+     */
+    static long choose(int n, int k) {
+        if (k < 0 || k > n) return 0;
+        k = Math.min(k, n - k);
+        long c = 1;
+
+        for (int i = 1; i <= k; i++) {
+            if (c > MAX_COUNT / (n - k + i)) return MAX_COUNT;
+            c = c * (n - k + i) / i;
+        }
+
+        return c;
+    }
+
+    /**
+     * Sets choice to the k-subset of {0, ..., n - 1} with the given rank in the order of ChoiceGenerator.
+     */
+    static void unrank(int n, int k, long rank, int[] choice) {
+        int v = 0;
+
+        for (int m = 0; m < k; m++) {
+            while (true) {
+                long c = choose(n - v - 1, k - m - 1);
+                if (rank < c) break;
+                rank -= c;
+                v++;
+            }
+
+            choice[m] = v++;
+        }
+    }
+
+    /**
+     * Advances choice to the next k-subset of {0, ..., n - 1} in the order of ChoiceGenerator.
+     */
+    static boolean nextCombination(int[] choice, int n) {
+        int k = choice.length;
+        int i = k - 1;
+
+        while (i >= 0 && choice[i] == n - k + i) i--;
+        if (i < 0) return false;
+
+        choice[i]++;
+
+        for (int j = i + 1; j < k; j++) {
+            choice[j] = choice[j - 1] + 1;
+        }
+
+        return true;
+    }
+
+    /**
+     * An edge x--y, x < y, with the possible parents of x and of y at the start of the depth, and the position in
+     * its order of the first conditioning set found to separate x and y.
+     */
+    private static final class EdgeWork {
+        final int x;
+        final int y;
+        final int[] pp0;
+        final int[] pp1;
+        final long count0;
+        final long count;
+        final AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+
+        EdgeWork(int x, int y, int[] pp0, int[] pp1, long count0, long count1) {
+            this.x = x;
+            this.y = y;
+            this.pp0 = pp0;
+            this.pp1 = pp1;
+            this.count0 = count0;
+            this.count = Math.min(MAX_COUNT, count0 + count1);
+        }
+
+        void found(long position) {
+            long current;
+
+            do {
+                current = first.get();
+                if (position >= current) return;
+            } while (!first.compareAndSet(current, position));
+        }
+    }
+}
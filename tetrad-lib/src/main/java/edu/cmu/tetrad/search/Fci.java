@@ -34,6 +34,7 @@ import edu.cmu.tetrad.util.TetradLogger;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -116,6 +117,9 @@ public final class Fci implements GraphSearch {
     private Graph initialGraph;
     private int possibleDsepDepth = -1;
 
+    // The pool the possible-d-sep step is run in, or null to run it sequentially.
+    private ForkJoinPool pool = null;
+
 
     //============================CONSTRUCTORS============================//
 
@@ -178,6 +182,10 @@ public final class Fci implements GraphSearch {
         return this.elapsedTime;
     }
 
+    /**
+     * Runs FCI with the sequential Fas. The possible-d-sep step is also sequential unless a pool has been set,
+     * in which case it calls the independence test from several threads at once; see setPool.
+     */
     public Graph search() {
         return search(new Fas(getIndependenceTest()));
     }
@@ -198,31 +206,25 @@ public final class Fci implements GraphSearch {
 
         graph.reorientAllWith(Endpoint.CIRCLE);
 
-        SepsetProducer sp = new SepsetsPossibleDsep(graph, independenceTest, knowledge, depth, maxPathLength);
-        sp.setVerbose(verbose);
-
         // The original FCI, with or without JiJi Zhang's orientation rules
         //        // Optional step: Possible Dsep. (Needed for correctness but very time consuming.)
         if (isPossibleDsepSearchDone()) {
 //            long time1 = System.currentTimeMillis();
             new FciOrient(new SepsetsSet(this.sepsets, independenceTest)).ruleR0(graph);
 
-            for (Edge edge : new ArrayList<>(graph.getEdges())) {
-                Node x = edge.getNode1();
-                Node y = edge.getNode2();
-
-                List<Node> sepset = sp.getSepset(x, y);
-
-                if (sepset != null) {
-                    graph.removeEdge(x, y);
-                    sepsets.set(x, y, sepset);
+            // The edges are checked in parallel only if a pool has been set.
+            PossibleDsepFci possibleDsep = new PossibleDsepFci(graph, independenceTest);
+            possibleDsep.setDepth(depth);
+            possibleDsep.setKnowledge(knowledge);
+            possibleDsep.setMaxPathLength(maxPathLength);
+            possibleDsep.setVerbose(verbose);
 
-                    if (verbose) {
-                        System.out.println("Possible DSEP Removed " + x + "--- " + y + " sepset = " + sepset);
-                    }
-                }
+            if (pool != null) {
+                possibleDsep.setPool(pool);
             }
 
+            this.sepsets.addAll(possibleDsep.search());
+
 
 //            long time2 = System.currentTimeMillis();
 //            logger.log("info", "Step C: " + (time2 - time1) / 1000. + "s");
@@ -332,6 +334,16 @@ public final class Fci implements GraphSearch {
         this.verbose = verbose;
     }
 
+    /**
+     * Sets the pool the possible-d-sep step is run in. The independence test is then called from several threads
+     * at once, so it must be thread-safe; tests that keep the last p-value in a field, such as IndTestChiSquare,
+     * are not. By default the step is run sequentially.
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) throw new NullPointerException("Pool not provided.");
+        this.pool = pool;
+    }
+
     /**
      * The independence test.
      */
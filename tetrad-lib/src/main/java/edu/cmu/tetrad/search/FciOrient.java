@@ -24,6 +24,7 @@ package edu.cmu.tetrad.search;
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.data.KnowledgeEdge;
+import edu.cmu.tetrad.data.KnowledgeIndex;
 import edu.cmu.tetrad.graph.Endpoint;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.Node;
@@ -56,6 +57,9 @@ public final class FciOrient {
 
     private IKnowledge knowledge = new Knowledge2();
 
+    // The knowledge compiled against the nodes of the graph being oriented; rebuilt for each orientation.
+    private KnowledgeIndex knowledgeIndex;
+
     private boolean changeFlag = true;
 
     /**
@@ -141,6 +145,7 @@ public final class FciOrient {
         }
 
         this.knowledge = knowledge;
+        this.knowledgeIndex = null;
     }
 
     /**
@@ -173,6 +178,7 @@ public final class FciOrient {
      */
     public void ruleR0(Graph graph) {
         graph.reorientAllWith(Endpoint.CIRCLE);
+        knowledgeIndex = new KnowledgeIndex(knowledge, graph.getNodes());
         fciOrientbk(knowledge, graph, graph.getNodes());
 
         List<Node> nodes = graph.getNodes();
@@ -236,6 +242,8 @@ public final class FciOrient {
      * Zhang's step F4, rules R1-R10.
      */
     public void doFinalOrientation(Graph graph) {
+        knowledgeIndex = new KnowledgeIndex(knowledge, graph.getNodes());
+
         if (completeRuleSetUsed) {
             zhangFinalOrientation(graph);
         } else {
@@ -1295,16 +1303,32 @@ public final class FciOrient {
 
         if (graph.getEndpoint(y, x) == Endpoint.ARROW) {
 //            return true;
-            if (!knowledge.isForbidden(x.getName(), y.getName())) return true;
+            if (!isForbidden(x, y)) return true;
         }
 
         if (graph.getEndpoint(y, x) == Endpoint.TAIL) {
-            if (!knowledge.isForbidden(x.getName(), y.getName())) return true;
+            if (!isForbidden(x, y)) return true;
         }
 
         return graph.getEndpoint(y, x) == Endpoint.CIRCLE;
     }
 
+    // Falls back to the knowledge itself for nodes the index was not built for.
+    private boolean isForbidden(Node x, Node y) {
+        KnowledgeIndex index = knowledgeIndex;
+
+        if (index != null) {
+            int i = index.getIndex(x.getName());
+            int j = index.getIndex(y.getName());
+
+            if (i != -1 && j != -1) {
+                return index.isForbidden(i, j);
+            }
+        }
+
+        return knowledge.isForbidden(x.getName(), y.getName());
+    }
+
     public boolean isPossibleDsepSearchDone() {
         return possibleDsepSearchDone;
     }
@@ -24,10 +24,14 @@ package edu.cmu.tetrad.search;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradExecutors;
 import edu.cmu.tetrad.util.TetradLogger;
+import edu.cmu.tetrad.util.TetradMetrics;
 
-import java.io.PrintStream;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
@@ -57,6 +61,11 @@ public final class Fgs implements GraphSearch, GraphScorer {
      */
     private IKnowledge knowledge = new Knowledge2();
 
+    /**
+     * The knowledge compiled against the variables at the start of the search, for fast lookups.
+     */
+    private KnowledgeIndex knowledgeIndex;
+
     /**
      * List of variables in the data set, in order.
      */
@@ -118,11 +127,8 @@ public final class Fgs implements GraphSearch, GraphScorer {
      */
     private boolean verbose = false;
 
-    // Potential arrows sorted by bump high to low. The first one is a candidate for adding to the graph.
-    private SortedSet<Arrow> sortedArrows = null;
-
-    // Arrows added to sortedArrows for each <i, j>.
-    private Map<OrderedPair<Node>, Set<Arrow>> lookupArrows = null;
+    // Potential arrows by bump high to low. The first one is a candidate for adding to the graph.
+    private ArrowQueue arrows = new ArrowQueue();
 
     // A utility map to help with orientation.
     private Map<Node, Set<Node>> neighbors = null;
@@ -131,7 +137,10 @@ public final class Fgs implements GraphSearch, GraphScorer {
     private ConcurrentMap<Node, Integer> hashIndices;
 
     // The static ForkJoinPool instance.
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    private ForkJoinPool pool = TetradExecutors.getInstance().getPool();
+
+    // The number of threads for a pool of each search's own, or 0 to use the pool above.
+    private int parallelism = 0;
 
     // A running tally of the total BIC score.
     private double score;
@@ -154,13 +163,44 @@ public final class Fgs implements GraphSearch, GraphScorer {
     // The graph being constructed.
     private Graph graph;
 
-    // Arrows with the same score are stored in this list to distinguish their order in sortedArrows.
-    // The ordering doesn't matter; it just have to be transitive.
-    int arrowIndex = 0;
-
     // The final score after search.
     private double modelScore;
 
+    // The phases of the search, in order; see search().
+    private static final int PHASE_FORWARD = 0;
+    private static final int PHASE_SECOND_FORWARD = 1;
+    private static final int PHASE_BACKWARD = 2;
+
+    // The phase the search is in, for checkpoints.
+    private int phase = PHASE_FORWARD;
+
+    // True if the forward search is done twice, first with and then without the heuristic speedup.
+    private boolean secondForwardPass = false;
+
+    // If non-null, the state of the search is written to this file every checkpointInterval ms.
+    private File checkpointFile = null;
+    private long checkpointInterval = 10 * 60 * 1000L;
+    private long lastCheckpoint;
+
+    // True if the state of the search has been read from a checkpoint and search() should continue it.
+    private boolean resuming = false;
+
+    // Identifies checkpoint files and their format.
+    private static final int CHECKPOINT_MAGIC = 0x46475343;
+    private static final int CHECKPOINT_VERSION = 1;
+
+    // Metrics; see SearchMetrics.
+    private static final TetradMetrics.Counter ARROWS_QUEUED = SearchMetrics.counter(SearchMetrics.FGS_ARROWS_QUEUED);
+    private static final TetradMetrics.Counter ARROWS_INSERTED = SearchMetrics.counter(SearchMetrics.FGS_ARROWS_INSERTED);
+    private static final TetradMetrics.Counter ARROWS_DELETED = SearchMetrics.counter(SearchMetrics.FGS_ARROWS_DELETED);
+    private static final TetradMetrics.Gauge QUEUE_SIZE = SearchMetrics.gauge(SearchMetrics.FGS_QUEUE_SIZE);
+    private static final TetradMetrics.Gauge QUEUE_BYTES = SearchMetrics.gauge(SearchMetrics.FGS_QUEUE_BYTES);
+    private static final TetradMetrics.Gauge NUM_EDGES = SearchMetrics.gauge(SearchMetrics.FGS_NUM_EDGES);
+    private static final TetradMetrics.Timer SEARCH_TIMER = SearchMetrics.timer(SearchMetrics.FGS_SEARCH);
+    private static final TetradMetrics.Timer INITIALIZE_TIMER = SearchMetrics.timer(SearchMetrics.FGS_INITIALIZE);
+    private static final TetradMetrics.Timer FORWARD_TIMER = SearchMetrics.timer(SearchMetrics.FGS_FORWARD);
+    private static final TetradMetrics.Timer BACKWARD_TIMER = SearchMetrics.timer(SearchMetrics.FGS_BACKWARD);
+
     //===========================CONSTRUCTORS=============================//
 
     /**
@@ -235,59 +275,90 @@ public final class Fgs implements GraphSearch, GraphScorer {
      * @return the resulting Pattern.
      */
     public Graph search() {
-        topGraphs.clear();
+        if (parallelism == 0) {
+            return searchOnPool();
+        }
+
+        ForkJoinPool sharedPool = pool;
+        pool = new ForkJoinPool(parallelism);
+
+        try {
+            return searchOnPool();
+        } finally {
+            pool.shutdown();
+            pool = sharedPool;
+        }
+    }
+
+    private Graph searchOnPool() {
+        long searchStart = SEARCH_TIMER.start();
 
-        lookupArrows = new ConcurrentHashMap<>();
+        knowledgeIndex = new KnowledgeIndex(knowledge, variables);
         final List<Node> nodes = new ArrayList<>(variables);
 
         if (adjacencies != null) {
             adjacencies = GraphUtils.replaceNodes(adjacencies, nodes);
         }
 
-        addRequiredEdges(graph);
-
-        if (initialGraph != null) {
-            graph.clear();
-            graph.transferNodesAndEdges(initialGraph);
-            graph = new EdgeListGraphSingleConnections(initialGraph);
-
-            initializeForwardEdgesFromExistingGraph(getVariables());
+        lastCheckpoint = System.currentTimeMillis();
 
-            // Do forward search.
-            fes();
+        if (resuming) {
+            buildIndexing(nodes);
         } else {
+            topGraphs.clear();
+            phase = PHASE_FORWARD;
+            secondForwardPass = false;
+
             addRequiredEdges(graph);
 
-            if (!graph.getEdges().isEmpty()) {
-                initializeForwardEdgesFromExistingGraph(getVariables());
+            if (initialGraph != null) {
+                graph.clear();
+                graph.transferNodesAndEdges(initialGraph);
+                graph = new EdgeListGraphSingleConnections(initialGraph);
 
-                // Do forward search.
-                fes();
+                initializeForwardEdgesFromExistingGraph(getVariables());
             } else {
-                if (isHeuristicSpeedup()) {
+                addRequiredEdges(graph);
+
+                if (!graph.getEdges().isEmpty()) {
+                    initializeForwardEdgesFromExistingGraph(getVariables());
+                } else if (isHeuristicSpeedup()) {
                     graph = new EdgeListGraphSingleConnections(getVariables());
                     initializeForwardEdgesFromEmptyGraph(getVariables());
-
-                    // Do forward search.
-                    fes();
                 } else {
                     graph = new EdgeListGraphSingleConnections(getVariables());
 
+                    // Search first with the speedup and then again without it.
+                    secondForwardPass = true;
                     setHeuristicSpeedup(true);
                     initializeForwardEdgesFromEmptyGraph(getVariables());
+                }
+            }
+        }
 
-                    // Do forward search.
-                    fes();
+        if (phase == PHASE_FORWARD) {
 
-                    setHeuristicSpeedup(false);
-                    initializeForwardEdgesFromExistingGraph(getVariables());
-                    fes();
-                }
+            // Do forward search.
+            fes();
+
+            if (secondForwardPass) {
+                phase = PHASE_SECOND_FORWARD;
+                setHeuristicSpeedup(false);
+                initializeForwardEdgesFromExistingGraph(getVariables());
             }
         }
 
+        if (phase == PHASE_SECOND_FORWARD) {
+            fes();
+        }
+
         long start = System.currentTimeMillis();
-        score = 0.0;
+
+        if (phase != PHASE_BACKWARD) {
+            phase = PHASE_BACKWARD;
+            score = 0.0;
+            initializeBackward();
+        }
 
         // Do backward search.
         bes();
@@ -301,9 +372,65 @@ public final class Fgs implements GraphSearch, GraphScorer {
 
         this.modelScore = score;
 
+        SEARCH_TIMER.stop(searchStart);
         return graph;
     }
 
+    /**
+     * Continues the search saved in the given checkpoint, returning the same
+     * pattern the search would have returned had it not been interrupted. The
+     * score, knowledge and other settings must be those of the search that
+     * wrote the checkpoint; the variables are checked.
+     *
+     * @throws IOException              if the checkpoint cannot be read.
+     * @throws IllegalArgumentException if the checkpoint is not an FGS
+     *                                  checkpoint for these variables.
+     * @see #setCheckpointFile(File)
+     */
+    public Graph resume(File checkpoint) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint)))) {
+            readCheckpoint(in);
+        }
+
+        resuming = true;
+
+        try {
+            return search();
+        } finally {
+            resuming = false;
+        }
+    }
+
+    /**
+     * Sets a file to which the state of the search is written periodically,
+     * between steps of the forward and backward searches, so that the search
+     * can be continued with resume(File) if it is interrupted. Each checkpoint
+     * replaces the last. Null (the default) for no checkpoints.
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Sets the least time between checkpoints, in milliseconds. By default 10
+     * minutes.
+     */
+    public void setCheckpointInterval(long checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be >= 0: " + checkpointInterval);
+        }
+
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
     /**
      * @return the background knowledge.
      */
@@ -487,10 +614,29 @@ public final class Fgs implements GraphSearch, GraphScorer {
     }
 
     /**
-     * Creates a new processors pool with the specified number of threads.
+     * Runs each search on a pool of its own with the specified number of
+     * threads, which is shut down when the search is done.
      */
     public void setParallelism(int numProcessors) {
-        this.pool = new ForkJoinPool(numProcessors);
+        if (numProcessors < 1) {
+            throw new IllegalArgumentException("Parallelism must be >= 1: " + numProcessors);
+        }
+
+        this.parallelism = numProcessors;
+    }
+
+    /**
+     * Uses the given pool, for instance to keep this search apart from
+     * others running in the same JVM. The caller owns the pool and shuts it
+     * down.
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException("Pool not provided.");
+        }
+
+        this.pool = pool;
+        this.parallelism = 0;
     }
 
     /**
@@ -538,8 +684,9 @@ public final class Fgs implements GraphSearch, GraphScorer {
     // Simultaneously finds the first edge to add to an empty graph and finds all length 1 paths that are
     // not canceled by other paths (the "effect edges")
     private void initializeForwardEdgesFromEmptyGraph(final List<Node> nodes) {
-        sortedArrows = new ConcurrentSkipListSet<>();
-        lookupArrows = new ConcurrentHashMap<>();
+        long timerStart = INITIALIZE_TIMER.start();
+        arrows = new ArrowQueue();
+        QUEUE_SIZE.set(0);
         neighbors = new ConcurrentHashMap<>();
 
         long start = System.currentTimeMillis();
@@ -578,7 +725,7 @@ public final class Fgs implements GraphSearch, GraphScorer {
                             Node x = nodes.get(j);
 
                             if (existsKnowledge()) {
-                                if (getKnowledge().isForbidden(x.getName(), y.getName()) && getKnowledge().isForbidden(y.getName(), x.getName())) {
+                                if (knowledgeIndex.isForbidden(x, y) && knowledgeIndex.isForbidden(y, x)) {
                                     continue;
                                 }
 
@@ -626,21 +773,71 @@ public final class Fgs implements GraphSearch, GraphScorer {
         }
 
         buildIndexing(nodes);
-        pool.invoke(new InitializeFromEmptyGraphTask(minChunk, 0, nodes.size()));
+
+        if (fgsScore instanceof MarginalBumps && nodes.equals(variables)
+                && variables.equals(fgsScore.getVariables())) {
+            initializeFromMarginalBumps(nodes, ((MarginalBumps) fgsScore).getPositiveMarginalBumps());
+        } else {
+            pool.invoke(new InitializeFromEmptyGraphTask(minChunk, 0, nodes.size()));
+        }
 
         long stop = System.currentTimeMillis();
+        INITIALIZE_TIMER.stop(timerStart);
 
         if (verbose) {
             out.println("Elapsed initializeForwardEdgesFromEmptyGraph = " + (stop - start) + " ms");
         }
     }
 
+    // Does what InitializeFromEmptyGraphTask does, with bumps the score has calculated for all pairs at once.
+    // Pairs whose bumps are not positive are neither effect edges nor arrows, so only the positive bumps are
+    // needed.
+    private void initializeFromMarginalBumps(List<Node> nodes, PairBumps bumps) {
+        final Set<Node> emptySet = new HashSet<>(0);
+
+        for (Node y : nodes) {
+            neighbors.put(y, getNeighbors(y));
+        }
+
+        for (int k = 0; k < bumps.size(); k++) {
+            Node y = nodes.get(bumps.getChild(k));
+            Node x = nodes.get(bumps.getParent(k));
+
+            if (existsKnowledge()) {
+                if (knowledgeIndex.isForbidden(x, y) && knowledgeIndex.isForbidden(y, x)) {
+                    continue;
+                }
+
+                if (!validSetByKnowledge(y, emptySet)) {
+                    continue;
+                }
+            }
+
+            if (adjacencies != null && !adjacencies.isAdjacentTo(x, y)) {
+                continue;
+            }
+
+            double bump = bumps.getBump(k);
+
+            if (isHeuristicSpeedup() && fgsScore.isEffectEdge(bump)) {
+                final Edge edge = Edges.undirectedEdge(x, y);
+                if (boundGraph != null && !boundGraph.isAdjacentTo(edge.getNode1(), edge.getNode2()))
+                    continue;
+                effectEdgesGraph.addEdge(edge);
+            }
+
+            addArrow(x, y, emptySet, emptySet, bump);
+            addArrow(y, x, emptySet, emptySet, bump);
+        }
+    }
+
     // Initiaizes the sorted arrows lists for the forward search from an existing graph
     private void initializeForwardEdgesFromExistingGraph(final List<Node> nodes) {
         long start = System.currentTimeMillis();
+        long timerStart = INITIALIZE_TIMER.start();
 
-        sortedArrows = new ConcurrentSkipListSet<>();
-        lookupArrows = new ConcurrentHashMap<>();
+        arrows = new ArrowQueue();
+        QUEUE_SIZE.set(0);
         neighbors = new ConcurrentHashMap<>();
 
         this.effectEdgesGraph = new EdgeListGraphSingleConnections(getVariables());
@@ -687,7 +884,7 @@ public final class Fgs implements GraphSearch, GraphScorer {
                             if (graph.isAdjacentTo(x, y)) continue;
 
                             if (existsKnowledge()) {
-                                if (getKnowledge().isForbidden(x.getName(), y.getName()) && getKnowledge().isForbidden(y.getName(), x.getName())) {
+                                if (knowledgeIndex.isForbidden(x, y) && knowledgeIndex.isForbidden(y, x)) {
                                     continue;
                                 }
 
@@ -725,6 +922,7 @@ public final class Fgs implements GraphSearch, GraphScorer {
         pool.invoke(new InitializeFromExistingGraphTask(minChunk, 0, nodes.size()));
 
         long stop = System.currentTimeMillis();
+        INITIALIZE_TIMER.stop(timerStart);
 
         if (verbose) {
             out.println("Elapsed initializeForwardEdgesFromEmptyGraph = " + (stop - start) + " ms");
@@ -736,31 +934,38 @@ public final class Fgs implements GraphSearch, GraphScorer {
      */
     private void fes() {
         TetradLogger.getInstance().log("info", "** FORWARD EQUIVALENCE SEARCH");
+        long timerStart = FORWARD_TIMER.start();
+
+        while (!arrows.isEmpty()) {
+            checkpointIfDue();
+            QUEUE_BYTES.set(arrows.getMemoryUsage());
 
-        while (!sortedArrows.isEmpty()) {
-            Arrow arrow = sortedArrows.first();
-            sortedArrows.remove(arrow);
+            ArrowQueue.Arrow arrow = arrows.poll();
+            QUEUE_SIZE.add(-1);
 
-            Node x = arrow.getA();
-            Node y = arrow.getB();
+            Node x = variables.get(arrow.getA());
+            Node y = variables.get(arrow.getB());
 
             if (graph.isAdjacentTo(x, y)) {
                 continue;
             }
 
-            if (!arrow.getNaYX().equals(getNaYX(x, y))) {
+            Set<Node> naYX = asSet(arrow.getNaYX());
+
+            if (!naYX.equals(getNaYX(x, y))) {
                 continue;
             }
 
-            if (!getTNeighbors(x, y).containsAll(arrow.getHOrT())) {
+            Set<Node> T = asSet(arrow.getHOrT());
+
+            if (!getTNeighbors(x, y).containsAll(T)) {
                 continue;
             }
 
-            if (!validInsert(x, y, arrow.getHOrT(), getNaYX(x, y))) {
+            if (!validInsert(x, y, T, naYX)) {
                 continue;
             }
 
-            Set<Node> T = arrow.getHOrT();
             double bump = arrow.getBump();
 
             boolean inserted = insert(x, y, T, bump);
@@ -768,6 +973,10 @@ public final class Fgs implements GraphSearch, GraphScorer {
 
             score += bump;
 
+            // Any other arrows between x and y are stale now that they are adjacent.
+            clearArrow(x, y);
+            clearArrow(y, x);
+
             Set<Node> visited = reapplyOrientation(x, y, null);
             Set<Node> toProcess = new HashSet<>();
 
@@ -786,6 +995,8 @@ public final class Fgs implements GraphSearch, GraphScorer {
             storeGraph();
             reevaluateForward(toProcess);
         }
+
+        FORWARD_TIMER.stop(timerStart);
     }
 
     /**
@@ -793,21 +1004,21 @@ public final class Fgs implements GraphSearch, GraphScorer {
      */
     private void bes() {
         TetradLogger.getInstance().log("info", "** BACKWARD EQUIVALENCE SEARCH");
+        long timerStart = BACKWARD_TIMER.start();
 
-        sortedArrows = new ConcurrentSkipListSet<>();
-        lookupArrows = new ConcurrentHashMap<>();
-        neighbors = new ConcurrentHashMap<>();
+        while (!arrows.isEmpty()) {
+            checkpointIfDue();
+            QUEUE_BYTES.set(arrows.getMemoryUsage());
 
-        initializeArrowsBackward();
+            ArrowQueue.Arrow arrow = arrows.poll();
+            QUEUE_SIZE.add(-1);
 
-        while (!sortedArrows.isEmpty()) {
-            Arrow arrow = sortedArrows.first();
-            sortedArrows.remove(arrow);
+            Node x = variables.get(arrow.getA());
+            Node y = variables.get(arrow.getB());
 
-            Node x = arrow.getA();
-            Node y = arrow.getB();
+            Set<Node> naYX = asSet(arrow.getNaYX());
 
-            if (!arrow.getNaYX().equals(getNaYX(x, y))) {
+            if (!naYX.equals(getNaYX(x, y))) {
                 continue;
             }
 
@@ -816,20 +1027,20 @@ public final class Fgs implements GraphSearch, GraphScorer {
             Edge edge = graph.getEdge(x, y);
             if (edge.pointsTowards(x)) continue;
 
-            HashSet<Node> diff = new HashSet<>(arrow.getNaYX());
-            diff.removeAll(arrow.getHOrT());
+            Set<Node> H = asSet(arrow.getHOrT());
 
-            if (!validDelete(x, y, arrow.getHOrT(), arrow.getNaYX())) continue;
+            if (!validDelete(x, y, H, naYX)) continue;
 
-            Set<Node> H = arrow.getHOrT();
             double bump = arrow.getBump();
 
-            boolean deleted = delete(x, y, H, bump, arrow.getNaYX());
+            boolean deleted = delete(x, y, H, bump, naYX);
             if (!deleted) continue;
 
             score += bump;
 
+            // Any other arrows between x and y are stale now that they are not adjacent.
             clearArrow(x, y);
+            clearArrow(y, x);
 
             Set<Node> visited = reapplyOrientation(x, y, H);
 
@@ -853,6 +1064,7 @@ public final class Fgs implements GraphSearch, GraphScorer {
         }
 
         meekOrientRestricted(getVariables(), getKnowledge());
+        BACKWARD_TIMER.stop(timerStart);
     }
 
     private Set<Node> getCommonAdjacents(Node x, Node y) {
@@ -875,10 +1087,19 @@ public final class Fgs implements GraphSearch, GraphScorer {
 
     // Returns true if knowledge is not empty.
     private boolean existsKnowledge() {
-        return !knowledge.isEmpty();
+        return !knowledgeIndex.isEmpty();
     }
 
 
+    // Starts the backward search from the graph found by the forward search.
+    private void initializeBackward() {
+        arrows = new ArrowQueue();
+        QUEUE_SIZE.set(0);
+        neighbors = new ConcurrentHashMap<>();
+
+        initializeArrowsBackward();
+    }
+
     // Initiaizes the sorted arrows lists for the backward search.
     private void initializeArrowsBackward() {
         for (Edge edge : graph.getEdges()) {
@@ -886,7 +1107,7 @@ public final class Fgs implements GraphSearch, GraphScorer {
             Node y = edge.getNode2();
 
             if (existsKnowledge()) {
-                if (!getKnowledge().noEdgeRequired(x.getName(), y.getName())) {
+                if (!knowledgeIndex.noEdgeRequired(x, y)) {
                     continue;
                 }
             }
@@ -980,7 +1201,7 @@ public final class Fgs implements GraphSearch, GraphScorer {
         this.neighbors.put(b, getNeighbors(b));
 
         if (existsKnowledge()) {
-            if (getKnowledge().isForbidden(a.getName(), b.getName())) {
+            if (knowledgeIndex.isForbidden(a, b)) {
                 return;
             }
         }
@@ -1041,9 +1262,35 @@ public final class Fgs implements GraphSearch, GraphScorer {
     }
 
     private void addArrow(Node a, Node b, Set<Node> naYX, Set<Node> hOrT, double bump) {
-        Arrow arrow = new Arrow(bump, a, b, hOrT, naYX, arrowIndex++);
-        sortedArrows.add(arrow);
-        addLookupArrow(a, b, arrow);
+        arrows.add(hashIndices.get(a), hashIndices.get(b), asIndices(hOrT), asIndices(naYX), bump);
+        ARROWS_QUEUED.inc();
+        QUEUE_SIZE.add(1);
+    }
+
+    // The variable indices of the given nodes, sorted.
+    private int[] asIndices(Set<Node> nodes) {
+        if (nodes.isEmpty()) return ArrowQueue.EMPTY;
+
+        int[] indices = new int[nodes.size()];
+        int i = 0;
+
+        for (Node node : nodes) {
+            indices[i++] = hashIndices.get(node);
+        }
+
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    // The nodes with the given variable indices.
+    private Set<Node> asSet(int[] indices) {
+        Set<Node> nodes = new HashSet<>();
+
+        for (int i : indices) {
+            nodes.add(variables.get(i));
+        }
+
+        return nodes;
     }
 
     // Reevaluates arrows after removing an edge from the graph.
@@ -1115,7 +1362,7 @@ public final class Fgs implements GraphSearch, GraphScorer {
     // Calculates the arrows for the removal in the backward direction.
     private void calculateArrowsBackward(Node a, Node b) {
         if (existsKnowledge()) {
-            if (!getKnowledge().noEdgeRequired(a.getName(), b.getName())) {
+            if (!knowledgeIndex.noEdgeRequired(a, b)) {
                 return;
             }
         }
@@ -1176,72 +1423,6 @@ public final class Fgs implements GraphSearch, GraphScorer {
     // Basic data structure for an arrow a->b considered for additiom or removal from the graph, together with
     // associated sets needed to make this determination. For both forward and backward direction, NaYX is needed.
     // For the forward direction, T neighbors are needed; for the backward direction, H neighbors are needed.
-    // See Chickering (2002). The score difference resulting from added in the edge (hypothetically) is recorded
-    // as the "bump".
-    private static class Arrow implements Comparable<Arrow> {
-        private double bump;
-        private Node a;
-        private Node b;
-        private Set<Node> hOrT;
-        private Set<Node> naYX;
-        private int index = 0;
-
-        public Arrow(double bump, Node a, Node b, Set<Node> hOrT, Set<Node> naYX, int index) {
-            this.bump = bump;
-            this.a = a;
-            this.b = b;
-            this.hOrT = hOrT;
-            this.naYX = naYX;
-            this.index = index;
-        }
-
-        public double getBump() {
-            return bump;
-        }
-
-        public Node getA() {
-            return a;
-        }
-
-        public Node getB() {
-            return b;
-        }
-
-        public Set<Node> getHOrT() {
-            return hOrT;
-        }
-
-        public Set<Node> getNaYX() {
-            return naYX;
-        }
-
-        // Sorting by bump, high to low. The problem is the SortedSet contains won't add a new element if it compares
-        // to zero with an existing element, so for the cases where the comparison is to zero (i.e. have the same
-        // bump, we need to determine as quickly as possible a determinate ordering (fixed) ordering for two variables.
-        // The fastest way to do this is using a hash code, though it's still possible for two Arrows to have the
-        // same hash code but not be equal. If we're paranoid, in this case we calculate a determinate comparison
-        // not equal to zero by keeping a list. This last part is commened out by default.
-        public int compareTo(Arrow arrow) {
-            if (arrow == null) throw new NullPointerException();
-
-            final int compare = Double.compare(arrow.getBump(), getBump());
-
-            if (compare == 0) {
-                return Integer.compare(getIndex(), arrow.getIndex());
-            }
-
-            return compare;
-        }
-
-        public String toString() {
-            return "Arrow<" + a + "->" + b + " bump = " + bump + " t/h = " + hOrT + " naYX = " + naYX + ">";
-        }
-
-        public int getIndex() {
-            return index;
-        }
-    }
-
     // Get all adj that are connected to Y by an undirected edge and not adjacent to X.
     private List<Node> getTNeighbors(Node x, Node y) {
         List<Edge> yEdges = graph.getEdges(y);
@@ -1317,6 +1498,8 @@ public final class Fgs implements GraphSearch, GraphScorer {
         if (boundGraph != null && !boundGraph.isAdjacentTo(x, y)) return false;
 
         graph.addDirectedEdge(x, y);
+        ARROWS_INSERTED.inc();
+        NUM_EDGES.set(graph.getNumEdges());
 
         if (verbose) {
             String label = trueGraph != null && trueEdge != null ? "*" : "";
@@ -1368,6 +1551,8 @@ public final class Fgs implements GraphSearch, GraphScorer {
         diff.removeAll(H);
 
         graph.removeEdge(oldxy);
+        ARROWS_DELETED.inc();
+        NUM_EDGES.set(graph.getNumEdges());
 
         if (verbose) {
             int numEdges = graph.getNumEdges();
@@ -1419,12 +1604,12 @@ public final class Fgs implements GraphSearch, GraphScorer {
         boolean violatesKnowledge = false;
 
         if (existsKnowledge()) {
-            if (knowledge.isForbidden(x.getName(), y.getName())) {
+            if (knowledgeIndex.isForbidden(x, y)) {
                 violatesKnowledge = true;
             }
 
             for (Node t : T) {
-                if (knowledge.isForbidden(t.getName(), y.getName())) {
+                if (knowledgeIndex.isForbidden(t, y)) {
                     violatesKnowledge = true;
                 }
             }
@@ -1442,11 +1627,11 @@ public final class Fgs implements GraphSearch, GraphScorer {
 
         if (existsKnowledge()) {
             for (Node h : H) {
-                if (knowledge.isForbidden(x.getName(), h.getName())) {
+                if (knowledgeIndex.isForbidden(x, h)) {
                     violatesKnowledge = true;
                 }
 
-                if (knowledge.isForbidden(y.getName(), h.getName())) {
+                if (knowledgeIndex.isForbidden(y, h)) {
                     violatesKnowledge = true;
                 }
             }
@@ -1525,7 +1710,7 @@ public final class Fgs implements GraphSearch, GraphScorer {
     // forbidden.
     private boolean validSetByKnowledge(Node y, Set<Node> subset) {
         for (Node node : subset) {
-            if (getKnowledge().isForbidden(node.getName(), y.getName())) {
+            if (knowledgeIndex.isForbidden(node, y)) {
                 return false;
             }
         }
@@ -1647,29 +1832,9 @@ public final class Fgs implements GraphSearch, GraphScorer {
     }
 
     // Removes information associated with an edge x->y.
-    private synchronized void clearArrow(Node x, Node y) {
-        final OrderedPair<Node> pair = new OrderedPair<>(x, y);
-        final Set<Arrow> lookupArrows = this.lookupArrows.get(pair);
-
-        if (lookupArrows != null) {
-            sortedArrows.removeAll(lookupArrows);
-        }
-
-        this.lookupArrows.remove(pair);
-    }
-
-    // Adds the given arrow for the adjacency i->j. These all are for i->j but may have
-    // different T or H or NaYX sets, and so different bumps.
-    private void addLookupArrow(Node i, Node j, Arrow arrow) {
-        OrderedPair<Node> pair = new OrderedPair<>(i, j);
-        Set<Arrow> arrows = lookupArrows.get(pair);
-
-        if (arrows == null) {
-            arrows = new ConcurrentSkipListSet<>();
-            lookupArrows.put(pair, arrows);
-        }
-
-        arrows.add(arrow);
+    private void clearArrow(Node x, Node y) {
+        int removed = arrows.removePair(hashIndices.get(x), hashIndices.get(y));
+        QUEUE_SIZE.add(-removed);
     }
 
     //===========================SCORING METHODS===================//
@@ -1720,6 +1885,251 @@ public final class Fgs implements GraphSearch, GraphScorer {
         return variables;
     }
 
+    // Writes a checkpoint if one is asked for and the checkpoint interval has passed. A checkpoint that
+    // cannot be written is logged and the search goes on.
+    private void checkpointIfDue() {
+        if (checkpointFile == null) return;
+
+        long now = System.currentTimeMillis();
+        if (now - lastCheckpoint < checkpointInterval) return;
+        lastCheckpoint = now;
+
+        File temp = new File(checkpointFile.getAbsoluteFile().getParentFile(), checkpointFile.getName() + ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                writeCheckpoint(out);
+            }
+
+            // Replaced in one step where the file system allows, so a crash leaves either the old checkpoint or
+            // the new one.
+            try {
+                Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            TetradLogger.getInstance().error("Could not write checkpoint " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+
+    // Writes the state of the search at the top of the forward or backward loop. Nodes are written
+    // as indices into the variables; hashIndices is rebuilt on reading.
+    private void writeCheckpoint(DataOutputStream out) throws IOException {
+        out.writeInt(CHECKPOINT_MAGIC);
+        out.writeInt(CHECKPOINT_VERSION);
+
+        out.writeInt(variables.size());
+
+        for (Node node : variables) {
+            out.writeUTF(node.getName());
+        }
+
+        out.writeInt(phase);
+        out.writeBoolean(heuristicSpeedup);
+        out.writeBoolean(secondForwardPass);
+        out.writeInt(arrows.getNextIndex());
+        out.writeDouble(score);
+
+        writeEdges(out, graph);
+        out.writeBoolean(effectEdgesGraph != null);
+        if (effectEdgesGraph != null) writeEdges(out, effectEdgesGraph);
+
+        out.writeInt(neighbors.size());
+
+        for (Node node : neighbors.keySet()) {
+            out.writeInt(hashIndices.get(node));
+            writeNodes(out, neighbors.get(node));
+        }
+
+        List<ArrowQueue.Arrow> queued = arrows.getArrows();
+        out.writeInt(queued.size());
+
+        for (ArrowQueue.Arrow arrow : queued) {
+            out.writeDouble(arrow.getBump());
+            out.writeInt(arrow.getA());
+            out.writeInt(arrow.getB());
+            out.writeInt(arrow.getIndex());
+            writeIndices(out, arrow.getHOrT());
+            writeIndices(out, arrow.getNaYX());
+        }
+
+        out.writeInt(topGraphs.size());
+
+        for (ScoredGraph scoredGraph : topGraphs) {
+            out.writeDouble(scoredGraph.getScore());
+            writeEdges(out, scoredGraph.getGraph());
+        }
+    }
+
+    // Reads the state written by writeCheckpoint, checking that it is for these variables.
+    private void readCheckpoint(DataInputStream in) throws IOException {
+        if (in.readInt() != CHECKPOINT_MAGIC) {
+            throw new IllegalArgumentException("Not an FGS checkpoint.");
+        }
+
+        int version = in.readInt();
+
+        if (version != CHECKPOINT_VERSION) {
+            throw new IllegalArgumentException("Unsupported FGS checkpoint version: " + version);
+        }
+
+        int numVariables = in.readInt();
+
+        if (numVariables != variables.size()) {
+            throw new IllegalArgumentException("Checkpoint has " + numVariables
+                    + " variables; the search has " + variables.size() + ".");
+        }
+
+        for (Node node : variables) {
+            String name = in.readUTF();
+
+            if (!name.equals(node.getName())) {
+                throw new IllegalArgumentException("Checkpoint variable " + name
+                        + " does not match search variable " + node.getName() + ".");
+            }
+        }
+
+        buildIndexing(variables);
+
+        phase = in.readInt();
+        heuristicSpeedup = in.readBoolean();
+        secondForwardPass = in.readBoolean();
+        int nextIndex = in.readInt();
+        score = in.readDouble();
+
+        graph = readEdges(in);
+        effectEdgesGraph = in.readBoolean() ? readEdges(in) : null;
+
+        neighbors = new ConcurrentHashMap<>();
+        int numNeighbors = in.readInt();
+
+        for (int i = 0; i < numNeighbors; i++) {
+            Node node = variables.get(in.readInt());
+            neighbors.put(node, readNodes(in));
+        }
+
+        arrows = new ArrowQueue();
+        int numArrows = in.readInt();
+
+        for (int i = 0; i < numArrows; i++) {
+            double bump = in.readDouble();
+            int a = in.readInt();
+            int b = in.readInt();
+            int index = in.readInt();
+            int[] hOrT = readIndices(in);
+            int[] naYX = readIndices(in);
+            arrows.add(a, b, hOrT, naYX, bump, index);
+        }
+
+        arrows.setNextIndex(nextIndex);
+        QUEUE_SIZE.set(numArrows);
+
+        topGraphs.clear();
+        int numTopGraphs = in.readInt();
+
+        for (int i = 0; i < numTopGraphs; i++) {
+            double graphScore = in.readDouble();
+            topGraphs.addLast(new ScoredGraph(readEdges(in), graphScore));
+        }
+    }
+
+    private void writeNodes(DataOutputStream out, Set<Node> nodes) throws IOException {
+        if (nodes == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        out.writeInt(nodes.size());
+
+        for (Node node : nodes) {
+            out.writeInt(hashIndices.get(node));
+        }
+    }
+
+    private Set<Node> readNodes(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size == -1) return null;
+
+        Set<Node> nodes = new HashSet<>();
+
+        for (int i = 0; i < size; i++) {
+            nodes.add(variables.get(in.readInt()));
+        }
+
+        return nodes;
+    }
+
+    private void writeIndices(DataOutputStream out, int[] indices) throws IOException {
+        out.writeInt(indices.length);
+
+        for (int index : indices) {
+            out.writeInt(index);
+        }
+    }
+
+    private int[] readIndices(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size <= 0) return ArrowQueue.EMPTY;
+
+        int[] indices = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            indices[i] = in.readInt();
+        }
+
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    private void writeEdges(DataOutputStream out, Graph graph) throws IOException {
+        Set<Edge> edges = graph.getEdges();
+        out.writeInt(edges.size());
+
+        for (Edge edge : edges) {
+            out.writeInt(hashIndices.get(edge.getNode1()));
+            out.writeInt(hashIndices.get(edge.getNode2()));
+            out.writeByte(endpointCode(edge.getEndpoint1()));
+            out.writeByte(endpointCode(edge.getEndpoint2()));
+        }
+    }
+
+    private Graph readEdges(DataInputStream in) throws IOException {
+        Graph graph = new EdgeListGraphSingleConnections(variables);
+        int numEdges = in.readInt();
+
+        for (int i = 0; i < numEdges; i++) {
+            Node node1 = variables.get(in.readInt());
+            Node node2 = variables.get(in.readInt());
+            Endpoint endpoint1 = endpoint(in.readByte());
+            Endpoint endpoint2 = endpoint(in.readByte());
+            graph.addEdge(new Edge(node1, node2, endpoint1, endpoint2));
+        }
+
+        return graph;
+    }
+
+    private static int endpointCode(Endpoint endpoint) {
+        if (endpoint == Endpoint.TAIL) return 0;
+        if (endpoint == Endpoint.ARROW) return 1;
+        if (endpoint == Endpoint.CIRCLE) return 2;
+        throw new IllegalArgumentException("Unexpected endpoint in checkpoint: " + endpoint);
+    }
+
+    private static Endpoint endpoint(int code) throws IOException {
+        switch (code) {
+            case 0:
+                return Endpoint.TAIL;
+            case 1:
+                return Endpoint.ARROW;
+            case 2:
+                return Endpoint.CIRCLE;
+            default:
+                throw new IOException("Corrupt checkpoint; endpoint code " + code);
+        }
+    }
+
     // Stores the graph, if its score knocks out one of the top ones.
     private void storeGraph() {
         if (getNumPatternsToStore() > 0) {
@@ -24,7 +24,7 @@ package edu.cmu.tetrad.search;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradExecutors;
 import edu.cmu.tetrad.util.TaskManager;
 import edu.cmu.tetrad.util.TetradLogger;
 
@@ -136,7 +136,10 @@ public final class Fgs2 implements GraphSearch, GraphScorer {
     private ConcurrentMap<Node, Integer> hashIndices;
 
     // The static ForkJoinPool instance.
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    private ForkJoinPool pool = TetradExecutors.getInstance().getPool();
+
+    // The number of threads for a pool of each search's own, or 0 to use the pool above.
+    private int parallelism = 0;
 
     // A running tally of the total BIC totalScore.
     private double totalScore;
@@ -174,7 +177,7 @@ public final class Fgs2 implements GraphSearch, GraphScorer {
     // Bounds the indegree of the graph.
     private int maxIndegree = -1;
 
-    final int maxThreads = ForkJoinPoolInstance.getInstance().getPool().getParallelism();
+    final int maxThreads = TetradExecutors.getInstance().getPool().getParallelism();
 
     //===========================CONSTRUCTORS=============================//
 
@@ -213,6 +216,22 @@ public final class Fgs2 implements GraphSearch, GraphScorer {
      * @return the resulting Pattern.
      */
     public Graph search() {
+        if (parallelism == 0) {
+            return searchOnPool();
+        }
+
+        ForkJoinPool sharedPool = pool;
+        pool = new ForkJoinPool(parallelism);
+
+        try {
+            return searchOnPool();
+        } finally {
+            pool.shutdown();
+            pool = sharedPool;
+        }
+    }
+
+    private Graph searchOnPool() {
         topGraphs.clear();
 
         lookupArrows = new ConcurrentHashMap<>();
@@ -417,10 +436,15 @@ public final class Fgs2 implements GraphSearch, GraphScorer {
     }
 
     /**
-     * Creates a new processors pool with the specified number of threads.
+     * Runs each search on a pool of its own with the specified number of
+     * threads, which is shut down when the search is done.
      */
     public void setParallelism(int numProcessors) {
-        this.pool = new ForkJoinPool(numProcessors);
+        if (numProcessors < 1) {
+            throw new IllegalArgumentException("Parallelism must be >= 1: " + numProcessors);
+        }
+
+        this.parallelism = numProcessors;
     }
 
     /**
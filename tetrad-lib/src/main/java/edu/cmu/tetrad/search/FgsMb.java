@@ -26,7 +26,7 @@ import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.data.KnowledgeEdge;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradExecutors;
 import edu.cmu.tetrad.util.TetradLogger;
 
 import java.io.PrintStream;
@@ -52,7 +52,7 @@ import java.util.concurrent.*;
  * @author Ricardo Silva, Summer 2003
  * @author Joseph Ramsey, Revisions 5/2015
  */
-public final class FgsMb {
+public final class FgsMb implements MbSearch {
 
     /**
      * Specification of forbidden and required edges.
@@ -133,7 +133,10 @@ public final class FgsMb {
     private ConcurrentMap<Node, Integer> hashIndices;
 
     // The static ForkJoinPool instance.
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    private ForkJoinPool pool = TetradExecutors.getInstance().getPool();
+
+    // The number of threads for a pool of each search's own, or 0 to use the pool above.
+    private int parallelism = 0;
 
     // A running tally of the total BIC score.
     private double score;
@@ -164,7 +167,7 @@ public final class FgsMb {
     private double modelScore;
     private List<Node> targets;
 
-    final int maxThreads = ForkJoinPoolInstance.getInstance().getPool().getParallelism() * 5;
+    final int maxThreads = TetradExecutors.getInstance().getPool().getParallelism() * 5;
 
     //===========================CONSTRUCTORS=============================//
 
@@ -210,6 +213,22 @@ public final class FgsMb {
      * Returns the subgraph over the union of the Markov blankets of the individual targets.
      */
     public Graph search(List<Node> targets) {
+        if (parallelism == 0) {
+            return searchOnPool(targets);
+        }
+
+        ForkJoinPool sharedPool = pool;
+        pool = new ForkJoinPool(parallelism);
+
+        try {
+            return searchOnPool(targets);
+        } finally {
+            pool.shutdown();
+            pool = sharedPool;
+        }
+    }
+
+    private Graph searchOnPool(List<Node> targets) {
         long start = System.currentTimeMillis();
         score = 0.0;
 
@@ -265,6 +284,38 @@ public final class FgsMb {
         return mbgraph;
     }
 
+    /**
+     * @return the variables in the Markov blanket of the target with the given name, not including the target.
+     */
+    public List<Node> findMb(String targetName) {
+        Node target = null;
+
+        for (Node node : variables) {
+            if (node.getName().equals(targetName)) {
+                target = node;
+            }
+        }
+
+        if (target == null) {
+            throw new IllegalArgumentException("Target is not one of the variables for the score: " + targetName);
+        }
+
+        List<Node> mb = new ArrayList<>(search(target).getNodes());
+        mb.remove(target);
+        return mb;
+    }
+
+    public String getAlgorithmName() {
+        return "FGS-MB";
+    }
+
+    /**
+     * @return 0; this search scores graphs rather than testing independence.
+     */
+    public int getNumIndependenceTests() {
+        return 0;
+    }
+
     /**
      * @return the background knowledge.
      */
@@ -426,10 +477,15 @@ public final class FgsMb {
     }
 
     /**
-     * Creates a new processors pool with the specified number of threads.
+     * Runs each search on a pool of its own with the specified number of
+     * threads, which is shut down when the search is done.
      */
     public void setParallelism(int numProcessors) {
-        this.pool = new ForkJoinPool(numProcessors);
+        if (numProcessors < 1) {
+            throw new IllegalArgumentException("Parallelism must be >= 1: " + numProcessors);
+        }
+
+        this.parallelism = numProcessors;
     }
 
     /**
@@ -26,7 +26,7 @@ import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.data.KnowledgeEdge;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradExecutors;
 import edu.cmu.tetrad.util.TaskManager;
 import edu.cmu.tetrad.util.TetradLogger;
 
@@ -145,7 +145,10 @@ public final class FgsMb2 {
     private ConcurrentMap<Node, Integer> hashIndices;
 
     // The static ForkJoinPool instance.
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    private ForkJoinPool pool = TetradExecutors.getInstance().getPool();
+
+    // The number of threads for a pool of each search's own, or 0 to use the pool above.
+    private int parallelism = 0;
 
     // A running tally of the total BIC totalScore.
     private double totalScore;
@@ -183,7 +186,7 @@ public final class FgsMb2 {
     // Bounds the indegree of the graph.
     private int maxIndegree;
 
-    final int maxThreads = ForkJoinPoolInstance.getInstance().getPool().getParallelism();
+    final int maxThreads = TetradExecutors.getInstance().getPool().getParallelism();
 
     //===========================CONSTRUCTORS=============================//
 
@@ -284,6 +287,22 @@ public final class FgsMb2 {
     }
 
     public Graph search(List<Node> targets) {
+        if (parallelism == 0) {
+            return searchOnPool(targets);
+        }
+
+        ForkJoinPool sharedPool = pool;
+        pool = new ForkJoinPool(parallelism);
+
+        try {
+            return searchOnPool(targets);
+        } finally {
+            pool.shutdown();
+            pool = sharedPool;
+        }
+    }
+
+    private Graph searchOnPool(List<Node> targets) {
 
         // Assumes one-edge faithfulness.
         long start = System.currentTimeMillis();
@@ -631,10 +650,15 @@ public final class FgsMb2 {
     }
 
     /**
-     * Creates a new processors pool with the specified number of threads.
+     * Runs each search on a pool of its own with the specified number of
+     * threads, which is shut down when the search is done.
      */
     public void setParallelism(int numProcessors) {
-        this.pool = new ForkJoinPool(numProcessors);
+        if (numProcessors < 1) {
+            throw new IllegalArgumentException("Parallelism must be >= 1: " + numProcessors);
+        }
+
+        this.parallelism = numProcessors;
     }
 
     /**
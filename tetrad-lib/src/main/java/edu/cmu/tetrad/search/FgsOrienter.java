@@ -148,7 +148,7 @@ public final class FgsOrienter implements GraphSearch, GraphScorer, Reorienter {
     private ConcurrentMap<Node, Integer> hashIndices;
 
     // The static ForkJoinPool instance.
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    private ForkJoinPool pool = TetradExecutors.getInstance().getPool();
 
     // A running tally of the total BIC score.
     private double score;
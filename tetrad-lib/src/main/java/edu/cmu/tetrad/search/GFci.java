@@ -26,6 +26,7 @@ import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
 import edu.cmu.tetrad.util.DepthChoiceGenerator;
 import edu.cmu.tetrad.util.TetradLogger;
+import edu.cmu.tetrad.util.TetradMetrics;
 
 import java.io.PrintStream;
 import java.util.*;
@@ -86,6 +87,11 @@ public final class GFci implements GraphSearch {
     // The logger to use.
     private TetradLogger logger = TetradLogger.getInstance();
 
+    // Metrics; see SearchMetrics.
+    private static final TetradMetrics.Timer FGS_TIMER = SearchMetrics.timer(SearchMetrics.GFCI_FGS);
+    private static final TetradMetrics.Timer SEPSETS_TIMER = SearchMetrics.timer(SearchMetrics.GFCI_SEPSETS);
+    private static final TetradMetrics.Timer ORIENT_TIMER = SearchMetrics.timer(SearchMetrics.GFCI_ORIENT);
+
     // True iff verbose output should be printed.
     private boolean verbose = false;
 
@@ -169,6 +175,7 @@ public final class GFci implements GraphSearch {
             setScore();
         }
 
+        long start = FGS_TIMER.start();
         Fgs2 fgs = new Fgs2(score);
         fgs.setKnowledge(getKnowledge());
         fgs.setVerbose(verbose);
@@ -176,9 +183,12 @@ public final class GFci implements GraphSearch {
         fgs.setFaithfulnessAssumed(faithfulnessAssumed);
         graph = fgs.search();
         Graph fgsGraph = new EdgeListGraphSingleConnections(graph);
+        FGS_TIMER.stop(start);
 
 //        System.out.println("GFCI: FGS done");
 
+        start = SEPSETS_TIMER.start();
+
         sepsets = new SepsetsGreedy(fgsGraph, independenceTest, null, maxIndegree);
 //        ((SepsetsGreedy) sepsets).setDepth(3);
 //        sepsets = new SepsetsConservative(fgsGraph, independenceTest, null, maxIndegree);
@@ -246,16 +256,20 @@ public final class GFci implements GraphSearch {
 //        System.out.println("GFCI: Look inside triangles done");
 
         modifiedR0(fgsGraph);
+        SEPSETS_TIMER.stop(start);
 
 //    modifiedR0(fgsGraph, map);
 
 //        System.out.println("GFCI: R0 done");
 
+        start = ORIENT_TIMER.start();
+
         FciOrient fciOrient = new FciOrient(sepsets);
         fciOrient.setKnowledge(getKnowledge());
         fciOrient.setCompleteRuleSetUsed(completeRuleSetUsed);
         fciOrient.setMaxPathLength(maxPathLength);
         fciOrient.doFinalOrientation(graph);
+        ORIENT_TIMER.stop(start);
 
 //        System.out.println("GFCI: Final orientation done");
 
@@ -0,0 +1,306 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.util.SegmentedLruCache;
+
+import java.util.Arrays;
+
+/**
+ * Calculates residual variances of linear regressions from a covariance matrix using Cholesky factors of the
+ * covariance submatrices of the regressors, which are cached by regressor set. The factor for a set is derived from
+ * the factor of a neighboring set by appending a row (for an added variable) or by a sequence of Givens rotations
+ * (for a removed variable) rather than by a fresh decomposition or inversion.
+ * <p>
+ * Regressor sets are factored in sorted order, so the factor of any sorted prefix of a set is the leading block of
+ * its factor; factors are built up prefix by prefix, each of which is cached in turn. If a covariance submatrix is
+ * singular or nearly so, the methods here return NaN and the caller should fall back to a method that deals with
+ * linear dependence explicitly.
+ * <p>
+ * The cache may be shared among threads. If values in the covariance matrix are changed, clear() must be called.
+ *
+ * @author Joseph Ramsey
+ */
+public final class IncrementalCholesky {
+
+    // The default maximum number of factors to cache.
+    private static final int DEFAULT_MAX_SIZE = 100000;
+
+    // A pivot is taken to be zero if its square is less than this fraction of the variance of its variable.
+    static final double SINGULARITY_TOLERANCE = 1e-10;
+
+    // The covariance matrix.
+    private final ICovarianceMatrix covariances;
+
+    // Cached factors, keyed by sorted regressor set.
+    private final SegmentedLruCache<Key, double[]> cache;
+
+    public IncrementalCholesky(ICovarianceMatrix covariances) {
+        this(covariances, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param covariances The covariance matrix.
+     * @param maxSize     The maximum number of factors to cache. Beyond this, the least recently used are evicted.
+     */
+    public IncrementalCholesky(ICovarianceMatrix covariances, int maxSize) {
+        if (covariances == null) throw new NullPointerException();
+        this.covariances = covariances;
+        this.cache = new SegmentedLruCache<>(maxSize);
+    }
+
+    /**
+     * @return the residual variance of y regressed on the given regressors, or NaN if the covariance submatrix of
+     * the regressors is (nearly) singular.
+     */
+    public double residualVariance(int y, int[] regressors) {
+        int[] sorted = sort(regressors);
+        double[] factor = factor(sorted);
+        if (factor == null) return Double.NaN;
+        double[] w = solve(factor, sorted, y);
+        return covariances.getValue(y, y) - dot(w, w);
+    }
+
+    /**
+     * Calculates the residual variances of y regressed on z and of y regressed on z plus x. The factor for z is
+     * extended by a row for x without being cached, since x varies much more than z over the evaluations of a
+     * search.
+     *
+     * @return {residual variance given z, residual variance given z + x}, or null if either covariance submatrix is
+     * (nearly) singular.
+     */
+    public double[] residualVariances(int x, int y, int[] z) {
+        int[] sorted = sort(z);
+        double[] factor = lookup(new Key(sorted));
+
+        if (factor == null) {
+            factor = factorByRemoval(sorted, x);
+        }
+
+        if (factor == null) {
+            factor = factor(sorted);
+        }
+
+        if (factor == null) return null;
+
+        double[] w = solve(factor, sorted, y);
+        double varY = covariances.getValue(y, y);
+        double residualZ = varY - dot(w, w);
+
+        // Append a row for x.
+        int k = sorted.length;
+        double[] l = new double[k];
+        double[] appended = appendRow(factor, sorted, x, l);
+        if (appended == null) return null;
+        double d = appended[appended.length - 1];
+
+        double s = covariances.getValue(x, y);
+        for (int j = 0; j < k; j++) s -= l[j] * w[j];
+        double wx = s / d;
+
+        return new double[]{residualZ, residualZ - wx * wx};
+    }
+
+    /**
+     * Removes all cached factors.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * @return the number of factors currently cached.
+     */
+    public int getNumCachedFactors() {
+        return cache.size();
+    }
+
+    public int getMaxCachedFactors() {
+        return cache.getMaxSize();
+    }
+
+    //============================PACKAGE-PRIVATE METHODS=========================//
+
+    // Returns the packed lower triangular factor of the covariance submatrix for the given sorted set, or null if
+    // it is singular. The set is kept as the key of the factor, so it must not be changed afterwards.
+    double[] factor(int[] sorted) {
+        int k = sorted.length;
+        if (k == 0) return new double[0];
+
+        Key key = new Key(sorted);
+        double[] factor = lookup(key);
+        if (factor != null) return factor;
+
+        double[] prefix = factor(Arrays.copyOf(sorted, k - 1));
+        if (prefix == null) return null;
+
+        factor = appendRow(prefix, sorted, sorted[k - 1], new double[k - 1]);
+        if (factor == null) return null;
+
+        store(key, factor);
+        return factor;
+    }
+
+    //============================PRIVATE METHODS=========================//
+
+    // If the factor for the given sorted set plus x is cached, derives the factor for the set by removing x from it.
+    private double[] factorByRemoval(int[] sorted, int x) {
+        int k = sorted.length;
+        int r = -(Arrays.binarySearch(sorted, x) + 1);
+        if (r < 0) return null;
+
+        int[] superset = new int[k + 1];
+        System.arraycopy(sorted, 0, superset, 0, r);
+        superset[r] = x;
+        System.arraycopy(sorted, r, superset, r + 1, k - r);
+
+        double[] factor = lookup(new Key(superset));
+        if (factor == null) return null;
+
+        factor = removeRow(factor, k + 1, r);
+        if (factor == null) return null;
+
+        store(new Key(sorted), factor);
+        return factor;
+    }
+
+    // Given the packed factor L for the first l.length variables of the given set, returns the packed factor with
+    // a row appended for variable v, or null if the result would be singular. The off-diagonal part of the new
+    // row is left in l.
+    private double[] appendRow(double[] factor, int[] set, int v, double[] l) {
+        int k = l.length;
+
+        for (int j = 0; j < k; j++) {
+            double s = covariances.getValue(v, set[j]);
+            int rowJ = j * (j + 1) / 2;
+            for (int m = 0; m < j; m++) s -= l[m] * factor[rowJ + m];
+            l[j] = s / factor[rowJ + j];
+        }
+
+        double varV = covariances.getValue(v, v);
+        double d2 = varV - dot(l, l);
+
+        if (!(d2 > SINGULARITY_TOLERANCE * varV)) {
+            return null;
+        }
+
+        double[] appended = Arrays.copyOf(factor, factor.length + k + 1);
+        System.arraycopy(l, 0, appended, factor.length, k);
+        appended[appended.length - 1] = Math.sqrt(d2);
+        return appended;
+    }
+
+    // Given the packed factor of a k x k covariance submatrix, returns the packed factor of the submatrix with
+    // row and column r removed. Removing row r of L leaves rows below it with one entry above the diagonal, which
+    // is rotated away column pair by column pair.
+    private static double[] removeRow(double[] factor, int k, int r) {
+        double[][] m = new double[k - 1][k];
+
+        for (int i = 0, row = 0; i < k; i++) {
+            if (i == r) continue;
+            int rowI = i * (i + 1) / 2;
+            for (int j = 0; j <= i; j++) m[row][j] = factor[rowI + j];
+            row++;
+        }
+
+        for (int j = r; j < k - 1; j++) {
+            double a = m[j][j];
+            double b = m[j][j + 1];
+            double h = Math.hypot(a, b);
+            if (h == 0) return null;
+            double c = a / h;
+            double s = b / h;
+
+            for (int i = j; i < k - 1; i++) {
+                double mij = m[i][j];
+                double mij1 = m[i][j + 1];
+                m[i][j] = c * mij + s * mij1;
+                m[i][j + 1] = -s * mij + c * mij1;
+            }
+        }
+
+        double[] removed = new double[(k - 1) * k / 2];
+
+        for (int i = 0; i < k - 1; i++) {
+            int rowI = i * (i + 1) / 2;
+            for (int j = 0; j <= i; j++) removed[rowI + j] = m[i][j];
+        }
+
+        return removed;
+    }
+
+    // Solves L w = cov(set, y) by forward substitution.
+    private double[] solve(double[] factor, int[] set, int y) {
+        int k = set.length;
+        double[] w = new double[k];
+
+        for (int j = 0; j < k; j++) {
+            double s = covariances.getValue(set[j], y);
+            int rowJ = j * (j + 1) / 2;
+            for (int m = 0; m < j; m++) s -= factor[rowJ + m] * w[m];
+            w[j] = s / factor[rowJ + j];
+        }
+
+        return w;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+    private static int[] sort(int[] set) {
+        int[] sorted = Arrays.copyOf(set, set.length);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private double[] lookup(Key key) {
+        return cache.get(key);
+    }
+
+    private void store(Key key, double[] factor) {
+        cache.put(key, factor);
+    }
+
+    // A sorted regressor set.
+    private static class Key {
+        private final int[] set;
+        private final int hash;
+
+        Key(int[] set) {
+            this.set = set;
+            int h = Arrays.hashCode(set);
+            this.hash = h ^ (h >>> 16);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(set, ((Key) o).set);
+        }
+    }
+}
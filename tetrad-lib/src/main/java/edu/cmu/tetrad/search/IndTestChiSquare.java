@@ -22,6 +22,7 @@
 package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteCounts;
 import edu.cmu.tetrad.data.DiscreteVariable;
 import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.graph.IndependenceFact;
@@ -184,6 +185,8 @@ public final class IndTestChiSquare implements IndependenceTest {
             throw new NullPointerException();
         }
 
+        SearchMetrics.independenceTest(z.size());
+
         for (Node v : z) {
             if (v == null) {
                 throw new NullPointerException();
@@ -372,6 +375,14 @@ public final class IndTestChiSquare implements IndependenceTest {
         this.determinationP = determinationP;
     }
 
+    /**
+     * Sets counts over the variables of the data set, shared with other discrete tests and scores, to be used
+     * instead of counting the data for each test, or null to count the data.
+     */
+    public void setCounts(DiscreteCounts counts) {
+        chiSquareTest.setCounts(counts);
+    }
+
     public DataSet getData() {
         return dataSet;
     }
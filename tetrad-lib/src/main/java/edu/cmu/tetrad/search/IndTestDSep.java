@@ -133,6 +133,8 @@ public class IndTestDSep implements IndependenceTest {
             throw new NullPointerException();
         }
 
+        SearchMetrics.independenceTest(z.size());
+
         for (Node node : z) {
             if (node == null) {
                 throw new NullPointerException();
@@ -47,6 +47,21 @@ public final class IndTestFisherZ implements IndependenceTest {
      */
     private final ICovarianceMatrix covMatrix;
 
+    /**
+     * Calculates partial correlations from the covariance matrix, caching factors of conditioning sets.
+     */
+    private final CachedPartialCorrelation partialCorrelations;
+
+    /**
+     * Per-thread buffers for the indices of conditioning sets.
+     */
+    private final ThreadLocal<int[]> zIndices = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[8];
+        }
+    };
+
 //    /**
 //     * The matrix out of the cov matrix.
 //     */
@@ -103,6 +118,7 @@ public final class IndTestFisherZ implements IndependenceTest {
         }
 
         this.covMatrix = new CovarianceMatrixOnTheFly(dataSet);
+        this.partialCorrelations = new CachedPartialCorrelation(covMatrix);
         List<Node> nodes = covMatrix.getVariables();
 
         this.variables = Collections.unmodifiableList(nodes);
@@ -123,6 +139,7 @@ public final class IndTestFisherZ implements IndependenceTest {
     public IndTestFisherZ(TetradMatrix data, List<Node> variables, double alpha) {
         this.dataSet = ColtDataSet.makeContinuousData(variables, data);
         this.covMatrix = new CovarianceMatrix(dataSet);
+        this.partialCorrelations = new CachedPartialCorrelation(covMatrix);
         this.variables = Collections.unmodifiableList(variables);
         this.indexMap = indexMap(variables);
         this.nameMap = nameMap(variables);
@@ -135,6 +152,7 @@ public final class IndTestFisherZ implements IndependenceTest {
      */
     public IndTestFisherZ(ICovarianceMatrix covMatrix, double alpha) {
         this.covMatrix = covMatrix;
+        this.partialCorrelations = new CachedPartialCorrelation(covMatrix);
         this.variables = covMatrix.getVariables();
         this.indexMap = indexMap(variables);
         this.nameMap = nameMap(variables);
@@ -180,6 +198,7 @@ public final class IndTestFisherZ implements IndependenceTest {
      * @throws RuntimeException if a matrix singularity is encountered.
      */
     public boolean isIndependent(Node x, Node y, List<Node> z) {
+        SearchMetrics.independenceTest(z.size());
         int n = sampleSize();
         double r = partialCorrelation(x, y, z);
 
@@ -224,15 +243,15 @@ public final class IndTestFisherZ implements IndependenceTest {
     }
 
     private double partialCorrelation(Node x, Node y, List<Node> z) {
-        int[] indices = new int[z.size() + 2];
-        indices[0] = indexMap.get(x);
-        indices[1] = indexMap.get(y);
-        for (int i = 0; i < z.size(); i++) indices[i + 2] = indexMap.get(z.get(i));
-        TetradMatrix submatrix = covMatrix.getSubmatrix(indices).getMatrix();
-//        TetradMatrix submatrix = DataUtils.subMatrix(covMatrix, indexMap, x, y, z);
-        return StatUtils.partialCorrelation(submatrix);
+        int[] _z = zIndices.get();
 
+        if (_z.length < z.size()) {
+            _z = new int[z.size()];
+            zIndices.set(_z);
+        }
 
+        for (int i = 0; i < z.size(); i++) _z[i] = indexMap.get(z.get(i));
+        return partialCorrelations.partialCorrelation(indexMap.get(x), indexMap.get(y), _z, z.size());
     }
 
     public boolean isIndependent(Node x, Node y, Node... z) {
@@ -22,6 +22,7 @@
 package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteCounts;
 import edu.cmu.tetrad.data.DiscreteVariable;
 import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.graph.Node;
@@ -187,6 +188,8 @@ public final class IndTestGSquare implements IndependenceTest {
             }
         }
 
+        SearchMetrics.independenceTest(z.size());
+
         // For testing x, y given z1,...,zn, set up an array of length
         // n + 2 containing the indices of these variables in order.
         int[] testIndices = new int[2 + z.size()];
@@ -368,6 +371,14 @@ public final class IndTestGSquare implements IndependenceTest {
         this.determinationP = determinationP;
     }
 
+    /**
+     * Sets counts over the variables of the data set, shared with other discrete tests and scores, to be used
+     * instead of counting the data for each test, or null to count the data.
+     */
+    public void setCounts(DiscreteCounts counts) {
+        gSquareTest.setCounts(counts);
+    }
+
     public DataSet getData() {
         return dataSet;
     }
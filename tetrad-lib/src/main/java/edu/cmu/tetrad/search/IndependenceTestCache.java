@@ -0,0 +1,243 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.util.SegmentedLruCache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores a map from independence facts x _||_ y | z, by variable index, to the results of testing them at a given
+ * alpha.
+ * <p>
+ * Facts are keyed canonically, with x and y in either order and z in any order, as one int array, together with the
+ * alpha, since judgments of independence depend on it. Tests at different alphas may therefore share a cache. As in
+ * LocalScoreCache, the map is a SegmentedLruCache, so the cache may be shared among threads, and among the tests of
+ * several searches over the same variables.
+ *
+ * @author Joseph Ramsey
+ */
+public class IndependenceTestCache {
+
+    // The default maximum number of entries.
+    private static final int DEFAULT_MAX_SIZE = 1000000;
+
+    // The map from facts to results.
+    private final SegmentedLruCache<Key, Result> cache;
+
+    public IndependenceTestCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The maximum number of facts that will be kept. Beyond this, the least recently used facts are
+     *                evicted.
+     */
+    public IndependenceTestCache(int maxSize) {
+        this(maxSize, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxSize          The maximum number of facts that will be kept.
+     * @param concurrencyLevel The expected number of threads using the cache at once; see SegmentedLruCache.
+     */
+    public IndependenceTestCache(int maxSize, int concurrencyLevel) {
+        this.cache = new SegmentedLruCache<>(maxSize, concurrencyLevel);
+    }
+
+    /**
+     * Records the result of testing x _||_ y | z at the given alpha.
+     */
+    public void add(int x, int y, int[] z, double alpha, Result result) {
+        if (result == null) throw new NullPointerException();
+        cache.put(new Key(x, y, z, alpha), result);
+    }
+
+    /**
+     * @return the result stored for x _||_ y | z at the given alpha, with x and y in either order and z in any
+     * order, or null if there is none.
+     */
+    public Result get(int x, int y, int[] z, double alpha) {
+        return cache.get(new Key(x, y, z, alpha));
+    }
+
+    /**
+     * Removes all entries and resets the hit and miss counts.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * @return the number of entries currently stored.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the maximum number of entries stored.
+     */
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    /**
+     * @return the number of calls to get() that found a result.
+     */
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * @return the number of calls to get() that did not find a result.
+     */
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    /**
+     * @return the fraction of calls to get() that found a result, or NaN if get() has not been called.
+     */
+    public double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    public String toString() {
+        return "IndependenceTestCache size = " + size() + " max = " + getMaxSize() + " hits = " + getHits()
+                + " misses = " + getMisses();
+    }
+
+    /**
+     * The result of an independence test: the judgment, the p value and the score.
+     */
+    public static final class Result {
+        private final boolean independent;
+        private final double pValue;
+        private final double score;
+
+        public Result(boolean independent, double pValue, double score) {
+            this.independent = independent;
+            this.pValue = pValue;
+            this.score = score;
+        }
+
+        public boolean isIndependent() {
+            return independent;
+        }
+
+        public double getPValue() {
+            return pValue;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    //=============================PACKAGE-PRIVATE METHODS=========================//
+
+    // Writes the entries, least recently used first within each segment.
+    void writeEntries(DataOutput out) throws IOException {
+        List<Map.Entry<Key, Result>> entries = cache.entries();
+
+        out.writeInt(entries.size());
+
+        for (Map.Entry<Key, Result> entry : entries) {
+            int[] fact = entry.getKey().fact;
+            out.writeInt(fact.length);
+            for (int v : fact) out.writeInt(v);
+            out.writeDouble(entry.getKey().alpha);
+
+            Result result = entry.getValue();
+            out.writeBoolean(result.independent);
+            out.writeDouble(result.pValue);
+            out.writeDouble(result.score);
+        }
+    }
+
+    // Adds the entries written by writeEntries.
+    void readEntries(DataInput in) throws IOException {
+        int numEntries = in.readInt();
+
+        for (int k = 0; k < numEntries; k++) {
+            int length = in.readInt();
+
+            if (length < 2) {
+                throw new IOException("Not an independence fact: length " + length);
+            }
+
+            int[] fact = new int[length];
+            for (int i = 0; i < length; i++) fact[i] = in.readInt();
+            double alpha = in.readDouble();
+
+            Result result = new Result(in.readBoolean(), in.readDouble(), in.readDouble());
+            add(fact[0], fact[1], Arrays.copyOfRange(fact, 2, length), alpha, result);
+        }
+    }
+
+    //=============================PRIVATE METHODS=========================//
+
+    // The MurmurHash3 finalizer.
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    // An independence fact as {min(x, y), max(x, y), sorted z}, with the alpha it was tested at.
+    private static class Key {
+        private final int[] fact;
+        private final double alpha;
+        private final int hash;
+
+        Key(int x, int y, int[] z, double alpha) {
+            fact = new int[z.length + 2];
+            fact[0] = Math.min(x, y);
+            fact[1] = Math.max(x, y);
+            System.arraycopy(z, 0, fact, 2, z.length);
+            Arrays.sort(fact, 2, fact.length);
+            this.alpha = alpha;
+            long bits = Double.doubleToLongBits(alpha);
+            hash = mix(Arrays.hashCode(fact) * 31 + (int) (bits ^ (bits >>> 32)));
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && Double.compare(alpha, key.alpha) == 0 && Arrays.equals(fact, key.fact);
+        }
+    }
+}
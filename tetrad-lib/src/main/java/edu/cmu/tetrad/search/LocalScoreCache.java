@@ -21,48 +21,200 @@
 
 package edu.cmu.tetrad.search;
 
-import org.apache.commons.collections4.map.MultiKeyMap;
+import edu.cmu.tetrad.util.SegmentedLruCache;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 /**
  * Stores a map from (variable, parents) to score.
+ * <p>
+ * Parent sets are keyed by their primitive indices, independently of order, so that a lookup does not allocate.
+ * The map is a SegmentedLruCache, so the cache may be shared among the threads of a parallel search.
  *
  * @author Joseph Ramsey
  */
 public class LocalScoreCache {
-    private MultiKeyMap map;
+
+    // The default maximum number of entries.
+    private static final int DEFAULT_MAX_SIZE = 1000000;
+
+    // The map from keys to scores.
+    private final SegmentedLruCache<Key, Double> cache;
+
+    // The key used for lookups by each thread.
+    private final ThreadLocal<Key> probe = new ThreadLocal<Key>() {
+        @Override
+        protected Key initialValue() {
+            return new Key();
+        }
+    };
 
     public LocalScoreCache() {
-        map = new MultiKeyMap();
+        this(DEFAULT_MAX_SIZE);
     }
 
-    public void add(int variable, int[] parents, double score) {
-        Set<Integer> _parents = new HashSet<Integer>(parents.length);
+    /**
+     * @param maxSize The maximum number of (variable, parents) entries that will be kept. Beyond this, the least
+     *                recently used entries are evicted.
+     */
+    public LocalScoreCache(int maxSize) {
+        this(maxSize, 4 * Runtime.getRuntime().availableProcessors());
+    }
 
-        for (int parent : parents) {
-            _parents.add(parent);
-        }
+    /**
+     * @param maxSize          The maximum number of (variable, parents) entries that will be kept.
+     * @param concurrencyLevel The expected number of threads using the cache at once; see SegmentedLruCache.
+     */
+    public LocalScoreCache(int maxSize, int concurrencyLevel) {
+        this.cache = new SegmentedLruCache<>(maxSize, concurrencyLevel);
+    }
 
-        map.put(variable, _parents, score);
+    /**
+     * Records the score for the given variable and parents. The parents array is copied.
+     */
+    public void add(int variable, int[] parents, double score) {
+        int[] sorted = Arrays.copyOf(parents, parents.length);
+        Arrays.sort(sorted);
+        cache.put(new Key(variable, sorted, hash(variable, parents), true), score);
     }
 
+    /**
+     * @return the score stored for the given variable and parents, in any order, or NaN if there is none.
+     */
     public double get(int variable, int[] parents) {
-        Set<Integer> _parents = new HashSet<Integer>(parents.length);
+        Key probe = this.probe.get();
+        probe.set(variable, parents, hash(variable, parents));
+        Double score = cache.get(probe);
+        probe.set(0, null, 0);
+        return score == null ? Double.NaN : score;
+    }
+
+    /**
+     * Removes all entries and resets the hit and miss counts.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * @return the number of entries currently stored.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the maximum number of entries stored.
+     */
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    /**
+     * @return the number of calls to get() that found a score.
+     */
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * @return the number of calls to get() that did not find a score.
+     */
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    /**
+     * @return the fraction of calls to get() that found a score, or NaN if get() has not been called.
+     */
+    public double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    public String toString() {
+        return "LocalScoreCache size = " + size() + " max = " + getMaxSize() + " hits = " + getHits()
+                + " misses = " + getMisses();
+    }
+
+    //=============================PRIVATE METHODS=========================//
+
+    // A hash that does not depend on the order of the parents.
+    private static int hash(int variable, int[] parents) {
+        int hash = mix(variable) * 31 + parents.length;
 
         for (int parent : parents) {
-            _parents.add(parent);
+            hash += mix(parent + 0x61c88647);
         }
 
-        Double _score = (Double) map.get(variable, _parents);
-        return _score == null ? Double.NaN : (_score);
+        return mix(hash);
     }
 
-    public void clear() {
-        map.clear();
+    // The MurmurHash3 finalizer.
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
     }
-}
 
+    // A (variable, parents) key. Stored keys hold a private sorted copy of the parents; the probe key used for
+    // lookups just points to the caller's array, in whatever order, so that lookups do not allocate.
+    private static class Key {
+        private int variable;
+        private int[] parents;
+        private int hash;
+        private boolean sorted;
+
+        Key() {
+        }
+
+        Key(int variable, int[] parents, int hash, boolean sorted) {
+            this.variable = variable;
+            this.parents = parents;
+            this.hash = hash;
+            this.sorted = sorted;
+        }
+
+        void set(int variable, int[] parents, int hash) {
+            this.variable = variable;
+            this.parents = parents;
+            this.hash = hash;
+            this.sorted = false;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
 
+            if (hash != key.hash || variable != key.variable || parents.length != key.parents.length) {
+                return false;
+            }
 
+            if (key.sorted) {
+                return containsAll(key.parents, parents);
+            } else if (sorted) {
+                return containsAll(parents, key.parents);
+            } else {
+                int[] _parents = Arrays.copyOf(parents, parents.length);
+                Arrays.sort(_parents);
+                return containsAll(_parents, key.parents);
+            }
+        }
+
+        // Parent sets contain no duplicates, so equal lengths plus containment is equality.
+        private static boolean containsAll(int[] sorted, int[] values) {
+            for (int value : values) {
+                if (Arrays.binarySearch(sorted, value) < 0) return false;
+            }
+
+            return true;
+        }
+    }
+}
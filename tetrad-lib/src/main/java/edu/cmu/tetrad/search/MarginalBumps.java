@@ -0,0 +1,44 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+/**
+ * Implemented by scores that can calculate, for all pairs of variables at
+ * once, the bump for adding one variable as the only parent of another--the
+ * bumps Fgs needs to start a search from the empty graph. Calculated one pair
+ * at a time, these are p^2 / 2 calls to localScoreDiff before the first edge
+ * is added; calculated together, they can be screened and calculated in
+ * blocks.
+ *
+ * @author Joseph Ramsey
+ */
+public interface MarginalBumps extends Score {
+
+    /**
+     * @return the bumps localScoreDiff(j, i, new int[0]) for adding j as the
+     * only parent of i, for all pairs i &lt; j of the score's variables, keeping
+     * only those that are positive. Each bump must be the value localScoreDiff
+     * would return. Since only positive bumps are kept, isEffectEdge(bump)
+     * must be false for bumps that are not positive.
+     */
+    PairBumps getPositiveMarginalBumps();
+}
@@ -38,7 +38,7 @@ import static java.lang.Math.sqrt;
  *
  * @author Joseph Ramsey
  */
-public class MixedBicScore implements Score {
+public class MixedBicScore implements Score, DecomposableScore {
 
     // The covariance matrix.
     private ICovarianceMatrix covariances;
@@ -0,0 +1,193 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.util.TetradExecutors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A sparse list of bumps for pairs of variables, child i &lt; parent j, in
+ * order of child and then parent, as returned by
+ * MarginalBumps.getPositiveMarginalBumps().
+ *
+ * @author Joseph Ramsey
+ */
+public final class PairBumps {
+
+    /**
+     * The number of variables in a tile; pairs are calculated a pair of tiles
+     * at a time.
+     */
+    static final int TILE_SIZE = 64;
+
+    private int[] children;
+    private int[] parents;
+    private double[] bumps;
+    private int size = 0;
+
+    PairBumps() {
+        this(16);
+    }
+
+    private PairBumps(int capacity) {
+        children = new int[capacity];
+        parents = new int[capacity];
+        bumps = new double[capacity];
+    }
+
+    /**
+     * @return the number of pairs.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getChild(int k) {
+        return children[k];
+    }
+
+    public int getParent(int k) {
+        return parents[k];
+    }
+
+    public double getBump(int k) {
+        return bumps[k];
+    }
+
+    void add(int child, int parent, double bump) {
+        if (size == bumps.length) {
+            int capacity = bumps.length + (bumps.length >> 1) + 1;
+            children = Arrays.copyOf(children, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            bumps = Arrays.copyOf(bumps, capacity);
+        }
+
+        children[size] = child;
+        parents[size] = parent;
+        bumps[size] = bump;
+        size++;
+    }
+
+    /**
+     * Calculates the bumps for one pair of tiles.
+     */
+    interface TileScorer {
+
+        /**
+         * Adds to bumps the positive bumps for children in [fromChild,
+         * toChild) and parents in [fromParent, toParent), for child &lt;
+         * parent only.
+         */
+        void score(int fromChild, int toChild, int fromParent, int toParent, PairBumps bumps);
+    }
+
+    /**
+     * Calculates the bumps for all pairs of numVariables variables, a pair of
+     * tiles at a time, the pairs of tiles in parallel.
+     */
+    static PairBumps calculate(final int numVariables, final TileScorer scorer) {
+        final int numTiles = (numVariables + TILE_SIZE - 1) / TILE_SIZE;
+
+        // One task per parent tile, with all the child tiles before it; a tile row has the pairs for a range of
+        // parents, so the results are put in order by child afterward.
+        class TileRowTask extends RecursiveTask<List<PairBumps>> {
+            private final int from;
+            private final int to;
+
+            TileRowTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected List<PairBumps> compute() {
+                if (to - from == 1) {
+                    PairBumps bumps = new PairBumps();
+                    int fromParent = from * TILE_SIZE;
+                    int toParent = Math.min(numVariables, fromParent + TILE_SIZE);
+
+                    for (int b = 0; b <= from; b++) {
+                        int fromChild = b * TILE_SIZE;
+                        int toChild = Math.min(numVariables, fromChild + TILE_SIZE);
+                        scorer.score(fromChild, toChild, fromParent, toParent, bumps);
+                    }
+
+                    List<PairBumps> result = new ArrayList<>();
+                    result.add(bumps);
+                    return result;
+                } else {
+                    int mid = (from + to) / 2;
+                    TileRowTask left = new TileRowTask(from, mid);
+                    TileRowTask right = new TileRowTask(mid, to);
+                    left.fork();
+                    List<PairBumps> result = right.compute();
+                    List<PairBumps> leftResult = left.join();
+                    leftResult.addAll(result);
+                    return leftResult;
+                }
+            }
+        }
+
+        if (numTiles == 0) return new PairBumps();
+
+        List<PairBumps> rows = TetradExecutors.getInstance().getPool().invoke(new TileRowTask(0, numTiles));
+        return sorted(rows, numVariables);
+    }
+
+    // Merges the bumps into one list ordered by child and then parent, with a counting sort by child.
+    private static PairBumps sorted(List<PairBumps> rows, int numVariables) {
+        int total = 0;
+        int[] starts = new int[numVariables + 1];
+
+        for (PairBumps row : rows) {
+            total += row.size;
+
+            for (int k = 0; k < row.size; k++) {
+                starts[row.children[k] + 1]++;
+            }
+        }
+
+        for (int i = 0; i < numVariables; i++) {
+            starts[i + 1] += starts[i];
+        }
+
+        PairBumps sorted = new PairBumps(Math.max(total, 1));
+        sorted.size = total;
+
+        // The rows are in order of parent tile, and pairs within a tile row are in order of parent for each
+        // child, so the parents for each child come out in order.
+        for (PairBumps row : rows) {
+            for (int k = 0; k < row.size; k++) {
+                int position = starts[row.children[k]]++;
+                sorted.children[position] = row.children[k];
+                sorted.parents[position] = row.parents[k];
+                sorted.bumps[position] = row.bumps[k];
+            }
+        }
+
+        return sorted;
+    }
+}
@@ -29,10 +29,9 @@ import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.ChoiceGenerator;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This class implements the Possible-D-Sep search step of Spirtes, et al's (1993) FCI algorithm (pp 144-145).
@@ -42,6 +41,10 @@ import java.util.Set;
  * constructor, then the algorithm pairwise checks every variable in the graph with every variable in V \
  * <code>prevCheck</code> (that is, the unchecked variables). This feature is used by the CIVI algorithm of Danks's
  * "Efficient Inclusion of Novel Variables."
+ * <p>
+ * The edges are checked in parallel against the graph as it is when the search starts, and the edges found to be
+ * separated are removed afterward, so that (as in PC-Stable) the result does not depend on the order of the edges or
+ * of the threads. The test must be thread-safe.
  *
  * @author David Danks
  */
@@ -58,6 +61,10 @@ public class PossibleDsepFci {
      */
     private IKnowledge knowledge = new Knowledge2();
     private int maxReachablePathLength = -1;
+    private boolean verbose = false;
+
+    // The pool the edges are checked in, or null to check them sequentially.
+    private ForkJoinPool pool = null;
 
     /**
      * Creates a new SepSet and assumes that none of the variables have yet been checked.
@@ -93,25 +100,54 @@ public class PossibleDsepFci {
      * constructor is directly changed.
      */
     public SepsetMap search() {
+        final List<Edge> edges = new ArrayList<>(graph.getEdges());
+        final List<List<Node>> condSets = new ArrayList<>(Collections.<List<Node>>nCopies(edges.size(), null));
 
-        for (Edge edge : new ArrayList<Edge>(graph.getEdges())) {
-            Node x = edge.getNode1();
-            Node y = edge.getNode2();
+        // One edge per task; the possible-d-sep sets of some edges are far larger than others.
+        class PossibleDsepTask extends RecursiveAction {
+            private final int from;
+            private final int to;
 
-            List<Node> condSet = getSepset(x, y);
+            PossibleDsepTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
 
-            if (condSet != null) {
-                for (Node n : condSet) {
-                    if (!(graph.getAdjacentNodes(n).contains(x) || graph.getAdjacentNodes(n).contains(y))) {
-                        System.out.println("Not adjacent");
-                    }
+            @Override
+            protected void compute() {
+                if (to - from > 1) {
+                    int mid = (from + to) / 2;
+                    invokeAll(new PossibleDsepTask(from, mid), new PossibleDsepTask(mid, to));
+                } else if (to - from == 1) {
+                    Edge edge = edges.get(from);
+                    condSets.set(from, getSepset(edge.getNode1(), edge.getNode2()));
                 }
+            }
+        }
+
+        if (pool == null) {
+            for (int i = 0; i < edges.size(); i++) {
+                Edge edge = edges.get(i);
+                condSets.set(i, getSepset(edge.getNode1(), edge.getNode2()));
+            }
+        } else {
+            pool.invoke(new PossibleDsepTask(0, edges.size()));
+        }
+
+        for (int i = 0; i < edges.size(); i++) {
+            List<Node> condSet = condSets.get(i);
+
+            if (condSet != null) {
+                Node x = edges.get(i).getNode1();
+                Node y = edges.get(i).getNode2();
 
                 graph.removeEdge(x, y);
                 sepset.set(x, y, condSet);
-                System.out.println("Removed " + x + "--- " + y + " sepset = " + condSet);
-            }
 
+                if (verbose) {
+                    System.out.println("Removed " + x + "--- " + y + " sepset = " + condSet);
+                }
+            }
         }
 
         return sepset;
@@ -120,7 +156,7 @@ public class PossibleDsepFci {
     public List<Node> getSepset(Node node1, Node node2) {
         List<Node> condSet = getCondSet(node1, node2, maxReachablePathLength);
 
-        if (sepset == null) {
+        if (condSet == null) {
             condSet = getCondSet(node2, node1, maxReachablePathLength);
         }
 
@@ -218,6 +254,23 @@ public class PossibleDsepFci {
         this.knowledge = knowledge;
     }
 
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Checks the edges in the given pool, calling the independence test from several threads at once, so the test
+     * must be thread-safe. By default the edges are checked sequentially.
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) throw new NullPointerException("Pool not provided.");
+        this.pool = pool;
+    }
+
     public int getMaxReachablePathLength() {
         return maxReachablePathLength == Integer.MAX_VALUE ? -1 : maxReachablePathLength;
     }
@@ -27,8 +27,11 @@ import edu.cmu.tetrad.data.KnowledgeEdge;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
 import edu.cmu.tetrad.util.TetradLogger;
+import edu.cmu.tetrad.util.TetradMetrics;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
@@ -104,12 +107,20 @@ public final class Rfci implements GraphSearch {
      */
     private TetradLogger logger = TetradLogger.getInstance();
 
+    // Metrics; see SearchMetrics.
+    private static final TetradMetrics.Timer ADJACENCIES_TIMER = SearchMetrics.timer(SearchMetrics.RFCI_ADJACENCIES);
+    private static final TetradMetrics.Timer R0_TIMER = SearchMetrics.timer(SearchMetrics.RFCI_R0);
+    private static final TetradMetrics.Timer ORIENT_TIMER = SearchMetrics.timer(SearchMetrics.RFCI_ORIENT);
+
     /**
      * True iff verbose output should be printed.
      */
     private boolean verbose = false;
     private Graph truePag;
 
+    // The pool the unshielded triples are tested in, or null to test them sequentially.
+    private ForkJoinPool pool = null;
+
 
     //============================CONSTRUCTORS============================//
 
@@ -190,6 +201,7 @@ public final class Rfci implements GraphSearch {
         this.graph = new EdgeListGraph(nodes);
 
         long start1 = System.currentTimeMillis();
+        long timerStart = ADJACENCIES_TIMER.start();
 
         fas.setKnowledge(getKnowledge());
         fas.setDepth(depth);
@@ -201,11 +213,17 @@ public final class Rfci implements GraphSearch {
 
         long stop1 = System.currentTimeMillis();
         long start2 = System.currentTimeMillis();
+        ADJACENCIES_TIMER.stop(timerStart);
 
         // The original FCI, with or without JiJi Zhang's orientation rules
+        timerStart = R0_TIMER.start();
         fciOrientbk(getKnowledge(), graph, variables);
         ruleR0_RFCI(getRTuples());  // RFCI Algorithm 4.4
+        R0_TIMER.stop(timerStart);
+
+        timerStart = ORIENT_TIMER.start();
         doFinalOrientation();
+        ORIENT_TIMER.stop(timerStart);
 
         long endTime = System.currentTimeMillis();
         this.elapsedTime = endTime - beginTime;
@@ -274,111 +292,66 @@ public final class Rfci implements GraphSearch {
         List<Node> nodes = graph.getNodes();
 
         ///////////////////////////////
-        // process tuples in rTuples
+        // process tuples in rTuples, in rounds. The tests for a round are done in parallel; they depend
+        // only on sepsets of nonadjacent pairs, which the round does not change, so applying the results
+        // in order gives the same graph and sepsets as processing the tuples one at a time.
         while (!rTuples.isEmpty()) {
-            Node[] thisTuple = rTuples.remove(0);
+            List<Node[]> round = rTuples;
+            rTuples = new ArrayList<>();
 
-            Node i = thisTuple[0];
-            Node j = thisTuple[1];
-            Node k = thisTuple[2];
+            TupleTests tests = testTuples(round);
 
-            final List<Node> nodes1 = getSepset(i, k);
+            for (int t = 0; t < round.size(); t++) {
+                Node[] thisTuple = round.get(t);
 
-            if (nodes1 == null) continue;
+                Node i = thisTuple[0];
+                Node j = thisTuple[1];
+                Node k = thisTuple[2];
 
-            List<Node> sepSet = new ArrayList<Node>(nodes1);
-            sepSet.remove(j);
+                if (tests.sepSets[t] == null) continue;
 
-            boolean independent1 = false;
-            if (knowledge.noEdgeRequired(i.getName(), j.getName()))  // if BK allows
-            {
-                try {
-                    independent1 = independenceTest.isIndependent(i, j, sepSet);
-                } catch (Exception e) {
-                    independent1 = true;
-                }
-            }
+                // Dropped if an edge of the tuple has been removed since the round began.
+                if (!graph.isAdjacentTo(i, j) || !graph.isAdjacentTo(j, k)) continue;
 
-            boolean independent2 = false;
-            if (knowledge.noEdgeRequired(j.getName(), k.getName()))  // if BK allows
-            {
-                try {
-                    independent2 = independenceTest.isIndependent(j, k, sepSet);
-                } catch (Exception e) {
-                    independent2 = true;
-                }
-            }
+                List<Node> sepSet = tests.sepSets[t];
+                boolean independent1 = tests.independent1[t];
+                boolean independent2 = tests.independent2[t];
 
-            if (!independent1 && !independent2) {
-                lTuples.add(thisTuple);
-            } else {
-                // set sepSets to minimal separating sets
-                if (independent1) {
-                    setMinSepSet(sepSet, i, j);
-                    graph.removeEdge(i, j);
-                }
-                if (independent2) {
-                    setMinSepSet(sepSet, j, k);
-                    graph.removeEdge(j, k);
-                }
+                if (!independent1 && !independent2) {
+                    lTuples.add(thisTuple);
+                } else {
+                    // set sepSets to minimal separating sets
+                    if (independent1) {
+                        setMinSepSet(sepSet, i, j);
+                        graph.removeEdge(i, j);
+                    }
+                    if (independent2) {
+                        setMinSepSet(sepSet, j, k);
+                        graph.removeEdge(j, k);
+                    }
 
-                // add new unshielded tuples to rTuples
-                for (Node thisNode : nodes) {
-                    List<Node> adjacentNodes = graph.getAdjacentNodes(thisNode);
-                    if (independent1) // <i, ., j>
-                    {
-                        if (adjacentNodes.contains(i) && adjacentNodes.contains(j)) {
-                            Node[] newTuple = {i, thisNode, j};
-                            rTuples.add(newTuple);
+                    // add new unshielded tuples to rTuples
+                    for (Node thisNode : nodes) {
+                        List<Node> adjacentNodes = graph.getAdjacentNodes(thisNode);
+                        if (independent1) // <i, ., j>
+                        {
+                            if (adjacentNodes.contains(i) && adjacentNodes.contains(j)) {
+                                Node[] newTuple = {i, thisNode, j};
+                                rTuples.add(newTuple);
+                            }
                         }
-                    }
-                    if (independent2) // <j, ., k>
-                    {
-                        if (adjacentNodes.contains(j) && adjacentNodes.contains(k)) {
-                            Node[] newTuple = {j, thisNode, k};
-                            rTuples.add(newTuple);
+                        if (independent2) // <j, ., k>
+                        {
+                            if (adjacentNodes.contains(j) && adjacentNodes.contains(k)) {
+                                Node[] newTuple = {j, thisNode, k};
+                                rTuples.add(newTuple);
+                            }
                         }
                     }
-                }
 
-                // remove tuples involving either (if independent1) <i, j>
-                // or (if independent2) <j, k> from rTuples
-                Iterator<Node[]> iter = rTuples.iterator();
-                while (iter.hasNext()) {
-                    Node[] curTuple = iter.next();
-                    if ((independent1 && (curTuple[1] == i) &&
-                            ((curTuple[0] == j) || (curTuple[2] == j)))
-                            ||
-                            (independent2 && (curTuple[1] == k) &&
-                                    ((curTuple[0] == j) || (curTuple[2] == j)))
-                            ||
-                            (independent1 && (curTuple[1] == j) &&
-                                    ((curTuple[0] == i) || (curTuple[2] == i)))
-                            ||
-                            (independent2 && (curTuple[1] == j) &&
-                                    ((curTuple[0] == k) || (curTuple[2] == k)))) {
-                        iter.remove();
-                    }
-                }
-
-                // remove tuples involving either (if independent1) <i, j>
-                // or (if independent2) <j, k> from lTuples
-                iter = lTuples.iterator();
-                while (iter.hasNext()) {
-                    Node[] curTuple = iter.next();
-                    if ((independent1 && (curTuple[1] == i) &&
-                            ((curTuple[0] == j) || (curTuple[2] == j)))
-                            ||
-                            (independent2 && (curTuple[1] == k) &&
-                                    ((curTuple[0] == j) || (curTuple[2] == j)))
-                            ||
-                            (independent1 && (curTuple[1] == j) &&
-                                    ((curTuple[0] == i) || (curTuple[2] == i)))
-                            ||
-                            (independent2 && (curTuple[1] == j) &&
-                                    ((curTuple[0] == k) || (curTuple[2] == k)))) {
-                        iter.remove();
-                    }
+                    // Tuples involving either (if independent1) <i, j> or (if independent2) <j, k>,
+                    // in this round, in rTuples or in lTuples, are skipped above or when colliders are
+                    // oriented below, since the edge is gone.
                 }
             }
         }
@@ -416,6 +389,91 @@ public final class Rfci implements GraphSearch {
 
     }
 
+    // The results of the tests for a round of tuples.
+    private static class TupleTests {
+        final List<Node>[] sepSets;
+        final boolean[] independent1;
+        final boolean[] independent2;
+
+        @SuppressWarnings("unchecked")
+        TupleTests(int size) {
+            sepSets = new List[size];
+            independent1 = new boolean[size];
+            independent2 = new boolean[size];
+        }
+    }
+
+    /**
+     * For each tuple <i, j, k>, tests i _||_ j and j _||_ k given sepset(i, k) minus j, if background knowledge
+     * allows the edge to be removed, in parallel if a pool has been set. The sepset is left null if sepset(i, k)
+     * is null.
+     */
+    private TupleTests testTuples(final List<Node[]> tuples) {
+        final TupleTests tests = new TupleTests(tuples.size());
+
+        class TupleTask extends RecursiveAction {
+            private final int from;
+            private final int to;
+
+            TupleTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > 4) {
+                    int mid = (from + to) / 2;
+                    invokeAll(new TupleTask(from, mid), new TupleTask(mid, to));
+                    return;
+                }
+
+                testTuples();
+            }
+
+            void testTuples() {
+                for (int t = from; t < to; t++) {
+                    Node i = tuples.get(t)[0];
+                    Node j = tuples.get(t)[1];
+                    Node k = tuples.get(t)[2];
+
+                    final List<Node> nodes1 = getSepset(i, k);
+                    if (nodes1 == null) continue;
+
+                    List<Node> sepSet = new ArrayList<Node>(nodes1);
+                    sepSet.remove(j);
+                    tests.sepSets[t] = sepSet;
+
+                    if (knowledge.noEdgeRequired(i.getName(), j.getName()))  // if BK allows
+                    {
+                        try {
+                            tests.independent1[t] = independenceTest.isIndependent(i, j, sepSet);
+                        } catch (Exception e) {
+                            tests.independent1[t] = true;
+                        }
+                    }
+
+                    if (knowledge.noEdgeRequired(j.getName(), k.getName()))  // if BK allows
+                    {
+                        try {
+                            tests.independent2[t] = independenceTest.isIndependent(j, k, sepSet);
+                        } catch (Exception e) {
+                            tests.independent2[t] = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (pool == null) {
+            new TupleTask(0, tuples.size()).testTuples();
+        } else {
+            pool.invoke(new TupleTask(0, tuples.size()));
+        }
+
+        return tests;
+    }
+
     ////////////////////////////////////////////////
     // collect in rTupleList all unshielded tuples
     ////////////////////////////////////////////////
@@ -662,6 +720,15 @@ public final class Rfci implements GraphSearch {
         this.verbose = verbose;
     }
 
+    /**
+     * Sets the pool the unshielded triples are tested in. The independence test is then called from several
+     * threads at once, so it must be thread-safe. By default the triples are tested sequentially.
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) throw new NullPointerException("Pool not provided.");
+        this.pool = pool;
+    }
+
     /**
      * The independence test.
      */
@@ -0,0 +1,152 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.util.TetradMetrics;
+
+/**
+ * The names of the metrics the searches, tests and scores in this package
+ * report to TetradMetrics, with the counters they share. Per-depth counters
+ * and timers have the depth appended, as in "independenceTests.depth.2";
+ * depths of MAX_DEPTH and above are counted together.
+ *
+ * @author Joseph Ramsey
+ */
+public final class SearchMetrics {
+
+    /**
+     * Counters of independence tests done, in total and by size of the
+     * conditioning set.
+     */
+    public static final String INDEPENDENCE_TESTS = "independenceTests";
+    public static final String INDEPENDENCE_TESTS_DEPTH = "independenceTests.depth.";
+
+    /**
+     * Counter of local scores calculated.
+     */
+    public static final String LOCAL_SCORES = "localScores";
+
+    /**
+     * Counters of local scores found and not found in the cache of a
+     * CachingScore.
+     */
+    public static final String SCORE_CACHE_HITS = "localScores.cache.hits";
+    public static final String SCORE_CACHE_MISSES = "localScores.cache.misses";
+
+    /**
+     * Counters of independence tests found and not found in the cache of a
+     * CachingIndependenceTest.
+     */
+    public static final String TEST_CACHE_HITS = "independenceTests.cache.hits";
+    public static final String TEST_CACHE_MISSES = "independenceTests.cache.misses";
+
+    /**
+     * Fgs: counters of arrows put on the queue, edges inserted and edges
+     * deleted; gauges of the size of the queue, its estimated memory use in
+     * bytes and the number of edges in the graph; timers of the search and
+     * its phases.
+     */
+    public static final String FGS_ARROWS_QUEUED = "fgs.arrowsQueued";
+    public static final String FGS_ARROWS_INSERTED = "fgs.arrowsInserted";
+    public static final String FGS_ARROWS_DELETED = "fgs.arrowsDeleted";
+    public static final String FGS_QUEUE_SIZE = "fgs.queueSize";
+    public static final String FGS_QUEUE_BYTES = "fgs.queueBytes";
+    public static final String FGS_NUM_EDGES = "fgs.numEdges";
+    public static final String FGS_SEARCH = "fgs.search";
+    public static final String FGS_INITIALIZE = "fgs.phase.initialize";
+    public static final String FGS_FORWARD = "fgs.phase.forward";
+    public static final String FGS_BACKWARD = "fgs.phase.backward";
+
+    /**
+     * FasStableConcurrent: gauges of the depth being searched, the number of
+     * nodes at that depth and how many of them are done; a counter of edges
+     * removed; a timer for each depth.
+     */
+    public static final String FAS_DEPTH = "fas.depth";
+    public static final String FAS_NODES = "fas.nodes";
+    public static final String FAS_NODES_DONE = "fas.nodesDone";
+    public static final String FAS_EDGES_REMOVED = "fas.edgesRemoved";
+    public static final String FAS_PHASE_DEPTH = "fas.phase.depth.";
+
+    /**
+     * GFci and Rfci: timers of their phases.
+     */
+    public static final String GFCI_FGS = "gfci.phase.fgs";
+    public static final String GFCI_SEPSETS = "gfci.phase.sepsets";
+    public static final String GFCI_ORIENT = "gfci.phase.orient";
+    public static final String RFCI_ADJACENCIES = "rfci.phase.adjacencies";
+    public static final String RFCI_R0 = "rfci.phase.r0";
+    public static final String RFCI_ORIENT = "rfci.phase.orient";
+
+    public static final int MAX_DEPTH = 16;
+
+    private static final TetradMetrics.Counter TESTS = TetradMetrics.getInstance().counter(INDEPENDENCE_TESTS);
+    private static final TetradMetrics.Counter[] TESTS_BY_DEPTH = new TetradMetrics.Counter[MAX_DEPTH + 1];
+    private static final TetradMetrics.Counter SCORES = TetradMetrics.getInstance().counter(LOCAL_SCORES);
+
+    static {
+        for (int d = 0; d < MAX_DEPTH; d++) {
+            TESTS_BY_DEPTH[d] = TetradMetrics.getInstance().counter(INDEPENDENCE_TESTS_DEPTH + d);
+        }
+
+        TESTS_BY_DEPTH[MAX_DEPTH] = TetradMetrics.getInstance().counter(INDEPENDENCE_TESTS_DEPTH + MAX_DEPTH + "+");
+    }
+
+    private SearchMetrics() {
+    }
+
+    /**
+     * Counts an independence test with a conditioning set of the given size.
+     */
+    static void independenceTest(int depth) {
+        if (!TetradMetrics.getInstance().isEnabled()) return;
+        TESTS.inc();
+        TESTS_BY_DEPTH[Math.min(depth, MAX_DEPTH)].inc();
+    }
+
+    /**
+     * Counts a local score calculation.
+     */
+    static void localScore() {
+        SCORES.inc();
+    }
+
+    /**
+     * Counts local score calculations done together, as when a score
+     * difference is calculated directly.
+     */
+    static void localScores(int n) {
+        SCORES.add(n);
+    }
+
+    static TetradMetrics.Counter counter(String name) {
+        return TetradMetrics.getInstance().counter(name);
+    }
+
+    static TetradMetrics.Gauge gauge(String name) {
+        return TetradMetrics.getInstance().gauge(name);
+    }
+
+    static TetradMetrics.Timer timer(String name) {
+        return TetradMetrics.getInstance().timer(name);
+    }
+}
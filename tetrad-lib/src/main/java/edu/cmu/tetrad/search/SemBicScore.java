@@ -39,7 +39,7 @@ import java.util.Set;
  *
  * @author Joseph Ramsey
  */
-public class SemBicScore implements Score {
+public class SemBicScore implements Score, MarginalBumps, DecomposableScore {
 
     // The covariance matrix.
     private ICovarianceMatrix covariances;
@@ -65,6 +65,12 @@ public class SemBicScore implements Score {
     private Set<Integer> forbidden = new HashSet<>();
     private final double logn;
 
+    // Cached Cholesky factors of parent covariance submatrices, updated incrementally.
+    private IncrementalCholesky cholesky;
+
+    // True if local scores should be calculated from incrementally updated Cholesky factors where possible.
+    private boolean useCholeskyUpdates = true;
+
     /**
      * Constructs the score using a covariance matrix.
      */
@@ -78,17 +84,29 @@ public class SemBicScore implements Score {
         this.sampleSize = covariances.getSampleSize();
         this.penaltyDiscount = 2;
         logn = Math.log(sampleSize);
+        this.cholesky = new IncrementalCholesky(covariances);
     }
 
     /**
      * Calculates the sample likelihood and BIC score for i given its parents in a simple SEM model
      */
     public double localScore(int i, int... parents) {
+        SearchMetrics.localScore();
+
         for (int p : parents) if (forbidden.contains(p)) return Double.NaN;
 
 //        if (parents.length == 0) return localScore(i);
 //        else if (parents.length == 1) return localScore(i, parents[0]);
 
+        if (useCholeskyUpdates) {
+            double residualVariance = cholesky.residualVariance(i, parents);
+
+            // Otherwise the parent covariance matrix is nearly singular; see below.
+            if (residualVariance > 0) {
+                return score(residualVariance, getSampleSize(), logn, parents.length, getPenaltyDiscount());
+            }
+        }
+
         double residualVariance = getCovariances().getValue(i, i);
         int n = getSampleSize();
         int p = parents.length;
@@ -128,6 +146,23 @@ public class SemBicScore implements Score {
 
     @Override
     public double localScoreDiff(int x, int y, int[] z) {
+        if (useCholeskyUpdates && !forbidden.contains(x)) {
+            boolean anyForbidden = false;
+            for (int p : z) if (forbidden.contains(p)) anyForbidden = true;
+
+            if (!anyForbidden) {
+                double[] residualVariances = cholesky.residualVariances(x, y, z);
+
+                if (residualVariances != null && residualVariances[0] > 0 && residualVariances[1] > 0) {
+                    SearchMetrics.localScores(2);
+                    int n = getSampleSize();
+                    double c = getPenaltyDiscount();
+                    return score(residualVariances[1], n, logn, z.length + 1, c)
+                            - score(residualVariances[0], n, logn, z.length, c);
+                }
+            }
+        }
+
         return localScore(y, append(z, x)) - localScore(y, z);
     }
 
@@ -136,6 +171,76 @@ public class SemBicScore implements Score {
         return localScore(y, x) - localScore(y);
     }
 
+    /**
+     * Calculates the single-parent bumps a tile of covariances at a time. For one parent, the residual variance
+     * is varY - cov(x, y)^2 / varX, and the bump is positive only if the residual variance is less than
+     * varY * exp(-c log n / n), so most pairs on wide data are screened out without taking a log. Bumps that are
+     * kept are calculated just as localScoreDiff calculates them.
+     */
+    @Override
+    public PairBumps getPositiveMarginalBumps() {
+        final int numVariables = variables.size();
+        final double[] variances = new double[numVariables];
+
+        for (int i = 0; i < numVariables; i++) {
+            variances[i] = getCovariances().getValue(i, i);
+        }
+
+        final int n = getSampleSize();
+        final double c = getPenaltyDiscount();
+
+        // A little slack, so that pairs right at the threshold are decided by the score itself.
+        final double threshold = Math.exp(-c * logn / n) * (1 + 1e-8);
+
+        return PairBumps.calculate(numVariables, new PairBumps.TileScorer() {
+            public void score(int fromChild, int toChild, int fromParent, int toParent, PairBumps bumps) {
+                int[] children = range(fromChild, toChild);
+                int[] parents = range(fromParent, toParent);
+                TetradMatrix covariances = getCovariances().getSelection(parents, children);
+                int numScored = 0;
+
+                for (int i = fromChild; i < toChild; i++) {
+                    double varY = variances[i];
+
+                    for (int j = Math.max(fromParent, i + 1); j < toParent; j++) {
+                        double varX = variances[j];
+                        double bump;
+
+                        // One regressor is singular only if its variance is zero.
+                        if (useCholeskyUpdates && forbidden.isEmpty() && varY > 0 && varX > 0) {
+                            double wx = covariances.get(j - fromParent, i - fromChild) / Math.sqrt(varX);
+                            double residualVariance = varY - wx * wx;
+
+                            if (!(residualVariance > 0)) {
+                                bump = localScoreDiff(j, i, new int[0]);
+                            } else if (residualVariance >= varY * threshold) {
+                                continue;
+                            } else {
+                                numScored += 2;
+                                bump = SemBicScore.this.score(residualVariance, n, logn, 1, c)
+                                        - SemBicScore.this.score(varY, n, logn, 0, c);
+                            }
+                        } else {
+                            bump = localScoreDiff(j, i, new int[0]);
+                        }
+
+                        if (bump > 0) {
+                            bumps.add(i, j, bump);
+                        }
+                    }
+                }
+
+                SearchMetrics.localScores(numScored);
+            }
+        });
+    }
+
+    private static int[] range(int from, int to) {
+        int[] range = new int[to - from];
+        for (int i = 0; i < range.length; i++) range[i] = from + i;
+        return range;
+    }
+
     private int[] append(int[] parents, int extra) {
         int[] all = new int[parents.length + 1];
         System.arraycopy(parents, 0, all, 0, parents.length);
@@ -147,6 +252,7 @@ public class SemBicScore implements Score {
      * Specialized scoring method for a single parent. Used to speed up the effect edges search.
      */
     public double localScore(int i, int parent) {
+        SearchMetrics.localScore();
         double residualVariance = getCovariances().getValue(i, i);
         int n = getSampleSize();
         int p = 1;
@@ -179,6 +285,7 @@ public class SemBicScore implements Score {
      * Specialized scoring method for no parents. Used to speed up the effect edges search.
      */
     public double localScore(int i) {
+        SearchMetrics.localScore();
         double residualVariance = getCovariances().getValue(i, i);
         int n = getSampleSize();
         int p = 0;
@@ -205,6 +312,20 @@ public class SemBicScore implements Score {
         this.ignoreLinearDependent = ignoreLinearDependent;
     }
 
+    /**
+     * True iff local scores are calculated from cached Cholesky factors of parent covariance submatrices, which
+     * are updated incrementally as parents are added or removed, rather than by inverting each submatrix. The
+     * scores are the same either way; nearly singular submatrices are always handled by inversion.
+     */
+    public boolean isUseCholeskyUpdates() {
+        return useCholeskyUpdates;
+    }
+
+    public void setUseCholeskyUpdates(boolean useCholeskyUpdates) {
+        this.useCholeskyUpdates = useCholeskyUpdates;
+        cholesky.clear();
+    }
+
     public void setOut(PrintStream out) {
         this.out = out;
     }
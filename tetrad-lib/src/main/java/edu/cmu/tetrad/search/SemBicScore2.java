@@ -38,7 +38,7 @@ import java.util.Set;
  *
  * @author Joseph Ramsey
  */
-public class SemBicScore2 implements Score {
+public class SemBicScore2 implements Score, DecomposableScore {
 
     private ICovarianceMatrix covarianceMatrix;
 
@@ -42,7 +42,7 @@ import java.util.List;
 public class SemBicScoreImages implements ISemBicScore, Score {
 
     // The covariance matrix.
-    private List<SemBicScore> semBicScores;
+    private final List<SemBicScore> semBicScores;
 
     // The variables of the covariance matrix.
     private List<Node> variables;
@@ -105,21 +105,17 @@ public class SemBicScoreImages implements ISemBicScore, Score {
     }
 
 
+    /**
+     * The average over the data sets, calculated in parallel for many data sets, of the score differences that
+     * are not NaN.
+     */
     @Override
-    public double localScoreDiff(int x, int y, int[] z) {
-        double sum = 0.0;
-        int count = 0;
-
-        for (SemBicScore score : semBicScores) {
-            double _score = score.localScoreDiff(x, y, z);
-
-            if (!Double.isNaN(_score)) {
-                sum += _score;
-                count++;
+    public double localScoreDiff(final int x, final int y, final int[] z) {
+        return DataSetAverage.average(semBicScores.size(), true, new DataSetAverage.DataSetScore() {
+            public double score(int dataSet) {
+                return semBicScores.get(dataSet).localScoreDiff(x, y, z);
             }
-        }
-
-        return sum / count;
+        });
     }
 
     @Override
@@ -130,20 +126,12 @@ public class SemBicScoreImages implements ISemBicScore, Score {
     /**
      * Calculates the sample likelihood and BIC score for i given its parents in a simple SEM model
      */
-    public double localScore(int i, int[] parents) {
-        double sum = 0.0;
-        int count = 0;
-
-        for (SemBicScore score : semBicScores) {
-            double _score = score.localScore(i, parents);
-
-            if (!Double.isNaN(_score)) {
-                sum += _score;
-                count++;
+    public double localScore(final int i, final int[] parents) {
+        return DataSetAverage.average(semBicScores.size(), true, new DataSetAverage.DataSetScore() {
+            public double score(int dataSet) {
+                return semBicScores.get(dataSet).localScore(i, parents);
             }
-        }
-
-        return sum / count;
+        });
     }
 
     public double localScore(int i, int[] parents, int index) {
@@ -165,39 +153,23 @@ public class SemBicScoreImages implements ISemBicScore, Score {
     /**
      * Specialized scoring method for a single parent. Used to speed up the effect edges search.
      */
-    public double localScore(int i, int parent) {
-        double sum = 0.0;
-        int count = 0;
-
-        for (SemBicScore score : semBicScores) {
-            double _score = score.localScore(i, parent);
-
-            if (!Double.isNaN(_score)) {
-                sum += _score;
-                count++;
+    public double localScore(final int i, final int parent) {
+        return DataSetAverage.average(semBicScores.size(), true, new DataSetAverage.DataSetScore() {
+            public double score(int dataSet) {
+                return semBicScores.get(dataSet).localScore(i, parent);
             }
-        }
-
-        return sum / count;
+        });
     }
 
     /**
      * Specialized scoring method for no parents. Used to speed up the effect edges search.
      */
-    public double localScore(int i) {
-        double sum = 0.0;
-        int count = 0;
-
-        for (SemBicScore score : semBicScores) {
-            double _score = score.localScore(i);
-
-            if (!Double.isNaN(_score)) {
-                sum += _score;
-                count++;
+    public double localScore(final int i) {
+        return DataSetAverage.average(semBicScores.size(), true, new DataSetAverage.DataSetScore() {
+            public double score(int dataSet) {
+                return semBicScores.get(dataSet).localScore(i);
             }
-        }
-
-        return sum / count;
+        });
     }
 
     public void setOut(PrintStream out) {
@@ -26,6 +26,8 @@ import edu.cmu.tetrad.util.TetradSerializable;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -38,7 +40,9 @@ import java.util.concurrent.ConcurrentHashMap;
  * So at the end of the search, a null sepset carries different information from an empty sepset.)</p> <p>We cast the
  * variable-like objects to Node to allow them either to be variables explicitly or else to be graph nodes that in some
  * model could be considered as variables. This allows us to use d-separation as a graphical indicator of what
- * independendence in models ideally should be.</p>
+ * independendence in models ideally should be.</p> <p>Pairs are stored by the indices of their nodes, packed into a
+ * long, with sepsets as arrays of node indices (see SepsetStore), so that large searches do not allocate a key set for
+ * each lookup. Sepsets may be set from several threads at once.</p>
  *
  * @author Joseph Ramsey
  */
@@ -46,10 +50,32 @@ public final class SepsetMap implements TetradSerializable {
     static final long serialVersionUID = 23L;
 
     /**
-     * @serial
+     * The serialized form, which is that of the earlier version of this class that kept the sepsets and
+     * p-values in maps from pairs of nodes, so that sessions saved with it can still be loaded.
+     *
+     * @serialField sepsets Map the sepsets, by unordered pairs of nodes.
+     * @serialField pValues Map the p-values, by unordered pairs of nodes.
+     * @serialField parents Map
+     * @serialField correlations Set
+     * @serialField returnEmptyIfNotSet boolean
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("sepsets", Map.class),
+            new ObjectStreamField("pValues", Map.class),
+            new ObjectStreamField("parents", Map.class),
+            new ObjectStreamField("correlations", Set.class),
+            new ObjectStreamField("returnEmptyIfNotSet", boolean.class)
+    };
+
+    /**
+     * The sepsets and p-values, by pairs of node indices; saved as maps, in writeObject.
      */
-    private Map<Set<Node>, List<Node>> sepsets = new ConcurrentHashMap<>();
-    private Map<Set<Node>, Double> pValues = new ConcurrentHashMap<>();
+    private transient SepsetStore store = new SepsetStore();
+
+    // Indices of the nodes seen so far, and the nodes by index.
+    private transient Map<Node, Integer> indices = new ConcurrentHashMap<>();
+    private transient volatile Node[] nodes = new Node[16];
+    private transient int numNodes = 0;
 
     private Map<Node, HashSet<Node>> parents = new HashMap<Node, HashSet<Node>>();
     private Set<Set<Node>> correlations;
@@ -60,9 +86,22 @@ public final class SepsetMap implements TetradSerializable {
     public SepsetMap() {
     }
 
+    /**
+     * Constructs a map for the given nodes, which are indexed up front. Other nodes may still be used.
+     */
+    public SepsetMap(List<Node> nodes) {
+        for (Node node : nodes) {
+            index(node);
+        }
+    }
+
     public SepsetMap(SepsetMap map) {
-        this.sepsets = new HashMap<>(map.sepsets);
-        this.pValues = new HashMap<>(map.pValues);
+        addAll(map);
+
+        for (long key : map.store.getKeys(true)) {
+            setPValue(map.node(SepsetStore.first(key)), map.node(SepsetStore.second(key)),
+                    map.store.getPValue(key));
+        }
     }
 
     /**
@@ -78,48 +117,60 @@ public final class SepsetMap implements TetradSerializable {
      * Sets the sepset for {x, y} to be z. Note that {x, y} is unordered.
      */
     public void set(Node x, Node y, List<Node> z) {
-        Set<Node> pair = new HashSet<Node>(2);
-        pair.add(x);
-        pair.add(y);
         if (z == null) {
-            sepsets.remove(pair);
+            int i = lookup(x);
+            int j = lookup(y);
+
+            if (i != -1 && j != -1) {
+                store.setSepset(SepsetStore.key(i, j), null);
+            }
         } else {
-            sepsets.put(pair, z);
+            int[] sepset = new int[z.size()];
+
+            for (int k = 0; k < sepset.length; k++) {
+                sepset[k] = index(z.get(k));
+            }
+
+            store.setSepset(SepsetStore.key(index(x), index(y)), sepset);
         }
     }
 
     public void setPValue(Node x, Node y, double p) {
-        Set<Node> pair = new HashSet<Node>(2);
-        pair.add(x);
-        pair.add(y);
-        pValues.put(pair, p);
+        store.setPValue(SepsetStore.key(index(x), index(y)), p);
     }
 
     /**
      * Retrieves the sepset previously set for {x, y}, or null if no such set was previously set.
      */
     public List<Node> get(Node x, Node y) {
-        Set<Node> pair = new HashSet<Node>(2);
-        pair.add(x);
-        pair.add(y);
-
-        if (correlations != null && !correlations.contains(pair)) {
-            return Collections.emptyList();
+        if (correlations != null) {
+            Set<Node> pair = new HashSet<Node>(2);
+            pair.add(x);
+            pair.add(y);
+
+            if (!correlations.contains(pair)) {
+                return Collections.emptyList();
+            }
         }
 
-        if (returnEmptyIfNotSet && sepsets.get(pair) == null) {
-            return Collections.emptyList();
+        int i = lookup(x);
+        int j = lookup(y);
+        int[] sepset = i == -1 || j == -1 ? null : store.getSepset(SepsetStore.key(i, j));
+
+        if (sepset == null) {
+            return returnEmptyIfNotSet ? Collections.<Node>emptyList() : null;
         }
 
-        return sepsets.get(pair);
+        return toNodes(sepset);
     }
 
+    /**
+     * @return the p-value set for {x, y}, or NaN if none was set.
+     */
     public double getPValue(Node x, Node y) {
-        Set<Node> pair = new HashSet<Node>(2);
-        pair.add(x);
-        pair.add(y);
-
-        return pValues.get(pair);
+        int i = lookup(x);
+        int j = lookup(y);
+        return i == -1 || j == -1 ? Double.NaN : store.getPValue(SepsetStore.key(i, j));
     }
 
     public void set(Node x, LinkedHashSet<Node> z) {
@@ -144,36 +195,71 @@ public final class SepsetMap implements TetradSerializable {
         }
 
         SepsetMap _sepset = (SepsetMap) o;
-        return sepsets.equals(_sepset.sepsets);
+        return sepsets().equals(_sepset.sepsets());
     }
 
+    public int hashCode() {
+        return sepsets().hashCode();
+    }
 
     /**
-     * Adds semantic checks to the default deserialization method. This method must have the standard signature for a
-     * readObject method, and the body of the method must begin with "s.defaultReadObject();". Other than that, any
-     * semantic checks can be specified and do not need to stay the same from version to version. A readObject method of
-     * this form may be added to any class, even if Tetrad sessions were previously saved out using a version of the
-     * class that didn't include it. (That's what the "s.defaultReadObject();" is for. See J. Bloch, Effective Java, for
-     * help.
+     * Reads the fields of the serialized form (see serialPersistentFields) and indexes the sepsets and
+     * p-values from them.
      *
      * @throws java.io.IOException
      * @throws ClassNotFoundException
      */
     private void readObject(ObjectInputStream s)
             throws IOException, ClassNotFoundException {
-        s.defaultReadObject();
+        ObjectInputStream.GetField fields = s.readFields();
+
+        store = new SepsetStore();
+        indices = new ConcurrentHashMap<>();
+        nodes = new Node[16];
 
-        if (sepsets == null) {
+        Map<Set<Node>, List<Node>> sepsets = (Map<Set<Node>, List<Node>>) fields.get("sepsets", null);
+        Map<Set<Node>, Double> pValues = (Map<Set<Node>, Double>) fields.get("pValues", null);
+        parents = (Map<Node, HashSet<Node>>) fields.get("parents", null);
+        correlations = (Set<Set<Node>>) fields.get("correlations", null);
+        returnEmptyIfNotSet = fields.get("returnEmptyIfNotSet", false);
+
+        if (sepsets == null || pValues == null || parents == null) {
             throw new NullPointerException();
         }
+
+        for (Set<Node> pair : sepsets.keySet()) {
+            List<Node> _pair = new ArrayList<>(pair);
+            set(_pair.get(0), _pair.get(_pair.size() - 1), sepsets.get(pair));
+        }
+
+        for (Set<Node> pair : pValues.keySet()) {
+            List<Node> _pair = new ArrayList<>(pair);
+            setPValue(_pair.get(0), _pair.get(_pair.size() - 1), pValues.get(pair));
+        }
+    }
+
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        Map<Set<Node>, Double> pValues = new HashMap<>();
+
+        for (long key : store.getKeys(true)) {
+            pValues.put(pair(key), store.getPValue(key));
+        }
+
+        ObjectOutputStream.PutField fields = s.putFields();
+        fields.put("sepsets", sepsets());
+        fields.put("pValues", pValues);
+        fields.put("parents", parents);
+        fields.put("correlations", correlations);
+        fields.put("returnEmptyIfNotSet", returnEmptyIfNotSet);
+        s.writeFields();
     }
 
     public int size() {
-        return sepsets.keySet().size();
+        return store.size();
     }
 
     public String toString() {
-        return sepsets.toString();
+        return sepsets().toString();
     }
 
     /**
@@ -193,11 +279,78 @@ public final class SepsetMap implements TetradSerializable {
     }
 
     public void addAll(SepsetMap newSepsets) {
-        sepsets.putAll(newSepsets.sepsets);
+        for (long key : newSepsets.store.getKeys(false)) {
+            int[] sepset = newSepsets.store.getSepset(key);
+            if (sepset == null) continue;
+
+            set(newSepsets.node(SepsetStore.first(key)), newSepsets.node(SepsetStore.second(key)),
+                    newSepsets.toNodes(sepset));
+        }
     }
-}
 
+    //=============================PRIVATE METHODS========================//
 
+    /**
+     * @return the index of the node, assigning the next one if it has none.
+     */
+    private int index(Node node) {
+        if (node == null) throw new NullPointerException("Null node.");
+        Integer index = indices.get(node);
+        if (index != null) return index;
+
+        synchronized (indices) {
+            index = indices.get(node);
+            if (index != null) return index;
+
+            Node[] _nodes = nodes;
 
+            if (numNodes == _nodes.length) {
+                _nodes = Arrays.copyOf(_nodes, 2 * _nodes.length);
+            }
 
+            _nodes[numNodes] = node;
+            nodes = _nodes;
+            indices.put(node, numNodes);
+            return numNodes++;
+        }
+    }
+
+    // The index of the node, or -1 if it has none.
+    private int lookup(Node node) {
+        Integer index = indices.get(node);
+        return index == null ? -1 : index;
+    }
 
+    private Node node(int index) {
+        return nodes[index];
+    }
+
+    private List<Node> toNodes(int[] sepset) {
+        List<Node> z = new ArrayList<>(sepset.length);
+        Node[] _nodes = nodes;
+
+        for (int k : sepset) {
+            z.add(_nodes[k]);
+        }
+
+        return z;
+    }
+
+    private Set<Node> pair(long key) {
+        Set<Node> pair = new HashSet<Node>(2);
+        pair.add(node(SepsetStore.first(key)));
+        pair.add(node(SepsetStore.second(key)));
+        return pair;
+    }
+
+    private Map<Set<Node>, List<Node>> sepsets() {
+        Map<Set<Node>, List<Node>> sepsets = new HashMap<>();
+
+        for (long key : store.getKeys(false)) {
+            int[] sepset = store.getSepset(key);
+            if (sepset != null) sepsets.put(pair(key), toNodes(sepset));
+        }
+
+        return sepsets;
+    }
+}
@@ -0,0 +1,264 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The storage behind SepsetMap: for unordered pairs of variable indices
+ * {i, j}, packed into a long, a sepset as an int array of variable indices
+ * and a p-value as a double. Entries are kept in open-addressing tables, one
+ * per segment, so there are no boxed keys and no entry objects. Reads take
+ * no locks; writes lock only the segment of the pair, so the threads of a
+ * concurrent adjacency search rarely meet.
+ *
+ * @author Joseph Ramsey
+ */
+final class SepsetStore {
+
+    private static final int NUM_SEGMENTS = 32;
+
+    // Marks an entry with no sepset, as distinct from an empty one.
+    private static final int[] NONE = null;
+
+    private final Segment[] segments = new Segment[NUM_SEGMENTS];
+
+    SepsetStore() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * @return the key for the unordered pair {i, j}.
+     */
+    static long key(int i, int j) {
+        if (i < 0 || j < 0) {
+            throw new IllegalArgumentException("Indices must be non-negative: " + i + ", " + j);
+        }
+
+        if (i > j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+
+        return ((long) i << 32) | j;
+    }
+
+    static int first(long key) {
+        return (int) (key >>> 32);
+    }
+
+    static int second(long key) {
+        return (int) key;
+    }
+
+    /**
+     * @return the sepset for the key, or null if none has been set.
+     */
+    int[] getSepset(long key) {
+        Table table = segment(key).table;
+        int slot = table.find(key);
+        return slot == -1 ? NONE : table.sepsets.get(slot);
+    }
+
+    /**
+     * @return the p-value for the key, or NaN if none has been set.
+     */
+    double getPValue(long key) {
+        Table table = segment(key).table;
+        int slot = table.find(key);
+        return slot == -1 ? Double.NaN : Double.longBitsToDouble(table.pValues.get(slot));
+    }
+
+    /**
+     * Sets the sepset for the key; null removes it.
+     */
+    void setSepset(long key, int[] sepset) {
+        Segment segment = segment(key);
+
+        synchronized (segment) {
+            int slot = segment.table.find(key);
+
+            if (slot == -1) {
+                if (sepset == NONE) return;
+                slot = segment.insert(key);
+            }
+
+            int[] old = segment.table.sepsets.getAndSet(slot, sepset);
+            if (old == NONE && sepset != NONE) segment.numSepsets++;
+            if (old != NONE && sepset == NONE) segment.numSepsets--;
+        }
+    }
+
+    void setPValue(long key, double p) {
+        Segment segment = segment(key);
+
+        synchronized (segment) {
+            int slot = segment.table.find(key);
+            if (slot == -1) slot = segment.insert(key);
+            segment.table.pValues.set(slot, Double.doubleToRawLongBits(p));
+        }
+    }
+
+    /**
+     * @return the number of pairs with a sepset.
+     */
+    int size() {
+        int size = 0;
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.numSepsets;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * @return the keys of the pairs with a sepset (if withPValues is false) or a
+     * p-value (if it is true), in no particular order.
+     */
+    long[] getKeys(boolean withPValues) {
+        long[] keys = new long[16];
+        int n = 0;
+
+        for (Segment segment : segments) {
+            Table table = segment.table;
+
+            for (int slot = 0; slot < table.keys.length(); slot++) {
+                long stored = table.keys.get(slot);
+                if (stored == 0) continue;
+
+                if (withPValues) {
+                    if (Double.isNaN(Double.longBitsToDouble(table.pValues.get(slot)))) continue;
+                } else if (table.sepsets.get(slot) == NONE) {
+                    continue;
+                }
+
+                if (n == keys.length) {
+                    long[] _keys = new long[2 * n];
+                    System.arraycopy(keys, 0, _keys, 0, n);
+                    keys = _keys;
+                }
+
+                keys[n++] = stored - 1;
+            }
+        }
+
+        long[] ret = new long[n];
+        System.arraycopy(keys, 0, ret, 0, n);
+        return ret;
+    }
+
+    //===========================================PRIVATE METHODS=====================================//
+
+    private Segment segment(long key) {
+        return segments[(int) (mix(key) >>> 59)];
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Segment {
+
+        // Replaced, not modified, when it fills up, so readers always see a consistent table.
+        volatile Table table = new Table(16);
+
+        // The number of slots in use and the number with a sepset; guarded by this.
+        int numUsed;
+        int numSepsets;
+
+        // Called with the lock held.
+        int insert(long key) {
+            if (2 * (numUsed + 1) > table.keys.length()) {
+                table = table.grow();
+            }
+
+            numUsed++;
+            return table.add(key, NONE, Double.doubleToRawLongBits(Double.NaN));
+        }
+    }
+
+    private static final class Table {
+
+        // Key + 1 for each slot, 0 if empty.
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<int[]> sepsets;
+        final AtomicLongArray pValues;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            sepsets = new AtomicReferenceArray<>(capacity);
+            pValues = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+        }
+
+        int find(long key) {
+            long stored = key + 1;
+            int slot = (int) mix(key) & mask;
+
+            while (true) {
+                long k = keys.get(slot);
+                if (k == stored) return slot;
+                if (k == 0) return -1;
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        // The values are written before the key, which publishes them.
+        int add(long key, int[] sepset, long pValue) {
+            int slot = (int) mix(key) & mask;
+
+            while (keys.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            sepsets.set(slot, sepset);
+            pValues.set(slot, pValue);
+            keys.set(slot, key + 1);
+            return slot;
+        }
+
+        Table grow() {
+            Table table = new Table(2 * keys.length());
+
+            for (int slot = 0; slot < keys.length(); slot++) {
+                long stored = keys.get(slot);
+
+                if (stored != 0) {
+                    table.add(stored - 1, sepsets.get(slot), pValues.get(slot));
+                }
+            }
+
+            return table;
+        }
+    }
+}
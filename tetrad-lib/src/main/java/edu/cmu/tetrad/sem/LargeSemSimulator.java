@@ -26,15 +26,14 @@ import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.DoubleDataBox;
 import edu.cmu.tetrad.data.VerticalDoubleDataBox;
 import edu.cmu.tetrad.graph.*;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradExecutors;
+import edu.cmu.tetrad.util.RandomStream;
 import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TetradAlgebra;
 import edu.cmu.tetrad.util.dist.Distribution;
 import edu.cmu.tetrad.util.dist.Split;
 import edu.cmu.tetrad.util.dist.Uniform;
 import org.apache.commons.collections4.map.HashedMap;
-import org.apache.commons.math3.distribution.NormalDistribution;
-import org.apache.commons.math3.random.Well1024a;
 
 import java.io.PrintStream;
 import java.util.*;
@@ -69,7 +68,7 @@ public final class LargeSemSimulator {
     private double varLow = 1.0;
     private double varHigh = 3.0;
     private PrintStream out = System.out;
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    private ForkJoinPool pool = TetradExecutors.getInstance().getPool();
     private int[] tierIndices;
     private boolean verbose = false;
 
@@ -136,14 +135,14 @@ public final class LargeSemSimulator {
         return dataSet;
     }
 
-    long seed = new Date().getTime();
-
-
     // Trying again to parallelize simulateDataAcyclic.
     public DataSet simulateDataAcyclic2(int sampleSize) {
         int size = variableNodes.size();
         setupModel(size);
 
+        // Row i is drawn from stream i, so the data do not depend on the scheduling of the rows.
+        final long seed = RandomUtil.getInstance().nextLong();
+
         class SimulateRowTask extends RecursiveTask<double[]> {
             private final int i;
 
@@ -153,8 +152,7 @@ public final class LargeSemSimulator {
 
             @Override
             protected double[] compute() {
-                NormalDistribution normal = new NormalDistribution(new Well1024a(++seed), 0, 1);//sqrt(errorVars[col]));
-                normal.sample();
+                RandomStream normal = RandomStream.forTask(seed, i);
 
                 if (verbose && (i + 1) % 50 == 0)
                     System.out.println("Simulating " + (i + 1));
@@ -162,7 +160,7 @@ public final class LargeSemSimulator {
                 double[] _row = new double[tierIndices.length];
 
                 for (int col : tierIndices) {
-                    double value = normal.sample() * sqrt(errorVars[col]);
+                    double value = normal.nextGaussian() * sqrt(errorVars[col]);
 
 //                    double value = RandomUtil.getInstance().nextNormal(0, sqrt(errorVars[col]));
 
@@ -190,7 +188,7 @@ public final class LargeSemSimulator {
             @Override
             protected double[][] compute() {
                 Queue<SimulateRowTask> tasks = new ArrayDeque<>();
-                List<double[]> rows = new ArrayList<>();
+                double[][] rows = new double[numRows][];
 
                 for (int i = 0; i < numRows; i++) {
                     SimulateRowTask task = new SimulateRowTask(i);
@@ -199,40 +197,41 @@ public final class LargeSemSimulator {
 
                     for (SimulateRowTask _task : new ArrayList<>(tasks)) {
                         if (_task.isDone()) {
-                            rows.add(_task.join());
+                            rows[_task.i] = _task.join();
                             tasks.remove(_task);
                         }
                     }
 
                     if (tasks.size() >= maxThreads) {
                         SimulateRowTask _task = tasks.poll();
-                        rows.add(_task.join());
+                        rows[_task.i] = _task.join();
                     }
                 }
 
                 for (SimulateRowTask task : tasks) {
-                    rows.add(task.join());
-                }
-
-                double[][] ret = new double[rows.size()][];
-
-                for (int i = 0; i < ret.length; i++) {
-                    ret[i] = rows.get(i);
+                    rows[task.i] = task.join();
                 }
 
-                return ret;
+                return rows;
             }
         }
 
-        double[][] all = ForkJoinPoolInstance.getInstance().getPool().invoke(new SimulateTask(sampleSize));
+        double[][] all = pool.invoke(new SimulateTask(sampleSize));
 
         return new BoxDataSet(new DoubleDataBox(all), variableNodes);
     }
 
+    /**
+     * Simulates data in parallel. Each row is drawn from its own random stream,
+     * derived from a seed taken from RandomUtil, so for a given seed the data
+     * are the same whatever the parallelism of the pool.
+     */
     public DataSet simulateDataAcyclic(int sampleSize) {
         int size = variableNodes.size();
         setupModel(size);
 
+        final long seed = RandomUtil.getInstance().nextLong();
+
         class SimulateTask extends RecursiveTask<Boolean> {
             private final int from;
             private final int to;
@@ -248,8 +247,8 @@ public final class LargeSemSimulator {
 
             @Override
             protected Boolean compute() {
-                if (from - to > chunk) {
-                    int mid = from + to / 2;
+                if (to - from > chunk) {
+                    int mid = (from + to) / 2;
                     SimulateTask left = new SimulateTask(from, mid, all, chunk);
                     SimulateTask right = new SimulateTask(mid, to, all, chunk);
                     left.fork();
@@ -258,14 +257,13 @@ public final class LargeSemSimulator {
                     return true;
                 } else {
                     for (int i = from; i < to; i++) {
-                        NormalDistribution normal = new NormalDistribution(new Well1024a(++seed), 0, 1);//sqrt(errorVars[col]));
-                        normal.sample();
+                        RandomStream normal = RandomStream.forTask(seed, i);
 
                         if (verbose && (i + 1) % 50 == 0)
                             System.out.println("Simulating " + (i + 1));
 
                         for (int col : tierIndices) {
-                            double value = normal.sample() * sqrt(errorVars[col]);
+                            double value = normal.nextGaussian() * sqrt(errorVars[col]);
 
                             for (int j = 0; j < parents[col].length; j++) {
                                 value += all[parents[col][j]][i] * coefs[col][j];
@@ -284,9 +282,9 @@ public final class LargeSemSimulator {
 
         double[][] all = new double[variableNodes.size()][sampleSize];
 
-        int chunk = sampleSize / ForkJoinPoolInstance.getInstance().getPool().getParallelism() + 1;
+        int chunk = sampleSize / pool.getParallelism() + 1;
 
-        ForkJoinPoolInstance.getInstance().getPool().invoke(new SimulateTask(0, sampleSize, all, chunk));
+        pool.invoke(new SimulateTask(0, sampleSize, all, chunk));
 
         return new BoxDataSet(new VerticalDoubleDataBox(all), variableNodes);
     }
@@ -374,6 +372,19 @@ public final class LargeSemSimulator {
         return verbose;
     }
 
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the pool used by the parallel simulations; by default the default
+     * pool of TetradExecutors.
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) throw new NullPointerException("Pool not provided.");
+        this.pool = pool;
+    }
+
     public void setVerbose(boolean verbose) {
         this.verbose = verbose;
     }
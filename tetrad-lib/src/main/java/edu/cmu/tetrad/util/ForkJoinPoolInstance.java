@@ -26,10 +26,11 @@ import java.util.concurrent.ForkJoinPool;
 /**
  * Static instance of a ForkJoinPool. Not sure this is necessary.
  * Created by josephramsey on 2/7/15.
+ *
+ * @deprecated Use TetradExecutors, which this now delegates to.
  */
 public class ForkJoinPoolInstance {
     private static final ForkJoinPoolInstance INSTANCE = new ForkJoinPoolInstance();
-    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 
     private ForkJoinPoolInstance() {
 
@@ -39,8 +40,10 @@ public class ForkJoinPoolInstance {
         return INSTANCE;
     }
 
+    /**
+     * @return the default pool of TetradExecutors.
+     */
     public ForkJoinPool getPool() {
-        return pool;
+        return TetradExecutors.getInstance().getPool();
     }
 }
-
@@ -0,0 +1,303 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The values of the metrics at one time, as taken by TetradMetrics.snapshot().
+ * Timer values are in nanoseconds.
+ *
+ * @author Joseph Ramsey
+ */
+public final class MetricsSnapshot {
+    private final long timeMillis;
+    final SortedMap<String, Long> counters = new TreeMap<>();
+    final SortedMap<String, Long> gauges = new TreeMap<>();
+    final SortedMap<String, Summary> timers = new TreeMap<>();
+    final SortedMap<String, Summary> histograms = new TreeMap<>();
+    final List<PoolMetrics> pools = new ArrayList<>();
+
+    MetricsSnapshot(long timeMillis) {
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * @return the time the snapshot was taken, as from System.currentTimeMillis().
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * @return the value of the given counter, or 0 if it has not been counted.
+     */
+    public long getCounter(String name) {
+        Long value = counters.get(name);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * @return the value of the given gauge, or 0 if it has not been set.
+     */
+    public long getGauge(String name) {
+        Long value = gauges.get(name);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * @return the durations recorded by the given timer, in nanoseconds, or
+     * null if there are none.
+     */
+    public Summary getTimer(String name) {
+        return timers.get(name);
+    }
+
+    /**
+     * @return the values recorded by the given histogram, or null if there are
+     * none.
+     */
+    public Summary getHistogram(String name) {
+        return histograms.get(name);
+    }
+
+    public SortedMap<String, Long> getCounters() {
+        return Collections.unmodifiableSortedMap(counters);
+    }
+
+    public SortedMap<String, Long> getGauges() {
+        return Collections.unmodifiableSortedMap(gauges);
+    }
+
+    public SortedMap<String, Summary> getTimers() {
+        return Collections.unmodifiableSortedMap(timers);
+    }
+
+    public SortedMap<String, Summary> getHistograms() {
+        return Collections.unmodifiableSortedMap(histograms);
+    }
+
+    public List<PoolMetrics> getPools() {
+        return Collections.unmodifiableList(pools);
+    }
+
+    /**
+     * @return the snapshot as a JSON object with members "time", "counters",
+     * "gauges", "timers", "histograms" and "pools". Timers are given in
+     * milliseconds.
+     */
+    public String toJson() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("{\n  \"time\": ").append(timeMillis);
+
+        buf.append(",\n  \"counters\": {");
+        appendLongs(buf, counters);
+        buf.append("}");
+
+        buf.append(",\n  \"gauges\": {");
+        appendLongs(buf, gauges);
+        buf.append("}");
+
+        buf.append(",\n  \"timers\": {");
+        appendSummaries(buf, timers, 1e-6);
+        buf.append("}");
+
+        buf.append(",\n  \"histograms\": {");
+        appendSummaries(buf, histograms, 1.0);
+        buf.append("}");
+
+        buf.append(",\n  \"pools\": [");
+
+        for (int i = 0; i < pools.size(); i++) {
+            PoolMetrics pool = pools.get(i);
+            buf.append(i == 0 ? "\n    {" : ",\n    {");
+            buf.append("\"name\": ").append(quote(pool.getName()));
+            buf.append(", \"parallelism\": ").append(pool.getParallelism());
+            buf.append(", \"threads\": ").append(pool.getPoolSize());
+            buf.append(", \"active\": ").append(pool.getActiveThreadCount());
+            buf.append(", \"queuedTasks\": ").append(pool.getQueuedTaskCount());
+            buf.append(", \"queuedSubmissions\": ").append(pool.getQueuedSubmissionCount());
+            buf.append(", \"steals\": ").append(pool.getStealCount());
+            buf.append(", \"completed\": ").append(pool.getCompletedTaskCount());
+            buf.append(", \"meanLatencyMillis\": ").append(number(pool.getMeanLatencyMillis()));
+            buf.append(", \"maxLatencyMillis\": ").append(number(pool.getMaxLatencyMillis()));
+            buf.append("}");
+        }
+
+        buf.append(pools.isEmpty() ? "]" : "\n  ]");
+        buf.append("\n}\n");
+        return buf.toString();
+    }
+
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            buf.append(entry.getKey()).append(" = ").append(entry.getValue()).append("\n");
+        }
+
+        for (Map.Entry<String, Long> entry : gauges.entrySet()) {
+            buf.append(entry.getKey()).append(" = ").append(entry.getValue()).append("\n");
+        }
+
+        for (Map.Entry<String, Summary> entry : timers.entrySet()) {
+            Summary timer = entry.getValue();
+            buf.append(entry.getKey()).append(": count = ").append(timer.getCount())
+                    .append(", total (s) = ").append(timer.getSum() / 1e9)
+                    .append(", max (ms) = ").append(timer.getMax() / 1e6).append("\n");
+        }
+
+        for (Map.Entry<String, Summary> entry : histograms.entrySet()) {
+            buf.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+
+        for (PoolMetrics pool : pools) {
+            buf.append(pool).append("\n");
+        }
+
+        return buf.toString();
+    }
+
+    private static void appendLongs(StringBuilder buf, Map<String, Long> map) {
+        boolean first = true;
+
+        for (Map.Entry<String, Long> entry : map.entrySet()) {
+            buf.append(first ? "\n    " : ",\n    ");
+            buf.append(quote(entry.getKey())).append(": ").append(entry.getValue());
+            first = false;
+        }
+
+        if (!first) buf.append("\n  ");
+    }
+
+    private static void appendSummaries(StringBuilder buf, Map<String, Summary> map, double scale) {
+        boolean first = true;
+
+        for (Map.Entry<String, Summary> entry : map.entrySet()) {
+            Summary s = entry.getValue();
+            buf.append(first ? "\n    " : ",\n    ");
+            buf.append(quote(entry.getKey())).append(": {");
+            buf.append("\"count\": ").append(s.getCount());
+            buf.append(", \"sum\": ").append(number(s.getSum() * scale));
+            buf.append(", \"min\": ").append(number(s.getMin() * scale));
+            buf.append(", \"max\": ").append(number(s.getMax() * scale));
+            buf.append(", \"mean\": ").append(number(s.getMean() * scale));
+            buf.append(", \"p50\": ").append(number(s.getP50() * scale));
+            buf.append(", \"p90\": ").append(number(s.getP90() * scale));
+            buf.append(", \"p99\": ").append(number(s.getP99() * scale));
+            buf.append("}");
+            first = false;
+        }
+
+        if (!first) buf.append("\n  ");
+    }
+
+    private static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return "null";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    private static String quote(String s) {
+        StringBuilder buf = new StringBuilder("\"");
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                buf.append('\\').append(c);
+            } else if (c < 0x20) {
+                buf.append(String.format("\\u%04x", (int) c));
+            } else {
+                buf.append(c);
+            }
+        }
+
+        return buf.append('"').toString();
+    }
+
+    /**
+     * The count, sum, range and quantiles of the values recorded by a timer or
+     * histogram. Quantiles are estimated from the buckets of the histogram.
+     */
+    public static final class Summary {
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+
+        Summary(long count, long sum, long min, long max, long p50, long p90, long p99) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? Double.NaN : sum / (double) count;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public String toString() {
+            return "count = " + count + ", mean = " + getMean() + ", min = " + min + ", max = " + max
+                    + ", p50 = " + p50 + ", p90 = " + p90 + ", p99 = " + p99;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+/**
+ * A snapshot of the state of one of the pools of TetradExecutors.
+ *
+ * @author Joseph Ramsey
+ * @see TetradExecutors#getMetrics(String)
+ */
+public final class PoolMetrics {
+    private final String name;
+    private final int parallelism;
+    private final int poolSize;
+    private final int activeThreadCount;
+    private final long queuedTaskCount;
+    private final int queuedSubmissionCount;
+    private final long stealCount;
+    private final long completedTaskCount;
+    private final long totalLatencyNanos;
+    private final long maxLatencyNanos;
+
+    PoolMetrics(String name, int parallelism, int poolSize, int activeThreadCount, long queuedTaskCount,
+                int queuedSubmissionCount, long stealCount, long completedTaskCount, long totalLatencyNanos,
+                long maxLatencyNanos) {
+        this.name = name;
+        this.parallelism = parallelism;
+        this.poolSize = poolSize;
+        this.activeThreadCount = activeThreadCount;
+        this.queuedTaskCount = queuedTaskCount;
+        this.queuedSubmissionCount = queuedSubmissionCount;
+        this.stealCount = stealCount;
+        this.completedTaskCount = completedTaskCount;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the number of worker threads started and not yet terminated.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getActiveThreadCount() {
+        return activeThreadCount;
+    }
+
+    /**
+     * @return the number of tasks forked by workers and waiting in their
+     * queues (an estimate).
+     */
+    public long getQueuedTaskCount() {
+        return queuedTaskCount;
+    }
+
+    /**
+     * @return the number of tasks submitted from outside the pool and not yet
+     * started (an estimate).
+     */
+    public int getQueuedSubmissionCount() {
+        return queuedSubmissionCount;
+    }
+
+    /**
+     * @return the number of tasks stolen from one worker's queue by another
+     * (an estimate).
+     */
+    public long getStealCount() {
+        return stealCount;
+    }
+
+    /**
+     * @return the number of top-level tasks (those passed to invoke or
+     * invokeAll) completed; 0 for pools not created by TetradExecutors.
+     */
+    public long getCompletedTaskCount() {
+        return completedTaskCount;
+    }
+
+    /**
+     * @return the mean time from submission to completion of a top-level
+     * task, in milliseconds, or 0 if none has completed.
+     */
+    public double getMeanLatencyMillis() {
+        return completedTaskCount == 0 ? 0 : totalLatencyNanos / (1e6 * completedTaskCount);
+    }
+
+    /**
+     * @return the longest time from submission to completion of a top-level
+     * task, in milliseconds.
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1e6;
+    }
+
+    public String toString() {
+        return name + ": parallelism = " + parallelism
+                + ", threads = " + poolSize
+                + ", active = " + activeThreadCount
+                + ", queued tasks = " + queuedTaskCount
+                + ", queued submissions = " + queuedSubmissionCount
+                + ", steals = " + stealCount
+                + ", completed = " + completedTaskCount
+                + ", mean latency (ms) = " + getMeanLatencyMillis()
+                + ", max latency (ms) = " + getMaxLatencyMillis();
+    }
+}
@@ -0,0 +1,312 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * A small, fast random number generator (xoroshiro128++, seeded by SplitMix64)
+ * meant to be confined to one thread or task. Streams are derived from a
+ * master seed, either by task index, with forTask, or by splitting an existing
+ * stream. A parallel computation that gives task i the stream forTask(seed, i)
+ * produces the same numbers however its tasks are scheduled, so its output is
+ * reproducible for a given seed regardless of the number of threads.
+ * <p>
+ * The master seed is usually drawn from RandomUtil, so that setting the seed
+ * there still makes a simulation repeatable. Streams are not synchronized and
+ * should not be shared between threads. For distributions not sampled here, a
+ * stream may be passed as a RandomGenerator to the Apache distributions.
+ *
+ * @author Joseph Ramsey
+ */
+public final class RandomStream implements RandomGenerator {
+
+    // Increment of the SplitMix64 sequence (the golden ratio, as a 64 bit fraction).
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long s0;
+    private long s1;
+
+    // The second normal from the last polar draw, if not yet used.
+    private double nextNormal;
+    private boolean haveNextNormal = false;
+
+    //========================================CONSTRUCTORS===================================//
+
+    /**
+     * Constructs a stream from the given seed.
+     */
+    public RandomStream(long seed) {
+        setSeed(seed);
+    }
+
+    private RandomStream(long s0, long s1) {
+        setState(s0, s1);
+    }
+
+    /**
+     * @return the stream for task <code>index</code> of a computation with the
+     * given master seed. Different indices give different, statistically
+     * independent streams.
+     */
+    public static RandomStream forTask(long seed, long index) {
+        long x = mix64(seed) + GOLDEN_GAMMA * (index + 1);
+        return new RandomStream(mix64(x), mix64(x + GOLDEN_GAMMA));
+    }
+
+    /**
+     * @return a new stream seeded from this one, which advances this stream.
+     * Splitting the same stream in the same order always gives the same
+     * children.
+     */
+    public RandomStream split() {
+        return new RandomStream(mix64(nextLong()), mix64(nextLong()));
+    }
+
+    //=======================================PUBLIC METHODS=================================//
+
+    public void setSeed(int seed) {
+        setSeed((long) seed);
+    }
+
+    public void setSeed(int[] seed) {
+        long x = 0;
+
+        for (int s : seed) {
+            x = mix64(x + GOLDEN_GAMMA + s);
+        }
+
+        setSeed(x);
+    }
+
+    public void setSeed(long seed) {
+        long x = seed + GOLDEN_GAMMA;
+        setState(mix64(x), mix64(x + GOLDEN_GAMMA));
+    }
+
+    public long nextLong() {
+        final long s0 = this.s0;
+        long s1 = this.s1;
+        final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+
+        s1 ^= s0;
+        this.s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+        this.s1 = Long.rotateLeft(s1, 28);
+
+        return result;
+    }
+
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * @return a uniform int in [0, n), without bias.
+     */
+    public int nextInt(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Bound must be positive: " + n);
+        }
+
+        // Lemire's multiply and reject.
+        long m = (nextLong() >>> 32) * n;
+        long low = m & 0xffffffffL;
+
+        if (low < n) {
+            long threshold = (0x100000000L - n) % n;
+
+            while (low < threshold) {
+                m = (nextLong() >>> 32) * n;
+                low = m & 0xffffffffL;
+            }
+        }
+
+        return (int) (m >>> 32);
+    }
+
+    /**
+     * @return a uniform double in [0, 1).
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    public void nextBytes(byte[] bytes) {
+        int i = 0;
+
+        while (i < bytes.length) {
+            long r = nextLong();
+
+            for (int k = 0; k < 8 && i < bytes.length; k++) {
+                bytes[i++] = (byte) r;
+                r >>>= 8;
+            }
+        }
+    }
+
+    /**
+     * @return a standard normal, by the polar method, which gives two normals
+     * for each accepted pair of uniforms.
+     */
+    public double nextGaussian() {
+        if (haveNextNormal) {
+            haveNextNormal = false;
+            return nextNormal;
+        }
+
+        double u, v, s;
+
+        do {
+            u = 2.0 * nextDouble() - 1.0;
+            v = 2.0 * nextDouble() - 1.0;
+            s = u * u + v * v;
+        } while (s >= 1.0 || s == 0.0);
+
+        double f = Math.sqrt(-2.0 * Math.log(s) / s);
+        nextNormal = v * f;
+        haveNextNormal = true;
+        return u * f;
+    }
+
+    /**
+     * @param mean The mean of the Normal.
+     * @param sd   The standard deviation of the Normal.
+     */
+    public double nextNormal(double mean, double sd) {
+        if (sd < 0) {
+            throw new IllegalArgumentException("Standard deviation must be non-negative: " + sd);
+        }
+
+        return mean + sd * nextGaussian();
+    }
+
+    /**
+     * @return a uniform double in [low, high).
+     */
+    public double nextUniform(double low, double high) {
+        if (low >= high) {
+            throw new IllegalArgumentException("Low must be less than high.");
+        }
+
+        return low + (high - low) * nextDouble();
+    }
+
+    /**
+     * @param lambda The rate parameter. The mean is 1 / lambda.
+     */
+    public double nextExponential(double lambda) {
+        if (lambda <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + lambda);
+        }
+
+        return -Math.log1p(-nextDouble()) / lambda;
+    }
+
+    /**
+     * @param shape The shape parameter.
+     * @param scale The scale parameter.
+     * @return a Gamma deviate, by the method of Marsaglia and Tsang.
+     */
+    public double nextGamma(double shape, double scale) {
+        if (shape <= 0 || scale <= 0) {
+            throw new IllegalArgumentException("Shape and scale must be positive: " + shape + ", " + scale);
+        }
+
+        if (shape < 1) {
+            double u;
+
+            do {
+                u = nextDouble();
+            } while (u == 0.0);
+
+            return nextGamma(shape + 1, scale) * Math.pow(u, 1.0 / shape);
+        }
+
+        double d = shape - 1.0 / 3.0;
+        double c = 1.0 / Math.sqrt(9.0 * d);
+
+        while (true) {
+            double x, v;
+
+            do {
+                x = nextGaussian();
+                v = 1.0 + c * x;
+            } while (v <= 0);
+
+            v = v * v * v;
+            double u = nextDouble();
+
+            if (u < 1.0 - 0.0331 * x * x * x * x) return scale * d * v;
+            if (Math.log(u) < 0.5 * x * x + d * (1.0 - v + Math.log(v))) return scale * d * v;
+        }
+    }
+
+    /**
+     * @param df The degrees of freedom.
+     */
+    public double nextChiSquare(double df) {
+        return nextGamma(df / 2.0, 2.0);
+    }
+
+    /**
+     * Shuffles the array in place (Fisher-Yates).
+     */
+    public void shuffle(int[] array) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = nextInt(i + 1);
+            int t = array[i];
+            array[i] = array[j];
+            array[j] = t;
+        }
+    }
+
+    //========================================PRIVATE METHODS==================================//
+
+    private void setState(long s0, long s1) {
+
+        // The all zero state is the one state the generator cannot leave.
+        if (s0 == 0 && s1 == 0) {
+            s1 = GOLDEN_GAMMA;
+        }
+
+        this.s0 = s0;
+        this.s1 = s1;
+        this.haveNextNormal = false;
+    }
+
+    // The SplitMix64 finalizer, a bijection on longs.
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -101,6 +101,16 @@ public class RandomUtil {
         return randomGenerator.nextDouble();
     }
 
+    /**
+     * @return a uniform long, for instance the master seed of a set of
+     * RandomStreams, so that setting the seed here makes a parallel simulation
+     * repeatable.
+     * @see RandomStream#forTask
+     */
+    public long nextLong() {
+        return randomGenerator.nextLong();
+    }
+
     /**
      * @param low  Ibid.
      * @param high Ibid.
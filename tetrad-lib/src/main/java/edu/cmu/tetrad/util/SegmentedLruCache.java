@@ -0,0 +1,291 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+package edu.cmu.tetrad.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded map that may be shared among threads, for the caches of scores, tests and data. It is split into
+ * independently locked segments, chosen by the hash of the key, each of which keeps its entries in least recently
+ * used order and evicts the eldest entries once its share of the maximum size is exceeded.
+ * <p>
+ * Each entry counts as one toward the maximum size unless weigh is overridden, for instance to bound the total
+ * number of cells in cached tables rather than the number of tables. A value heavier than a segment's share is
+ * not cached.
+ *
+ * @author Joseph Ramsey
+ */
+public class SegmentedLruCache<K, V> {
+
+    // The segments of the map, each with its own lock.
+    private final Segment<K, V>[] segments;
+
+    // segments.length - 1; the number of segments is a power of two.
+    private final int segmentMask;
+
+    // The maximum total weight of the entries.
+    private final int maxSize;
+
+    /**
+     * @param maxSize The maximum total weight of the entries; by default, the maximum number of entries. Beyond
+     *                this, the least recently used entries are evicted.
+     */
+    public SegmentedLruCache(int maxSize) {
+        this(maxSize, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxSize          The maximum total weight of the entries.
+     * @param concurrencyLevel The expected number of threads using the cache at once; this is rounded up to a power
+     *                         of two to give the number of segments, but there are no more segments than maxSize.
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(int maxSize, int concurrencyLevel) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be at least 1: " + maxSize);
+        }
+
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("Concurrency level must be at least 1: " + concurrencyLevel);
+        }
+
+        int numSegments = 1;
+        while (numSegments < concurrencyLevel && numSegments * 2 <= maxSize) numSegments <<= 1;
+
+        this.maxSize = maxSize;
+        this.segmentMask = numSegments - 1;
+        this.segments = new Segment[numSegments];
+
+        for (int s = 0; s < numSegments; s++) {
+            int segmentMax = maxSize / numSegments + (s < maxSize % numSegments ? 1 : 0);
+            segments[s] = new Segment<>(segmentMax);
+        }
+    }
+
+    /**
+     * @return the value stored for the given key, or null if there is none.
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+
+        synchronized (segment) {
+            V value = segment.get(key);
+
+            if (value == null) {
+                segment.misses++;
+            } else {
+                segment.hits++;
+            }
+
+            return value;
+        }
+    }
+
+    /**
+     * Stores the value for the given key, evicting the least recently used entries of its segment if need be.
+     */
+    public void put(K key, V value) {
+        if (value == null) throw new NullPointerException();
+        Segment<K, V> segment = segmentFor(key);
+        int weight = weigh(value);
+
+        synchronized (segment) {
+            store(segment, key, value, weight);
+        }
+    }
+
+    /**
+     * Stores the value for the given key unless there is one already.
+     *
+     * @return the value already stored, or null if the given value was stored.
+     */
+    public V putIfAbsent(K key, V value) {
+        if (value == null) throw new NullPointerException();
+        Segment<K, V> segment = segmentFor(key);
+        int weight = weigh(value);
+
+        synchronized (segment) {
+            V old = segment.get(key);
+            if (old != null) return old;
+            store(segment, key, value, weight);
+            return null;
+        }
+    }
+
+    /**
+     * Removes all entries and resets the hit and miss counts.
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.weight = 0;
+                segment.hits = 0;
+                segment.misses = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries currently stored.
+     */
+    public int size() {
+        int size = 0;
+
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * @return the total weight of the entries currently stored.
+     */
+    public long getWeight() {
+        long weight = 0;
+
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+
+        return weight;
+    }
+
+    /**
+     * @return the maximum total weight of the entries.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of calls to get() that found a value.
+     */
+    public long getHits() {
+        long hits = 0;
+
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+            }
+        }
+
+        return hits;
+    }
+
+    /**
+     * @return the number of calls to get() that did not find a value.
+     */
+    public long getMisses() {
+        long misses = 0;
+
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                misses += segment.misses;
+            }
+        }
+
+        return misses;
+    }
+
+    /**
+     * @return the fraction of calls to get() that found a value, or NaN if get() has not been called.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? Double.NaN : hits / (double) total;
+    }
+
+    /**
+     * @return a copy of the entries, least recently used first within each segment.
+     */
+    public List<Map.Entry<K, V>> entries() {
+        List<Map.Entry<K, V>> entries = new ArrayList<>();
+
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                for (Map.Entry<K, V> entry : segment.entrySet()) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * @return the weight of the given value toward the maximum size; 1 unless overridden.
+     */
+    protected int weigh(V value) {
+        return 1;
+    }
+
+    //=============================PRIVATE METHODS=========================//
+
+    // Stores the value and evicts the eldest entries while the segment is over its share. The value is not stored
+    // if it alone is over the share. The caller holds the segment's lock.
+    private void store(Segment<K, V> segment, K key, V value, int weight) {
+        if (weight > segment.maxWeight) return;
+
+        V old = segment.put(key, value);
+        if (old != null) segment.weight -= weigh(old);
+        segment.weight += weight;
+
+        Iterator<V> eldest = segment.values().iterator();
+
+        while (segment.weight > segment.maxWeight) {
+            segment.weight -= weigh(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return segments[h & segmentMask];
+    }
+
+    // A least recently used map guarded by its own monitor.
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+        private final int maxWeight;
+        private long weight = 0;
+        private long hits = 0;
+        private long misses = 0;
+
+        Segment(int maxWeight) {
+            super(16, 0.75f, true);
+            this.maxWeight = maxWeight;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The fork-join pools used by the searches, simulators and data utilities,
+ * kept by name. The default pool, returned by getPool(), is shared by code
+ * that has not been given a pool of its own; other pools may be created with
+ * a given parallelism, for instance to limit a search to a few threads, or
+ * supplied from outside with setPool. Several searches in the same JVM may
+ * then be kept from competing for the same cores.
+ * <p>
+ * The parallelism of the default pool is the value of the system property
+ * "tetrad.parallelism" if that is set, and otherwise the number of available
+ * processors, limited by the CPU quota of the container, if any (cgroup v1 or
+ * v2), since older JVMs do not take the quota into account.
+ * <p>
+ * Pools created here record the latency of the tasks passed to invoke and
+ * invokeAll; see getMetrics. Pools that are shut down are removed, and are
+ * recreated with the same parallelism when next asked for by name.
+ *
+ * @author Joseph Ramsey
+ */
+public final class TetradExecutors {
+
+    /**
+     * The name of the default pool.
+     */
+    public static final String DEFAULT_POOL = "default";
+
+    private static final TetradExecutors INSTANCE = new TetradExecutors();
+
+    private final Map<String, ForkJoinPool> pools = new LinkedHashMap<>();
+
+    private TetradExecutors() {
+    }
+
+    public static TetradExecutors getInstance() {
+        return INSTANCE;
+    }
+
+    //============================PUBLIC METHODS=========================//
+
+    /**
+     * @return the default pool.
+     */
+    public ForkJoinPool getPool() {
+        return getPool(DEFAULT_POOL);
+    }
+
+    /**
+     * @return the pool with the given name, created with the default
+     * parallelism if there is none.
+     */
+    public synchronized ForkJoinPool getPool(String name) {
+        ForkJoinPool pool = livePool(name);
+
+        if (pool == null) {
+            pool = new MonitoredForkJoinPool(getDefaultParallelism());
+            pools.put(name, pool);
+        }
+
+        return pool;
+    }
+
+    /**
+     * @return the pool with the given name, created with the given
+     * parallelism if there is none.
+     * @throws IllegalArgumentException if there is already a pool with this
+     *                                  name with a different parallelism.
+     */
+    public synchronized ForkJoinPool getPool(String name, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+
+        ForkJoinPool pool = livePool(name);
+
+        if (pool == null) {
+            pool = new MonitoredForkJoinPool(parallelism);
+            pools.put(name, pool);
+        } else if (pool.getParallelism() != parallelism) {
+            throw new IllegalArgumentException("Pool " + name + " already has parallelism "
+                    + pool.getParallelism() + ", not " + parallelism + ".");
+        }
+
+        return pool;
+    }
+
+    /**
+     * Uses the given pool under the given name, for instance a pool managed by
+     * the application. A pool previously under this name is not shut down.
+     */
+    public synchronized void setPool(String name, ForkJoinPool pool) {
+        if (name == null) {
+            throw new NullPointerException("Name not provided.");
+        }
+
+        if (pool == null) {
+            throw new NullPointerException("Pool not provided.");
+        }
+
+        pools.put(name, pool);
+    }
+
+    /**
+     * @return the names of the pools currently held.
+     */
+    public synchronized List<String> getPoolNames() {
+        return new ArrayList<>(pools.keySet());
+    }
+
+    /**
+     * @return the current state of the pool with the given name, or null if
+     * there is none.
+     */
+    public synchronized PoolMetrics getMetrics(String name) {
+        ForkJoinPool pool = pools.get(name);
+
+        if (pool == null) {
+            return null;
+        }
+
+        long completed = 0;
+        long totalLatency = 0;
+        long maxLatency = 0;
+
+        if (pool instanceof MonitoredForkJoinPool) {
+            MonitoredForkJoinPool monitored = (MonitoredForkJoinPool) pool;
+            completed = monitored.completed.get();
+            totalLatency = monitored.totalLatency.get();
+            maxLatency = monitored.maxLatency.get();
+        }
+
+        return new PoolMetrics(name, pool.getParallelism(), pool.getPoolSize(), pool.getActiveThreadCount(),
+                pool.getQueuedTaskCount(), pool.getQueuedSubmissionCount(), pool.getStealCount(),
+                completed, totalLatency, maxLatency);
+    }
+
+    /**
+     * Shuts down the pool with the given name, waiting up to the given time
+     * for running tasks to finish, and removes it.
+     *
+     * @return true if the pool terminated in time (or there was none).
+     */
+    public boolean shutdown(String name, long timeout, TimeUnit unit) throws InterruptedException {
+        ForkJoinPool pool;
+
+        synchronized (this) {
+            pool = pools.remove(name);
+        }
+
+        if (pool == null) {
+            return true;
+        }
+
+        pool.shutdown();
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Shuts down all of the pools, waiting up to the given time in all for
+     * running tasks to finish, and removes them.
+     *
+     * @return true if all of the pools terminated in time.
+     */
+    public boolean shutdownAll(long timeout, TimeUnit unit) throws InterruptedException {
+        List<ForkJoinPool> toShutdown;
+
+        synchronized (this) {
+            toShutdown = new ArrayList<>(pools.values());
+            pools.clear();
+        }
+
+        for (ForkJoinPool pool : toShutdown) {
+            pool.shutdown();
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = true;
+
+        for (ForkJoinPool pool : toShutdown) {
+            long remaining = deadline - System.nanoTime();
+            terminated &= pool.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        }
+
+        return terminated;
+    }
+
+    /**
+     * @return the parallelism of pools created without one: the value of the
+     * system property "tetrad.parallelism" if set, otherwise
+     * getAvailableProcessors().
+     */
+    public static int getDefaultParallelism() {
+        String property = System.getProperty("tetrad.parallelism");
+
+        if (property != null) {
+            try {
+                int parallelism = Integer.parseInt(property.trim());
+
+                if (parallelism >= 1) {
+                    return parallelism;
+                }
+            } catch (NumberFormatException e) {
+                // Fall through to the number of processors.
+            }
+        }
+
+        return getAvailableProcessors();
+    }
+
+    /**
+     * @return the number of processors available to the JVM, limited by the
+     * CPU quota of the container (cgroup v2 cpu.max or cgroup v1
+     * cpu.cfs_quota_us / cpu.cfs_period_us), rounded up; at least 1.
+     */
+    public static int getAvailableProcessors() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int quota = getCgroupCpuLimit();
+
+        if (quota > 0 && quota < processors) {
+            processors = quota;
+        }
+
+        return Math.max(1, processors);
+    }
+
+    //========================PRIVATE METHODS============================//
+
+    private ForkJoinPool livePool(String name) {
+        ForkJoinPool pool = pools.get(name);
+
+        if (pool != null && pool.isShutdown()) {
+            pools.remove(name);
+            return null;
+        }
+
+        return pool;
+    }
+
+    /**
+     * @return the CPU limit of the cgroup, in whole processors rounded up, or
+     * -1 if there is none or it can't be read.
+     */
+    private static int getCgroupCpuLimit() {
+        try {
+            // cgroup v2: "<quota> <period>" or "max <period>".
+            String cpuMax = readFirstLine(new File("/sys/fs/cgroup/cpu.max"));
+
+            if (cpuMax != null) {
+                String[] tokens = cpuMax.trim().split("\\s+");
+
+                if (tokens.length == 2 && !"max".equals(tokens[0])) {
+                    return limit(Long.parseLong(tokens[0]), Long.parseLong(tokens[1]));
+                }
+
+                return -1;
+            }
+
+            // cgroup v1.
+            for (String dir : new String[]{"/sys/fs/cgroup/cpu", "/sys/fs/cgroup/cpu,cpuacct"}) {
+                String quota = readFirstLine(new File(dir, "cpu.cfs_quota_us"));
+                String period = readFirstLine(new File(dir, "cpu.cfs_period_us"));
+
+                if (quota != null && period != null) {
+                    return limit(Long.parseLong(quota.trim()), Long.parseLong(period.trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+
+        return -1;
+    }
+
+    private static int limit(long quota, long period) {
+        if (quota <= 0 || period <= 0) {
+            return -1;
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, (quota + period - 1) / period);
+    }
+
+    private static String readFirstLine(File file) throws IOException {
+        if (!file.canRead()) {
+            return null;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            return reader.readLine();
+        }
+    }
+
+    /**
+     * A fork-join pool that records how long the tasks passed to invoke and
+     * invokeAll take, from submission to completion.
+     */
+    private static final class MonitoredForkJoinPool extends ForkJoinPool {
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+
+        MonitoredForkJoinPool(int parallelism) {
+            super(parallelism);
+        }
+
+        @Override
+        public <T> T invoke(ForkJoinTask<T> task) {
+            long start = System.nanoTime();
+
+            try {
+                return super.invoke(task);
+            } finally {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) {
+            final long start = System.nanoTime();
+            List<Callable<T>> timed = new ArrayList<>(tasks.size());
+
+            for (final Callable<T> task : tasks) {
+                timed.add(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        try {
+                            return task.call();
+                        } finally {
+                            record(System.nanoTime() - start);
+                        }
+                    }
+                });
+            }
+
+            return super.invokeAll(timed);
+        }
+
+        private void record(long latency) {
+            completed.incrementAndGet();
+            totalLatency.addAndGet(latency);
+
+            long max = maxLatency.get();
+
+            while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+                max = maxLatency.get();
+            }
+        }
+    }
+}
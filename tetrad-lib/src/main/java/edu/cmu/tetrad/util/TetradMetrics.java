@@ -0,0 +1,488 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters, gauges, timers and histograms kept by name, for watching a long
+ * search as it runs: how many independence tests have been done at each
+ * depth, how many local scores have been calculated and how many came from
+ * cache, how many arrows have been inserted, how long each phase has taken,
+ * and so on. The searches and the common tests and scores report here; see
+ * edu.cmu.tetrad.search.SearchMetrics for the names they use.
+ * <p>
+ * Recording is off by default, in which case each update is a single read of
+ * a volatile flag. Once it is turned on with setEnabled(true), counters are
+ * striped by thread so that concurrent searches do not contend on them.
+ * <p>
+ * The current values may be taken at any time with snapshot(), or sent to
+ * each registered MetricsSink with report(), or sent periodically with
+ * startReporting().
+ *
+ * @author Joseph Ramsey
+ * @see MetricsSnapshot
+ */
+public final class TetradMetrics {
+
+    private static final TetradMetrics INSTANCE = new TetradMetrics();
+
+    private static volatile boolean enabled = false;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final List<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService reporter;
+
+    private TetradMetrics() {
+    }
+
+    /**
+     * @return the singleton instance of this class.
+     */
+    public static TetradMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    //=======================================PUBLIC METHODS=================================//
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. Values recorded so far are kept either way.
+     */
+    public void setEnabled(boolean enabled) {
+        TetradMetrics.enabled = enabled;
+    }
+
+    /**
+     * @return the counter with the given name, created if need be. Counters
+     * may be kept in static fields; they stay registered across reset().
+     */
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+
+        if (counter == null) {
+            synchronized (counters) {
+                counter = counters.get(name);
+
+                if (counter == null) {
+                    counter = new Counter();
+                    counters.put(name, counter);
+                }
+            }
+        }
+
+        return counter;
+    }
+
+    /**
+     * @return the gauge with the given name, created if need be.
+     */
+    public Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+
+        if (gauge == null) {
+            synchronized (gauges) {
+                gauge = gauges.get(name);
+
+                if (gauge == null) {
+                    gauge = new Gauge();
+                    gauges.put(name, gauge);
+                }
+            }
+        }
+
+        return gauge;
+    }
+
+    /**
+     * @return the timer with the given name, created if need be.
+     */
+    public Timer timer(String name) {
+        return new Timer(getHistogram(timers, name));
+    }
+
+    /**
+     * @return the histogram with the given name, created if need be.
+     */
+    public Histogram histogram(String name) {
+        return getHistogram(histograms, name);
+    }
+
+    /**
+     * Sets every counter, gauge, timer and histogram back to zero.
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) counter.reset();
+        for (Gauge gauge : gauges.values()) gauge.set(0);
+        for (Histogram timer : timers.values()) timer.reset();
+        for (Histogram histogram : histograms.values()) histogram.reset();
+    }
+
+    /**
+     * @return the current values, together with the state of the pools of
+     * TetradExecutors. Metrics that have never been updated are left out.
+     */
+    public MetricsSnapshot snapshot() {
+        MetricsSnapshot snapshot = new MetricsSnapshot(System.currentTimeMillis());
+
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            long value = entry.getValue().get();
+            if (value != 0) snapshot.counters.put(entry.getKey(), value);
+        }
+
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            Gauge gauge = entry.getValue();
+            if (gauge.isSet()) snapshot.gauges.put(entry.getKey(), gauge.get());
+        }
+
+        for (Map.Entry<String, Histogram> entry : timers.entrySet()) {
+            MetricsSnapshot.Summary summary = entry.getValue().summarize();
+            if (summary.getCount() > 0) snapshot.timers.put(entry.getKey(), summary);
+        }
+
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            MetricsSnapshot.Summary summary = entry.getValue().summarize();
+            if (summary.getCount() > 0) snapshot.histograms.put(entry.getKey(), summary);
+        }
+
+        TetradExecutors executors = TetradExecutors.getInstance();
+
+        for (String name : executors.getPoolNames()) {
+            PoolMetrics pool = executors.getMetrics(name);
+            if (pool != null) snapshot.pools.add(pool);
+        }
+
+        return snapshot;
+    }
+
+    public void addSink(MetricsSink sink) {
+        if (sink == null) throw new NullPointerException("Sink not provided.");
+        sinks.add(sink);
+    }
+
+    public void removeSink(MetricsSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * Sends a snapshot to each sink.
+     */
+    public void report() {
+        if (sinks.isEmpty()) return;
+
+        MetricsSnapshot snapshot = snapshot();
+
+        for (MetricsSink sink : sinks) {
+            sink.report(snapshot);
+        }
+    }
+
+    /**
+     * Sends a snapshot to each sink every period, on a daemon thread, until
+     * stopReporting() is called. Any earlier schedule is replaced.
+     */
+    public synchronized void startReporting(long period, TimeUnit unit) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive: " + period);
+
+        stopReporting();
+
+        reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "tetrad-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        reporter.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                try {
+                    report();
+                } catch (RuntimeException e) {
+                    TetradLogger.getInstance().log("info", "Could not report metrics: " + e.getMessage());
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops periodic reporting, if it was started. No final report is sent;
+     * call report() for that.
+     */
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    //=======================================PRIVATE METHODS=================================//
+
+    private static Histogram getHistogram(Map<String, Histogram> map, String name) {
+        Histogram histogram = map.get(name);
+
+        if (histogram == null) {
+            synchronized (map) {
+                histogram = map.get(name);
+
+                if (histogram == null) {
+                    histogram = new Histogram();
+                    map.put(name, histogram);
+                }
+            }
+        }
+
+        return histogram;
+    }
+
+    //=======================================INNER CLASSES=================================//
+
+    /**
+     * A count that only goes up, such as the number of tests done. The count
+     * is kept in several cells, chosen by thread, which get() adds up.
+     */
+    public static final class Counter {
+        private static final int STRIPES = 16;
+
+        // Cells are a cache line apart.
+        private static final int SPACING = 8;
+
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+
+        private Counter() {
+        }
+
+        public void inc() {
+            add(1);
+        }
+
+        public void add(long n) {
+            if (!enabled) return;
+            int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+            cells.addAndGet(stripe * SPACING, n);
+        }
+
+        public long get() {
+            long sum = 0;
+
+            for (int i = 0; i < STRIPES; i++) {
+                sum += cells.get(i * SPACING);
+            }
+
+            return sum;
+        }
+
+        private void reset() {
+            for (int i = 0; i < STRIPES; i++) {
+                cells.set(i * SPACING, 0);
+            }
+        }
+    }
+
+    /**
+     * A value that goes up and down, such as the size of a queue or the
+     * current depth of a search.
+     */
+    public static final class Gauge {
+        private final AtomicLong value = new AtomicLong();
+        private volatile boolean set = false;
+
+        private Gauge() {
+        }
+
+        public void set(long value) {
+            if (!enabled) return;
+            this.value.set(value);
+            set = true;
+        }
+
+        public void add(long delta) {
+            if (!enabled) return;
+            value.addAndGet(delta);
+            set = true;
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        private boolean isSet() {
+            return set;
+        }
+    }
+
+    /**
+     * Durations, recorded into a histogram of nanoseconds. Typical use:
+     * <pre>
+     * long start = timer.start();
+     * ...
+     * timer.stop(start);
+     * </pre>
+     */
+    public static final class Timer {
+        private static final long NOT_STARTED = Long.MIN_VALUE;
+
+        private final Histogram histogram;
+
+        private Timer(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        /**
+         * @return a start time to pass to stop(), or a marker that makes stop()
+         * do nothing if recording is off.
+         */
+        public long start() {
+            return enabled ? System.nanoTime() : NOT_STARTED;
+        }
+
+        public void stop(long start) {
+            if (start == NOT_STARTED || !enabled) return;
+            histogram.record(System.nanoTime() - start);
+        }
+
+        public void record(long nanos) {
+            if (!enabled) return;
+            histogram.record(nanos);
+        }
+    }
+
+    /**
+     * The distribution of a non-negative long value, such as the size of a
+     * conditioning set. Values are counted in buckets four to a power of two,
+     * so quantiles are exact up to 7 and within 25% above that.
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKETS = 4;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        private Histogram() {
+        }
+
+        public void record(long value) {
+            if (!enabled) return;
+            if (value < 0) value = 0;
+
+            buckets.incrementAndGet(bucket(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+
+            long m;
+
+            while (value < (m = min.get())) {
+                if (min.compareAndSet(m, value)) break;
+            }
+
+            while (value > (m = max.get())) {
+                if (max.compareAndSet(m, value)) break;
+            }
+        }
+
+        private MetricsSnapshot.Summary summarize() {
+            long[] counts = new long[buckets.length()];
+            long n = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                n += counts[i];
+            }
+
+            if (n == 0) {
+                return new MetricsSnapshot.Summary(0, 0, 0, 0, 0, 0, 0);
+            }
+
+            long _min = min.get();
+            long _max = max.get();
+
+            return new MetricsSnapshot.Summary(n, sum.get(), _min, _max,
+                    quantile(counts, n, 0.5, _min, _max),
+                    quantile(counts, n, 0.9, _min, _max),
+                    quantile(counts, n, 0.99, _min, _max));
+        }
+
+        private void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+
+            count.set(0);
+            sum.set(0);
+            min.set(Long.MAX_VALUE);
+            max.set(Long.MIN_VALUE);
+        }
+
+        // The upper bound of the bucket holding the q quantile, clamped to the
+        // observed range.
+        private static long quantile(long[] counts, long n, double q, long min, long max) {
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, upperBound(i)));
+                }
+            }
+
+            return max;
+        }
+
+        // Values 0 to 7 get a bucket each; above that, a value with highest bit
+        // e falls in one of four buckets by its next two bits.
+        static int bucket(long value) {
+            if (value < 2 * SUB_BUCKETS) return (int) value;
+            int e = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (e - 2)) & (SUB_BUCKETS - 1);
+            return (e - 1) * SUB_BUCKETS + sub;
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < 2 * SUB_BUCKETS) return bucket;
+            int e = bucket / SUB_BUCKETS + 1;
+            int sub = bucket % SUB_BUCKETS;
+            if (e >= 63) return Long.MAX_VALUE;
+            return ((long) (SUB_BUCKETS + sub + 1) << (e - 2)) - 1;
+        }
+    }
+}
@@ -29,14 +29,15 @@ import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.RandomStream;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.TetradExecutors;
 import edu.pitt.csb.mgm.MGM;
 import edu.pitt.csb.mgm.MixedUtils;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
@@ -78,7 +79,7 @@ public class StabilityUtils {
 
         final int[][] samps = subSampleNoReplacement(data.getNumRows(), b, N);
 
-        final ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        final ForkJoinPool pool = TetradExecutors.getInstance().getPool();
 
         class StabilityAction extends RecursiveAction{
             private int chunk;
@@ -187,25 +188,26 @@ public class StabilityUtils {
     }
 
     //returns an numSub by subSize matrix of subsamples of the sequence 1:sampSize
+    //subsample i is drawn from its own stream, so the subsamples are repeatable from the RandomUtil seed
     public static int[][] subSampleNoReplacement(int sampSize, int subSize, int numSub){
 
         if (subSize < 1) {
             throw new IllegalArgumentException("Sample size must be > 0.");
         }
 
-        List<Integer> indices = new ArrayList<Integer>(sampSize);
-        for (int i = 0; i < sampSize; i++) {
-            indices.add(i);
+        if (subSize > sampSize) {
+            throw new IllegalArgumentException("Subsample size must be at most the sample size.");
         }
 
+        long seed = RandomUtil.getInstance().nextLong();
         int[][] sampMat = new int[numSub][subSize];
 
         for(int i = 0; i < numSub; i++) {
-            Collections.shuffle(indices);
+            RandomStream random = RandomStream.forTask(seed, i);
             int[] curSamp;
             SAMP:
             while(true){
-                curSamp = subSampleIndices(sampSize, subSize);
+                curSamp = subSampleIndices(sampSize, subSize, random);
                 for(int j = 0; j < i; j++){
                     if(Arrays.equals(curSamp, sampMat[j])){
                         continue SAMP;
@@ -219,18 +221,14 @@ public class StabilityUtils {
         return sampMat;
     }
 
-    private static int[] subSampleIndices(int N, int subSize){
-        List<Integer> indices = new ArrayList<Integer>(N);
+    private static int[] subSampleIndices(int N, int subSize, RandomStream random){
+        int[] indices = new int[N];
         for (int i = 0; i < N; i++) {
-            indices.add(i);
+            indices[i] = i;
         }
 
-        Collections.shuffle(indices);
-        int[] samp = new int[subSize];
-        for(int i = 0; i < subSize; i++){
-            samp[i] = indices.get(i);
-        }
-        return samp;
+        random.shuffle(indices);
+        return Arrays.copyOf(indices, subSize);
     }
 
 
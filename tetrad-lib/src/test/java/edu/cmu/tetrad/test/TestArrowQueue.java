@@ -0,0 +1,139 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.search.ArrowQueue;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestArrowQueue {
+
+    @Test
+    public void testPollOrder() {
+        ArrowQueue queue = new ArrowQueue();
+
+        queue.add(0, 1, ArrowQueue.EMPTY, ArrowQueue.EMPTY, 1.0);
+        queue.add(2, 3, new int[]{4}, ArrowQueue.EMPTY, 5.0);
+        queue.add(1, 0, ArrowQueue.EMPTY, new int[]{2, 3}, 1.0);
+        queue.add(3, 4, ArrowQueue.EMPTY, ArrowQueue.EMPTY, 5.0);
+        queue.add(4, 0, ArrowQueue.EMPTY, ArrowQueue.EMPTY, 1.0);
+        queue.add(2, 4, ArrowQueue.EMPTY, ArrowQueue.EMPTY, 3.0);
+
+        // Highest bump first, and arrows with equal bumps in the order they were added.
+        int[] expectedIndices = {1, 3, 5, 0, 2, 4};
+
+        for (int index : expectedIndices) {
+            assertEquals(index, queue.poll().getIndex());
+        }
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        // A restored arrow keeps its index, and later arrows come after it.
+        queue.add(0, 1, ArrowQueue.EMPTY, ArrowQueue.EMPTY, 2.0, 20);
+        queue.add(0, 2, ArrowQueue.EMPTY, ArrowQueue.EMPTY, 2.0, 10);
+        queue.add(0, 3, ArrowQueue.EMPTY, ArrowQueue.EMPTY, 2.0);
+
+        assertEquals(10, queue.poll().getIndex());
+        assertEquals(20, queue.poll().getIndex());
+
+        ArrowQueue.Arrow arrow = queue.poll();
+        assertEquals(21, arrow.getIndex());
+        assertEquals(0, arrow.getA());
+        assertEquals(3, arrow.getB());
+    }
+
+    @Test
+    public void testRemovePair() {
+
+        // The arrows for a pair are chained newest first; take the head, middle or tail out of the chain
+        // by polling it, then remove the rest of the pair.
+        for (int taken = 0; taken < 3; taken++) {
+            ArrowQueue queue = new ArrowQueue();
+
+            queue.add(5, 6, ArrowQueue.EMPTY, ArrowQueue.EMPTY, 0.5);
+            queue.add(6, 5, ArrowQueue.EMPTY, ArrowQueue.EMPTY, 0.5);
+
+            for (int k = 0; k < 3; k++) {
+                double bump = k == 2 - taken ? 10.0 : 1.0 + k;
+                queue.add(1, 2, new int[]{k}, ArrowQueue.EMPTY, bump);
+            }
+
+            queue.add(2, 1, ArrowQueue.EMPTY, ArrowQueue.EMPTY, 0.25);
+
+            ArrowQueue.Arrow arrow = queue.poll();
+            assertEquals(1, arrow.getA());
+            assertEquals(2, arrow.getB());
+            assertEquals(2 - taken, arrow.getHOrT()[0]);
+
+            assertEquals(2, queue.removePair(1, 2));
+            assertEquals(0, queue.removePair(1, 2));
+            assertEquals(3, queue.size());
+
+            assertEquals(5, queue.poll().getA());
+            assertEquals(6, queue.poll().getA());
+            assertEquals(2, queue.poll().getA());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void testSlotReuse() {
+        ArrowQueue queue = new ArrowQueue();
+
+        for (int i = 0; i < 1000; i++) {
+            queue.add(i % 10, i % 7, ArrowQueue.EMPTY, ArrowQueue.EMPTY, i % 13);
+        }
+
+        long memory = queue.getMemoryUsage();
+
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 7; j++) {
+                queue.removePair(i, j);
+            }
+        }
+
+        assertTrue(queue.isEmpty());
+
+        // Freed slots are used again, so adding as many arrows again does not grow the queue.
+        for (int i = 0; i < 1000; i++) {
+            queue.add(i % 10, i % 7, ArrowQueue.EMPTY, ArrowQueue.EMPTY, i % 13);
+        }
+
+        assertEquals(1000, queue.size());
+        assertEquals(memory, queue.getMemoryUsage());
+
+        double last = Double.POSITIVE_INFINITY;
+        int lastIndex = -1;
+
+        while (!queue.isEmpty()) {
+            ArrowQueue.Arrow arrow = queue.poll();
+            assertTrue(arrow.getBump() < last || (arrow.getBump() == last && arrow.getIndex() > lastIndex));
+            last = arrow.getBump();
+            lastIndex = arrow.getIndex();
+        }
+    }
+}
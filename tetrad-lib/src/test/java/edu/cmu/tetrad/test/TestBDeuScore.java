@@ -0,0 +1,156 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.DiscreteCounts;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.data.VerticalIntDataBox;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.BDeuScore;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.apache.commons.math3.special.Gamma;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the BDeu score against the dense calculation over all cells.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestBDeuScore {
+
+    @Test
+    public void testAgreesWithDense() {
+        RandomUtil.getInstance().setSeed(38482744L);
+
+        int numVars = 9;
+        int sampleSize = 300;
+
+        List<Node> variables = new ArrayList<>();
+        int[][] data = new int[numVars][sampleSize];
+
+        for (int j = 0; j < numVars; j++) {
+            int numCategories = 2 + j % 3;
+            variables.add(new DiscreteVariable("X" + (j + 1), numCategories));
+
+            for (int i = 0; i < sampleSize; i++) {
+
+                // Skewed toward low categories, so that some cells are empty.
+                int value = RandomUtil.getInstance().nextInt(numCategories);
+                if (j > 0 && RandomUtil.getInstance().nextDouble() < 0.5) value = Math.min(value, data[j - 1][i]);
+                data[j][i] = Math.min(value, numCategories - 1);
+            }
+        }
+
+        BDeuScore score = new BDeuScore(new BoxDataSet(new VerticalIntDataBox(data), variables));
+        score.setSamplePrior(2.5);
+
+        int[][] parentSets = {{}, {1}, {1, 2}, {3, 4, 5}, {1, 2, 3, 4, 5, 6}, {1, 2, 3, 4, 5, 6, 7, 8}};
+
+        for (int[] parents : parentSets) {
+            double expected = denseScore(score, data, variables, 0, parents);
+            assertEquals(expected, score.localScore(0, parents), 1e-8 * Math.abs(expected));
+        }
+    }
+
+    @Test
+    public void testMissingParent() {
+        List<Node> variables = new ArrayList<>();
+        variables.add(new DiscreteVariable("X1", 2));
+        variables.add(new DiscreteVariable("X2", 2));
+
+        int[][] data = {{0, 1, 0, 1}, {1, 0, -99, 1}};
+        BoxDataSet dataSet = new BoxDataSet(new VerticalIntDataBox(data), variables);
+
+        BDeuScore score = new BDeuScore(dataSet);
+
+        try {
+            score.localScore(0, new int[]{1});
+            fail("A missing parent value should not be counted.");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("record 2 column 1"));
+        }
+
+        score.setCounts(new DiscreteCounts(dataSet));
+
+        try {
+            score.localScore(0, new int[]{1});
+            fail("A missing parent value should not be counted.");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("column 1"));
+        }
+    }
+
+    // The calculation over every cell, empty or not.
+    private double denseScore(BDeuScore score, int[][] data, List<Node> variables, int node, int[] parents) {
+        int c = ((DiscreteVariable) variables.get(node)).getNumCategories();
+        int[] dims = new int[parents.length];
+        int r = 1;
+
+        for (int p = 0; p < parents.length; p++) {
+            dims[p] = ((DiscreteVariable) variables.get(parents[p])).getNumCategories();
+            r *= dims[p];
+        }
+
+        int[][] n_jk = new int[r][c];
+        int[] n_j = new int[r];
+
+        for (int i = 0; i < data[node].length; i++) {
+            int rowIndex = 0;
+
+            for (int p = 0; p < parents.length; p++) {
+                rowIndex *= dims[p];
+                rowIndex += data[parents[p]][i];
+            }
+
+            n_jk[rowIndex][data[node][i]]++;
+            n_j[rowIndex]++;
+        }
+
+        double e = score.getStructurePrior();
+        int vm = data.length - 1;
+        double s = parents.length * Math.log(e / vm) + (vm - parents.length) * Math.log(1.0 - (e / vm));
+
+        double cellPrior = score.getSamplePrior() / (c * r);
+        double rowPrior = score.getSamplePrior() / r;
+
+        for (int j = 0; j < r; j++) {
+            s -= Gamma.logGamma(rowPrior + n_j[j]);
+
+            for (int k = 0; k < c; k++) {
+                s += Gamma.logGamma(cellPrior + n_jk[j][k]);
+            }
+        }
+
+        s += r * Gamma.logGamma(rowPrior);
+        s -= c * r * Gamma.logGamma(cellPrior);
+
+        return s;
+    }
+}
@@ -273,9 +273,37 @@ public final class TestBoxDataSet {
             fail("Missing row in permutation.");
         }
     }
-}
-
-
-
-
 
+    @Test
+    public void testPrimitiveAccess() {
+        DataBox[] boxes = {new DoubleDataBox(3, 2), new VerticalDoubleDataBox(3, 2), new FloatDataBox(new float[3][2]),
+                new ByteDataBox(new byte[3][2]), new ShortDataBox(3, 2), new IntDataBox(3, 2),
+                new VerticalIntDataBox(3, 2), new LongDataBox(new long[3][2])};
+
+        for (DataBox box : boxes) {
+            box.setInt(0, 0, 4);
+            box.setDouble(1, 0, 2.0);
+            box.setInt(2, 0, DiscreteVariable.MISSING_VALUE);
+            box.setDouble(0, 1, Double.NaN);
+
+            assertEquals(4, box.getInt(0, 0));
+            assertEquals(4.0, box.getDouble(0, 0), 0.0);
+            assertEquals(2, box.getInt(1, 0));
+            assertEquals(DiscreteVariable.MISSING_VALUE, box.getInt(2, 0));
+            assertTrue(Double.isNaN(box.getDouble(2, 0)));
+            assertTrue(Double.isNaN(box.getDouble(0, 1)));
+
+            double[] column = box.getDoubleColumn(0, null);
+            assertEquals(3, column.length);
+            assertEquals(2.0, column[1], 0.0);
+            assertSame(column, box.getDoubleColumn(0, column));
+
+            int[] intColumn = box.getIntColumn(0, new int[3]);
+            assertEquals(4, intColumn[0]);
+
+            double[] row = box.getDoubleRow(1, null);
+            assertEquals(2, row.length);
+            assertEquals(2.0, row[0], 0.0);
+        }
+    }
+}
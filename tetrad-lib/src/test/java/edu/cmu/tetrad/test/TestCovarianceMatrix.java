@@ -27,10 +27,12 @@ import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TetradMatrix;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests CovarianceMatrix.
@@ -83,9 +85,156 @@ public final class TestCovarianceMatrix {
         assertEquals(-.051, c2.getValue(0, 1), 0.001);
         assertEquals(-.609, c3.getValue(0, 1), 0.001);
     }
-}
 
+    /**
+     * Tests that cached and blocked covariances on the fly agree with the
+     * stored covariances, across several tiles, with and without missing
+     * values, and with a cache too small to hold them all.
+     */
+    @Test
+    public void testOnTheFlyCache() {
+        RandomUtil.getInstance().setSeed(2938476293L);
+
+        List<Node> variables = new LinkedList<>();
+
+        for (int i = 0; i < 150; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
+
+        DataSet dataSet = new BoxDataSet(new DoubleDataBox(3000, variables.size()), variables);
+
+        for (int i = 0; i < dataSet.getNumRows(); i++) {
+            for (int j = 0; j < dataSet.getNumColumns(); j++) {
+                double value = RandomUtil.getInstance().nextNormal(0, 1);
+                if (j > 0) value += 0.5 * dataSet.getDouble(i, j - 1);
+                if (j % 7 == 3 && RandomUtil.getInstance().nextDouble() < 0.05) value = Double.NaN;
+                dataSet.setDouble(i, j, value);
+            }
+        }
+
+        ICovarianceMatrix expected = new CovarianceMatrix(dataSet);
+        CovarianceMatrixOnTheFly onTheFly = new CovarianceMatrixOnTheFly(dataSet);
+        CovarianceMatrixOnTheFly small = new CovarianceMatrixOnTheFly(dataSet);
+        small.setMaxCachedTiles(1);
+
+        int[] indices = {140, 2, 3, 70, 64, 63, 10};
+        TetradMatrix selection = onTheFly.getSelection(indices, indices);
+
+        for (int i = 0; i < indices.length; i++) {
+            for (int j = 0; j < indices.length; j++) {
+                assertEquals(expected.getValue(indices[i], indices[j]), selection.get(i, j), 1e-10);
+            }
+        }
+
+        TetradMatrix all = onTheFly.getMatrix();
 
+        for (int i = 0; i < variables.size(); i++) {
+            for (int j = 0; j < variables.size(); j++) {
+                double value = expected.getValue(i, j);
+                assertEquals(value, all.get(i, j), 1e-10);
+                assertEquals(value, onTheFly.getValue(i, j), 1e-10);
+                assertEquals(value, small.getValue(i, j), 1e-10);
+            }
+        }
+    }
 
+    /**
+     * Tests the covariance kernel against a direct calculation, across several
+     * tiles and row blocks, with missing values deleted pairwise, and checks
+     * that column-major data is neither copied nor changed.
+     */
+    @Test
+    public void testKernel() {
+        RandomUtil.getInstance().setSeed(3827462911L);
+
+        int numRows = 1300;
+        double[][] columns = new double[70][numRows];
+
+        for (int j = 0; j < columns.length; j++) {
+            for (int k = 0; k < numRows; k++) {
+                columns[j][k] = 3.0 + RandomUtil.getInstance().nextNormal(0, 1);
+                if (j > 0) columns[j][k] += 0.5 * columns[j - 1][k];
+            }
+        }
+
+        for (int j = 5; j < columns.length; j += 11) {
+            for (int k = 0; k < numRows; k++) {
+                if (RandomUtil.getInstance().nextDouble() < 0.1) columns[j][k] = Double.NaN;
+            }
+        }
 
+        double[] first = columns[0].clone();
 
+        List<Node> variables = new LinkedList<>();
+
+        for (int j = 0; j < columns.length; j++) {
+            variables.add(new ContinuousVariable("X" + j));
+        }
+
+        DataSet dataSet = new BoxDataSet(new VerticalDoubleDataBox(columns), variables);
+        TetradMatrix cov = new CovarianceMatrix(dataSet).getMatrix();
+        TetradMatrix corr = dataSet.getCorrelationMatrix();
+
+        assertTrue(((VerticalDoubleDataBox) ((BoxDataSet) dataSet).getDataBox()).getVariableVectors() == columns);
+        assertTrue(Arrays.equals(first, columns[0]));
+
+        for (int i = 0; i < columns.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                double expected = pairwiseCovariance(columns[i], columns[j]);
+                assertEquals(expected, cov.get(i, j), 1e-10);
+                assertEquals(expected, cov.get(j, i), 1e-10);
+
+                double r = i == j ? 1.0 : expected / Math.sqrt(cov.get(i, i) * cov.get(j, j));
+                assertEquals(r, corr.get(i, j), 1e-10);
+            }
+        }
+
+        // The kernel keeps its buffers from call to call, so check a smaller data set after the larger one.
+        double[][] _columns = new double[40][];
+
+        for (int j = 0; j < _columns.length; j++) {
+            _columns[j] = Arrays.copyOf(columns[j + 1], 700);
+        }
+
+        TetradMatrix _cov = new CovarianceMatrix(new BoxDataSet(new VerticalDoubleDataBox(_columns),
+                variables.subList(0, _columns.length))).getMatrix();
+
+        for (int i = 0; i < _columns.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                assertEquals(pairwiseCovariance(_columns[i], _columns[j]), _cov.get(i, j), 1e-10);
+            }
+        }
+    }
+
+    // Centers on the means of the non-missing values and averages over rows where both are present.
+    private double pairwiseCovariance(double[] x, double[] y) {
+        double meanX = 0.0, meanY = 0.0;
+        int countX = 0, countY = 0;
+
+        for (int k = 0; k < x.length; k++) {
+            if (!Double.isNaN(x[k])) {
+                meanX += x[k];
+                countX++;
+            }
+
+            if (!Double.isNaN(y[k])) {
+                meanY += y[k];
+                countY++;
+            }
+        }
+
+        meanX /= countX;
+        meanY /= countY;
+
+        double sum = 0.0;
+        int count = 0;
+
+        for (int k = 0; k < x.length; k++) {
+            if (Double.isNaN(x[k]) || Double.isNaN(y[k])) continue;
+            sum += (x[k] - meanX) * (y[k] - meanY);
+            count++;
+        }
+
+        return sum / (count - 1);
+    }
+}
@@ -0,0 +1,203 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.*;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests shared discrete counts against counting the data directly.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestDiscreteCounts {
+
+    @Test
+    public void testTables() {
+        RandomUtil.getInstance().setSeed(2938472L);
+        DataSet dataSet = dataSet(8, 1000, true);
+        DiscreteCounts counts = new DiscreteCounts(dataSet);
+
+        for (int t = 0; t < 200; t++) {
+            int size = RandomUtil.getInstance().nextInt(5);
+            List<Integer> vars = new ArrayList<>();
+
+            while (vars.size() < size) {
+                int v = RandomUtil.getInstance().nextInt(dataSet.getNumColumns());
+                if (!vars.contains(v)) vars.add(v);
+            }
+
+            int[] _vars = new int[size];
+            for (int i = 0; i < size; i++) _vars[i] = vars.get(i);
+
+            assertSameCounts(dataSet, _vars, counts.getTable(_vars));
+        }
+
+        // Derived from the cached table over one more variable, which has no missing values.
+        counts.clear();
+        assertSameCounts(dataSet, new int[]{1, 2, 3}, counts.getTable(1, 2, 3));
+        int cached = counts.getNumCachedCells();
+        assertSameCounts(dataSet, new int[]{3, 1}, counts.getTable(3, 1));
+        assertEquals(cached + counts.getTable(1, 3).getNumCells(), counts.getNumCachedCells());
+    }
+
+    @Test
+    public void testMultipliers() {
+        RandomUtil.getInstance().setSeed(2938473L);
+        DataSet dataSet = dataSet(4, 500, true);
+
+        for (int i = 0; i < dataSet.getNumRows(); i += 3) {
+            dataSet.setMultiplier(i, 1 + i % 4);
+        }
+
+        DiscreteCounts counts = new DiscreteCounts(dataSet);
+        DiscreteCounts weighted = new DiscreteCounts(dataSet, DiscreteCounts.DEFAULT_MAX_CACHED_CELLS, true);
+
+        int[][] sets = {{0}, {1, 2}, {0, 1, 3}, {3, 2, 1, 0}};
+
+        for (int[] vars : sets) {
+            assertSameCounts(dataSet, vars, counts.getTable(vars), false);
+            assertSameCounts(dataSet, vars, weighted.getTable(vars), true);
+        }
+    }
+
+    @Test
+    public void testTestsAndScores() {
+        RandomUtil.getInstance().setSeed(8237423L);
+        DataSet dataSet = dataSet(7, 500, false);
+        DiscreteCounts counts = new DiscreteCounts(dataSet);
+        List<Node> nodes = dataSet.getVariables();
+
+        IndTestChiSquare chiSquare1 = new IndTestChiSquare(dataSet, 0.05);
+        IndTestChiSquare chiSquare2 = new IndTestChiSquare(dataSet, 0.05);
+        chiSquare2.setCounts(counts);
+
+        IndTestGSquare gSquare1 = new IndTestGSquare(dataSet, 0.05);
+        IndTestGSquare gSquare2 = new IndTestGSquare(dataSet, 0.05);
+        gSquare2.setCounts(counts);
+
+        BDeuScore bdeu1 = new BDeuScore(dataSet);
+        BDeuScore bdeu2 = new BDeuScore(dataSet);
+        bdeu2.setCounts(counts);
+
+        BDeScore bde1 = new BDeScore(dataSet);
+        BDeScore bde2 = new BDeScore(dataSet);
+        bde2.setCounts(counts);
+
+        int[][] sets = {{0, 1}, {0, 1, 2}, {3, 2, 1, 0}, {4, 5, 6, 0, 1}};
+
+        for (int[] set : sets) {
+            List<Node> z = new ArrayList<>();
+            for (int i = 2; i < set.length; i++) z.add(nodes.get(set[i]));
+            Node x = nodes.get(set[0]);
+            Node y = nodes.get(set[1]);
+
+            assertEquals(chiSquare1.isIndependent(x, y, z), chiSquare2.isIndependent(x, y, z));
+            assertEquals(chiSquare1.getPValue(), chiSquare2.getPValue(), 1e-10);
+
+            assertEquals(gSquare1.isIndependent(x, y, z), gSquare2.isIndependent(x, y, z));
+            assertEquals(gSquare1.getPValue(), gSquare2.getPValue(), 1e-10);
+
+            int[] parents = new int[set.length - 1];
+            System.arraycopy(set, 1, parents, 0, parents.length);
+
+            assertEquals(bdeu1.localScore(set[0], parents), bdeu2.localScore(set[0], parents), 1e-8);
+            assertEquals(bde1.localScore(set[0], parents), bde2.localScore(set[0], parents), 1e-8);
+        }
+    }
+
+    private void assertSameCounts(DataSet dataSet, int[] vars, DiscreteCounts.Table table) {
+        assertSameCounts(dataSet, vars, table, false);
+    }
+
+    private void assertSameCounts(DataSet dataSet, int[] vars, DiscreteCounts.Table table,
+                                  boolean useMultipliers) {
+        int[] dims = new int[vars.length];
+        int numCells = 1;
+
+        for (int i = 0; i < vars.length; i++) {
+            dims[i] = ((DiscreteVariable) dataSet.getVariable(vars[i])).getNumCategories();
+            numCells *= dims[i];
+        }
+
+        int[] expected = new int[numCells];
+
+        rows:
+        for (int i = 0; i < dataSet.getNumRows(); i++) {
+            int cell = 0;
+
+            for (int j = 0; j < vars.length; j++) {
+                int value = dataSet.getInt(i, vars[j]);
+                if (value == DiscreteVariable.MISSING_VALUE) continue rows;
+                cell = cell * dims[j] + value;
+            }
+
+            expected[cell] += useMultipliers ? dataSet.getMultiplier(i) : 1;
+        }
+
+        int[] coords = new int[vars.length];
+
+        for (int cell = 0; cell < numCells; cell++) {
+            int c = cell;
+
+            for (int j = vars.length - 1; j >= 0; j--) {
+                coords[j] = c % dims[j];
+                c /= dims[j];
+            }
+
+            assertEquals(expected[cell], table.getValue(coords));
+        }
+    }
+
+    // Correlated discrete columns, the first with some missing values if requested.
+    private DataSet dataSet(int numVars, int sampleSize, boolean missing) {
+        List<Node> variables = new ArrayList<>();
+        int[][] data = new int[numVars][sampleSize];
+
+        for (int j = 0; j < numVars; j++) {
+            int numCategories = 2 + j % 3;
+            variables.add(new DiscreteVariable("X" + (j + 1), numCategories));
+
+            for (int i = 0; i < sampleSize; i++) {
+                int value = RandomUtil.getInstance().nextInt(numCategories);
+                if (j > 0 && RandomUtil.getInstance().nextDouble() < 0.6) value = Math.min(data[j - 1][i], value);
+                data[j][i] = value;
+            }
+        }
+
+        if (missing) {
+            for (int i = 0; i < sampleSize; i += 7) {
+                data[0][i] = DiscreteVariable.MISSING_VALUE;
+            }
+        }
+
+        return new BoxDataSet(new VerticalIntDataBox(data), variables);
+    }
+}
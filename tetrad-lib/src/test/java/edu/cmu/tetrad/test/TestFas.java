@@ -22,16 +22,23 @@
 package edu.cmu.tetrad.test;
 
 import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.search.*;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Joseph Ramsey
@@ -58,9 +65,78 @@ public class TestFas {
 
         assertEquals(fasGraph, GraphUtils.undirectedGraph(pcGraph));
     }
-}
 
+    @Test
+    public void testParallel() {
+        RandomUtil.getInstance().setSeed(3948573L);
 
+        List<Node> vars = new ArrayList<>();
 
+        for (int i = 0; i < 30; i++) {
+            vars.add(new ContinuousVariable("X" + i));
+        }
 
+        Graph graph = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 60, 30, 15, 15, false, true);
+        IndependenceTest dsep = new IndTestDSep(graph);
+
+        FasStableParallel fas = new FasStableParallel(dsep);
+        fas.setBatchSize(2);
+        assertEquals(new FasStable(dsep).search(), fas.search());
+        assertEquals(GraphUtils.undirectedGraph(graph), fas.search());
+
+        for (FasStableParallel.DepthStats stats : fas.getDepthStats()) {
+            assertEquals(stats.getDepth(), fas.getDepthStats().indexOf(stats));
+        }
+
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(500, false);
+        IndependenceTest test = new IndTestFisherZ(data, 0.01);
+
+        ForkJoinPool pool1 = new ForkJoinPool(1);
+        ForkJoinPool pool4 = new ForkJoinPool(4);
+
+        FasStableParallel fas1 = new FasStableParallel(test);
+        fas1.setPool(pool1);
+        FasStableParallel fas4 = new FasStableParallel(test);
+        fas4.setPool(pool4);
+        fas4.setBatchSize(1);
+
+        Graph graph1 = fas1.search();
+        assertEquals(new FasStable(test).search(), graph1);
+        assertEquals(graph1, fas4.search());
+        assertEquals(fas1.getSepsets(), fas4.getSepsets());
+
+        pool1.shutdown();
+        pool4.shutdown();
+    }
 
+    @Test
+    public void testParallelRethrows() {
+        RandomUtil.getInstance().setSeed(3948574L);
+
+        List<Node> vars = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            vars.add(new ContinuousVariable("X" + i));
+        }
+
+        Graph graph = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 15, 30, 15, 15, false, true);
+
+        for (final int failingDepth : new int[]{0, 1}) {
+            IndependenceTest test = new IndTestDSep(graph) {
+                public boolean isIndependent(Node x, Node y, List<Node> z) {
+                    if (z.size() == failingDepth) throw new IllegalStateException("Test failed.");
+                    return super.isIndependent(x, y, z);
+                }
+            };
+
+            try {
+                new FasStableParallel(test).search();
+                fail("Expected the failure of the test at depth " + failingDepth + " to be rethrown.");
+            } catch (IllegalStateException e) {
+
+                // The pool may rethrow a copy of the exception, with the original as its cause.
+                assertTrue(e.getMessage().endsWith("Test failed."));
+            }
+        }
+    }
+}
@@ -27,6 +27,7 @@ import edu.cmu.tetrad.search.*;
 import edu.cmu.tetrad.sem.SemIm;
 import edu.cmu.tetrad.sem.SemPm;
 import edu.cmu.tetrad.util.ChoiceGenerator;
+import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TetradLogger;
 import edu.cmu.tetrad.util.TextTable;
 import org.junit.Ignore;
@@ -35,6 +36,7 @@ import org.junit.Test;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -223,6 +225,108 @@ public class TestFci {
         search.search();
     }
 
+    @Test
+    public void testPossibleDsepParallel() {
+        RandomUtil.getInstance().setSeed(2938475L);
+
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 30; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Dag trueGraph = new Dag(GraphUtils.randomGraph(nodes, 8, 40, 7, 5, 5, false));
+        DataSet dataSet = new SemIm(new SemPm(trueGraph)).simulateData(500, false);
+        IndependenceTest test = new IndTestFisherZ(dataSet, 0.05);
+
+        Graph skeleton = new FasStable(test).search();
+        skeleton.reorientAllWith(Endpoint.CIRCLE);
+
+        Graph graph0 = new EdgeListGraph(skeleton);
+        Graph graph1 = new EdgeListGraph(skeleton);
+        Graph graph4 = new EdgeListGraph(skeleton);
+
+        ForkJoinPool pool1 = new ForkJoinPool(1);
+        ForkJoinPool pool4 = new ForkJoinPool(4);
+
+        // Without a pool the edges are checked sequentially.
+        PossibleDsepFci possibleDsep0 = new PossibleDsepFci(graph0, test);
+        PossibleDsepFci possibleDsep1 = new PossibleDsepFci(graph1, test);
+        possibleDsep1.setPool(pool1);
+        PossibleDsepFci possibleDsep4 = new PossibleDsepFci(graph4, test);
+        possibleDsep4.setPool(pool4);
+
+        SepsetMap sepsets0 = possibleDsep0.search();
+        assertEquals(sepsets0, possibleDsep1.search());
+        assertEquals(sepsets0, possibleDsep4.search());
+        assertEquals(graph0, graph1);
+        assertEquals(graph0, graph4);
+
+        pool1.shutdown();
+
+        // RFCI gives the same PAG every time, with or without a pool.
+        Graph pag = new Rfci(test).search();
+        assertEquals(pag, new Rfci(test).search());
+
+        Rfci rfci = new Rfci(test);
+        rfci.setPool(pool4);
+        assertEquals(pag, rfci.search());
+
+        pool4.shutdown();
+    }
+
+    /**
+     * Pins the PAGs found by FCI, whose possible-d-sep step checks the edges in parallel and removes the
+     * separated ones afterwards, PC-stable style, so that the result does not depend on the order of the
+     * edges or on the number of threads.
+     */
+    @Test
+    public void testPossibleDsepPinned() {
+        Graph trueGraph = GraphConverter.convert("Latent(L1),Latent(L2),L1-->X,L1-->A,V-->A,A-->Y,V-->B,"
+                + "L2-->Y,L2-->B,B-->X");
+
+        // By default the step is sequential.
+        assertEquals("[A --> Y, B --> X, V o-> A, V o-> B, X <-> A, Y <-> B, Y <-> X]",
+                sortedEdges(new Fci(new IndTestDSep(trueGraph)).search()));
+
+        for (int parallelism : new int[]{1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+            Fci fci = new Fci(new IndTestDSep(trueGraph));
+            fci.setPool(pool);
+
+            assertEquals("[A --> Y, B --> X, V o-> A, V o-> B, X <-> A, Y <-> B, Y <-> X]",
+                    sortedEdges(fci.search()));
+            pool.shutdown();
+        }
+
+        RandomUtil.getInstance().setSeed(2938476L);
+
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 12; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Dag dag = new Dag(GraphUtils.randomGraph(nodes, 3, 18, 7, 5, 5, false));
+        DataSet dataSet = new SemIm(new SemPm(dag)).simulateData(500, false);
+
+        assertEquals("[X1 o-> X12, X2 --> X11, X2 o-> X7, X2 o-o X5, X4 o-> X11, X4 o-> X12, X4 o-o X5, "
+                        + "X5 o-> X11, X6 o-> X7, X6 o-o X8, X7 --> X11, X8 o-> X7]",
+                sortedEdges(new Fci(new IndTestFisherZ(dataSet, 0.05)).search()));
+    }
+
+    private String sortedEdges(Graph graph) {
+        List<String> edges = new ArrayList<>();
+
+        for (Edge edge : graph.getEdges()) {
+            edges.add(edge.toString());
+        }
+
+        Collections.sort(edges);
+        return edges.toString();
+    }
+
     /**
      * Presents the input graph to FCI and checks to make sure the output of FCI is equivalent to the given output
      * graph.
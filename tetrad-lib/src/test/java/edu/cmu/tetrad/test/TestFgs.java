@@ -27,6 +27,7 @@ import edu.cmu.tetrad.bayes.MlBayesIm;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.search.*;
+import edu.cmu.tetrad.search.mb.HitonMb;
 import edu.cmu.tetrad.sem.*;
 import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TetradLogger;
@@ -40,9 +41,12 @@ import java.io.*;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Joseph Ramsey
@@ -212,6 +216,17 @@ public class TestFgs {
         assertEquals(SearchGraphUtils.patternForDag(graph), pattern);
     }
 
+    @Test
+    public void testParallelism() {
+        Graph graph = GraphConverter.convert("A-->B,A-->C,A-->D,B-->E,C-->E,D-->E");
+        Fgs fgs = new Fgs(new GraphScore(graph));
+        fgs.setParallelism(2);
+
+        // Each search gets a pool of its own, so searching again still works.
+        assertEquals(SearchGraphUtils.patternForDag(graph), fgs.search());
+        assertEquals(SearchGraphUtils.patternForDag(graph), fgs.search());
+    }
+
 
     @Test
     public void testFromGraphSimpleFgs() {
@@ -1393,6 +1408,294 @@ public class TestFgs {
 
     }
 
+    /**
+     * Pins the pattern Fgs finds for simulated data, which did not change when the arrows were moved to
+     * ArrowQueue.
+     */
+    @Test
+    public void testPinnedPattern() {
+        RandomUtil.getInstance().setSeed(4938471L);
+
+        List<Node> vars = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            vars.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 30, 30, 15, 15, false, true);
+        DataSet data = new SemIm(new SemPm(dag)).simulateData(1000, false);
+
+        SemBicScore score = new SemBicScore(new CovarianceMatrix(data));
+        score.setPenaltyDiscount(2.0);
+        Graph pattern = new Fgs(score).search();
+
+        List<String> edges = new ArrayList<>();
+
+        for (Edge edge : pattern.getEdges()) {
+            edges.add(edge.toString());
+        }
+
+        Collections.sort(edges);
+
+        assertEquals("[X1 --> X13, X1 --> X15, X1 --> X19, X10 --> X11, X10 --> X13, X10 --> X19, "
+                + "X10 --> X2, X10 --> X6, X10 --> X7, X11 --> X16, X11 --> X17, X12 --> X14, X12 --> X17, "
+                + "X13 --> X2, X13 --> X7, X19 --> X13, X19 --> X6, X2 --> X11, X3 --> X15, X3 --> X20, "
+                + "X3 --> X8, X3 --> X9, X4 --- X1, X4 --> X18, X4 --> X8, X5 --> X9, X6 --> X13, "
+                + "X6 --> X15, X7 --- X2, X7 --> X14, X8 --> X11, X8 --> X16, X9 --> X16, X9 --> X18, "
+                + "X9 --> X20]", edges.toString());
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        RandomUtil.getInstance().setSeed(3829432L);
+
+        Graph dag = GraphUtils.randomGraph(20, 0, 30, 5, 5, 5, false);
+        SemIm im = new SemIm(new SemPm(dag));
+        DataSet data = im.simulateData(1000, false);
+        SemBicScore score = new SemBicScore(new CovarianceMatrix(data));
+
+        Fgs fgs = new Fgs(score);
+        Graph expected = fgs.search();
+
+        CrashingScore counter = new CrashingScore(score, Long.MAX_VALUE);
+        new Fgs(counter).search();
+        long numScores = counter.count.get();
+
+        File checkpoint = File.createTempFile("fgs", ".checkpoint");
+        checkpoint.deleteOnExit();
+
+        // Interrupt the search early (in the forward search) and at the end (in the backward search).
+        for (long crashAt : new long[]{numScores / 3, numScores - 2}) {
+            checkpoint.delete();
+
+            Fgs crashing = new Fgs(new CrashingScore(score, crashAt));
+            crashing.setCheckpointFile(checkpoint);
+            crashing.setCheckpointInterval(0);
+
+            try {
+                crashing.search();
+                fail("Search should have been interrupted.");
+            } catch (RuntimeException e) {
+                // Expected.
+            }
+
+            assertTrue(checkpoint.exists());
+            assertEquals(expected, new Fgs(score).resume(checkpoint));
+        }
+    }
+
+    @Test
+    public void testMarginalBumps() {
+        RandomUtil.getInstance().setSeed(2938472L);
+
+        // Wider than a tile, so that pairs across tiles are calculated.
+        Graph dag = GraphUtils.randomGraph(150, 0, 150, 5, 5, 5, false);
+        SemIm im = new SemIm(new SemPm(dag));
+        DataSet data = im.simulateData(500, false);
+
+        assertSameBumps(new SemBicScore(new CovarianceMatrix(data)));
+        assertSameBumps(new SemBicScore(new CovarianceMatrixOnTheFly(data)));
+
+        SemBicScore score = new SemBicScore(new CovarianceMatrix(data));
+        assertEquals(new Fgs(new CrashingScore(score, Long.MAX_VALUE)).search(), new Fgs(score).search());
+
+        BayesPm pm = new BayesPm(GraphUtils.randomGraph(80, 0, 80, 5, 5, 5, false), 2, 4);
+        DataSet discrete = new MlBayesIm(pm, MlBayesIm.RANDOM).simulateData(500, false);
+        BDeuScore bdeu = new BDeuScore(discrete);
+
+        assertSameBumps(bdeu);
+        assertEquals(new Fgs(new CrashingScore(bdeu, Long.MAX_VALUE)).search(), new Fgs(bdeu).search());
+    }
+
+    private void assertSameBumps(MarginalBumps score) {
+        PairBumps bumps = score.getPositiveMarginalBumps();
+        int numVariables = score.getVariables().size();
+        int k = 0;
+
+        for (int i = 0; i < numVariables; i++) {
+            for (int j = i + 1; j < numVariables; j++) {
+                double bump = score.localScoreDiff(j, i, new int[0]);
+                if (!(bump > 0)) continue;
+
+                assertEquals(i, bumps.getChild(k));
+                assertEquals(j, bumps.getParent(k));
+                assertEquals(bump, bumps.getBump(k), 1e-9 * Math.abs(bump));
+                k++;
+            }
+        }
+
+        assertEquals(k, bumps.size());
+    }
+
+    @Test
+    public void testBatchMb() {
+        RandomUtil.getInstance().setSeed(4938221L);
+
+        Graph dag = GraphUtils.randomGraph(40, 0, 50, 5, 5, 5, false);
+        SemIm im = new SemIm(new SemPm(dag));
+        DataSet data = im.simulateData(1000, false);
+        final ICovarianceMatrix cov = new CovarianceMatrix(data);
+        SemBicScore score = new SemBicScore(cov);
+
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < 40; i += 3) targets.add("X" + (i + 1));
+
+        final Map<String, List<Node>> found = new ConcurrentHashMap<>();
+
+        BatchMbSearch.MbListener listener = new BatchMbSearch.MbListener() {
+            public void mbFound(String targetName, List<Node> mb) {
+                found.put(targetName, mb);
+            }
+        };
+
+        CachingScore cachingScore = new CachingScore(score);
+        Map<String, List<Node>> mbs = new BatchMbSearch(BatchMbSearch.fgsMb(cachingScore)).search(targets, listener);
+
+        assertEquals(targets, new ArrayList<>(mbs.keySet()));
+        assertEquals(mbs, found);
+        assertTrue(cachingScore.getCache().getHits() > 0);
+
+        for (String target : targets) {
+            assertEquals(new HashSet<>(new FgsMb(score).findMb(target)), new HashSet<>(mbs.get(target)));
+        }
+
+        BatchMbSearch.MbSearchFactory hiton = new BatchMbSearch.MbSearchFactory() {
+            public MbSearch newSearch() {
+                return new HitonMb(new IndTestFisherZ(cov, 0.01), 3, false);
+            }
+        };
+
+        mbs = new BatchMbSearch(hiton).search(targets);
+
+        for (String target : targets) {
+            assertEquals(new HashSet<>(hiton.newSearch().findMb(target)), new HashSet<>(mbs.get(target)));
+        }
+    }
+
+    @Test
+    public void testImagesScores() {
+        RandomUtil.getInstance().setSeed(5938271L);
+
+        Graph dag = GraphUtils.randomGraph(10, 0, 12, 5, 5, 5, false);
+        SemIm im = new SemIm(new SemPm(dag));
+        MlBayesIm bayesIm = new MlBayesIm(new BayesPm(dag, 2, 3), MlBayesIm.RANDOM);
+
+        List<DataModel> continuous = new ArrayList<>();
+        List<DataModel> discrete = new ArrayList<>();
+        List<Score> semBicScores = new ArrayList<>();
+        List<Score> bdeuScores = new ArrayList<>();
+
+        // Enough data sets to be scored in parallel.
+        for (int k = 0; k < 12; k++) {
+            DataSet data = im.simulateData(200, false);
+            continuous.add(data);
+            semBicScores.add(new SemBicScore(new CovarianceMatrixOnTheFly(data)));
+
+            DataSet discreteData = bayesIm.simulateData(200, false);
+            discrete.add(discreteData);
+            bdeuScores.add(new BDeuScore(discreteData));
+        }
+
+        SemBicScoreImages semBicImages = new SemBicScoreImages(continuous);
+        BdeuScoreImages bdeuImages = new BdeuScoreImages(discrete);
+
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                if (x == y) continue;
+                int[] z = {(y + 1) % 10 == x ? (y + 2) % 10 : (y + 1) % 10};
+
+                assertEquals(average(semBicScores, x, y, z), semBicImages.localScoreDiff(x, y, z), 0.0);
+                assertEquals(average(bdeuScores, x, y, z), bdeuImages.localScoreDiff(x, y, z), 0.0);
+            }
+        }
+    }
+
+    // The average of the score differences over the data sets, in order.
+    private double average(List<Score> scores, int x, int y, int[] z) {
+        double sum = 0.0;
+
+        for (Score score : scores) {
+            sum += score.localScoreDiff(x, y, z);
+        }
+
+        return sum / scores.size();
+    }
+
+    // Delegates to a score, throwing once a given number of local scores have been asked for.
+    private static class CrashingScore implements Score {
+        private final Score score;
+        private final long crashAt;
+        private final AtomicLong count = new AtomicLong();
+
+        CrashingScore(Score score, long crashAt) {
+            this.score = score;
+            this.crashAt = crashAt;
+        }
+
+        private void count() {
+            if (count.incrementAndGet() > crashAt) {
+                throw new IllegalStateException("Crashed.");
+            }
+        }
+
+        public double localScore(int node, int... parents) {
+            count();
+            return score.localScore(node, parents);
+        }
+
+        public double localScoreDiff(int x, int y, int[] z) {
+            count();
+            return score.localScoreDiff(x, y, z);
+        }
+
+        public double localScoreDiff(int x, int y) {
+            count();
+            return score.localScoreDiff(x, y);
+        }
+
+        public double localScore(int node, int parent) {
+            count();
+            return score.localScore(node, parent);
+        }
+
+        public double localScore(int node) {
+            count();
+            return score.localScore(node);
+        }
+
+        public List<Node> getVariables() {
+            return score.getVariables();
+        }
+
+        public boolean isEffectEdge(double bump) {
+            return score.isEffectEdge(bump);
+        }
+
+        public boolean isDiscrete() {
+            return score.isDiscrete();
+        }
+
+        public double getParameter1() {
+            return score.getParameter1();
+        }
+
+        public void setParameter1(double alpha) {
+            score.setParameter1(alpha);
+        }
+
+        public int getSampleSize() {
+            return score.getSampleSize();
+        }
+
+        public Node getVariable(String targetName) {
+            return score.getVariable(targetName);
+        }
+
+        public int getMaxIndegree() {
+            return score.getMaxIndegree();
+        }
+    }
+
     public static void main(String...args) {
         new TestFgs().testBestAlgorithms();
     }
@@ -21,16 +21,31 @@
 
 package edu.cmu.tetrad.test;
 
+import edu.cmu.tetrad.data.ColtDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
 import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.graph.*;
-import edu.cmu.tetrad.search.IndTestFisherZ;
-import edu.cmu.tetrad.search.IndependenceTest;
+import edu.cmu.tetrad.search.*;
 import edu.cmu.tetrad.sem.SemIm;
 import edu.cmu.tetrad.sem.SemPm;
 import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.StatUtils;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 
 /**
@@ -92,6 +107,187 @@ public class TestIndTestFisherZ {
         assertEquals(0, p2, 0.01);
         assertEquals(0, p3, 0.01);
     }
-}
 
+    @Test
+    public void testCachedPartialCorrelation() {
+        RandomUtil.getInstance().setSeed(29384732L);
+
+        Graph graph = GraphUtils.randomGraph(10, 0, 15, 5, 5, 5, false);
+        SemIm im = new SemIm(new SemPm(graph));
+        DataSet data = im.simulateData(200, false);
+
+        // A copy of the first column, so that conditioning sets containing both are singular.
+        List<Node> variables = new ArrayList<>(data.getVariables());
+        ContinuousVariable copy = new ContinuousVariable("Copy");
+        variables.add(copy);
+        DataSet _data = new ColtDataSet(data.getNumRows(), variables);
+
+        for (int i = 0; i < data.getNumRows(); i++) {
+            for (int j = 0; j < data.getNumColumns(); j++) {
+                _data.setDouble(i, j, data.getDouble(i, j));
+            }
+
+            _data.setDouble(i, data.getNumColumns(), data.getDouble(i, 0));
+        }
+
+        ICovarianceMatrix cov = new CovarianceMatrix(_data);
+        CachedPartialCorrelation partialCorrelations = new CachedPartialCorrelation(cov, 64);
+        int n = cov.getDimension();
+
+        for (int t = 0; t < 2000; t++) {
+            int x = RandomUtil.getInstance().nextInt(n);
+            int y = RandomUtil.getInstance().nextInt(n);
+            if (x == y) continue;
+
+            int numZ = RandomUtil.getInstance().nextInt(5);
+            List<Integer> z = new ArrayList<>();
+
+            while (z.size() < numZ) {
+                int k = RandomUtil.getInstance().nextInt(n);
+                if (k != x && k != y && !z.contains(k)) z.add(k);
+            }
+
+            int[] indices = new int[numZ + 2];
+            int[] _z = new int[numZ];
+            indices[0] = x;
+            indices[1] = y;
+
+            for (int i = 0; i < numZ; i++) {
+                indices[i + 2] = z.get(i);
+                _z[i] = z.get(i);
+            }
+
+            double expected = StatUtils.partialCorrelation(cov.getSelection(indices, indices));
+            assertEquals(expected, partialCorrelations.partialCorrelation(x, y, _z), 1e-8);
+        }
+
+        assertEquals(64, partialCorrelations.getNumCachedFactors(), 16);
+
+        // Conditioning sets in any order share a factor, which is cached with those of its prefixes, {3} and
+        // {3, 4}.
+        partialCorrelations.clear();
+        double r1 = partialCorrelations.partialCorrelation(1, 2, 3, 4, 5);
+        double r2 = partialCorrelations.partialCorrelation(1, 2, 5, 3, 4);
+        assertEquals(r1, r2, 1e-12);
+        assertEquals(3, partialCorrelations.getNumCachedFactors());
+    }
+
+    @Test
+    public void testCachingIndependenceTest() throws IOException {
+        RandomUtil.getInstance().setSeed(3928472L);
+
+        Graph graph = GraphUtils.randomGraph(20, 0, 25, 5, 5, 5, false);
+        SemIm im = new SemIm(new SemPm(graph));
+        DataSet data = im.simulateData(500, false);
+        ICovarianceMatrix cov = new CovarianceMatrix(data);
+
+        Graph expected = new Pc(new IndTestFisherZ(cov, 0.01)).search();
+
+        IndependenceTestCache cache = new IndependenceTestCache();
+        CachingIndependenceTest test = new CachingIndependenceTest(new IndTestFisherZ(cov, 0.01), cache);
+        assertEquals(expected, new Pc(test).search());
+        long hits = cache.getHits();
 
+        // Another search over the same data shares the results.
+        Graph cpc = new Cpc(new IndTestFisherZ(cov, 0.01)).search();
+        assertEquals(cpc, new Cpc(new CachingIndependenceTest(new IndTestFisherZ(cov, 0.01), cache)).search());
+        assertTrue(cache.getHits() > hits);
+
+        // Facts are the same in any order.
+        Node x = test.getVariables().get(0);
+        Node y = test.getVariables().get(1);
+        Node z1 = test.getVariables().get(2);
+        Node z2 = test.getVariables().get(3);
+        boolean independent = test.isIndependent(x, y, z1, z2);
+        double p = test.getPValue();
+        hits = cache.getHits();
+        assertEquals(independent, test.isIndependent(y, x, z2, z1));
+        assertEquals(p, test.getPValue(), 0.0);
+        assertEquals(hits + 1, cache.getHits());
+
+        File file = File.createTempFile("tests", ".cache");
+        file.deleteOnExit();
+        test.save(file);
+
+        IndependenceTestCache loaded = new IndependenceTestCache();
+        new CachingIndependenceTest(new IndTestFisherZ(cov, 0.01), loaded).load(file);
+        assertEquals(cache.size(), loaded.size());
+        assertEquals(expected, new Pc(new CachingIndependenceTest(new IndTestFisherZ(cov, 0.01), loaded)).search());
+        assertEquals(0, loaded.getMisses());
+
+        // Results are cached by alpha, so a test at another alpha does not use them, and changing alpha back
+        // finds them again.
+        CachingIndependenceTest other = new CachingIndependenceTest(new IndTestFisherZ(cov, 0.05), loaded);
+        long misses = loaded.getMisses();
+        other.isIndependent(x, y, z1, z2);
+        assertEquals(misses + 1, loaded.getMisses());
+
+        hits = loaded.getHits();
+        other.setAlpha(0.01);
+        assertEquals(independent, other.isIndependent(x, y, z1, z2));
+        assertEquals(hits + 1, loaded.getHits());
+
+        try {
+            new CachingIndependenceTest(new IndTestFisherZ(cov.getSubmatrix(new int[]{0, 1, 2}), 0.01)).load(file);
+            fail("Cache for different variables should not load.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testCachingIndependenceTestConcurrently() throws Exception {
+        RandomUtil.getInstance().setSeed(3928473L);
+
+        Graph graph = GraphUtils.randomGraph(12, 0, 15, 5, 5, 5, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(500, false);
+        final ICovarianceMatrix cov = new CovarianceMatrix(data);
+
+        // The wrapped test is called by one thread at a time, with its p-value read in the same call.
+        checkConcurrently(new CachingIndependenceTest(new IndTestFisherZ(cov, 0.01)), new IndTestFisherZ(cov, 0.01));
+        checkConcurrently(new CachingIndependenceTest(new IndTestDSep(graph)), new IndTestDSep(graph));
+    }
+
+    // Tests all pairs given each other variable from several threads at once, checking each result and p-value
+    // against the same test done by the expected test alone.
+    private void checkConcurrently(final CachingIndependenceTest test, IndependenceTest expectedTest)
+            throws Exception {
+        final List<Node> nodes = test.getVariables();
+        final List<Node[]> facts = new ArrayList<>();
+        final List<Boolean> independent = new ArrayList<>();
+        final List<Double> pValues = new ArrayList<>();
+
+        for (Node x : nodes) {
+            for (Node y : nodes) {
+                for (Node z : nodes) {
+                    if (x == y || x == z || y == z) continue;
+                    facts.add(new Node[]{x, y, z});
+                    independent.add(expectedTest.isIndependent(x, y, z));
+                    pValues.add(expectedTest.getPValue());
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Void>> futures = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            final int _t = t;
+
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() {
+                    for (int i = _t; i < facts.size(); i += 2) {
+                        Node[] fact = facts.get(i);
+                        assertEquals(independent.get(i), test.isIndependent(fact[0], fact[1], fact[2]));
+                        assertEquals(pValues.get(i), test.getPValue(), 0.0);
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> future : futures) future.get();
+        executor.shutdown();
+    }
+}
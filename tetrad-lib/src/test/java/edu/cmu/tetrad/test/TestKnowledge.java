@@ -23,8 +23,10 @@ package edu.cmu.tetrad.test;
 
 import edu.cmu.tetrad.data.ContinuousVariable;
 import edu.cmu.tetrad.data.IKnowledge;
+import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.data.KnowledgeEdge;
+import edu.cmu.tetrad.data.KnowledgeIndex;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
@@ -34,6 +36,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -164,9 +167,75 @@ public final class TestKnowledge {
             assertTrue(knowledge.isForbidden("X11", "X22"));
         }
     }
-}
 
+    @Test
+    public final void testIndex() {
+        List<Node> nodes = new ArrayList<>();
+        List<String> vars = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+            vars.add("X" + (i + 1));
+        }
+
+        // Not known to the knowledge.
+        nodes.add(new ContinuousVariable("Y"));
+
+        IKnowledge knowledge = new Knowledge2(vars);
+
+        knowledge.addToTier(0, "X1*");
+        knowledge.addToTier(1, "X2*");
+        knowledge.addToTier(2, "X3*");
+        knowledge.setTierForbiddenWithin(1, true);
+        knowledge.setForbidden("X4*", "X5*");
+        knowledge.setForbidden("X61", "X62");
+        knowledge.setRequired("X6*,X7*", "X8*");
+
+        assertSameKnowledge(knowledge, new KnowledgeIndex(knowledge, nodes));
+
+        knowledge.removeForbidden("X61", "X62");
+        knowledge.setTierForbiddenWithin(1, false);
 
+        assertSameKnowledge(knowledge, new KnowledgeIndex(knowledge, nodes));
 
+        IKnowledge legacy = new Knowledge();
 
+        for (int i = 0; i < 30; i++) {
+            legacy.addToTier(i % 3, "X" + (i + 1));
+        }
+
+        legacy.setTierForbiddenWithin(2, true);
+        legacy.setForbidden("X50", "X51");
+        legacy.setRequired("X60", "X61");
+
+        assertSameKnowledge(legacy, new KnowledgeIndex(legacy, nodes));
+
+        KnowledgeIndex empty = new KnowledgeIndex(new Knowledge2(vars), nodes);
+        assertTrue(empty.isEmpty());
+        assertFalse(empty.isForbidden(nodes.get(0), nodes.get(1)));
+    }
+
+    private void assertSameKnowledge(IKnowledge knowledge, KnowledgeIndex index) {
+        int y0 = index.getIndex("Y");
+
+        for (int i = 0; i < index.getNumVariables(); i++) {
+            for (int j = 0; j < index.getNumVariables(); j++) {
+                if (i == j) continue;
 
+                if (i == y0 || j == y0) {
+                    assertFalse(index.isForbidden(i, j));
+                    assertFalse(index.isRequired(i, j));
+                    continue;
+                }
+
+                String x = "X" + (i + 1);
+                String y = "X" + (j + 1);
+
+                assertEquals(knowledge.isForbidden(x, y), index.isForbidden(i, j));
+                assertEquals(knowledge.isRequired(x, y), index.isRequired(i, j));
+                assertEquals(knowledge.noEdgeRequired(x, y), index.noEdgeRequired(i, j));
+                assertEquals(knowledge.isForbiddenByTiers(x, y), index.isForbiddenByTiers(i, j));
+            }
+        }
+    }
+}
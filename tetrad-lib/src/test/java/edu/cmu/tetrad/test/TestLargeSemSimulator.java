@@ -25,12 +25,17 @@ import edu.cmu.tetrad.data.ContinuousVariable;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.sem.LargeSemSimulator;
+import edu.cmu.tetrad.util.RandomUtil;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests the MeasurementSimulator class using diagnostics devised by Richard
@@ -52,6 +57,38 @@ public class TestLargeSemSimulator {
 
         assertEquals(1000, dataset.getNumRows());
     }
+
+    @Test
+    public void testSameDataForAnyParallelism() {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) nodes.add(new ContinuousVariable("X" + i));
+
+        RandomUtil.getInstance().setSeed(3928472L);
+        Graph graph = GraphUtils.randomGraph(nodes, 0, 20, 5, 5, 5, false);
+
+        double[][] data1 = simulate(graph, new ForkJoinPool(1), 1234L, false);
+        double[][] data2 = simulate(graph, new ForkJoinPool(4), 1234L, false);
+        double[][] data3 = simulate(graph, new ForkJoinPool(3), 1234L, true);
+        double[][] data4 = simulate(graph, new ForkJoinPool(3), 1235L, false);
+
+        assertTrue(Arrays.deepEquals(data1, data2));
+        assertTrue(Arrays.deepEquals(data1, data3));
+        assertFalse(Arrays.deepEquals(data1, data4));
+    }
+
+    private double[][] simulate(Graph graph, ForkJoinPool pool, long seed, boolean rowTasks) {
+        LargeSemSimulator simulator = new LargeSemSimulator(graph);
+        simulator.setPool(pool);
+        RandomUtil.getInstance().setSeed(seed);
+
+        try {
+            DataSet data = rowTasks ? simulator.simulateDataAcyclic2(500)
+                    : simulator.simulateDataAcyclic(500);
+            return data.getDoubleData().toArray();
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
 
 
@@ -0,0 +1,116 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.CachingScore;
+import edu.cmu.tetrad.search.Fgs;
+import edu.cmu.tetrad.search.LocalScoreCache;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests LocalScoreCache and CachingScore.
+ *
+ * @author Joseph Ramsey
+ */
+public final class TestLocalScoreCache {
+
+    @Test
+    public void testOrderIndependentKeys() {
+        LocalScoreCache cache = new LocalScoreCache(100, 4);
+
+        cache.add(3, new int[]{5, 1, 7}, -12.5);
+
+        assertEquals(-12.5, cache.get(3, new int[]{1, 5, 7}), 0.0);
+        assertEquals(-12.5, cache.get(3, new int[]{7, 5, 1}), 0.0);
+        assertTrue(Double.isNaN(cache.get(3, new int[]{1, 5})));
+        assertTrue(Double.isNaN(cache.get(4, new int[]{1, 5, 7})));
+        assertTrue(Double.isNaN(cache.get(3, new int[]{1, 5, 8})));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testBounded() {
+        LocalScoreCache cache = new LocalScoreCache(64, 4);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.add(i, new int[]{i + 1, i + 2}, i);
+        }
+
+        assertTrue(cache.size() <= 64);
+
+        // The most recently added entries are retained.
+        assertEquals(999, cache.get(999, new int[]{1001, 1000}), 0.0);
+    }
+
+    @Test
+    public void testCachingScore() {
+        RandomUtil.getInstance().setSeed(1450030184196L);
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Graph graph = GraphUtils.randomGraph(nodes, 0, 10, 30, 15, 15, false);
+        SemPm pm = new SemPm(graph);
+        SemIm im = new SemIm(pm);
+        DataSet data = im.simulateData(500, false);
+
+        SemBicScore score = new SemBicScore(new CovarianceMatrix(data));
+        CachingScore cachingScore = new CachingScore(score);
+
+        assertEquals(score.localScore(2, 4, 6), cachingScore.localScore(2, 6, 4), 1e-10);
+        assertEquals(score.localScore(2, 4, 6), cachingScore.localScore(2, 4, 6), 1e-10);
+        assertEquals(score.localScore(2, 3), cachingScore.localScore(2, new int[]{3}), 1e-10);
+
+        // SemBicScore is a DecomposableScore, so its differences come from the cached local scores.
+        long hits = cachingScore.getCache().getHits();
+        assertEquals(score.localScoreDiff(1, 2, new int[]{3}), cachingScore.localScoreDiff(1, 2, new int[]{3}), 1e-10);
+        assertEquals(hits + 1, cachingScore.getCache().getHits());
+
+        Graph pattern1 = new Fgs(score).search();
+        Graph pattern2 = new Fgs(cachingScore).search();
+        assertEquals(pattern1, pattern2);
+    }
+}
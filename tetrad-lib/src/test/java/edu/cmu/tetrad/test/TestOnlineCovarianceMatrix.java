@@ -0,0 +1,218 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.TetradMatrix;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that covariances accumulated from rows added incrementally agree with
+ * those calculated from the whole data set.
+ *
+ * @author Joseph Ramsey
+ */
+public final class TestOnlineCovarianceMatrix {
+
+    @Test
+    public void testAgreesWithCovarianceMatrix() {
+        RandomUtil.getInstance().setSeed(49283749283L);
+        DataSet data = simulate(8, 2500);
+
+        CovarianceMatrix expected = new CovarianceMatrix(data);
+        OnlineCovarianceMatrix batched = new OnlineCovarianceMatrix(data);
+
+        // Row by row into one accumulator, batches into another, then merged.
+        OnlineCovarianceMatrix merged = new OnlineCovarianceMatrix(data.getVariables());
+        CovarianceAccumulator other = new CovarianceAccumulator(data.getNumColumns());
+        double[][] rows = data.getDoubleData().toArray();
+
+        for (int i = 0; i < 700; i++) {
+            merged.addRow(rows[i]);
+        }
+
+        double[][] batch = new double[300][];
+
+        for (int i = 700; i < rows.length; i += batch.length) {
+            int n = Math.min(batch.length, rows.length - i);
+            System.arraycopy(rows, i, batch, 0, n);
+            other.addRows(batch, n);
+        }
+
+        merged.merge(other);
+
+        assertEquals(data.getNumRows(), batched.getSampleSize());
+        assertEquals(data.getNumRows(), merged.getSampleSize());
+
+        for (int i = 0; i < data.getNumColumns(); i++) {
+            for (int j = 0; j < data.getNumColumns(); j++) {
+                assertEquals(expected.getValue(i, j), batched.getValue(i, j), 1e-10);
+                assertEquals(expected.getValue(i, j), merged.getValue(i, j), 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testAppend() {
+        List<Node> variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X"));
+        variables.add(new ContinuousVariable("Y"));
+
+        // A large offset, which a naive sum of squares would lose.
+        OnlineCovarianceMatrix cov = new OnlineCovarianceMatrix(variables);
+        cov.addRow(new double[]{1e9 + 1, 1e9 + 2});
+        cov.addRow(new double[]{1e9 + 2, 1e9 + 4});
+        cov.addRow(new double[]{1e9 + 3, 1e9 + 6});
+
+        assertEquals(1.0, cov.getValue(0, 0), 1e-6);
+        assertEquals(2.0, cov.getValue(0, 1), 1e-6);
+        assertEquals(4.0, cov.getValue(1, 1), 1e-6);
+
+        cov.addRows(new double[][]{{1e9 + 4, 1e9 + 8}, {1e9 + 5, 1e9 + 10}}, 2);
+
+        assertEquals(5, cov.getSampleSize());
+        assertEquals(2.5, cov.getValue(0, 0), 1e-6);
+        assertEquals(5.0, cov.getValue(0, 1), 1e-6);
+        assertEquals(1e9 + 6, cov.getMeans()[1], 1e-6);
+    }
+
+    @Test
+    public void testScoreAndTest() {
+        RandomUtil.getInstance().setSeed(2938472938L);
+        DataSet data = simulate(10, 1000);
+
+        CovarianceMatrix expected = new CovarianceMatrix(data);
+        OnlineCovarianceMatrix online = new OnlineCovarianceMatrix(data);
+
+        SemBicScore score1 = new SemBicScore(expected);
+        SemBicScore score2 = new SemBicScore(online);
+        IndTestFisherZ test1 = new IndTestFisherZ(expected, 0.05);
+        IndTestFisherZ test2 = new IndTestFisherZ(online, 0.05);
+
+        List<Node> nodes = data.getVariables();
+
+        for (int trial = 0; trial < 50; trial++) {
+            int y = RandomUtil.getInstance().nextInt(10);
+            int x = RandomUtil.getInstance().nextInt(10);
+            if (x == y) continue;
+
+            List<Integer> z = new ArrayList<>();
+            List<Node> zNodes = new ArrayList<>();
+
+            for (int i = 0; i < 10; i++) {
+                if (i != x && i != y && RandomUtil.getInstance().nextDouble() < 0.3) {
+                    z.add(i);
+                    zNodes.add(nodes.get(i));
+                }
+            }
+
+            int[] _z = new int[z.size()];
+            for (int i = 0; i < z.size(); i++) _z[i] = z.get(i);
+
+            assertEquals(score1.localScore(y, _z), score2.localScore(y, _z), 1e-6);
+
+            test1.isIndependent(nodes.get(x), nodes.get(y), zNodes);
+            test2.isIndependent(nodes.get(x), nodes.get(y), zNodes);
+            assertEquals(test1.getPValue(), test2.getPValue(), 1e-8);
+        }
+    }
+
+    @Test
+    public void testRemoveVariables() {
+        RandomUtil.getInstance().setSeed(3948572938L);
+        DataSet data = simulate(6, 500);
+
+        CovarianceMatrix expected = new CovarianceMatrix(data);
+        OnlineCovarianceMatrix online = new OnlineCovarianceMatrix(data);
+
+        List<String> remaining = Arrays.asList("X5", "X2", "X4");
+        expected.removeVariables(remaining);
+        online.removeVariables(remaining);
+
+        assertEquals(expected.getVariableNames(), online.getVariableNames());
+
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(expected.getValue(i, j), online.getValue(i, j), 1e-10);
+            }
+        }
+
+        // The rows of the remaining variables are kept, so more may be added.
+        double[][] rows = data.getDoubleData().getSelection(new int[]{0, 1}, new int[]{4, 1, 3}).toArray();
+        online.addRows(rows, 2);
+        assertEquals(502, online.getSampleSize());
+    }
+
+    @Test
+    public void testSetValues() {
+        RandomUtil.getInstance().setSeed(9384729384L);
+        DataSet data = simulate(4, 200);
+        OnlineCovarianceMatrix online = new OnlineCovarianceMatrix(data);
+
+        online.setValue(0, 1, 0.25);
+        assertEquals(0.25, online.getValue(1, 0), 0.0);
+        assertEquals(new CovarianceMatrix(data).getValue(2, 3), online.getValue(2, 3), 1e-10);
+
+        online.setSampleSize(50);
+        assertEquals(50, online.getSampleSize());
+
+        TetradMatrix identity = TetradMatrix.identity(4);
+        online.setMatrix(identity);
+        assertEquals(1.0, online.getValue(3, 3), 0.0);
+        assertEquals(0.0, online.getValue(0, 1), 0.0);
+
+        try {
+            online.addRow(new double[4]);
+            fail("Rows should not be added once the covariances have been set.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+    }
+
+    private DataSet simulate(int numVars, int sampleSize) {
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < numVars; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Graph graph = GraphUtils.randomGraph(nodes, 0, numVars, 30, 15, 15, false);
+        SemIm im = new SemIm(new SemPm(graph));
+        return im.simulateData(sampleSize, false);
+    }
+}
@@ -0,0 +1,137 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.util.RandomStream;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestRandomStream {
+
+    @Test
+    public void testStreams() {
+        assertEquals(draw(RandomStream.forTask(42L, 7)), draw(RandomStream.forTask(42L, 7)));
+        assertFalse(draw(RandomStream.forTask(42L, 7)) == draw(RandomStream.forTask(42L, 8)));
+        assertFalse(draw(RandomStream.forTask(42L, 7)) == draw(RandomStream.forTask(43L, 7)));
+
+        RandomStream parent1 = new RandomStream(42L);
+        RandomStream parent2 = new RandomStream(42L);
+        RandomStream child1 = parent1.split();
+        RandomStream child2 = parent2.split();
+        assertEquals(draw(child1), draw(child2));
+        assertEquals(draw(parent1), draw(parent2));
+        assertFalse(draw(parent1.split()) == draw(parent1.split()));
+
+        RandomStream random = RandomStream.forTask(42L, 0);
+
+        int[] counts = new int[7];
+
+        for (int i = 0; i < 70000; i++) {
+            int k = random.nextInt(7);
+            assertTrue(k >= 0 && k < 7);
+            counts[k]++;
+        }
+
+        for (int count : counts) {
+            assertEquals(10000, count, 500);
+        }
+
+        int[] array = new int[50];
+        for (int i = 0; i < array.length; i++) array[i] = i;
+        random.shuffle(array);
+        int[] sorted = array.clone();
+        Arrays.sort(sorted);
+
+        for (int i = 0; i < sorted.length; i++) {
+            assertEquals(i, sorted[i]);
+        }
+    }
+
+    @Test
+    public void testDistributions() {
+        RandomStream random = new RandomStream(2938473L);
+        int n = 200000;
+
+        assertMoments(random, "normal", n, 1.0, 4.0);
+        assertMoments(random, "uniform", n, 0.5, 1.0 / 12.0);
+        assertMoments(random, "exponential", n, 0.5, 0.25);
+        assertMoments(random, "gamma", n, 6.0, 12.0);
+        assertMoments(random, "gammaSmall", n, 1.0, 2.0);
+        assertMoments(random, "chiSquare", n, 3.0, 6.0);
+    }
+
+    private void assertMoments(RandomStream random, String dist, int n, double mean, double variance) {
+        double sum = 0.0;
+        double sumSq = 0.0;
+
+        for (int i = 0; i < n; i++) {
+            double x;
+
+            switch (dist) {
+                case "normal":
+                    x = random.nextNormal(1.0, 2.0);
+                    break;
+                case "uniform":
+                    x = random.nextUniform(0.0, 1.0);
+                    break;
+                case "exponential":
+                    x = random.nextExponential(2.0);
+                    break;
+                case "gamma":
+                    x = random.nextGamma(3.0, 2.0);
+                    break;
+                case "gammaSmall":
+                    x = random.nextGamma(0.5, 2.0);
+                    break;
+                default:
+                    x = random.nextChiSquare(3.0);
+            }
+
+            sum += x;
+            sumSq += x * x;
+        }
+
+        double m = sum / n;
+        double v = sumSq / n - m * m;
+
+        assertEquals(dist, mean, m, 0.02 * Math.max(1.0, mean));
+        assertEquals(dist, variance, v, 0.05 * variance);
+    }
+
+    private long draw(RandomStream stream) {
+        long x = 0;
+
+        for (int i = 0; i < 10; i++) {
+            x = 31 * x + stream.nextLong();
+        }
+
+        return x;
+    }
+}
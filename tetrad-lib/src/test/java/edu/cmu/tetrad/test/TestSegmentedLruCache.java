@@ -0,0 +1,103 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.util.SegmentedLruCache;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests SegmentedLruCache, which the score, test and data caches are built on.
+ *
+ * @author Joseph Ramsey
+ */
+public final class TestSegmentedLruCache {
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(3, 1);
+
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+
+        // Using 1 makes 2 the least recently used.
+        assertEquals("a", cache.get(1));
+        cache.put(4, "d");
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get(2));
+        assertEquals("a", cache.get(1));
+        assertEquals("d", cache.get(4));
+
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertEquals("a", cache.putIfAbsent(1, "z"));
+        assertNull(cache.putIfAbsent(5, "e"));
+        assertEquals("e", cache.get(5));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+        assertTrue(cache.entries().isEmpty());
+    }
+
+    @Test
+    public void testWeighted() {
+        SegmentedLruCache<Integer, int[]> cache = new SegmentedLruCache<Integer, int[]>(10, 1) {
+            @Override
+            protected int weigh(int[] value) {
+                return value.length;
+            }
+        };
+
+        cache.put(1, new int[4]);
+        cache.put(2, new int[4]);
+        assertEquals(8, cache.getWeight());
+
+        // Over the maximum weight, so the eldest goes.
+        cache.put(3, new int[4]);
+        assertEquals(8, cache.getWeight());
+        assertNull(cache.get(1));
+
+        // Too heavy to cache at all.
+        cache.put(4, new int[11]);
+        assertNull(cache.get(4));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testBounded() {
+        SegmentedLruCache<Integer, Integer> cache = new SegmentedLruCache<>(64, 8);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+
+        assertTrue(cache.size() <= 64);
+        assertEquals(cache.size(), cache.entries().size());
+        assertEquals(999, (int) cache.get(999));
+    }
+}
@@ -0,0 +1,85 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that SemBicScore gives the same scores with incremental Cholesky updates as with inversion.
+ *
+ * @author Joseph Ramsey
+ */
+public final class TestSemBicScore {
+
+    @Test
+    public void testCholeskyUpdates() {
+        RandomUtil.getInstance().setSeed(3928475029384L);
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 12; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Graph graph = GraphUtils.randomGraph(nodes, 0, 15, 30, 15, 15, false);
+        SemIm im = new SemIm(new SemPm(graph));
+        DataSet data = im.simulateData(500, false);
+        ICovarianceMatrix cov = new CovarianceMatrix(data);
+
+        SemBicScore updated = new SemBicScore(cov);
+        SemBicScore inverted = new SemBicScore(cov);
+        inverted.setUseCholeskyUpdates(false);
+
+        for (int trial = 0; trial < 200; trial++) {
+            int y = RandomUtil.getInstance().nextInt(12);
+            int x = RandomUtil.getInstance().nextInt(12);
+            if (x == y) continue;
+
+            List<Integer> z = new ArrayList<>();
+
+            for (int i = 0; i < 12; i++) {
+                if (i != x && i != y && RandomUtil.getInstance().nextDouble() < 0.3) z.add(i);
+            }
+
+            int[] _z = new int[z.size()];
+            for (int i = 0; i < z.size(); i++) _z[i] = z.get(i);
+
+            assertEquals(inverted.localScore(y, _z), updated.localScore(y, _z), 1e-8);
+            assertEquals(inverted.localScoreDiff(x, y, _z), updated.localScoreDiff(x, y, _z), 1e-8);
+        }
+    }
+}
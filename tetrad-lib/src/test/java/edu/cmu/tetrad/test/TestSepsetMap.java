@@ -0,0 +1,148 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.GraphNode;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.SepsetMap;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestSepsetMap {
+
+    @Test
+    public void testSetAndGet() throws Exception {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) nodes.add(new GraphNode("X" + i));
+
+        SepsetMap map = new SepsetMap(nodes.subList(0, 5));
+        Node x0 = nodes.get(0), x1 = nodes.get(1), x2 = nodes.get(2), x8 = nodes.get(8), x9 = nodes.get(9);
+
+        assertNull(map.get(x0, x1));
+        assertNull(map.get(x8, x9));
+        assertTrue(Double.isNaN(map.getPValue(x0, x1)));
+
+        map.set(x0, x1, Collections.<Node>emptyList());
+        map.set(x9, x8, list(x2, x0));
+        map.setPValue(x9, x8, 0.25);
+        map.setPValue(x2, x8, 0.5);
+
+        assertEquals(Collections.<Node>emptyList(), map.get(x1, x0));
+        assertEquals(list(x2, x0), map.get(x8, x9));
+        assertEquals(0.25, map.getPValue(x8, x9), 0.0);
+        assertNull(map.get(x2, x8));
+        assertEquals(2, map.size());
+
+        SepsetMap copy = new SepsetMap(map);
+        assertEquals(map, copy);
+        assertEquals(0.5, copy.getPValue(x8, x2), 0.0);
+
+        map.set(x8, x9, null);
+        assertNull(map.get(x9, x8));
+        assertEquals(1, map.size());
+        assertFalse(map.equals(copy));
+
+        map.setReturnEmptyIfNotSet(true);
+        assertEquals(Collections.<Node>emptyList(), map.get(x9, x8));
+
+        // Serialization keeps sepsets and p-values.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(copy);
+        out.close();
+        SepsetMap read = (SepsetMap) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(copy, read);
+        assertEquals(0.25, read.getPValue(x8, x9), 0.0);
+    }
+
+    @Test
+    public void testSerializedForm() {
+
+        // The fields of the earlier version of the class, which kept its sepsets in maps, so that saved
+        // sessions still load.
+        ObjectStreamClass form = ObjectStreamClass.lookup(SepsetMap.class);
+        assertEquals(23L, form.getSerialVersionUID());
+        assertEquals(5, form.getFields().length);
+        assertEquals("Ljava/util/Map;", form.getField("sepsets").getTypeString());
+        assertEquals("Ljava/util/Map;", form.getField("pValues").getTypeString());
+        assertEquals("Ljava/util/Map;", form.getField("parents").getTypeString());
+        assertEquals("Ljava/util/Set;", form.getField("correlations").getTypeString());
+        assertEquals('Z', form.getField("returnEmptyIfNotSet").getTypeCode());
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        final List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) nodes.add(new GraphNode("X" + i));
+
+        final SepsetMap map = new SepsetMap();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Void>> futures = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            final int _t = t;
+
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() {
+                    for (int i = _t; i < nodes.size(); i += 4) {
+                        for (int j = i + 1; j < nodes.size(); j++) {
+                            map.set(nodes.get(i), nodes.get(j), list(nodes.get((i + j) % nodes.size())));
+                        }
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> future : futures) future.get();
+        executor.shutdown();
+
+        assertEquals(300 * 299 / 2, map.size());
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                assertEquals(list(nodes.get((i + j) % nodes.size())), map.get(nodes.get(j), nodes.get(i)));
+            }
+        }
+    }
+
+    private static List<Node> list(Node... nodes) {
+        List<Node> list = new ArrayList<>();
+        Collections.addAll(list, nodes);
+        return list;
+    }
+}
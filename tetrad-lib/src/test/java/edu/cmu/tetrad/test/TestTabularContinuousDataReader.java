@@ -0,0 +1,126 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.OnlineCovarianceMatrix;
+import edu.cmu.tetrad.io.ParallelTabularContinuousDataReader;
+import edu.cmu.tetrad.io.TabularContinuousDataReader;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the parallel continuous data reader reads the same data as the
+ * sequential one.
+ */
+public final class TestTabularContinuousDataReader {
+
+    @Test
+    public void testSameAsSequential() throws IOException {
+        File file = File.createTempFile("continuous", ".txt");
+        file.deleteOnExit();
+
+        // large enough to be split into several chunks
+        Random random = new Random(42);
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("X1\tX2\t\"X3\"\tX4\tX5");
+            for (int i = 0; i < 40000; i++) {
+                writer.print(random.nextGaussian());
+                writer.print('\t');
+                writer.print(random.nextInt(1000) - 500);
+                writer.print('\t');
+                writer.print(String.format("%.6f", random.nextDouble()));
+                writer.print('\t');
+                writer.print(random.nextDouble() * 1e-30);
+                writer.print('\t');
+                writer.print(String.format("%.3e", random.nextGaussian() * 1e5));
+                writer.print(i % 2 == 0 ? "\n" : "\r\n");
+            }
+        }
+
+        DataSet expected = new TabularContinuousDataReader(file.toPath(), '\t').readInData();
+        DataSet actual = new ParallelTabularContinuousDataReader(file.toPath(), '\t').readInData();
+        assertSameData(expected, actual);
+
+        expected = new TabularContinuousDataReader(file.toPath(), '\t').readInData(Collections.singleton("X2"));
+        actual = new ParallelTabularContinuousDataReader(file.toPath(), '\t').readInData(Collections.singleton("X2"));
+        assertSameData(expected, actual);
+
+        // Covariances accumulated from the file, without keeping the rows.
+        CovarianceMatrix cov = new CovarianceMatrix(expected);
+        OnlineCovarianceMatrix online = new ParallelTabularContinuousDataReader(file.toPath(), '\t')
+                .readInCovariances(Collections.singleton("X2"));
+        assertEquals(cov.getVariableNames(), online.getVariableNames());
+        assertEquals(cov.getSampleSize(), online.getSampleSize());
+        for (int i = 0; i < cov.getDimension(); i++) {
+            for (int j = 0; j < cov.getDimension(); j++) {
+                assertEquals(cov.getValue(i, j), online.getValue(i, j), 1e-8 * Math.sqrt(cov.getValue(i, i) * cov.getValue(j, j)));
+            }
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        File file = File.createTempFile("continuous", ".txt");
+        file.deleteOnExit();
+
+        Files.write(file.toPath(), "A,B\n1,2\n3,\n".getBytes());
+        assertError(file, "Missing data at line 3 column 2.");
+
+        Files.write(file.toPath(), "A,B\n1,2\n3,4\n5,x\n".getBytes());
+        assertError(file, "Unable to parse data at line 4 column 2.");
+
+        Files.write(file.toPath(), "A,B\n1,2,3\n".getBytes());
+        assertError(file, "Number of columns exceeded at line 2.  Expect 2 column(s) but found 3.");
+
+        Files.write(file.toPath(), "A,B\n1,2\n3\n".getBytes());
+        assertError(file, "Insufficient number of columns at line 3.  Expect 2 column(s) but found 1.");
+    }
+
+    private void assertSameData(DataSet expected, DataSet actual) {
+        assertEquals(expected.getVariableNames(), actual.getVariableNames());
+        assertEquals(expected.getNumRows(), actual.getNumRows());
+        for (int i = 0; i < expected.getNumRows(); i++) {
+            for (int j = 0; j < expected.getNumColumns(); j++) {
+                assertEquals(expected.getDouble(i, j), actual.getDouble(i, j), 0.0);
+            }
+        }
+    }
+
+    private void assertError(File file, String message) {
+        try {
+            new ParallelTabularContinuousDataReader(file.toPath(), ',').readInData();
+            fail("Expected an exception.");
+        } catch (IOException exception) {
+            assertEquals(message, exception.getMessage());
+        }
+    }
+}
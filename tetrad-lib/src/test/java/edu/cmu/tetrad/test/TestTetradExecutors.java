@@ -0,0 +1,128 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.util.PoolMetrics;
+import edu.cmu.tetrad.util.TetradExecutors;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the named pools of TetradExecutors.
+ *
+ * @author Joseph Ramsey
+ */
+public final class TestTetradExecutors {
+
+    @Test
+    public void testNamedPools() throws InterruptedException {
+        TetradExecutors executors = TetradExecutors.getInstance();
+
+        ForkJoinPool pool = executors.getPool("TestTetradExecutors", 2);
+        assertEquals(2, pool.getParallelism());
+        assertSame(pool, executors.getPool("TestTetradExecutors", 2));
+        assertSame(pool, executors.getPool("TestTetradExecutors"));
+        assertTrue(executors.getPoolNames().contains("TestTetradExecutors"));
+
+        try {
+            executors.getPool("TestTetradExecutors", 3);
+            fail("Expected a parallelism mismatch.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        assertTrue(executors.shutdown("TestTetradExecutors", 10, TimeUnit.SECONDS));
+        assertTrue(pool.isShutdown());
+        assertFalse(executors.getPoolNames().contains("TestTetradExecutors"));
+
+        ForkJoinPool recreated = executors.getPool("TestTetradExecutors", 3);
+        assertNotSame(pool, recreated);
+        assertEquals(3, recreated.getParallelism());
+        assertTrue(executors.shutdown("TestTetradExecutors", 10, TimeUnit.SECONDS));
+
+        assertTrue(TetradExecutors.getAvailableProcessors() >= 1);
+        assertTrue(TetradExecutors.getDefaultParallelism() >= 1);
+    }
+
+    @Test
+    public void testMetrics() throws InterruptedException {
+        TetradExecutors executors = TetradExecutors.getInstance();
+        ForkJoinPool pool = executors.getPool("TestTetradExecutorsMetrics", 2);
+
+        assertEquals(55, (int) pool.invoke(new Sum(1, 11)));
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            final int j = i;
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return j;
+                }
+            });
+        }
+
+        pool.invokeAll(tasks);
+
+        PoolMetrics metrics = executors.getMetrics("TestTetradExecutorsMetrics");
+        assertEquals(2, metrics.getParallelism());
+        assertEquals(5, metrics.getCompletedTaskCount());
+        assertTrue(metrics.getMaxLatencyMillis() >= metrics.getMeanLatencyMillis());
+        assertTrue(metrics.getStealCount() >= 0);
+
+        assertTrue(executors.shutdown("TestTetradExecutorsMetrics", 10, TimeUnit.SECONDS));
+        assertNull(executors.getMetrics("TestTetradExecutorsMetrics"));
+    }
+
+    private static class Sum extends RecursiveTask<Integer> {
+        private final int from;
+        private final int to;
+
+        Sum(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= 2) {
+                int sum = 0;
+                for (int i = from; i < to; i++) sum += i;
+                return sum;
+            }
+
+            int mid = (from + to) / 2;
+            Sum left = new Sum(from, mid);
+            left.fork();
+            return new Sum(mid, to).compute() + left.join();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.search.Fgs;
+import edu.cmu.tetrad.search.PairBumps;
+import edu.cmu.tetrad.search.SearchMetrics;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.MetricsSink;
+import edu.cmu.tetrad.util.MetricsSnapshot;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.TetradMetrics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestTetradMetrics {
+
+    @Test
+    public void testMetrics() {
+        TetradMetrics metrics = TetradMetrics.getInstance();
+        metrics.reset();
+
+        TetradMetrics.Counter counter = metrics.counter("test.counter");
+        TetradMetrics.Histogram histogram = metrics.histogram("test.histogram");
+
+        // Nothing is recorded while recording is off.
+        metrics.setEnabled(false);
+        counter.inc();
+        histogram.record(5);
+        assertEquals(0, counter.get());
+        assertNull(metrics.snapshot().getHistogram("test.histogram"));
+
+        metrics.setEnabled(true);
+
+        try {
+            counter.add(3);
+            counter.inc();
+            metrics.gauge("test.gauge").set(7);
+
+            for (int i = 1; i <= 1000; i++) {
+                histogram.record(i);
+            }
+
+            final List<MetricsSnapshot> reported = new ArrayList<>();
+
+            MetricsSink sink = new MetricsSink() {
+                public void report(MetricsSnapshot snapshot) {
+                    reported.add(snapshot);
+                }
+            };
+
+            metrics.addSink(sink);
+            metrics.report();
+            metrics.removeSink(sink);
+
+            assertEquals(1, reported.size());
+            MetricsSnapshot snapshot = reported.get(0);
+
+            assertEquals(4, snapshot.getCounter("test.counter"));
+            assertEquals(7, snapshot.getGauge("test.gauge"));
+
+            MetricsSnapshot.Summary summary = snapshot.getHistogram("test.histogram");
+            assertEquals(1000, summary.getCount());
+            assertEquals(500500, summary.getSum());
+            assertEquals(1, summary.getMin());
+            assertEquals(1000, summary.getMax());
+            assertEquals(500, summary.getP50(), 125);
+            assertEquals(990, summary.getP99(), 10);
+
+            String json = snapshot.toJson();
+            assertTrue(json.contains("\"test.counter\": 4"));
+            assertTrue(json.contains("\"test.gauge\": 7"));
+
+            metrics.reset();
+            assertEquals(0, counter.get());
+            assertNull(metrics.snapshot().getHistogram("test.histogram"));
+        } finally {
+            metrics.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void testFgsMetrics() {
+        RandomUtil.getInstance().setSeed(38283743L);
+        Graph dag = GraphUtils.randomGraph(20, 0, 20, 5, 5, 5, false);
+        DataSet data = new SemIm(new SemPm(dag)).simulateData(1000, false);
+
+        TetradMetrics metrics = TetradMetrics.getInstance();
+        metrics.reset();
+        metrics.setEnabled(true);
+
+        try {
+            Fgs fgs = new Fgs(new SemBicScore(new CovarianceMatrix(data)));
+            Graph pattern = fgs.search();
+
+            MetricsSnapshot snapshot = metrics.snapshot();
+
+            assertTrue(snapshot.getCounter(SearchMetrics.LOCAL_SCORES) > 0);
+            assertTrue(snapshot.getCounter(SearchMetrics.FGS_ARROWS_QUEUED) > 0);
+            assertEquals(pattern.getNumEdges(), snapshot.getCounter(SearchMetrics.FGS_ARROWS_INSERTED)
+                    - snapshot.getCounter(SearchMetrics.FGS_ARROWS_DELETED));
+            assertEquals(pattern.getNumEdges(), snapshot.getGauge(SearchMetrics.FGS_NUM_EDGES));
+            assertEquals(0, snapshot.getGauge(SearchMetrics.FGS_QUEUE_SIZE));
+            assertTrue(snapshot.getGauge(SearchMetrics.FGS_QUEUE_BYTES) > 0);
+            assertEquals(1, snapshot.getTimer(SearchMetrics.FGS_SEARCH).getCount());
+            assertNotNull(snapshot.getTimer(SearchMetrics.FGS_BACKWARD));
+        } finally {
+            metrics.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void testMarginalBumpsMetrics() {
+        RandomUtil.getInstance().setSeed(38283744L);
+        Graph dag = GraphUtils.randomGraph(150, 0, 150, 5, 5, 5, false);
+        DataSet data = new SemIm(new SemPm(dag)).simulateData(500, false);
+        SemBicScore score = new SemBicScore(new CovarianceMatrix(data));
+
+        TetradMetrics metrics = TetradMetrics.getInstance();
+        metrics.reset();
+        metrics.setEnabled(true);
+
+        try {
+            PairBumps bumps = score.getPositiveMarginalBumps();
+
+            // Two scores for each pair kept; the pairs screened out are not scored.
+            assertTrue(bumps.size() > 0);
+            assertEquals(2 * bumps.size(), metrics.snapshot().getCounter(SearchMetrics.LOCAL_SCORES));
+        } finally {
+            metrics.setEnabled(false);
+        }
+    }
+}